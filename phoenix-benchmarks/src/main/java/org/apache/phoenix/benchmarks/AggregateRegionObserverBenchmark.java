@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.phoenix.query.QueryConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures aggregating the rows of a region on the server, through
+ * {@code UngroupedAggregateRegionObserver} without a GROUP BY and through
+ * {@code GroupedAggregateRegionObserver} with a GROUP BY on a non key column, whose groups are kept
+ * in a cache, and on the leading key column, whose groups are aggregated in key order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregateRegionObserverBenchmark {
+
+  public static class AggregateState extends RegionState {
+    private List<Scan> ungroupedScans;
+    private List<Scan> unorderedScans;
+    private List<Scan> orderedScans;
+
+    @Override
+    protected String[] getCoprocessors() {
+      return new String[] { QueryConstants.UNGROUPED_AGGREGATE_REGION_OBSERVER_CLASSNAME,
+        QueryConstants.GROUPED_AGGREGATE_REGION_OBSERVER_CLASSNAME };
+    }
+
+    @Override
+    protected void prepare() throws SQLException {
+      ungroupedScans = compile("SELECT COUNT(*), SUM(C0), MAX(C1) FROM " + TABLE_NAME);
+      unorderedScans = compile("SELECT C0, COUNT(*), SUM(C1) FROM " + TABLE_NAME + " GROUP BY C0");
+      orderedScans = compile("SELECT K1, COUNT(*), SUM(C1) FROM " + TABLE_NAME + " GROUP BY K1");
+    }
+  }
+
+  @Benchmark
+  public long ungrouped(AggregateState state) throws IOException {
+    return state.scan(state.ungroupedScans);
+  }
+
+  @Benchmark
+  public long groupByUnordered(AggregateState state) throws IOException {
+    return state.scan(state.unorderedScans);
+  }
+
+  @Benchmark
+  public long groupByOrdered(AggregateState state) throws IOException {
+    return state.scan(state.orderedScans);
+  }
+}
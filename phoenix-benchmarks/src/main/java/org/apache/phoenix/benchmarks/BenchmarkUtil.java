@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import static org.apache.phoenix.util.PhoenixRuntime.CONNECTIONLESS;
+import static org.apache.phoenix.util.PhoenixRuntime.JDBC_PROTOCOL;
+import static org.apache.phoenix.util.PhoenixRuntime.JDBC_PROTOCOL_SEPARATOR;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixDriver;
+
+/**
+ * Utilities shared by the benchmarks, which all run against the connectionless query services so
+ * that no cluster is needed.
+ */
+public final class BenchmarkUtil {
+  public static final String URL = JDBC_PROTOCOL + JDBC_PROTOCOL_SEPARATOR + CONNECTIONLESS;
+
+  /**
+   * Table with a composite row key mixing fixed and variable width and ascending and descending
+   * columns.
+   */
+  public static final String TABLE_NAME = "BENCH.EVENTS";
+  public static final String TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+    + " (ORG_ID CHAR(15) NOT NULL, ENTITY_ID VARCHAR NOT NULL, CREATED_DATE DATE NOT NULL,"
+    + " SEQ BIGINT NOT NULL, STATUS VARCHAR, AMOUNT DECIMAL(12,2), SCORE DOUBLE"
+    + " CONSTRAINT PK PRIMARY KEY (ORG_ID, ENTITY_ID, CREATED_DATE DESC, SEQ))";
+
+  static {
+    // Registers the driver
+    PhoenixDriver.INSTANCE.getClass();
+  }
+
+  private BenchmarkUtil() {
+  }
+
+  /**
+   * Opens a connectionless connection on which the benchmark table exists.
+   */
+  public static PhoenixConnection newConnection() throws SQLException {
+    PhoenixConnection conn = DriverManager.getConnection(URL).unwrap(PhoenixConnection.class);
+    conn.createStatement().execute(TABLE_DDL);
+    return conn;
+  }
+}
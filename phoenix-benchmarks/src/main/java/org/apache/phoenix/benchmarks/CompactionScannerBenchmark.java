@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessor;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.RegionObserver;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.regionserver.ScanType;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
+import org.apache.phoenix.coprocessor.CompactionScanner;
+import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
+import org.apache.phoenix.schema.PTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the compaction of all the store files of a region through {@code CompactionScanner}.
+ * Before each compaction, a tenth of the rows are rewritten and a hundredth are deleted, and
+ * flushed into a store file of their own. A major {@code CompactionScanner} looks the TTL of the
+ * table and of its views up through a server connection, which needs a cluster, so the rows are
+ * compacted as in a minor compaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactionScannerBenchmark {
+
+  /**
+   * Wraps the scanner of a compaction in a minor {@link CompactionScanner}, without looking the
+   * table up in the system catalog as {@code UngroupedAggregateRegionObserver} does.
+   */
+  public static class CompactionObserver implements RegionCoprocessor, RegionObserver {
+    private volatile PTable table;
+
+    @Override
+    public Optional<RegionObserver> getRegionObserver() {
+      return Optional.of(this);
+    }
+
+    @Override
+    public InternalScanner preCompact(ObserverContext<RegionCoprocessorEnvironment> c, Store store,
+      InternalScanner scanner, ScanType scanType, CompactionLifeCycleTracker tracker,
+      CompactionRequest request) throws IOException {
+      return new CompactionScanner(c.getEnvironment(), store, scanner,
+        BaseScannerRegionObserverConstants
+          .getMaxLookbackInMillis(c.getEnvironment().getConfiguration()),
+        false, false, table);
+    }
+  }
+
+  public static class CompactionState extends RegionState {
+
+    @Override
+    protected String[] getCoprocessors() {
+      return new String[] { CompactionObserver.class.getName() };
+    }
+
+    @Override
+    protected void prepare() {
+      region.getRegion().getCoprocessorHost().findCoprocessor(CompactionObserver.class).table =
+        table;
+    }
+
+    @Setup(Level.Invocation)
+    public void update() throws SQLException, IOException {
+      int updated = rows / 10;
+      load(region, 0, updated);
+      try (PreparedStatement stmt =
+        conn.prepareStatement("DELETE FROM " + TABLE_NAME + " WHERE K1 = ? AND K2 = ?")) {
+        for (int row = updated; row < updated + rows / 100; row++) {
+          stmt.setLong(1, row / ROWS_PER_K1);
+          stmt.setLong(2, row % ROWS_PER_K1);
+          stmt.execute();
+        }
+      }
+      writeMutations(region);
+      region.flush();
+    }
+  }
+
+  @Benchmark
+  public void compact(CompactionState state) throws IOException {
+    state.region.compact();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.DelegateExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the comparison of a value to a constant, which compares the bytes of the constant
+ * directly, against the same comparison going through the data type as for a non constant right
+ * hand side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComparisonExpressionBenchmark {
+  @Param({ "INTEGER", "BIGINT", "DOUBLE", "DECIMAL", "VARCHAR", "DATE" })
+  private String type;
+
+  @Param({ "ASC", "DESC" })
+  private SortOrder sortOrder;
+
+  @Param({ "true", "false" })
+  private boolean constant;
+
+  private Expression comparison;
+  private ImmutableBytesWritable ptr;
+
+  @Setup
+  public void setup() throws Exception {
+    PDataType dataType = PDataType.fromSqlTypeName(type);
+    Object value = dataType.getSampleValue(dataType.getByteSize() == null ? 20 : null);
+    Expression lhs = LiteralExpression.newConstant(value, dataType, sortOrder);
+    Expression rhs = LiteralExpression.newConstant(value, dataType, sortOrder);
+    comparison = new ComparisonExpression(
+      Arrays.asList(lhs, constant ? rhs : new DelegateExpression(rhs)), CompareOperator.LESS);
+    ptr = new ImmutableBytesWritable();
+  }
+
+  @Benchmark
+  public boolean compare() {
+    return comparison.evaluate(null, ptr);
+  }
+}
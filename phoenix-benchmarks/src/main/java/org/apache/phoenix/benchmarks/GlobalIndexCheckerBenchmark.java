@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.phoenix.hbase.index.util.GenericKeyValueBuilder;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.IndexUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scanning the region of a global index through {@code GlobalIndexChecker}, for a query on
+ * a tenth of the rows of the table. The index rows are all verified, as the repair of unverified
+ * rows reads the data table through a server connection, which needs a cluster.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlobalIndexCheckerBenchmark {
+  private static final String INDEX_NAME = "IDX";
+
+  public static class IndexState extends RegionState {
+    private LocalRegion indexRegion;
+    private List<Scan> indexScans;
+
+    @Override
+    protected String[] getCoprocessors() {
+      return new String[0];
+    }
+
+    @Override
+    protected void createIndexes() throws SQLException {
+      conn.createStatement()
+        .execute("CREATE INDEX " + INDEX_NAME + " ON " + TABLE_NAME + " (C0) INCLUDE (C1)");
+    }
+
+    @Override
+    protected void prepare() throws SQLException {
+      PTable index =
+        conn.getTable(TABLE_NAME.substring(0, TABLE_NAME.indexOf('.') + 1) + INDEX_NAME);
+      try {
+        indexRegion = LocalRegion.create(index, QueryConstants.GLOBAL_INDEX_CHECKER_CLASSNAME,
+          QueryConstants.SCAN_REGION_OBSERVER_CLASSNAME);
+        loadIndex(index.getIndexMaintainer(table, conn));
+      } catch (IOException e) {
+        throw new SQLException(e);
+      }
+      indexScans = compile("SELECT /*+ INDEX(" + TABLE_NAME + " " + INDEX_NAME + ") */ C0, C1 FROM "
+        + TABLE_NAME + " WHERE C0 < 100");
+    }
+
+    /**
+     * Writes the verified index rows of the data rows into the index region, the way
+     * {@code IndexRegionObserver} builds them.
+     */
+    private void loadIndex(IndexMaintainer maintainer) throws IOException {
+      long ts = EnvironmentEdgeManager.currentTimeMillis();
+      byte[] emptyCF = maintainer.getEmptyKeyValueFamily().copyBytesIfNecessary();
+      byte[] emptyCQ = maintainer.getEmptyKeyValueQualifier();
+      List<Mutation> indexRows = new ArrayList<>();
+      List<Cell> cells = new ArrayList<>();
+      try (RegionScanner scanner = region.getRegion().getScanner(new Scan())) {
+        boolean hasMore;
+        do {
+          hasMore = scanner.next(cells);
+          if (!cells.isEmpty()) {
+            Put dataRow = new Put(cells.get(0).getRowArray(), cells.get(0).getRowOffset(),
+              cells.get(0).getRowLength());
+            for (Cell cell : cells) {
+              dataRow.add(cell);
+            }
+            ImmutableBytesWritable dataRowKey = new ImmutableBytesWritable(dataRow.getRow());
+            Put indexRow = maintainer.buildUpdateMutation(GenericKeyValueBuilder.INSTANCE,
+              new IndexUtil.SimpleValueGetter(dataRow), dataRowKey, ts, null, null, true);
+            // The empty column of the data row hides the one of the index row, so it is set here
+            IndexUtil.removeEmptyColumn(indexRow, emptyCF, emptyCQ);
+            indexRow.addColumn(emptyCF, emptyCQ, ts, QueryConstants.VERIFIED_BYTES);
+            indexRows.add(indexRow);
+            cells.clear();
+          }
+          if (indexRows.size() == 1000 || !hasMore) {
+            indexRegion.load(indexRows);
+            indexRows.clear();
+          }
+        } while (hasMore);
+      }
+      indexRegion.flush();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+      indexRegion.close();
+      super.tearDown();
+    }
+  }
+
+  @Benchmark
+  public long scan(IndexState state) throws IOException {
+    long count = 0;
+    for (Scan scan : state.indexScans) {
+      count += state.indexRegion.scan(scan);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.coprocessorclient.MetaDataProtocol;
+import org.apache.phoenix.execute.HashJoinPlan;
+import org.apache.phoenix.execute.HashJoinPlan.HashSubPlan;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.join.HashCacheFactory;
+import org.apache.phoenix.join.HashJoinInfo;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures probing the rows of a region against a hash cache through {@code HashJoinRegionScanner}.
+ * The table is joined with the rows of its first K1 value, whose K2 matches the C0 of a tenth of
+ * the rows. Instead of being sent by the client, the hash cache is built from the rows the region
+ * returns for the right hand side of the join and is added to the cache of the region server
+ * directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashJoinRegionScannerBenchmark {
+
+  public static class JoinState extends RegionState {
+    private List<Scan> joinScans;
+
+    @Override
+    protected String[] getCoprocessors() {
+      return new String[] { QueryConstants.SCAN_REGION_OBSERVER_CLASSNAME };
+    }
+
+    @Override
+    protected void prepare() throws SQLException {
+      HashJoinPlan plan = (HashJoinPlan) getPlan("SELECT a.K1, a.K2, b.C2 FROM " + TABLE_NAME
+        + " a JOIN " + TABLE_NAME + " b ON a.C0 = b.K2 WHERE b.K1 = 0");
+      HashSubPlan subPlan = (HashSubPlan) plan.getSubPlans()[0];
+      List<Result> rows = new ArrayList<>();
+      try {
+        for (Scan scan : getScans(subPlan.getInnerPlan())) {
+          region.scan(scan, rows);
+        }
+        byte[] joinId = Bytes.toBytes(1L);
+        GlobalCache
+          .getTenantCache(region.getEnvironment(QueryConstants.SCAN_REGION_OBSERVER_CLASSNAME),
+            null)
+          .addServerCache(new ImmutableBytesPtr(joinId),
+            serialize(subPlan.getHashExpressions(), rows), ByteUtil.EMPTY_BYTE_ARRAY,
+            new HashCacheFactory(), false, false, MetaDataProtocol.PHOENIX_VERSION);
+        HashJoinInfo joinInfo = plan.getJoinInfo();
+        joinInfo.getJoinIds()[0].set(joinId);
+        joinScans = getScans(plan.getDelegate());
+        for (Scan scan : joinScans) {
+          HashJoinInfo.serializeHashJoinIntoScan(scan, joinInfo);
+        }
+      } catch (IOException e) {
+        throw new SQLException(e);
+      }
+    }
+  }
+
+  /**
+   * Serializes the rows of the right hand side of a join the way {@code HashCacheClient} does.
+   */
+  private static ImmutableBytesWritable serialize(List<Expression> hashExpressions,
+    List<Result> rows) throws IOException {
+    TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(baOut);
+    out.writeInt(hashExpressions.size());
+    for (Expression expression : hashExpressions) {
+      WritableUtils.writeVInt(out, ExpressionType.valueOf(expression).ordinal());
+      expression.write(out);
+    }
+    out.writeInt(baOut.size() + Bytes.SIZEOF_INT);
+    out.writeInt(rows.size());
+    for (Result row : rows) {
+      TupleUtil.write(new ResultTuple(row), out);
+    }
+    out.close();
+    byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())];
+    int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+    return new ImmutableBytesWritable(compressed, 0, compressedSize);
+  }
+
+  @Benchmark
+  public long join(JoinState state) throws IOException {
+    return state.scan(state.joinScans);
+  }
+}
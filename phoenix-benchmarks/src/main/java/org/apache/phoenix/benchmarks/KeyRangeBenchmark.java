@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.query.KeyRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the intersection of key ranges, both of two ranges and of two sorted lists of ranges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyRangeBenchmark {
+  @Param({ "10", "1000" })
+  private int ranges;
+
+  private KeyRange range1;
+  private KeyRange range2;
+  private List<KeyRange> ranges1;
+  private List<KeyRange> ranges2;
+
+  /**
+   * Returns the given number of disjoint ranges, sorted, with keys drawn from the same key space
+   * for every list so that lists overlap.
+   */
+  private static List<KeyRange> newRanges(Random random, int count) {
+    List<KeyRange> ranges = new ArrayList<>(count);
+    long lower = 0;
+    for (int i = 0; i < count; i++) {
+      lower += 1 + random.nextInt(100);
+      long upper = lower + 1 + random.nextInt(100);
+      ranges.add(KeyRange.getKeyRange(Bytes.toBytes(lower), true, Bytes.toBytes(upper), false));
+      lower = upper;
+    }
+    return ranges;
+  }
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    range1 =
+      KeyRange.getKeyRange(Bytes.toBytes("entity-0001"), true, Bytes.toBytes("entity-0500"), false);
+    range2 =
+      KeyRange.getKeyRange(Bytes.toBytes("entity-0250"), true, Bytes.toBytes("entity-0750"), true);
+    ranges1 = newRanges(random, ranges);
+    ranges2 = newRanges(random, ranges);
+  }
+
+  @Benchmark
+  public KeyRange intersect() {
+    return range1.intersect(range2);
+  }
+
+  @Benchmark
+  public List<KeyRange> intersectLists() {
+    return KeyRange.intersect(ranges1, ranges2);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.CoprocessorDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheFactory;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.MemStoreLAB;
+import org.apache.hadoop.hbase.regionserver.RegionCoprocessorHost;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PColumnFamily;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.ScanUtil;
+import org.apache.phoenix.util.SchemaUtil;
+
+/**
+ * A region of a Phoenix table on the local file system, with the Phoenix coprocessors loaded as
+ * they are on a region server, but without a region server, a WAL or any network.
+ */
+public final class LocalRegion implements Closeable {
+  private final File dir;
+  private final BlockCache blockCache;
+  private final HRegion region;
+
+  private LocalRegion(File dir, BlockCache blockCache, HRegion region) {
+    this.dir = dir;
+    this.blockCache = blockCache;
+    this.region = region;
+  }
+
+  /**
+   * Creates a region spanning the whole key space of the physical table of the given table.
+   * @param coprocessors the class names of the coprocessors to load, in priority order
+   */
+  public static LocalRegion create(PTable table, String... coprocessors) throws IOException {
+    File dir = Files.createTempDirectory("phoenix-benchmarks").toFile();
+    Configuration conf = HBaseConfiguration.create();
+    conf.set("fs.defaultFS", "file:///");
+    conf.set("hbase.rootdir", dir.toURI().toString());
+    // The chunks of the memstore allocator are pooled by the region server
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, false);
+    TableDescriptorBuilder builder =
+      TableDescriptorBuilder.newBuilder(TableName.valueOf(table.getPhysicalName().getBytes()));
+    Set<byte[]> families = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    families.add(SchemaUtil.getEmptyColumnFamily(table));
+    for (PColumnFamily family : table.getColumnFamilies()) {
+      families.add(family.getName().getBytes());
+    }
+    for (byte[] family : families) {
+      builder.setColumnFamily(ColumnFamilyDescriptorBuilder.of(family));
+    }
+    int priority = QueryServicesOptions.DEFAULT_COPROCESSOR_PRIORITY;
+    for (String coprocessor : coprocessors) {
+      builder.setCoprocessor(
+        CoprocessorDescriptorBuilder.newBuilder(coprocessor).setPriority(priority++).build());
+    }
+    HRegion region =
+      HRegion.createHRegion(RegionInfoBuilder.newBuilder(builder.build().getTableName()).build(),
+        new Path(dir.toURI()), conf, builder.build(), null, false);
+    // A region only has a block cache and loads its coprocessors when it is opened by a region
+    // server
+    BlockCache blockCache = BlockCacheFactory.createBlockCache(conf);
+    region.setBlockCache(blockCache);
+    region.setCoprocessorHost(new RegionCoprocessorHost(region, null, conf));
+    region.initialize();
+    return new LocalRegion(dir, blockCache, region);
+  }
+
+  public HRegion getRegion() {
+    return region;
+  }
+
+  /**
+   * Writes the given mutations into the memstore, without a WAL.
+   */
+  public void load(List<Mutation> mutations) throws IOException {
+    for (Mutation mutation : mutations) {
+      mutation.setDurability(Durability.SKIP_WAL);
+    }
+    region.batchMutate(mutations.toArray(new Mutation[mutations.size()]));
+  }
+
+  /**
+   * Flushes the memstore into a store file.
+   */
+  public void flush() throws IOException {
+    region.flush(true);
+  }
+
+  /**
+   * Compacts all the store files of the region into one.
+   */
+  public void compact() throws IOException {
+    region.compact(true);
+  }
+
+  /**
+   * Opens a scanner on the region with the coprocessors loaded on it, as a region server does.
+   */
+  public RegionScanner getScanner(Scan scan) throws IOException {
+    region.getCoprocessorHost().preScannerOpen(scan);
+    return region.getCoprocessorHost().postScannerOpen(scan, region.getScanner(scan));
+  }
+
+  /**
+   * Returns the environment of the given coprocessor loaded on the region.
+   */
+  public RegionCoprocessorEnvironment getEnvironment(String coprocessor) {
+    return (RegionCoprocessorEnvironment) region.getCoprocessorHost()
+      .findCoprocessorEnvironment(coprocessor);
+  }
+
+  /**
+   * Scans the region with the coprocessors loaded on it, skipping the dummy results returned when a
+   * scanner pages.
+   * @return the number of rows returned
+   */
+  public long scan(Scan scan) throws IOException {
+    return scan(scan, null);
+  }
+
+  /**
+   * Scans the region like {@link #scan(Scan)}, adding the rows returned to the given list.
+   */
+  public long scan(Scan scan, List<Result> rows) throws IOException {
+    long count = 0;
+    region.startRegionOperation();
+    try (RegionScanner scanner = getScanner(new Scan(scan))) {
+      List<Cell> results = new ArrayList<>();
+      boolean hasMore;
+      do {
+        hasMore = scanner.nextRaw(results);
+        if (!results.isEmpty() && !ScanUtil.isDummy(results)) {
+          count++;
+          if (rows != null) {
+            rows.add(Result.create(results));
+          }
+        }
+        results.clear();
+      } while (hasMore);
+    } finally {
+      region.closeRegionOperation();
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      region.close();
+      blockCache.shutdown();
+    } finally {
+      FileUtil.fullyDelete(dir);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures merging the uncommitted rows of one connection into another and turning uncommitted rows
+ * into the mutations sent on commit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationStateBenchmark {
+  private static final String UPSERT = "UPSERT INTO " + BenchmarkUtil.TABLE_NAME
+    + " (ORG_ID, ENTITY_ID, CREATED_DATE, SEQ, STATUS, AMOUNT, SCORE) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+  /**
+   * Upserts rows with consecutive ids, without committing them.
+   */
+  private static void upsert(PhoenixConnection conn, int from, int to) throws SQLException {
+    try (PreparedStatement stmt = conn.prepareStatement(UPSERT)) {
+      for (int i = from; i < to; i++) {
+        stmt.setString(1, "00D000000000001");
+        stmt.setString(2, String.format("entity-%08d", i));
+        stmt.setDate(3, new Date(1700000000000L + i));
+        stmt.setLong(4, i);
+        stmt.setString(5, i % 2 == 0 ? "OPEN" : "CLOSED");
+        stmt.setBigDecimal(6, BigDecimal.valueOf(i, 2));
+        stmt.setDouble(7, i * 0.5);
+        stmt.execute();
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class JoinState {
+    @Param({ "100", "10000" })
+    private int rows;
+
+    private PhoenixConnection conn;
+    private PhoenixConnection newConn;
+
+    @Setup
+    public void setup() throws SQLException {
+      conn = BenchmarkUtil.newConnection();
+      newConn = BenchmarkUtil.newConnection();
+    }
+
+    /**
+     * Joining modifies both states, so they are rebuilt before each join. Half of the rows of the
+     * new state are already in the state they are joined into.
+     */
+    @Setup(Level.Invocation)
+    public void upsert() throws SQLException {
+      conn.rollback();
+      newConn.rollback();
+      MutationStateBenchmark.upsert(conn, 0, rows);
+      MutationStateBenchmark.upsert(newConn, rows / 2, rows + rows / 2);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+      conn.close();
+      newConn.close();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ToMutationsState {
+    @Param({ "100", "10000" })
+    private int rows;
+
+    private PhoenixConnection conn;
+
+    @Setup
+    public void setup() throws SQLException {
+      conn = BenchmarkUtil.newConnection();
+      MutationStateBenchmark.upsert(conn, 0, rows);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+      conn.rollback();
+      conn.close();
+    }
+  }
+
+  @Benchmark
+  public MutationState join(JoinState state) throws SQLException {
+    MutationState mutationState = state.conn.getMutationState();
+    mutationState.join(state.newConn.getMutationState());
+    return mutationState;
+  }
+
+  @Benchmark
+  public void toMutations(ToMutationsState state, Blackhole blackhole) {
+    Iterator<Pair<byte[], List<Mutation>>> iterator = state.conn.getMutationState().toMutations();
+    while (iterator.hasNext()) {
+      blackhole.consume(iterator.next());
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.schema.types.PDataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of values to and from their serialized form for the common types.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDataTypeBenchmark {
+  @Param({ "INTEGER", "BIGINT", "DOUBLE", "DECIMAL", "VARCHAR", "CHAR", "DATE", "TIMESTAMP",
+    "BOOLEAN", "VARBINARY", "INTEGER ARRAY", "VARCHAR ARRAY" })
+  private String type;
+
+  private PDataType dataType;
+  private Object value;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    dataType = PDataType.fromSqlTypeName(type);
+    // Values of types without a fixed byte size are given a realistic length
+    value = dataType.getSampleValue(dataType.getByteSize() == null ? 20 : null);
+    bytes = dataType.toBytes(value);
+  }
+
+  @Benchmark
+  public byte[] toBytes() {
+    return dataType.toBytes(value);
+  }
+
+  @Benchmark
+  public Object toObject() {
+    return dataType.toObject(bytes);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.compile.ColumnResolver;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.compile.WhereCompiler;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.parse.BindableStatement;
+import org.apache.phoenix.parse.SQLParser;
+import org.apache.phoenix.parse.SelectStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing of a parameterized point lookup against its compilation into an optimized
+ * plan, the statement being parsed once and found in the parsed statement cache afterwards, and
+ * against the compilation of its WHERE clause into the scan ranges, which depends on the values of
+ * the parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryCompileBenchmark {
+  private static final String QUERY = "SELECT STATUS, AMOUNT FROM " + BenchmarkUtil.TABLE_NAME
+    + " WHERE ORG_ID = ? AND ENTITY_ID = ? AND CREATED_DATE = ? AND SEQ = ?";
+
+  private PhoenixConnection conn;
+  private long seq;
+  private PhoenixPreparedStatement boundStatement;
+  private SelectStatement select;
+  private ColumnResolver resolver;
+
+  private PhoenixPreparedStatement prepare() throws SQLException {
+    PhoenixPreparedStatement stmt = new PhoenixPreparedStatement(conn, QUERY);
+    stmt.setString(1, "00D000000000001");
+    stmt.setString(2, "e1");
+    stmt.setDate(3, new Date(0));
+    stmt.setLong(4, seq++);
+    return stmt;
+  }
+
+  @Setup
+  public void setup() throws SQLException {
+    conn = BenchmarkUtil.newConnection();
+    boundStatement = prepare();
+    select = new SQLParser(QUERY).parseQuery();
+    resolver = boundStatement.compileQuery().getContext().getResolver();
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    conn.close();
+  }
+
+  @Benchmark
+  public BindableStatement parse() throws SQLException {
+    return new SQLParser(QUERY).parseStatement();
+  }
+
+  @Benchmark
+  public QueryPlan compile() throws SQLException {
+    return prepare().optimizeQuery();
+  }
+
+  @Benchmark
+  public Expression compileWhere() throws SQLException {
+    boundStatement.setLong(4, seq++);
+    return WhereCompiler.compile(new StatementContext(boundStatement, resolver), select);
+  }
+}
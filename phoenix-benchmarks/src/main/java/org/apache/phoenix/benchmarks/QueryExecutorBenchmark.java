@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.phoenix.job.JobManager;
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.VirtualThreads;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of a query over a wide salted table through the client query thread pool,
+ * with one scan per salt bucket and region, each blocked on its RPC for a fixed time. Compares the
+ * default pool of platform threads with virtual threads, which need Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryExecutorBenchmark {
+  private static final int KEEP_ALIVE_MS = 60000;
+
+  public enum Threads {
+    PLATFORM,
+    VIRTUAL
+  }
+
+  @Param({ "PLATFORM", "VIRTUAL" })
+  private Threads threads;
+
+  // Number of scans of the query, e.g. 256 salt buckets over 4 or 16 regions each
+  @Param({ "1024", "4096" })
+  private int scans;
+
+  // Time in milliseconds each scan is blocked on its RPC
+  @Param({ "1" })
+  private int rpcMillis;
+
+  private ThreadPoolExecutor executor;
+
+  @Setup
+  public void setup() {
+    boolean useVirtualThreads = threads == Threads.VIRTUAL;
+    if (useVirtualThreads && !VirtualThreads.isSupported()) {
+      throw new IllegalStateException("Virtual threads need Java 21 or later");
+    }
+    executor = JobManager.createThreadPoolExec(KEEP_ALIVE_MS,
+      useVirtualThreads
+        ? QueryServicesOptions.DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY
+        : QueryServicesOptions.DEFAULT_THREAD_POOL_SIZE,
+      QueryServicesOptions.UNLIMITED_QUEUE_SIZE, false, null, useVirtualThreads);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public int query() throws InterruptedException, ExecutionException {
+    final Object jobId = new Object();
+    final long rpcNanos = TimeUnit.MILLISECONDS.toNanos(rpcMillis);
+    List<Future<Integer>> futures = new ArrayList<>(scans);
+    for (int i = 0; i < scans; i++) {
+      final int scan = i;
+      futures.add(executor.submit(new JobCallable<Integer>() {
+        @Override
+        public Integer call() {
+          LockSupport.parkNanos(rpcNanos);
+          return scan;
+        }
+
+        @Override
+        public Object getJobId() {
+          return jobId;
+        }
+
+        @Override
+        public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+          return null;
+        }
+      }));
+    }
+    int sum = 0;
+    for (Future<Integer> future : futures) {
+      sum += future.get();
+    }
+    return sum;
+  }
+}
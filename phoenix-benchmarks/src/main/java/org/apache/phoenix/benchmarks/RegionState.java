@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.util.ScanUtil;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A table of generated rows loaded into a {@link LocalRegion}, on which scans compiled by the
+ * client are run through the Phoenix coprocessors. The row key is (K1, K2), with K1 the row number
+ * divided by {@link #ROWS_PER_K1} and K2 the remainder. The non key columns cycle through BIGINT,
+ * DOUBLE and VARCHAR, C0 being the row number modulo {@link #C0_VALUES}.
+ */
+@State(Scope.Benchmark)
+public abstract class RegionState {
+  public static final String TABLE_NAME = "BENCH.SCANNED";
+  public static final int ROWS_PER_K1 = 100;
+  public static final int C0_VALUES = 1000;
+
+  private static final int ROWS_PER_BATCH = 1000;
+
+  /**
+   * How the non key columns of a row are stored.
+   */
+  public enum Encoding {
+    // A cell per column, qualified by the column name
+    NONE("COLUMN_ENCODED_BYTES=0"),
+    // A cell per column, qualified by a two byte column number
+    ENCODED("COLUMN_ENCODED_BYTES=2"),
+    // A single cell holding all the columns of a column family
+    SINGLE_CELL("IMMUTABLE_ROWS=true,IMMUTABLE_STORAGE_SCHEME=SINGLE_CELL_ARRAY_WITH_OFFSETS,"
+      + "COLUMN_ENCODED_BYTES=2");
+
+    private final String options;
+
+    Encoding(String options) {
+      this.options = options;
+    }
+  }
+
+  @Param({ "10000", "100000" })
+  protected int rows;
+
+  @Param({ "3", "30" })
+  protected int columns;
+
+  @Param({ "NONE", "ENCODED", "SINGLE_CELL" })
+  protected Encoding encoding;
+
+  protected PhoenixConnection conn;
+  protected PTable table;
+  protected LocalRegion region;
+
+  /**
+   * Returns the class names of the coprocessors loaded on the region, in priority order.
+   */
+  protected abstract String[] getCoprocessors();
+
+  /**
+   * Prepares what the benchmarks run, such as the scans they send to the region, once the rows are
+   * loaded.
+   */
+  protected abstract void prepare() throws SQLException;
+
+  @Setup
+  public void setup() throws Exception {
+    conn = BenchmarkUtil.newConnection();
+    StringBuilder ddl =
+      new StringBuilder("CREATE TABLE " + TABLE_NAME + " (K1 BIGINT NOT NULL, K2 BIGINT NOT NULL");
+    for (int i = 0; i < columns; i++) {
+      ddl.append(", C").append(i).append(' ').append(getColumnType(i));
+    }
+    ddl.append(" CONSTRAINT PK PRIMARY KEY (K1, K2)) ").append(encoding.options);
+    conn.createStatement().execute(ddl.toString());
+    createIndexes();
+    table = conn.getTable(TABLE_NAME);
+    region = LocalRegion.create(table, getCoprocessors());
+    load(region, 0, rows);
+    region.flush();
+    prepare();
+  }
+
+  /**
+   * Creates the indexes of the table, before the region is created. Does nothing by default.
+   */
+  protected void createIndexes() throws SQLException {
+  }
+
+  private static String getColumnType(int column) {
+    switch (column % 3) {
+      case 0:
+        return "BIGINT";
+      case 1:
+        return "DOUBLE";
+      default:
+        return "VARCHAR";
+    }
+  }
+
+  /**
+   * Upserts the rows of the given range and writes the mutations the client would send for them
+   * into the given region, in batches of {@link #ROWS_PER_BATCH} rows.
+   */
+  protected void load(LocalRegion target, int from, int to) throws SQLException, IOException {
+    StringBuilder upsert = new StringBuilder("UPSERT INTO " + TABLE_NAME + " VALUES (?, ?");
+    for (int i = 0; i < columns; i++) {
+      upsert.append(", ?");
+    }
+    upsert.append(')');
+    try (PreparedStatement stmt = conn.prepareStatement(upsert.toString())) {
+      for (int row = from; row < to; row++) {
+        stmt.setLong(1, row / ROWS_PER_K1);
+        stmt.setLong(2, row % ROWS_PER_K1);
+        for (int i = 0; i < columns; i++) {
+          switch (i % 3) {
+            case 0:
+              stmt.setLong(3 + i, i == 0 ? row % C0_VALUES : (long) row * i);
+              break;
+            case 1:
+              stmt.setDouble(3 + i, row * 0.5 + i);
+              break;
+            default:
+              stmt.setString(3 + i, "value-" + (row % 7) + "-" + i);
+              break;
+          }
+        }
+        stmt.execute();
+        if ((row - from + 1) % ROWS_PER_BATCH == 0 || row == to - 1) {
+          writeMutations(target);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the uncommitted mutations of the connection against the physical table of the given
+   * region into it, discarding all the uncommitted mutations.
+   */
+  protected void writeMutations(LocalRegion target) throws SQLException, IOException {
+    byte[] tableName = target.getRegion().getTableDescriptor().getTableName().getName();
+    List<Mutation> mutations = new ArrayList<>();
+    Iterator<Pair<byte[], List<Mutation>>> iterator = conn.getMutationState().toMutations();
+    while (iterator.hasNext()) {
+      Pair<byte[], List<Mutation>> pair = iterator.next();
+      if (Arrays.equals(tableName, pair.getFirst())) {
+        mutations.addAll(pair.getSecond());
+      }
+    }
+    conn.rollback();
+    target.load(mutations);
+  }
+
+  /**
+   * Compiles and optimizes the given query.
+   */
+  protected QueryPlan getPlan(String query) throws SQLException {
+    return conn.createStatement().unwrap(PhoenixStatement.class).optimizeQuery(query);
+  }
+
+  /**
+   * Returns the scans the client would send to the region for the given plan.
+   */
+  protected static List<Scan> getScans(QueryPlan plan) throws SQLException {
+    // The scans are only set up once the plan is executed
+    plan.iterator().close();
+    List<Scan> scans = new ArrayList<>();
+    for (List<Scan> scanList : plan.getScans()) {
+      for (Scan scan : scanList) {
+        // Set by the iterator of each scan right before it is sent
+        ScanUtil.setScanAttributesForClient(scan, plan.getTableRef().getTable(), plan.getContext());
+        scans.add(scan);
+      }
+    }
+    return scans;
+  }
+
+  /**
+   * Compiles the given query and returns the scans the client would send to the region.
+   */
+  protected List<Scan> compile(String query) throws SQLException {
+    return getScans(getPlan(query));
+  }
+
+  /**
+   * Runs the given scans through the region.
+   * @return the number of rows returned
+   */
+  protected long scan(List<Scan> scans) throws IOException {
+    long count = 0;
+    for (Scan scan : scans) {
+      count += region.scan(scan);
+    }
+    return count;
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    region.close();
+    conn.close();
+  }
+}
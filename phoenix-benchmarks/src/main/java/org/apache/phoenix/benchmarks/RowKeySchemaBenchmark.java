@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.RowKeySchema;
+import org.apache.phoenix.schema.types.PDataType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building a row key from the values of its columns and walking the columns of a row key,
+ * for a composite row key mixing fixed and variable width and ascending and descending columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowKeySchemaBenchmark {
+  private PhoenixConnection conn;
+  private PTable table;
+  private RowKeySchema schema;
+  private byte[][] values;
+  private byte[] rowKey;
+  private PColumn lastColumn;
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+  @Setup
+  public void setup() throws SQLException {
+    conn = BenchmarkUtil.newConnection();
+    table = conn.getTable(BenchmarkUtil.TABLE_NAME);
+    schema = table.getRowKeySchema();
+    Object[] pkValues =
+      new Object[] { "00D000000000001", "entity-0000012345", new Date(1700000000000L), 42L };
+    List<PColumn> pkColumns = table.getPKColumns();
+    values = new byte[pkValues.length][];
+    for (int i = 0; i < pkValues.length; i++) {
+      PColumn column = pkColumns.get(i);
+      PDataType type = column.getDataType();
+      values[i] = type.toBytes(pkValues[i], column.getSortOrder());
+    }
+    lastColumn = pkColumns.get(pkColumns.size() - 1);
+    table.newKey(ptr, values);
+    rowKey = ptr.copyBytes();
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    conn.close();
+  }
+
+  @Benchmark
+  public int newKey() {
+    return table.newKey(ptr, values);
+  }
+
+  @Benchmark
+  public void iterate(Blackhole blackhole) {
+    int maxOffset = schema.iterator(rowKey, ptr);
+    for (int i = 0; i < schema.getFieldCount(); i++) {
+      Boolean hasValue = schema.next(ptr, i, maxOffset);
+      if (hasValue == null) {
+        break;
+      }
+      blackhole.consume(ptr.getLength());
+    }
+  }
+
+  @Benchmark
+  public Object decodeLastColumn() {
+    ptr.set(rowKey);
+    schema.position(ptr, 0, lastColumn.getPosition());
+    return lastColumn.getDataType().toObject(ptr, lastColumn.getSortOrder());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.ScanRanges;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.RowKeySchema;
+import org.apache.phoenix.util.ScanUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the creation of the scan ranges of a skip scan over the leading row key columns, from
+ * the per column key ranges the WHERE clause is optimized into.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanRangesBenchmark {
+  // Number of values of each of the two leading row key columns
+  @Param({ "1", "10", "100" })
+  private int keys;
+
+  private RowKeySchema schema;
+  private List<List<KeyRange>> ranges;
+  private int[] slotSpans;
+
+  @Setup
+  public void setup() throws SQLException {
+    try (PhoenixConnection conn = BenchmarkUtil.newConnection()) {
+      schema = conn.getTable(BenchmarkUtil.TABLE_NAME).getRowKeySchema();
+    }
+    List<KeyRange> orgIds = new ArrayList<>(keys);
+    List<KeyRange> entityIds = new ArrayList<>(keys);
+    for (int i = 0; i < keys; i++) {
+      orgIds.add(KeyRange.getKeyRange(Bytes.toBytes(String.format("00D%012d", i))));
+      entityIds.add(KeyRange.getKeyRange(Bytes.toBytes(String.format("entity-%06d", i))));
+    }
+    ranges = Arrays.asList(orgIds, entityIds);
+    slotSpans = ScanUtil.getDefaultSlotSpans(ranges.size());
+  }
+
+  @Benchmark
+  public ScanRanges create() {
+    return ScanRanges.create(schema, ranges, slotSpans, null, true, -1);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.phoenix.query.QueryConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scanning a region through {@code ScanRegionObserver}, filtering and projecting the rows
+ * and keeping the top rows of an ORDER BY with a LIMIT on the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanRegionObserverBenchmark {
+
+  public static class ScanState extends RegionState {
+    private List<Scan> filterScans;
+    private List<Scan> topNScans;
+
+    @Override
+    protected String[] getCoprocessors() {
+      return new String[] { QueryConstants.SCAN_REGION_OBSERVER_CLASSNAME };
+    }
+
+    @Override
+    protected void prepare() throws SQLException {
+      filterScans = compile("SELECT K1, K2, C0, C1 FROM " + TABLE_NAME + " WHERE C0 < 100");
+      topNScans = compile("SELECT K1, K2, C1 FROM " + TABLE_NAME + " ORDER BY C1 DESC LIMIT 100");
+    }
+  }
+
+  @Benchmark
+  public long filter(ScanState state) throws IOException {
+    return state.scan(state.filterScans);
+  }
+
+  @Benchmark
+  public long topN(ScanState state) throws IOException {
+    return state.scan(state.topNScans);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.benchmarks;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.compile.WhereCompiler;
+import org.apache.phoenix.compile.WhereOptimizer;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.parse.HintNode.Hint;
+import org.apache.phoenix.parse.SQLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the extraction of the row key ranges to scan from the WHERE clause of a query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WhereOptimizerBenchmark {
+  @Param({ "POINT", "RANGE", "IN", "OR", "RVC" })
+  private String where;
+
+  private PhoenixConnection conn;
+  private StatementContext context;
+  private Expression whereClause;
+
+  private static String getWhere(String name) {
+    switch (name) {
+      case "POINT":
+        return "ORG_ID = '00D000000000001' AND ENTITY_ID = 'e1'"
+          + " AND CREATED_DATE = TO_DATE('2024-01-01 00:00:00') AND SEQ = 1";
+      case "RANGE":
+        return "ORG_ID = '00D000000000001' AND ENTITY_ID >= 'e1' AND ENTITY_ID < 'e9'";
+      case "IN":
+        return "ORG_ID IN ('00D000000000001', '00D000000000002', '00D000000000003')"
+          + " AND ENTITY_ID IN ('e1', 'e2', 'e3', 'e4', 'e5') AND SEQ > 10";
+      case "OR":
+        return "(ORG_ID = '00D000000000001' AND ENTITY_ID = 'e1')"
+          + " OR (ORG_ID = '00D000000000002' AND ENTITY_ID = 'e2') OR STATUS = 'OPEN'";
+      case "RVC":
+        return "(ORG_ID, ENTITY_ID, CREATED_DATE) > ('00D000000000001', 'e1',"
+          + " TO_DATE('2024-01-01 00:00:00')) AND ORG_ID < '00D000000000009'";
+      default:
+        throw new IllegalArgumentException(name);
+    }
+  }
+
+  @Setup
+  public void setup() throws SQLException {
+    conn = BenchmarkUtil.newConnection();
+    String query = "SELECT * FROM " + BenchmarkUtil.TABLE_NAME + " WHERE " + getWhere(where);
+    context = new PhoenixPreparedStatement(conn, query).compileQuery().getContext();
+    whereClause = WhereCompiler.compile(context, new SQLParser(query).parseQuery().getWhere());
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    conn.close();
+  }
+
+  @Benchmark
+  public Expression pushKeyExpressionsToScan() throws SQLException {
+    return WhereOptimizer.pushKeyExpressionsToScan(context, Collections.<Hint> emptySet(),
+      whereClause);
+  }
+}
@@ -34,4 +34,36 @@ public interface HashCache extends Closeable {
   public int getClientVersion();
 
   public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException;
+
+  /**
+   * Whether the cache has any row for the given key. Implementations may answer this without
+   * materializing the matching rows, which is all semi and anti joins need.
+   */
+  default boolean containsKey(ImmutableBytesPtr hashKey) throws IOException {
+    return get(hashKey) != null;
+  }
+
+  /**
+   * Whether the cache holds every row that the region with the given boundaries may join with. This
+   * is only false for a cache that was partitioned for other regions of the region server.
+   */
+  default boolean coversRegion(byte[] regionStartKey, byte[] regionEndKey) {
+    return true;
+  }
+
+  /**
+   * Keeps {@link #close()} from releasing the memory of the cache until a matching
+   * {@link #release()}, so that a scanner may probe the cache and read the rows it returns while
+   * the cache is removed from the server. Returns false if the memory was already released, in
+   * which case the cache must not be used.
+   */
+  default boolean retain() {
+    return true;
+  }
+
+  /**
+   * Gives up a reference taken by {@link #retain()}.
+   */
+  default void release() {
+  }
 }
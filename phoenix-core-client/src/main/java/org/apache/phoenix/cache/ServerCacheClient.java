@@ -41,6 +41,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.coprocessor.Batch;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -120,9 +121,17 @@ public class ServerCacheClient {
     private MemoryChunk chunk;
     private File outputFile;
     private long maxServerCacheTTL;
+    private final ServerCachePartitioner partitioner;
 
     public ServerCache(byte[] id, Set<HRegionLocation> servers, ImmutableBytesWritable cachePtr,
       ConnectionQueryServices services, boolean storeCacheOnClient) throws IOException {
+      this(id, servers, cachePtr, services, storeCacheOnClient, null);
+    }
+
+    public ServerCache(byte[] id, Set<HRegionLocation> servers, ImmutableBytesWritable cachePtr,
+      ConnectionQueryServices services, boolean storeCacheOnClient,
+      ServerCachePartitioner partitioner) throws IOException {
+      this.partitioner = partitioner;
       maxServerCacheTTL =
         services.getProps().getInt(QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB,
           QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS);
@@ -160,6 +169,14 @@ public class ServerCacheClient {
       return cachePtr;
     }
 
+    /**
+     * Gets the partitioner splitting the cache between region servers, or null if every region
+     * server is sent the whole cache
+     */
+    public ServerCachePartitioner getPartitioner() {
+      return partitioner;
+    }
+
     /**
      * Gets the size in bytes of hash cache
      */
@@ -255,6 +272,20 @@ public class ServerCacheClient {
     final ImmutableBytesWritable cachePtr, final byte[] txState,
     final ServerCacheFactory cacheFactory, final PTable cacheUsingTable,
     final boolean usePersistentCache, boolean storeCacheOnClient) throws SQLException {
+    return addServerCache(keyRanges, cacheId, cachePtr, txState, cacheFactory, cacheUsingTable,
+      usePersistentCache, storeCacheOnClient, null);
+  }
+
+  /**
+   * Sends the cache to each region server hosting a region of cacheUsingTable that intersects
+   * keyRanges. If a partitioner is given, each region server is only sent the part of the cache
+   * that its regions need.
+   */
+  public ServerCache addServerCache(ScanRanges keyRanges, final byte[] cacheId,
+    final ImmutableBytesWritable cachePtr, final byte[] txState,
+    final ServerCacheFactory cacheFactory, final PTable cacheUsingTable,
+    final boolean usePersistentCache, boolean storeCacheOnClient,
+    ServerCachePartitioner partitioner) throws SQLException {
     ConnectionQueryServices services = connection.getQueryServices();
     List<Closeable> closeables = new ArrayList<Closeable>();
     ServerCache hashCacheSpec = null;
@@ -276,6 +307,11 @@ public class ServerCacheClient {
       // Size these based on worst case
       futures = new ArrayList<Future<Boolean>>(nRegions);
       Set<HRegionLocation> servers = new HashSet<HRegionLocation>(nRegions);
+      final Map<HRegionLocation,
+        ImmutableBytesWritable> partitions = partitioner == null
+          ? null
+          : partitioner.partition(cachePtr,
+            getRegionsByServer(keyRanges, cacheUsingTable, locations));
       for (HRegionLocation entry : locations) {
         // Keep track of servers we've sent to and only send once
         byte[] regionStartKey = entry.getRegion().getStartKey();
@@ -291,14 +327,16 @@ public class ServerCacheClient {
               addCustomAnnotations("Adding cache entry to be sent for " + entry, connection));
           }
           final byte[] key = getKeyInRegion(entry.getRegion().getStartKey());
+          final ImmutableBytesWritable serverCachePtr =
+            partitions == null ? cachePtr : partitions.get(entry);
           final Table htable = services.getTable(cacheUsingTable.getPhysicalName().getBytes());
           closeables.add(htable);
           futures.add(executor.submit(new JobCallable<Boolean>() {
 
             @Override
             public Boolean call() throws Exception {
-              return addServerCache(htable, key, cacheUsingTable, cacheId, cachePtr, cacheFactory,
-                txState, usePersistentCache);
+              return addServerCache(htable, key, cacheUsingTable, cacheId, serverCachePtr,
+                cacheFactory, txState, usePersistentCache);
             }
 
             /**
@@ -324,7 +362,8 @@ public class ServerCacheClient {
         }
       }
 
-      hashCacheSpec = new ServerCache(cacheId, servers, cachePtr, services, storeCacheOnClient);
+      hashCacheSpec =
+        new ServerCache(cacheId, servers, cachePtr, services, storeCacheOnClient, partitioner);
       // Execute in parallel
       int timeoutMs = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB,
         QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
@@ -482,6 +521,44 @@ public class ServerCacheClient {
     return regionStartKey;
   }
 
+  /**
+   * Returns the number of region servers hosting a region of cacheUsingTable that intersects
+   * keyRanges, which is the number of region servers a cache for it is sent to.
+   */
+  public int getServerCount(ScanRanges keyRanges, PTable cacheUsingTable) throws SQLException {
+    ConnectionQueryServices services = connection.getQueryServices();
+    int queryTimeout = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB,
+      QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
+    List<HRegionLocation> locations =
+      services.getAllTableRegions(cacheUsingTable.getPhysicalName().getBytes(), queryTimeout);
+    return getRegionsByServer(keyRanges, cacheUsingTable, locations).size();
+  }
+
+  /**
+   * Groups the regions of cacheUsingTable that intersect keyRanges by the region server hosting
+   * them.
+   */
+  private static Map<HRegionLocation, List<RegionInfo>> getRegionsByServer(ScanRanges keyRanges,
+    PTable cacheUsingTable, List<HRegionLocation> locations) {
+    Map<HRegionLocation, List<RegionInfo>> regionsByServer =
+      new HashMap<HRegionLocation, List<RegionInfo>>();
+    for (HRegionLocation entry : locations) {
+      RegionInfo region = entry.getRegion();
+      if (
+        keyRanges.intersectRegion(region.getStartKey(), region.getEndKey(),
+          cacheUsingTable.getIndexType() == IndexType.LOCAL)
+      ) {
+        List<RegionInfo> regions = regionsByServer.get(entry);
+        if (regions == null) {
+          regions = new ArrayList<RegionInfo>();
+          regionsByServer.put(entry, regions);
+        }
+        regions.add(region);
+      }
+    }
+    return regionsByServer;
+  }
+
   public boolean addServerCache(byte[] startkeyOfRegion, ServerCache cache,
     HashCacheFactory cacheFactory, byte[] txState, PTable pTable) throws Exception {
     Table table = null;
@@ -497,6 +574,24 @@ public class ServerCacheClient {
       if (cache.isExpired(tableRegionLocation)) {
         return false;
       }
+      if (cache.getPartitioner() != null) {
+        // The regions hosted by the server may have changed since the cache was partitioned, so
+        // it is always sent a new partition built from the regions it currently hosts.
+        int queryTimeout = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB,
+          QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
+        List<RegionInfo> regions = new ArrayList<RegionInfo>();
+        for (HRegionLocation entry : services.getAllTableRegions(tableName, queryTimeout)) {
+          if (entry.equals(tableRegionLocation)) {
+            regions.add(entry.getRegion());
+          }
+        }
+        ImmutableBytesWritable cachePtr = cache.getPartitioner()
+          .partition(cache.getCachePtr(), Collections.singletonMap(tableRegionLocation, regions))
+          .get(tableRegionLocation);
+        cache.addServer(tableRegionLocation);
+        return addServerCache(table, startkeyOfRegion, pTable, cacheId, cachePtr, cacheFactory,
+          txState, false);
+      }
       if (
         cache.addServer(tableRegionLocation)
           || services.getProps().getBoolean(HASH_JOIN_SERVER_CACHE_RESEND_PER_SERVER, false)
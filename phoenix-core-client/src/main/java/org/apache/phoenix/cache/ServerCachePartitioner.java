@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+
+/**
+ * Splits a server cache so that each region server is only sent the part of it that can be used by
+ * the regions it hosts, instead of the whole cache.
+ */
+public interface ServerCachePartitioner {
+
+  /**
+   * Returns the part of the cache to send to each of the given region servers.
+   * @param cachePtr        the whole serialized cache
+   * @param regionsByServer the regions using the cache, grouped by the region server hosting them
+   */
+  Map<HRegionLocation, ImmutableBytesWritable> partition(ImmutableBytesWritable cachePtr,
+    Map<HRegionLocation, List<RegionInfo>> regionsByServer) throws SQLException;
+}
@@ -53,8 +53,11 @@ import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.execute.UnionPlan;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.ProjectedColumnExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
 import org.apache.phoenix.expression.function.PhoenixRowTimestampFunction;
+import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.expression.visitor.StatelessTraverseAllExpressionVisitor;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -84,6 +87,7 @@ import org.apache.phoenix.schema.AmbiguousColumnException;
 import org.apache.phoenix.schema.ColumnNotFoundException;
 import org.apache.phoenix.schema.PDatum;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.RowValueConstructorOffsetNotCoercibleException;
 import org.apache.phoenix.schema.TableNotFoundException;
@@ -429,6 +433,9 @@ public class QueryCompiler {
         HashSubPlan[] hashPlans = new HashSubPlan[count];
         fieldPositions[0] =
           projectedTable.getColumns().size() - projectedTable.getPKColumns().size();
+        boolean useJoinKeyBloomFilter = context.getConnection().getQueryServices().getProps()
+          .getBoolean(QueryServices.HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB,
+            QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED);
         for (int i = 0; i < count; i++) {
           JoinSpec joinSpec = joinSpecs.get(i);
           Scan subScan = ScanUtil.newScan(originalScan);
@@ -467,9 +474,18 @@ public class QueryCompiler {
               ? 0
               : (tables[i].getColumns().size() - tables[i].getPKColumns().size()));
           }
+          List<Expression> bloomFilterLhsExpressions = null;
+          if (
+            !optimized && !table.isSubselect() && useJoinKeyBloomFilter
+              && (joinTypes[i] == JoinType.Inner || joinTypes[i] == JoinType.Semi)
+              && tableRef.getTable().getIndexType() != IndexType.LOCAL
+          ) {
+            bloomFilterLhsExpressions =
+              getSourceJoinExpressions(joinExpressions[i], tupleProjector);
+          }
           hashPlans[i] = new HashSubPlan(i, subPlans[i], optimized ? null : hashExpressions,
             joinSpec.isSingleValueOnly(), usePersistentCache, keyRangeLhsExpression,
-            keyRangeRhsExpression);
+            keyRangeRhsExpression, bloomFilterLhsExpressions);
         }
         TupleProjector.serializeProjectorIntoScan(context.getScan(), tupleProjector,
           wildcardIncludesDynamicCols);
@@ -688,6 +704,58 @@ public class QueryCompiler {
     return type == JoinType.Semi && complete;
   }
 
+  /**
+   * Rewrites the LHS join expressions, compiled against the projected table, into expressions
+   * against the rows of the scanned table so that they can be evaluated by the scan filter.
+   * @return the rewritten expressions or null if they reference columns of other joined tables
+   */
+  private static List<Expression> getSourceJoinExpressions(List<Expression> joinExpressions,
+    TupleProjector tupleProjector) {
+    final Expression[] sourceExpressions = tupleProjector.getExpressions();
+    final boolean[] rewritten = { true };
+    CloneExpressionVisitor visitor = new CloneExpressionVisitor() {
+      @Override
+      public boolean isCloneNode(Expression node, List<Expression> children) {
+        return !children.equals(node.getChildren());
+      }
+
+      @Override
+      public Expression visit(ProjectedColumnExpression node) {
+        if (node.getPosition() >= sourceExpressions.length) {
+          rewritten[0] = false;
+          return node;
+        }
+        return sourceExpressions[node.getPosition()];
+      }
+    };
+    List<Expression> sourceJoinExpressions =
+      Lists.newArrayListWithExpectedSize(joinExpressions.size());
+    for (Expression expression : joinExpressions) {
+      Expression sourceExpression = expression.accept(visitor);
+      if (
+        !rewritten[0] || sourceExpression.getDataType() != expression.getDataType()
+          || sourceExpression.getSortOrder() != expression.getSortOrder()
+          || containsProjectedColumn(sourceExpression)
+      ) {
+        return null;
+      }
+      sourceJoinExpressions.add(sourceExpression);
+    }
+    return sourceJoinExpressions;
+  }
+
+  private static boolean containsProjectedColumn(Expression expression) {
+    final boolean[] found = { false };
+    expression.accept(new StatelessTraverseAllExpressionVisitor<Void>() {
+      @Override
+      public Void visit(ProjectedColumnExpression node) {
+        found[0] = true;
+        return null;
+      }
+    });
+    return found[0];
+  }
+
   protected QueryPlan compileSubquery(SelectStatement subquery, boolean pushDownMaxRows)
     throws SQLException {
     return compileSubquery(subquery, pushDownMaxRows, null);
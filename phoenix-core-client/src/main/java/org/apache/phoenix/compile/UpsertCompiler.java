@@ -33,6 +33,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.client.Scan;
@@ -112,10 +114,13 @@ import org.apache.phoenix.schema.types.PTimestamp;
 import org.apache.phoenix.schema.types.PUnsignedLong;
 import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ClientUtil;
 import org.apache.phoenix.util.ExpressionUtil;
 import org.apache.phoenix.util.IndexUtil;
 import org.apache.phoenix.util.ScanUtil;
 import org.apache.phoenix.util.SchemaUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.ImmutableList;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
@@ -123,6 +128,7 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
 
 public class UpsertCompiler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(UpsertCompiler.class);
 
   private static void setValues(byte[][] values, int[] pkSlotIndex, int[] columnIndexes,
     PTable table, MultiRowMutationState mutation, PhoenixStatement statement,
@@ -249,6 +255,19 @@ public class UpsertCompiler {
       indexMaintainer = table.getIndexMaintainer(parentTable, connection);
       viewConstants = IndexUtil.getViewConstants(parentTable);
     }
+    // With pipelined sends, the batches are sent through a child connection on the query thread
+    // pool while the rows of the next batch are read
+    PhoenixConnection sendConnection = null;
+    MutationState sendingState = null;
+    CompletableFuture<Void> sending = null;
+    if (
+      autoFlush && !table.isTransactional()
+        && services.getProps().getBoolean(QueryServices.MUTATE_PIPELINED_SEND_ENABLED_ATTRIB,
+          QueryServicesOptions.DEFAULT_MUTATE_PIPELINED_SEND_ENABLED)
+    ) {
+      sendConnection = new PhoenixConnection(connection);
+      connection.addChildConnection(sendConnection);
+    }
     try (ResultSet rs = new PhoenixResultSet(iterator, projector, childContext)) {
       ImmutableBytesWritable ptr = new ImmutableBytesWritable();
       while (rs.next()) {
@@ -281,22 +300,78 @@ public class UpsertCompiler {
         rowCount++;
         // Commit a batch if auto commit is true and we're at our batch size
         if (autoFlush && rowCount % batchSize == 0) {
-          MutationState state =
-            new MutationState(tableRef, mutation, 0, maxSize, maxSizeBytes, connection);
-          connection.getMutationState().join(state);
-          connection.getMutationState().send();
-          mutation.clear();
+          if (sendConnection != null) {
+            // Only one batch is sent at a time so that the batches are applied in order
+            awaitSend(connection, sendingState, sending);
+            sendingState =
+              new MutationState(tableRef, mutation, 0, maxSize, maxSizeBytes, sendConnection);
+            sending = sendingState.sendAsync(services.getExecutor());
+            mutation = new MultiRowMutationState(batchSize);
+          } else {
+            MutationState state =
+              new MutationState(tableRef, mutation, 0, maxSize, maxSizeBytes, connection);
+            connection.getMutationState().join(state);
+            connection.getMutationState().send();
+            mutation.clear();
+          }
         }
       }
+      if (sendConnection != null) {
+        CompletableFuture<Void> lastSending = sending;
+        sending = null;
+        awaitSend(connection, sendingState, lastSending);
+      }
 
       if (autoFlush) {
         // If auto commit is true, this last batch will be committed upon return
         sizeOffset = rowCount / batchSize * batchSize;
       }
       return new MutationState(tableRef, mutation, sizeOffset, maxSize, maxSizeBytes, connection);
+    } finally {
+      if (sendConnection != null) {
+        try {
+          if (sending != null && !sending.isDone()) {
+            // The statement failed, but the connection is only closed once the batch is sent
+            try {
+              sending.get();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+              LOGGER.warn("Sending a batch of an UPSERT SELECT failed", e.getCause());
+            }
+          }
+        } finally {
+          connection.removeChildConnection(sendConnection);
+          sendConnection.close();
+        }
+      }
     }
   }
 
+  /**
+   * Waits for a batch of an UPSERT SELECT sent on the query thread pool, and passes the metrics of
+   * the mutation state it was sent with over to the connection.
+   */
+  private static void awaitSend(PhoenixConnection connection, MutationState state,
+    CompletableFuture<Void> sending) throws SQLException {
+    if (sending == null) {
+      return;
+    }
+    try {
+      sending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION).setRootCause(e)
+        .build().buildException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof SQLException
+        ? (SQLException) cause
+        : ClientUtil.parseServerException(cause);
+    }
+    connection.getMutationState().join(state);
+  }
+
   private static class UpsertingParallelIteratorFactory extends MutatingParallelIteratorFactory {
     private RowProjector projector;
     private int[] columnIndexes;
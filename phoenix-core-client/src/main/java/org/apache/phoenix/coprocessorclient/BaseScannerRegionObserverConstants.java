@@ -149,6 +149,7 @@ public class BaseScannerRegionObserverConstants {
   public static final String EMPTY_COLUMN_FAMILY_NAME = "_EmptyCFName";
   public static final String EMPTY_COLUMN_QUALIFIER_NAME = "_EmptyCQName";
   public static final String INDEX_ROW_KEY = "_IndexRowKey";
+  public static final String BATCH_READ_REPAIR = "_BatchReadRepair";
   public static final String READ_REPAIR_TRANSFORMING_TABLE = "_ReadRepairTransformingTable";
   public static final String CDC_DATA_TABLE_DEF = "_CdcDataTableDef";
 
@@ -41,6 +41,16 @@ public interface MetricsMetadataCachingSource extends BaseSource {
     "Number of cache misses in PhoenixRegionServerEndpoint "
       + "when serving validate ddl timestamp requests.";
 
+  String REGIONSERVER_INDEX_MAINTAINER_CACHE_HITS = "numRegionServerIndexMaintainerCacheHits";
+  String REGIONSERVER_INDEX_MAINTAINER_CACHE_HITS_DESC =
+    "Number of scans and mutation batches whose index maintainers were found deserialized "
+      + "in the region server cache.";
+
+  String REGIONSERVER_INDEX_MAINTAINER_CACHE_MISSES = "numRegionServerIndexMaintainerCacheMisses";
+  String REGIONSERVER_INDEX_MAINTAINER_CACHE_MISSES_DESC =
+    "Number of scans and mutation batches whose index maintainers had to be deserialized "
+      + "for the region server cache.";
+
   String VALIDATE_LAST_DDL_TIMESTAMP_REQUESTS = "numValidateLastDDLTimestampRequests";
   String VALIDATE_LAST_DDL_TIMESTAMP_REQUEST_DESC =
     "Number of validate last ddl timestamp requests.";
@@ -73,6 +83,16 @@ public interface MetricsMetadataCachingSource extends BaseSource {
    */
   void incrementRegionServerMetadataCacheMissCount();
 
+  /**
+   * Report the number of cache hits when deserializing index maintainers.
+   */
+  void incrementRegionServerIndexMaintainerCacheHitCount();
+
+  /**
+   * Report the number of cache misses when deserializing index maintainers.
+   */
+  void incrementRegionServerIndexMaintainerCacheMissCount();
+
   /**
    * Report the number of requests for validating last ddl timestamps.
    */
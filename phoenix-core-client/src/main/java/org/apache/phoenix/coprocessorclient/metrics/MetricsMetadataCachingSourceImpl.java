@@ -29,6 +29,8 @@ public class MetricsMetadataCachingSourceImpl extends BaseSourceImpl
 
   private final MutableFastCounter cacheHitCounter;
   private final MutableFastCounter cacheMissCounter;
+  private final MutableFastCounter indexMaintainerCacheHitCounter;
+  private final MutableFastCounter indexMaintainerCacheMissCounter;
   private final MutableFastCounter validateDDLTimestampRequestCounter;
   private final MutableFastCounter cacheInvalidationOpsCounter;
   private final MutableFastCounter cacheInvalidationSuccessCounter;
@@ -47,6 +49,11 @@ public class MetricsMetadataCachingSourceImpl extends BaseSourceImpl
       REGIONSERVER_METADATA_CACHE_HITS_DESC, 0L);
     cacheMissCounter = getMetricsRegistry().newCounter(REGIONSERVER_METADATA_CACHE_MISSES,
       REGIONSERVER_METADATA_CACHE_MISSES_DESC, 0L);
+    indexMaintainerCacheHitCounter = getMetricsRegistry().newCounter(
+      REGIONSERVER_INDEX_MAINTAINER_CACHE_HITS, REGIONSERVER_INDEX_MAINTAINER_CACHE_HITS_DESC, 0L);
+    indexMaintainerCacheMissCounter =
+      getMetricsRegistry().newCounter(REGIONSERVER_INDEX_MAINTAINER_CACHE_MISSES,
+        REGIONSERVER_INDEX_MAINTAINER_CACHE_MISSES_DESC, 0L);
     validateDDLTimestampRequestCounter = getMetricsRegistry().newCounter(
       VALIDATE_LAST_DDL_TIMESTAMP_REQUESTS, VALIDATE_LAST_DDL_TIMESTAMP_REQUEST_DESC, 0L);
     cacheInvalidationOpsCounter = getMetricsRegistry().newCounter(
@@ -71,6 +78,16 @@ public class MetricsMetadataCachingSourceImpl extends BaseSourceImpl
     cacheMissCounter.incr();
   }
 
+  @Override
+  public void incrementRegionServerIndexMaintainerCacheHitCount() {
+    indexMaintainerCacheHitCounter.incr();
+  }
+
+  @Override
+  public void incrementRegionServerIndexMaintainerCacheMissCount() {
+    indexMaintainerCacheMissCounter.incr();
+  }
+
   @Override
   public void incrementValidateTimestampRequestCount() {
     validateDDLTimestampRequestCounter.incr();
@@ -55,7 +55,6 @@ import org.apache.phoenix.iterate.LimitingResultIterator;
 import org.apache.phoenix.iterate.LookAheadResultIterator;
 import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.OrderedAggregatingResultIterator;
-import org.apache.phoenix.iterate.OrderedResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
 import org.apache.phoenix.iterate.PeekingResultIterator;
 import org.apache.phoenix.iterate.ResultIterator;
@@ -174,7 +173,7 @@ public class ClientAggregatePlan extends ClientProcessingPlan {
           aggResultIterator = new ClientHashAggregatingResultIterator(context, iterator,
             serverAggregators, keyExpressions, orderBy);
         } else {
-          iterator = new OrderedResultIterator(iterator, keyExpressionOrderBy, spoolingEnabled,
+          iterator = newOrderedResultIterator(iterator, keyExpressionOrderBy, spoolingEnabled,
             thresholdBytes, null, null, projector.getEstimatedRowByteSize());
           aggResultIterator = new ClientGroupedAggregatingResultIterator(
             LookAheadResultIterator.wrap(iterator), serverAggregators, keyExpressions);
@@ -17,12 +17,19 @@
  */
 package org.apache.phoenix.execute;
 
+import java.util.List;
 import org.apache.phoenix.compile.OrderByCompiler.OrderBy;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.compile.RowProjector;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.iterate.OrderedResultIterator;
+import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.parse.FilterableStatement;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.TableRef;
 
 /**
@@ -53,6 +60,27 @@ public abstract class ClientProcessingPlan extends DelegateQueryPlan {
     this.offset = offset;
   }
 
+  /**
+   * Creates the iterator sorting the results on the client, which sorts the runs of results it
+   * spools on the query thread pool if it is enabled.
+   */
+  protected OrderedResultIterator newOrderedResultIterator(ResultIterator iterator,
+    List<OrderByExpression> orderByExpressions, boolean spoolingEnabled, long thresholdBytes,
+    Integer limit, Integer offset, int estimatedRowSize) {
+    ConnectionQueryServices services = context.getConnection().getQueryServices();
+    if (
+      services.getProps().getBoolean(QueryServices.CLIENT_ORDERBY_PARALLEL_SORT_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_CLIENT_ORDERBY_PARALLEL_SORT_ENABLED)
+    ) {
+      return new OrderedResultIterator(iterator, orderByExpressions, spoolingEnabled,
+        thresholdBytes, limit, offset, estimatedRowSize, services.getExecutor(),
+        services.getProps().getInt(QueryServices.CLIENT_ORDERBY_PARALLEL_SORT_MAX_RUNS_ATTRIB,
+          QueryServicesOptions.DEFAULT_CLIENT_ORDERBY_PARALLEL_SORT_MAX_RUNS));
+    }
+    return new OrderedResultIterator(iterator, orderByExpressions, spoolingEnabled, thresholdBytes,
+      limit, offset, estimatedRowSize);
+  }
+
   @Override
   public StatementContext getContext() {
     return context;
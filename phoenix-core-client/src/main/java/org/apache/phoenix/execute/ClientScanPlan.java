@@ -34,7 +34,6 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.iterate.FilterResultIterator;
 import org.apache.phoenix.iterate.LimitingResultIterator;
 import org.apache.phoenix.iterate.OffsetResultIterator;
-import org.apache.phoenix.iterate.OrderedResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
@@ -96,7 +95,7 @@ public class ClientScanPlan extends ClientProcessingPlan {
       boolean spoolingEnabled = context.getConnection().getQueryServices().getProps().getBoolean(
         QueryServices.CLIENT_ORDERBY_SPOOLING_ENABLED_ATTRIB,
         QueryServicesOptions.DEFAULT_CLIENT_ORDERBY_SPOOLING_ENABLED);
-      iterator = new OrderedResultIterator(iterator, orderBy.getOrderByExpressions(),
+      iterator = newOrderedResultIterator(iterator, orderBy.getOrderByExpressions(),
         spoolingEnabled, thresholdBytes, limit, offset, projector.getEstimatedRowByteSize());
     } else {
       if (offset != null) {
@@ -34,6 +34,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -57,6 +58,7 @@ import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.InListExpression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.expression.function.JoinKeyBloomFilterFunction;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.*;
 import org.apache.phoenix.jdbc.PhoenixConnection;
@@ -82,6 +84,7 @@ import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.ClientUtil;
 import org.apache.phoenix.util.CostUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SQLCloseables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -532,11 +535,24 @@ public class HashJoinPlan extends DelegateQueryPlan {
     private final boolean usePersistentCache;
     private final Expression keyRangeLhsExpression;
     private final Expression keyRangeRhsExpression;
+    private final List<Expression> bloomFilterLhsExpressions;
     private final MessageDigest digest;
 
     public HashSubPlan(int index, QueryPlan subPlan, List<Expression> hashExpressions,
       boolean singleValueOnly, boolean usePersistentCache, Expression keyRangeLhsExpression,
       Expression keyRangeRhsExpression) {
+      this(index, subPlan, hashExpressions, singleValueOnly, usePersistentCache,
+        keyRangeLhsExpression, keyRangeRhsExpression, null);
+    }
+
+    /**
+     * @param bloomFilterLhsExpressions the LHS join expressions against the rows of the LHS table,
+     *                                  if a Bloom filter of the RHS join keys is to be pushed into
+     *                                  the LHS scan, or null
+     */
+    public HashSubPlan(int index, QueryPlan subPlan, List<Expression> hashExpressions,
+      boolean singleValueOnly, boolean usePersistentCache, Expression keyRangeLhsExpression,
+      Expression keyRangeRhsExpression, List<Expression> bloomFilterLhsExpressions) {
       this.index = index;
       this.plan = subPlan;
       this.hashExpressions = hashExpressions;
@@ -544,6 +560,7 @@ public class HashJoinPlan extends DelegateQueryPlan {
       this.usePersistentCache = usePersistentCache;
       this.keyRangeLhsExpression = keyRangeLhsExpression;
       this.keyRangeRhsExpression = keyRangeRhsExpression;
+      this.bloomFilterLhsExpressions = bloomFilterLhsExpressions;
       try {
         this.digest = MessageDigest.getInstance("SHA-256");
       } catch (NoSuchAlgorithmException e) {
@@ -559,8 +576,34 @@ public class HashJoinPlan extends DelegateQueryPlan {
         keyRangeRhsValues = Lists.<Expression> newArrayList();
       }
       ServerCache cache = null;
+      JoinKeyBloomFilterFunction.Builder bloomFilterBuilder = null;
       if (hashExpressions != null) {
         ResultIterator iterator = plan.iterator();
+        if (bloomFilterLhsExpressions != null) {
+          ReadOnlyProps props = parent.getContext().getConnection().getQueryServices().getProps();
+          final JoinKeyBloomFilterFunction.Builder builder =
+            new JoinKeyBloomFilterFunction.Builder(hashExpressions,
+              props.getInt(QueryServices.HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB,
+                QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS),
+              props.getFloat(QueryServices.HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB,
+                QueryServicesOptions.DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP));
+          // Collect the join keys as the rows are added to the hash cache
+          iterator = new DelegateResultIterator(iterator) {
+            @Override
+            public Tuple next() throws SQLException {
+              Tuple tuple = super.next();
+              if (tuple != null) {
+                try {
+                  builder.add(tuple);
+                } catch (IOException e) {
+                  throw ClientUtil.parseServerException(e);
+                }
+              }
+              return tuple;
+            }
+          };
+          bloomFilterBuilder = builder;
+        }
         try {
           final byte[] cacheId;
           String queryString = plan.getStatement().toString().replaceAll("\\$[0-9]+", "\\$");
@@ -584,7 +627,14 @@ public class HashJoinPlan extends DelegateQueryPlan {
             LOGGER.debug("Making RPC to add cache " + Hex.encodeHexString(cacheId));
             cache = parent.hashClient.addHashCache(ranges, cacheId, iterator,
               plan.getEstimatedSize(), hashExpressions, singleValueOnly, usePersistentCache,
-              parent.delegate.getTableRef().getTable(), keyRangeRhsExpression, keyRangeRhsValues);
+              parent.delegate.getTableRef().getTable(), keyRangeLhsExpression,
+              keyRangeRhsExpression, keyRangeRhsValues);
+            if (bloomFilterBuilder != null) {
+              Expression bloomFilter = bloomFilterBuilder.build(bloomFilterLhsExpressions);
+              if (bloomFilter != null) {
+                parent.keyRangeExpressions.add(bloomFilter);
+              }
+            }
             long endTime = EnvironmentEdgeManager.currentTimeMillis();
             boolean isSet = parent.firstJobEndTime.compareAndSet(0, endTime);
             if (
@@ -648,11 +698,17 @@ public class HashJoinPlan extends DelegateQueryPlan {
 
     @Override
     public List<String> getPostSteps(HashJoinPlan parent) throws SQLException {
-      if (keyRangeLhsExpression == null) return Collections.<String> emptyList();
-
-      String step = "    DYNAMIC SERVER FILTER BY " + keyRangeLhsExpression.toString() + " IN ("
-        + keyRangeRhsExpression.toString() + ")";
-      return Collections.<String> singletonList(step);
+      List<String> steps = Lists.newArrayList();
+      if (keyRangeLhsExpression != null) {
+        steps.add("    DYNAMIC SERVER FILTER BY " + keyRangeLhsExpression.toString() + " IN ("
+          + keyRangeRhsExpression.toString() + ")");
+      }
+      if (bloomFilterLhsExpressions != null) {
+        steps
+          .add("    DYNAMIC SERVER FILTER BY " + StringUtils.join(bloomFilterLhsExpressions, ", ")
+            + " IN BLOOM FILTER OF (" + StringUtils.join(hashExpressions, ", ") + ")");
+      }
+      return steps;
     }
 
     @Override
@@ -664,6 +720,14 @@ public class HashJoinPlan extends DelegateQueryPlan {
     public boolean hasKeyRangeExpression() {
       return keyRangeLhsExpression != null;
     }
+
+    /**
+     * Returns the expressions the rows of the sub plan are hashed on, or null if the sub plan only
+     * provides key ranges.
+     */
+    public List<Expression> getHashExpressions() {
+      return hashExpressions;
+    }
   }
 
   @Override
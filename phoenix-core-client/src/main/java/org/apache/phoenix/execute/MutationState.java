@@ -30,6 +30,7 @@ import static org.apache.phoenix.monitoring.MetricType.DELETE_AGGREGATE_SUCCESS_
 import static org.apache.phoenix.monitoring.MetricType.NUM_METADATA_LOOKUP_FAILURES;
 import static org.apache.phoenix.monitoring.MetricType.UPSERT_AGGREGATE_FAILURE_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.UPSERT_AGGREGATE_SUCCESS_SQL_COUNTER;
+import static org.apache.phoenix.monitoring.TaskExecutionMetricsHolder.NO_OP_INSTANCE;
 import static org.apache.phoenix.query.QueryServices.INDEX_REGION_OBSERVER_ENABLED_ALL_TABLES_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.SERVER_SIDE_IMMUTABLE_INDEXES_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.SOURCE_OPERATION_ATTRIB;
@@ -53,6 +54,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 import org.apache.hadoop.hbase.Cell;
@@ -85,12 +89,14 @@ import org.apache.phoenix.index.PhoenixIndexFailurePolicyHelper.MutateCommand;
 import org.apache.phoenix.index.PhoenixIndexMetaData;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement.Operation;
+import org.apache.phoenix.job.JobManager.JobCallable;
 import org.apache.phoenix.monitoring.GlobalClientMetrics;
 import org.apache.phoenix.monitoring.MutationMetricQueue;
 import org.apache.phoenix.monitoring.MutationMetricQueue.MutationMetric;
 import org.apache.phoenix.monitoring.MutationMetricQueue.NoOpMutationMetricsQueue;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.TableMetricsManager;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
 import org.apache.phoenix.parse.UpsertStatement.OnDuplicateKeyType;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -2263,6 +2269,47 @@ public class MutationState implements SQLCloseable {
     send(null);
   }
 
+  /**
+   * Sends the mutations like {@link #send()}, but on the given executor. The mutation state must
+   * not be used until the returned future completes. If the executor rejects the task, the
+   * mutations are sent in the calling thread before returning, so that the returned future always
+   * completes without anybody waiting for it.
+   */
+  public CompletableFuture<Void> sendAsync(ExecutorService executor) {
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      executor.submit(new JobCallable<Void>() {
+        @Override
+        public Void call() {
+          sendAndComplete(future);
+          return null;
+        }
+
+        @Override
+        public Object getJobId() {
+          return MutationState.this;
+        }
+
+        @Override
+        public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+          return NO_OP_INSTANCE;
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      sendAndComplete(future);
+    }
+    return future;
+  }
+
+  private void sendAndComplete(CompletableFuture<Void> future) {
+    try {
+      send();
+      future.complete(null);
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
   public static int[] joinSortedIntArrays(int[] a, int[] b) {
     int[] result = new int[a.length + b.length];
     int i = 0, j = 0, k = 0, current;
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+
+/**
+ * The values of an expression for a batch of rows, decoded once into an array of primitives so that
+ * they can be aggregated in a tight loop. Only fixed width types whose values fit in a long or a
+ * double are supported. A vector without a type only keeps track of which values are null.
+ */
+public class ColumnVector {
+  private final PDataType type;
+  private final SortOrder sortOrder;
+  private final boolean[] nulls;
+  private final long[] longs;
+  private final double[] doubles;
+  private int size;
+  private int nullCount;
+
+  /**
+   * @param type      the type the values are decoded as, or null to only track null values
+   * @param sortOrder the sort order the values are encoded with
+   * @param capacity  the maximum number of values
+   */
+  public ColumnVector(PDataType type, SortOrder sortOrder, int capacity) {
+    Preconditions.checkArgument(type == null || isSupported(type), "Unsupported type %s", type);
+    this.type = type;
+    this.sortOrder = sortOrder;
+    this.nulls = new boolean[capacity];
+    this.longs = type == null || type == PDouble.INSTANCE ? null : new long[capacity];
+    this.doubles = type == PDouble.INSTANCE ? new double[capacity] : null;
+  }
+
+  /**
+   * Returns whether values of the given type can be decoded into a vector.
+   */
+  public static boolean isSupported(PDataType type) {
+    return type == PLong.INSTANCE || type == PInteger.INSTANCE || type == PDouble.INSTANCE;
+  }
+
+  public PDataType getType() {
+    return type;
+  }
+
+  /**
+   * Appends the value of the given pointer, decoding it unless this vector has no type.
+   */
+  public void add(ImmutableBytesWritable ptr) {
+    if (longs != null) {
+      longs[size] = type.getCodec().decodeLong(ptr, sortOrder);
+    } else if (doubles != null) {
+      doubles[size] = type.getCodec().decodeDouble(ptr, sortOrder);
+    }
+    nulls[size++] = false;
+  }
+
+  public void addNull() {
+    nulls[size++] = true;
+    nullCount++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == nulls.length;
+  }
+
+  public int getNullCount() {
+    return nullCount;
+  }
+
+  public boolean isNull(int index) {
+    return nulls[index];
+  }
+
+  public long getLong(int index) {
+    return longs[index];
+  }
+
+  public double getDouble(int index) {
+    return doubles[index];
+  }
+
+  /**
+   * Encodes the value at the given index with the type and sort order of this vector into a newly
+   * allocated array.
+   */
+  public void getBytes(int index, ImmutableBytesWritable ptr) {
+    byte[] b = new byte[type.getByteSize()];
+    if (longs != null) {
+      type.getCodec().encodeLong(longs[index], b, 0);
+    } else {
+      type.getCodec().encodeDouble(doubles[index], b, 0);
+    }
+    if (sortOrder == SortOrder.DESC) {
+      SortOrder.invert(b, 0, b, 0, b.length);
+    }
+    ptr.set(b);
+  }
+
+  public void reset() {
+    size = 0;
+    nullCount = 0;
+  }
+}
@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.hadoop.hbase.CompareOperator;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.compile.WhereCompiler;
 import org.apache.phoenix.expression.function.ArrayElemRefExpression;
@@ -63,6 +64,12 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
  */
 public class ComparisonExpression extends BaseCompoundExpression {
   private CompareOperator op;
+  // Bytes of the constant right hand side when both sides can be compared byte for byte, which
+  // lets the common column to constant comparison skip the type dispatch
+  private byte[] literalBytes;
+  // Sort order of both sides when the literal bytes are set. Descending is only allowed for fixed
+  // width types, such as the numeric and date ones, whose inverted bytes compare in reverse.
+  private SortOrder literalSortOrder;
 
   private static void addEqualityExpression(Expression lhs, Expression rhs,
     List<Expression> andNodes, ImmutableBytesWritable ptr, boolean rowKeyOrderOptimizable)
@@ -316,6 +323,28 @@ public class ComparisonExpression extends BaseCompoundExpression {
       throw new NullPointerException();
     }
     this.op = op;
+    initLiteralBytes();
+  }
+
+  private void initLiteralBytes() {
+    literalBytes = null;
+    if (children.size() != 2 || !(children.get(1) instanceof LiteralExpression)) {
+      return;
+    }
+    Expression lhs = children.get(0);
+    LiteralExpression rhs = (LiteralExpression) children.get(1);
+    PDataType dataType = lhs.getDataType();
+    byte[] bytes = rhs.getBytes();
+    if (
+      dataType != null && dataType == rhs.getDataType() && dataType != PChar.INSTANCE
+        && !dataType.isArrayType() && dataType.isBytesComparableWith(dataType)
+        && lhs.getSortOrder() == rhs.getSortOrder()
+        && (lhs.getSortOrder() == SortOrder.ASC || dataType.isFixedWidth()) && bytes != null
+        && bytes.length > 0
+    ) {
+      literalBytes = bytes;
+      literalSortOrder = lhs.getSortOrder();
+    }
   }
 
   public ComparisonExpression clone(List<Expression> children) {
@@ -353,6 +382,25 @@ public class ComparisonExpression extends BaseCompoundExpression {
     if (ptr.getLength() == 0) { // null comparison evals to null
       return true;
     }
+    byte[] literalBytes = this.literalBytes;
+    if (literalBytes != null) {
+      PDataType dataType = children.get(0).getDataType();
+      int comparisonResult;
+      // Fixed width values of different lengths need the trailing zero bytes to be ignored
+      if (!dataType.isFixedWidth() || ptr.getLength() == literalBytes.length) {
+        comparisonResult = Bytes.compareTo(ptr.get(), ptr.getOffset(), ptr.getLength(),
+          literalBytes, 0, literalBytes.length);
+        if (literalSortOrder == SortOrder.DESC) {
+          comparisonResult = -comparisonResult;
+        }
+      } else {
+        comparisonResult = dataType.compareTo(ptr.get(), ptr.getOffset(), ptr.getLength(),
+          literalSortOrder, literalBytes, 0, literalBytes.length, literalSortOrder, dataType);
+      }
+      ptr
+        .set(ByteUtil.compare(op, comparisonResult) ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+      return true;
+    }
     byte[] lhsBytes = ptr.get();
     int lhsOffset = ptr.getOffset();
     int lhsLength = ptr.getLength();
@@ -514,6 +562,7 @@ public class ComparisonExpression extends BaseCompoundExpression {
   public void readFields(DataInput input) throws IOException {
     op = CompareOperator.values()[WritableUtils.readVInt(input)];
     super.readFields(input);
+    initLiteralBytes();
   }
 
   @Override
@@ -39,6 +39,22 @@ public interface Expression extends PDatum, Writable {
    */
   boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr);
 
+  /**
+   * Evaluates the expression against a row of a batch and appends the value to the given vector, or
+   * a null if the expression could not be evaluated or evaluated to an empty value. The vector
+   * decodes the value, so that the batch can then be processed without going back to the bytes.
+   * @param tuple  Single row result during scan iteration
+   * @param ptr    Pointer used to evaluate the expression
+   * @param vector Vector the value is appended to
+   */
+  default void evaluate(Tuple tuple, ImmutableBytesWritable ptr, ColumnVector vector) {
+    if (evaluate(tuple, ptr) && ptr.getLength() != 0) {
+      vector.add(ptr);
+    } else {
+      vector.addNull();
+    }
+  }
+
   /**
    * Means of traversing expression tree through visitor.
    */
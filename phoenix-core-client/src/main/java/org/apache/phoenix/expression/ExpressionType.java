@@ -208,7 +208,8 @@ public enum ExpressionType {
   ScanEndKeyFunction(ScanEndKeyFunction.class),
   TotalSegmentsFunction(TotalSegmentsFunction.class),
   RowSizeFunction(RowSizeFunction.class),
-  RawRowSizeFunction(RawRowSizeFunction.class);
+  RawRowSizeFunction(RawRowSizeFunction.class),
+  JoinKeyBloomFilterFunction(JoinKeyBloomFilterFunction.class);
 
   ExpressionType(Class<? extends Expression> clazz) {
     this.clazz = clazz;
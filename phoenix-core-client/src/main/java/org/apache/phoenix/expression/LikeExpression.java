@@ -22,6 +22,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.expression.util.regex.AbstractBasePattern;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.parse.LikeParseNode.LikeType;
@@ -204,6 +205,9 @@ public abstract class LikeExpression extends BaseCompoundExpression {
     }
   }
   private AbstractBasePattern pattern;
+  // Set when the pattern is a case sensitive constant made of literals and '%' only, in which case
+  // it is matched against the bytes of the string rather than through the regular expression
+  private LiteralPattern literalPattern;
 
   public LikeExpression() {
   }
@@ -241,6 +245,9 @@ public abstract class LikeExpression extends BaseCompoundExpression {
     if (e.isStateless() && e.getDeterminism() == Determinism.ALWAYS && e.evaluate(null, ptr)) {
       String value = (String) PVarchar.INSTANCE.toObject(ptr, e.getDataType(), e.getSortOrder());
       pattern = compilePattern(value);
+      literalPattern = likeType == LikeType.CASE_SENSITIVE ? LiteralPattern.compile(value) : null;
+    } else {
+      literalPattern = null;
     }
   }
 
@@ -295,7 +302,11 @@ public abstract class LikeExpression extends BaseCompoundExpression {
       value = (String) strDataType.toObject(ptr, strSortOrder);
     }
     strDataType.coerceBytes(ptr, strDataType, strSortOrder, SortOrder.ASC);
-    pattern.matches(ptr);
+    if (literalPattern != null) {
+      ptr.set(literalPattern.matches(ptr) ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+    } else {
+      pattern.matches(ptr);
+    }
     if (LOGGER.isTraceEnabled()) {
       boolean matched = ((Boolean) PBoolean.INSTANCE.toObject(ptr)).booleanValue();
       LOGGER.trace("LIKE(value='" + value + "'pattern='" + pattern.pattern() + "' is " + matched);
@@ -349,6 +360,74 @@ public abstract class LikeExpression extends BaseCompoundExpression {
       && pattern.lastIndexOf(ZERO_OR_MORE, pattern.length() - endsWith.length() - 1) == -1;
   }
 
+  /**
+   * LIKE pattern made of literals separated by '%' only, matched on the UTF-8 bytes of the string.
+   * The first literal must be a prefix of the string, the last one a suffix, and the ones in
+   * between must appear in order in the rest of the string, for which the leftmost occurrence of
+   * each literal is always the best choice.
+   */
+  private static class LiteralPattern {
+    private final byte[][] literals;
+
+    private LiteralPattern(byte[][] literals) {
+      this.literals = literals;
+    }
+
+    /** Returns the pattern for the given LIKE string, or null if it uses '_' or escapes */
+    private static LiteralPattern compile(String value) {
+      if (value.indexOf(StringUtil.SINGLE_CHAR_LIKE) >= 0 || value.indexOf('\\') >= 0) {
+        return null;
+      }
+      List<byte[]> literals = Lists.newArrayList();
+      int start = 0;
+      int end;
+      while ((end = value.indexOf(StringUtil.MULTI_CHAR_LIKE, start)) >= 0) {
+        literals.add(Bytes.toBytes(value.substring(start, end)));
+        start = end + 1;
+      }
+      literals.add(Bytes.toBytes(value.substring(start)));
+      return new LiteralPattern(literals.toArray(new byte[literals.size()][]));
+    }
+
+    private boolean matches(ImmutableBytesWritable ptr) {
+      byte[] bytes = ptr.get();
+      int offset = ptr.getOffset();
+      int length = ptr.getLength();
+      byte[] prefix = literals[0];
+      if (literals.length == 1) {
+        return Bytes.equals(bytes, offset, length, prefix, 0, prefix.length);
+      }
+      byte[] suffix = literals[literals.length - 1];
+      if (
+        length < prefix.length + suffix.length
+          || !Bytes.equals(bytes, offset, prefix.length, prefix, 0, prefix.length)
+          || !Bytes.equals(bytes, offset + length - suffix.length, suffix.length, suffix, 0,
+            suffix.length)
+      ) {
+        return false;
+      }
+      int from = offset + prefix.length;
+      int to = offset + length - suffix.length;
+      for (int i = 1; i < literals.length - 1; i++) {
+        int index = indexOf(bytes, from, to, literals[i]);
+        if (index < 0) {
+          return false;
+        }
+        from = index + literals[i].length;
+      }
+      return true;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte[] literal) {
+      for (int i = from; i <= to - literal.length; i++) {
+        if (Bytes.equals(bytes, i, literal.length, literal, 0, literal.length)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
   @Override
   public String toString() {
     return (children.get(0) + " LIKE " + children.get(1));
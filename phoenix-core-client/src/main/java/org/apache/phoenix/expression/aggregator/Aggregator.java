@@ -18,6 +18,7 @@
 package org.apache.phoenix.expression.aggregator;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.schema.tuple.Tuple;
 
@@ -34,6 +35,33 @@ public interface Aggregator extends Expression {
    */
   public void aggregate(Tuple tuple, ImmutableBytesWritable ptr);
 
+  /**
+   * Creates the vector the input values of a batch of rows are collected in, to be aggregated
+   * together by {@link #aggregate(ColumnVector)}.
+   * @param capacity the number of rows in a batch
+   * @return the vector, or null if this aggregator can only aggregate a row at a time
+   */
+  default ColumnVector newColumnVector(int capacity) {
+    return null;
+  }
+
+  /**
+   * Aggregate the values of a batch of rows, which is equivalent to calling
+   * {@link #aggregate(Tuple, ImmutableBytesWritable)} for each value that is not null. By default
+   * each value is encoded back into a new array and aggregated a row at a time, which requires a
+   * vector with a type.
+   * @param vector the vector returned by {@link #newColumnVector(int)} filled with the values
+   */
+  default void aggregate(ColumnVector vector) {
+    for (int i = 0; i < vector.size(); i++) {
+      if (!vector.isNull(i)) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        vector.getBytes(i, ptr);
+        aggregate(null, ptr);
+      }
+    }
+  }
+
   /**
    * Get the size in bytes
    */
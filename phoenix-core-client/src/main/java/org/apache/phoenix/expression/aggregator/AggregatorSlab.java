@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PLong;
+
+/**
+ * The state of an aggregator for many groups, kept in a flat primitive array indexed by group id
+ * instead of in an aggregator instance per group. Only COUNT, and SUM, MIN and MAX over BIGINT,
+ * INTEGER and DOUBLE values are supported, as their state is a single fixed width value. The slab
+ * is itself an aggregator for the group it is positioned on by {@link #setGroup(int)}, so that
+ * {@link ServerAggregators} can aggregate rows into it and serialize it like any other aggregator.
+ */
+public abstract class AggregatorSlab extends BaseAggregator {
+  private static final int INITIAL_CAPACITY = 16;
+
+  protected final Aggregator aggregator;
+  protected int group;
+  protected byte[] buffer;
+  // Groups whose value is not null
+  protected final BitSet hasValue = new BitSet();
+
+  private AggregatorSlab(Aggregator aggregator, SortOrder sortOrder) {
+    super(sortOrder);
+    this.aggregator = aggregator;
+    this.buffer = new byte[aggregator.getDataType().getByteSize()];
+  }
+
+  /**
+   * Creates a slab holding the state of the given aggregator for many groups.
+   * @return the slab, or null if the state of the aggregator cannot be kept in a slab
+   */
+  public static AggregatorSlab newSlab(Aggregator aggregator) {
+    if (aggregator instanceof CountAggregator) {
+      return new CountSlab(aggregator);
+    }
+    if (aggregator instanceof NumberSumAggregator) {
+      NumberSumAggregator sumAggregator = (NumberSumAggregator) aggregator;
+      return sumAggregator.newColumnVector(1) == null ? null : new LongSumSlab(sumAggregator);
+    }
+    if (aggregator instanceof DoubleSumAggregator) {
+      DoubleSumAggregator sumAggregator = (DoubleSumAggregator) aggregator;
+      return sumAggregator.newColumnVector(1) == null ? null : new DoubleSumSlab(sumAggregator);
+    }
+    if (aggregator instanceof MinAggregator) {
+      MinAggregator minAggregator = (MinAggregator) aggregator;
+      if (!ColumnVector.isSupported(minAggregator.getDataType())) {
+        return null;
+      }
+      return minAggregator.getDataType() == PDouble.INSTANCE
+        ? new DoubleMinSlab(minAggregator)
+        : new LongMinSlab(minAggregator);
+    }
+    return null;
+  }
+
+  /**
+   * Positions the slab on the given group, growing it if necessary.
+   */
+  public void setGroup(int group) {
+    ensureCapacity(group + 1);
+    this.group = group;
+  }
+
+  /**
+   * Sets the state of the current group from the value an aggregator of the type the slab was
+   * created for evaluates to.
+   */
+  public abstract void load(ImmutableBytesWritable ptr);
+
+  /**
+   * Returns the number of bytes the state of a group takes.
+   */
+  public int getBytesPerGroup() {
+    return Long.BYTES;
+  }
+
+  protected abstract void ensureCapacity(int capacity);
+
+  protected static int newCapacity(int length, int capacity) {
+    return Math.max(capacity, Math.max(INITIAL_CAPACITY, length + (length >> 1)));
+  }
+
+  @Override
+  public void reset() {
+    hasValue.clear(group);
+  }
+
+  @Override
+  public PDataType getDataType() {
+    return aggregator.getDataType();
+  }
+
+  @Override
+  public Integer getMaxLength() {
+    return aggregator.getMaxLength();
+  }
+
+  @Override
+  public boolean isNullable() {
+    return aggregator.isNullable();
+  }
+
+  private static class CountSlab extends AggregatorSlab {
+    private long[] counts = new long[0];
+
+    CountSlab(Aggregator aggregator) {
+      super(aggregator, SortOrder.getDefault());
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (counts.length < capacity) {
+        counts = Arrays.copyOf(counts, newCapacity(counts.length, capacity));
+      }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      counts[group]++;
+    }
+
+    @Override
+    public void load(ImmutableBytesWritable ptr) {
+      counts[group] = PLong.INSTANCE.getCodec().decodeLong(ptr, SortOrder.getDefault());
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      PLong.INSTANCE.getCodec().encodeLong(counts[group], buffer, 0);
+      ptr.set(buffer);
+      return true;
+    }
+
+    @Override
+    public void reset() {
+      counts[group] = 0;
+      super.reset();
+    }
+  }
+
+  private static class LongSumSlab extends AggregatorSlab {
+    private final PDataType inputType;
+    private long[] sums = new long[0];
+
+    LongSumSlab(NumberSumAggregator aggregator) {
+      super(aggregator, aggregator.sortOrder);
+      this.inputType = aggregator.getInputDataType();
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (sums.length < capacity) {
+        sums = Arrays.copyOf(sums, newCapacity(sums.length, capacity));
+      }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      sums[group] += inputType.getCodec().decodeLong(ptr, sortOrder);
+      hasValue.set(group);
+    }
+
+    @Override
+    public void load(ImmutableBytesWritable ptr) {
+      // The sum is always encoded in ascending order
+      sums[group] = PLong.INSTANCE.getCodec().decodeLong(ptr, SortOrder.getDefault());
+      hasValue.set(group);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      if (!hasValue.get(group) && isNullable()) {
+        return false;
+      }
+      PLong.INSTANCE.getCodec().encodeLong(hasValue.get(group) ? sums[group] : 0, buffer, 0);
+      ptr.set(buffer);
+      return true;
+    }
+
+    @Override
+    public void reset() {
+      sums[group] = 0;
+      super.reset();
+    }
+  }
+
+  private static class DoubleSumSlab extends AggregatorSlab {
+    private double[] sums = new double[0];
+
+    DoubleSumSlab(DoubleSumAggregator aggregator) {
+      super(aggregator, aggregator.sortOrder);
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (sums.length < capacity) {
+        sums = Arrays.copyOf(sums, newCapacity(sums.length, capacity));
+      }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      sums[group] += PDouble.INSTANCE.getCodec().decodeDouble(ptr, sortOrder);
+      hasValue.set(group);
+    }
+
+    @Override
+    public void load(ImmutableBytesWritable ptr) {
+      sums[group] = PDouble.INSTANCE.getCodec().decodeDouble(ptr, SortOrder.getDefault());
+      hasValue.set(group);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      if (!hasValue.get(group) && isNullable()) {
+        return false;
+      }
+      PDouble.INSTANCE.getCodec().encodeDouble(hasValue.get(group) ? sums[group] : 0, buffer, 0);
+      ptr.set(buffer);
+      return true;
+    }
+
+    @Override
+    public void reset() {
+      sums[group] = 0;
+      super.reset();
+    }
+  }
+
+  /**
+   * Keeps the MIN, or the MAX, of values that fit in a long, encoded with the type and sort order
+   * of the aggregated expression like {@link MinAggregator} does.
+   */
+  private static class LongMinSlab extends AggregatorSlab {
+    private final MinAggregator minAggregator;
+    private long[] values = new long[0];
+
+    LongMinSlab(MinAggregator aggregator) {
+      super(aggregator, aggregator.sortOrder);
+      this.minAggregator = aggregator;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (values.length < capacity) {
+        values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+      }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      long value = getDataType().getCodec().decodeLong(ptr, sortOrder);
+      if (!hasValue.get(group) || !minAggregator.keepFirst(values[group], value)) {
+        values[group] = value;
+        hasValue.set(group);
+      }
+    }
+
+    @Override
+    public void load(ImmutableBytesWritable ptr) {
+      values[group] = getDataType().getCodec().decodeLong(ptr, sortOrder);
+      hasValue.set(group);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      if (!hasValue.get(group)) {
+        return false;
+      }
+      getDataType().getCodec().encodeLong(values[group], buffer, 0);
+      if (sortOrder == SortOrder.DESC) {
+        SortOrder.invert(buffer, 0, buffer, 0, buffer.length);
+      }
+      ptr.set(buffer);
+      return true;
+    }
+  }
+
+  private static class DoubleMinSlab extends AggregatorSlab {
+    private final MinAggregator minAggregator;
+    private double[] values = new double[0];
+
+    DoubleMinSlab(MinAggregator aggregator) {
+      super(aggregator, aggregator.sortOrder);
+      this.minAggregator = aggregator;
+    }
+
+    @Override
+    protected void ensureCapacity(int capacity) {
+      if (values.length < capacity) {
+        values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+      }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      double value = PDouble.INSTANCE.getCodec().decodeDouble(ptr, sortOrder);
+      if (!hasValue.get(group) || !minAggregator.keepFirst(values[group], value)) {
+        values[group] = value;
+        hasValue.set(group);
+      }
+    }
+
+    @Override
+    public void load(ImmutableBytesWritable ptr) {
+      values[group] = PDouble.INSTANCE.getCodec().decodeDouble(ptr, sortOrder);
+      hasValue.set(group);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      if (!hasValue.get(group)) {
+        return false;
+      }
+      PDouble.INSTANCE.getCodec().encodeDouble(values[group], buffer, 0);
+      if (sortOrder == SortOrder.DESC) {
+        SortOrder.invert(buffer, 0, buffer, 0, buffer.length);
+      }
+      ptr.set(buffer);
+      return true;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.phoenix.expression.aggregator;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
@@ -47,6 +48,17 @@ public class CountAggregator extends BaseAggregator {
     count++;
   }
 
+  @Override
+  public ColumnVector newColumnVector(int capacity) {
+    // Only whether the value is null matters
+    return new ColumnVector(null, sortOrder, capacity);
+  }
+
+  @Override
+  public void aggregate(ColumnVector vector) {
+    count += vector.size() - vector.getNullCount();
+  }
+
   @Override
   public boolean isNullable() {
     return false;
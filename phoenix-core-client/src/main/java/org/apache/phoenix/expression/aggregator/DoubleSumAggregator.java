@@ -18,6 +18,7 @@
 package org.apache.phoenix.expression.aggregator;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
@@ -54,6 +55,30 @@ public class DoubleSumAggregator extends BaseAggregator {
     }
   }
 
+  @Override
+  public ColumnVector newColumnVector(int capacity) {
+    return getInputDataType() == PDouble.INSTANCE
+      ? new ColumnVector(getInputDataType(), sortOrder, capacity)
+      : null;
+  }
+
+  @Override
+  public void aggregate(ColumnVector vector) {
+    if (vector.getNullCount() == vector.size()) {
+      return;
+    }
+    // Add the values one at a time, in the same order as rows are aggregated, so that the rounding
+    // is the same
+    for (int i = 0; i < vector.size(); i++) {
+      if (!vector.isNull(i)) {
+        sum += vector.getDouble(i);
+      }
+    }
+    if (buffer == null) {
+      initBuffer();
+    }
+  }
+
   @Override
   public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
     if (buffer == null) {
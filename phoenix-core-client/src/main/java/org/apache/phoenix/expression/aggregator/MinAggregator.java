@@ -19,8 +19,10 @@ package org.apache.phoenix.expression.aggregator;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDouble;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -60,6 +62,32 @@ abstract public class MinAggregator extends BaseAggregator {
     return 0 >= getDataType().compareTo(ibw1, sortOrder, ibw2, sortOrder, getDataType());
   }
 
+  /**
+   * Same as {@link #keepFirst(ImmutableBytesWritable, ImmutableBytesWritable)} for decoded integral
+   * values.
+   */
+  protected boolean keepFirst(long v1, long v2) {
+    return v1 <= v2;
+  }
+
+  /**
+   * Same as {@link #keepFirst(ImmutableBytesWritable, ImmutableBytesWritable)} for decoded floating
+   * point values. The values are ordered as their encoded bytes are, which places -0.0 and NaN the
+   * same way as the comparison of the bytes of the rows does.
+   */
+  protected boolean keepFirst(double v1, double v2) {
+    return Long.compareUnsigned(toComparableBits(v1), toComparableBits(v2)) <= 0;
+  }
+
+  /**
+   * Returns the bits of a double as {@link PDouble} encodes them in ascending order, whose unsigned
+   * order is the order of the encoded bytes.
+   */
+  private static long toComparableBits(double v) {
+    long l = Double.doubleToLongBits(v);
+    return (l ^ ((l >> Long.SIZE - 1) | Long.MIN_VALUE)) + 1;
+  }
+
   private boolean isNull() {
     return value.get() == ByteUtil.EMPTY_BYTE_ARRAY;
   }
@@ -76,6 +104,37 @@ abstract public class MinAggregator extends BaseAggregator {
     }
   }
 
+  @Override
+  public ColumnVector newColumnVector(int capacity) {
+    return ColumnVector.isSupported(getDataType())
+      ? new ColumnVector(getDataType(), sortOrder, capacity)
+      : null;
+  }
+
+  @Override
+  public void aggregate(ColumnVector vector) {
+    int keep = -1;
+    boolean isDouble = vector.getType() == PDouble.INSTANCE;
+    for (int i = 0; i < vector.size(); i++) {
+      if (vector.isNull(i)) {
+        continue;
+      }
+      if (
+        keep < 0 || (isDouble
+          ? !keepFirst(vector.getDouble(keep), vector.getDouble(i))
+          : !keepFirst(vector.getLong(keep), vector.getLong(i)))
+      ) {
+        keep = i;
+      }
+    }
+    if (keep >= 0) {
+      // Copied, as the value is kept after the vector is reset
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      vector.getBytes(keep, ptr);
+      aggregate(null, ptr);
+    }
+  }
+
   @Override
   public String toString() {
     return "MIN [value=" + Bytes.toStringBinary(value.get(), value.getOffset(), value.getLength())
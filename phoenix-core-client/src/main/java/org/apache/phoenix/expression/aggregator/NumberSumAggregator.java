@@ -18,9 +18,11 @@
 package org.apache.phoenix.expression.aggregator;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -68,6 +70,31 @@ abstract public class NumberSumAggregator extends BaseAggregator {
     }
   }
 
+  @Override
+  public ColumnVector newColumnVector(int capacity) {
+    PDataType inputType = getInputDataType();
+    return inputType == PLong.INSTANCE || inputType == PInteger.INSTANCE
+      ? new ColumnVector(getInputDataType(), sortOrder, capacity)
+      : null;
+  }
+
+  @Override
+  public void aggregate(ColumnVector vector) {
+    if (vector.getNullCount() == vector.size()) {
+      return;
+    }
+    long value = 0;
+    for (int i = 0; i < vector.size(); i++) {
+      if (!vector.isNull(i)) {
+        value += vector.getLong(i);
+      }
+    }
+    sum += value;
+    if (buffer == null) {
+      initBuffer();
+    }
+  }
+
   @Override
   public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
     if (buffer == null) {
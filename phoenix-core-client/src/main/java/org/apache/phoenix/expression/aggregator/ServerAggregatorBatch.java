@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.ColumnVector;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ * Aggregates rows a batch at a time instead of one at a time. The value of each aggregated
+ * expression is decoded into a {@link ColumnVector} as rows are added, and the vectors are handed
+ * to the aggregators once full, so that the aggregators loop over primitives. Rows are buffered for
+ * a single set of aggregators at a time, so {@link #flush()} must be called before the aggregators
+ * are evaluated or reset.
+ */
+public class ServerAggregatorBatch {
+  private final Expression[] expressions;
+  private final ColumnVector[] vectors;
+  private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+  private Aggregator[] aggregators;
+
+  ServerAggregatorBatch(Expression[] expressions, ColumnVector[] vectors) {
+    this.expressions = expressions;
+    this.vectors = vectors;
+  }
+
+  /**
+   * Adds a row to the batch, aggregating the rows added for a different set of aggregators first.
+   * @param aggregators the aggregators the row is aggregated into
+   * @param result      the row, which may be reused once this returns
+   */
+  public void aggregate(Aggregator[] aggregators, Tuple result) {
+    if (this.aggregators != aggregators) {
+      flush();
+      this.aggregators = aggregators;
+    }
+    for (int i = 0; i < expressions.length; i++) {
+      expressions[i].evaluate(result, ptr, vectors[i]);
+      expressions[i].reset();
+    }
+    if (vectors[0].isFull()) {
+      flush();
+    }
+  }
+
+  /**
+   * Aggregates the rows added since the last flush.
+   */
+  public void flush() {
+    if (aggregators == null || vectors[0].size() == 0) {
+      return;
+    }
+    for (int i = 0; i < vectors.length; i++) {
+      aggregators[i].aggregate(vectors[i]);
+      vectors[i].reset();
+    }
+  }
+}
@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.List;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.ColumnVector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.function.SingleAggregateFunction;
@@ -94,6 +95,26 @@ public abstract class ServerAggregators extends Aggregators {
     return aggregators;
   }
 
+  /**
+   * Creates a batch that aggregates rows into aggregators created by these ServerAggregators.
+   * @param capacity the number of rows aggregated together
+   * @return the batch, or null if it is disabled or if any of the aggregators can only aggregate a
+   *         row at a time
+   */
+  public ServerAggregatorBatch newBatch(int capacity) {
+    if (capacity <= 0 || aggregators.length == 0) {
+      return null;
+    }
+    ColumnVector[] vectors = new ColumnVector[aggregators.length];
+    for (int i = 0; i < aggregators.length; i++) {
+      vectors[i] = aggregators[i].newColumnVector(capacity);
+      if (vectors[i] == null) {
+        return null;
+      }
+    }
+    return new ServerAggregatorBatch(expressions, vectors);
+  }
+
   /**
    * Deserialize aggregators from the serialized byte array representation
    * @param b    byte array representation of a list of Aggregators
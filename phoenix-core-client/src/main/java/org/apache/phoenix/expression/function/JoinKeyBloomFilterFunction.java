@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.TupleUtil;
+
+import org.apache.phoenix.thirdparty.com.google.common.hash.BloomFilter;
+import org.apache.phoenix.thirdparty.com.google.common.hash.Funnel;
+import org.apache.phoenix.thirdparty.com.google.common.hash.PrimitiveSink;
+
+/**
+ * Internal function used by hash joins to drop the probe side rows that cannot join before they
+ * reach the join. It evaluates the probe side join key expressions of a row the same way
+ * HashJoinRegionScanner does, and is true when the key is within the min/max bounds of the build
+ * side keys and passes a Bloom filter built from them. Since false positives are possible but false
+ * negatives are not, it is only pushed into the probe side scan filter for inner and semi joins.
+ * Not callable from SQL.
+ */
+public class JoinKeyBloomFilterFunction extends ScalarFunction {
+  public static final String NAME = "JOIN_KEY_BLOOM_FILTER";
+
+  private BloomFilter<ImmutableBytesWritable> bloomFilter;
+  private byte[] minKey;
+  private byte[] maxKey;
+
+  public JoinKeyBloomFilterFunction() {
+  }
+
+  public JoinKeyBloomFilterFunction(List<Expression> children,
+    BloomFilter<ImmutableBytesWritable> bloomFilter, byte[] minKey, byte[] maxKey) {
+    super(children);
+    this.bloomFilter = bloomFilter;
+    this.minKey = minKey;
+    this.maxKey = maxKey;
+  }
+
+  @Override
+  public JoinKeyBloomFilterFunction clone(List<Expression> children) {
+    return new JoinKeyBloomFilterFunction(children, bloomFilter, minKey, maxKey);
+  }
+
+  @Override
+  public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+    // Wait until every column of the key has been seen, a missing column is only null once the
+    // row is complete.
+    if (tuple != null && !tuple.isImmutable()) {
+      for (Expression child : children) {
+        if (!child.evaluate(tuple, ptr)) {
+          return false;
+        }
+      }
+    }
+    ImmutableBytesPtr key;
+    try {
+      key = TupleUtil.getConcatenatedValue(tuple, children);
+    } catch (IOException e) {
+      // Let the row through, the join reports the bad key
+      ptr.set(PDataType.TRUE_BYTES);
+      return true;
+    }
+    ptr.set(mightContain(key) ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+    return true;
+  }
+
+  private boolean mightContain(ImmutableBytesPtr key) {
+    if (
+      Bytes.compareTo(key.get(), key.getOffset(), key.getLength(), minKey, 0, minKey.length) < 0
+        || Bytes.compareTo(key.get(), key.getOffset(), key.getLength(), maxKey, 0, maxKey.length)
+            > 0
+    ) {
+      return false;
+    }
+    return bloomFilter.mightContain(key);
+  }
+
+  @Override
+  public boolean requiresFinalEvaluation() {
+    return true;
+  }
+
+  @Override
+  public PDataType getDataType() {
+    return PBoolean.INSTANCE;
+  }
+
+  @Override
+  public boolean isNullable() {
+    return false;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    super.readFields(input);
+    minKey = Bytes.readByteArray(input);
+    maxKey = Bytes.readByteArray(input);
+    bloomFilter = BloomFilter.readFrom(new ByteArrayInputStream(Bytes.readByteArray(input)),
+      JoinKeyFunnel.INSTANCE);
+  }
+
+  @Override
+  public void write(DataOutput output) throws IOException {
+    super.write(output);
+    Bytes.writeByteArray(output, minKey);
+    Bytes.writeByteArray(output, maxKey);
+    ByteArrayOutputStream bloomFilterOut = new ByteArrayOutputStream();
+    bloomFilter.writeTo(bloomFilterOut);
+    Bytes.writeByteArray(output, bloomFilterOut.toByteArray());
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * super.hashCode() + bloomFilter.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!super.equals(obj)) {
+      return false;
+    }
+    JoinKeyBloomFilterFunction other = (JoinKeyBloomFilterFunction) obj;
+    return Bytes.equals(minKey, other.minKey) && Bytes.equals(maxKey, other.maxKey)
+      && bloomFilter.equals(other.bloomFilter);
+  }
+
+  private enum JoinKeyFunnel implements Funnel<ImmutableBytesWritable> {
+    INSTANCE;
+
+    @Override
+    public void funnel(ImmutableBytesWritable from, PrimitiveSink into) {
+      into.putBytes(from.get(), from.getOffset(), from.getLength());
+    }
+  }
+
+  /**
+   * Collects the distinct join keys of the build side rows, evaluated with the expressions the hash
+   * cache is keyed by, and builds a {@link JoinKeyBloomFilterFunction} sized for them. Gives up
+   * once there are more than maxKeys distinct keys, as the filter is sent along with every scan.
+   */
+  public static class Builder {
+    private final List<Expression> hashExpressions;
+    private final int maxKeys;
+    private final double fpp;
+    private Set<ImmutableBytesPtr> keys = new HashSet<ImmutableBytesPtr>();
+
+    public Builder(List<Expression> hashExpressions, int maxKeys, double fpp) {
+      this.hashExpressions = hashExpressions;
+      this.maxKeys = maxKeys;
+      this.fpp = fpp;
+    }
+
+    public void add(Tuple tuple) throws IOException {
+      if (keys == null) {
+        return;
+      }
+      ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(tuple, hashExpressions);
+      keys.add(new ImmutableBytesPtr(ByteUtil.copyKeyBytesIfNecessary(key)));
+      if (keys.size() > maxKeys) {
+        keys = null;
+      }
+    }
+
+    /**
+     * @param lhsExpressions the probe side join key expressions, evaluated against the rows of the
+     *                       probe side table
+     * @return the filter, or null if there were too many keys
+     */
+    public JoinKeyBloomFilterFunction build(List<Expression> lhsExpressions) {
+      if (keys == null) {
+        return null;
+      }
+      BloomFilter<ImmutableBytesWritable> bloomFilter =
+        BloomFilter.create(JoinKeyFunnel.INSTANCE, Math.max(1, keys.size()), fpp);
+      byte[] minKey = null;
+      byte[] maxKey = null;
+      for (ImmutableBytesPtr key : keys) {
+        bloomFilter.put(key);
+        byte[] b = key.get();
+        if (minKey == null || Bytes.compareTo(b, minKey) < 0) {
+          minKey = b;
+        }
+        if (maxKey == null || Bytes.compareTo(b, maxKey) > 0) {
+          maxKey = b;
+        }
+      }
+      if (minKey == null) {
+        // No build side rows, nothing can join
+        minKey = new byte[] { (byte) 0xFF };
+        maxKey = ByteUtil.EMPTY_BYTE_ARRAY;
+      }
+      return new JoinKeyBloomFilterFunction(lhsExpressions, bloomFilter, minKey, maxKey);
+    }
+  }
+}
@@ -49,6 +49,21 @@ public interface GlobalIndexCheckerSource extends BaseSource {
   String UNVERIFIED_INDEX_ROW_AGE_DESC =
     "Histogram for the age in " + "milliseconds for unverified row soon after it is repaired";
 
+  String INDEX_BATCH_REPAIR = "indexBatchRepairs";
+  String INDEX_BATCH_REPAIR_DESC = "The number of batched repairs of unverified index rows";
+
+  String INDEX_BATCH_REPAIR_THROTTLED = "indexBatchRepairsThrottled";
+  String INDEX_BATCH_REPAIR_THROTTLED_DESC =
+    "The number of batched repairs not done because of the rate limit of the region";
+
+  String INDEX_BATCH_REPAIR_SIZE = "indexBatchRepairSize";
+  String INDEX_BATCH_REPAIR_SIZE_DESC =
+    "Histogram for the number of unverified index rows repaired by batched repairs";
+
+  String INDEX_BATCH_REPAIR_TIME = "indexBatchRepairTime";
+  String INDEX_BATCH_REPAIR_TIME_DESC =
+    "Histogram for the time in milliseconds for batched index row repairs";
+
   /**
    * Increments the number of index rows inspected for verified status
    * @param indexName Name of the index
@@ -87,4 +102,30 @@ public interface GlobalIndexCheckerSource extends BaseSource {
    * @param t         time taken in milliseconds
    */
   void updateIndexRepairFailureTime(String indexName, long t);
+
+  /**
+   * Increments the number of batched index repairs
+   * @param indexName Name of the index
+   */
+  void incrementIndexBatchRepairs(String indexName);
+
+  /**
+   * Increments the number of batched index repairs not done because of the rate limit
+   * @param indexName Name of the index
+   */
+  void incrementIndexBatchRepairsThrottled(String indexName);
+
+  /**
+   * Updates the batched index repair size histogram
+   * @param indexName Name of the index
+   * @param size      number of unverified index rows in the batch
+   */
+  void updateIndexBatchRepairSize(String indexName, long size);
+
+  /**
+   * Updates the batched index repair time histogram
+   * @param indexName Name of the index
+   * @param t         time taken in milliseconds
+   */
+  void updateIndexBatchRepairTime(String indexName, long t);
 }
@@ -30,10 +30,14 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
   private final MutableFastCounter indexInspections;
   private final MutableFastCounter indexRepairs;
   private final MutableFastCounter indexRepairFailures;
+  private final MutableFastCounter indexBatchRepairs;
+  private final MutableFastCounter indexBatchRepairsThrottled;
 
   private final MetricHistogram indexRepairTimeHisto;
   private final MetricHistogram indexRepairFailureTimeHisto;
   private final MetricHistogram unverifiedIndexRowAge;
+  private final MetricHistogram indexBatchRepairSizeHisto;
+  private final MetricHistogram indexBatchRepairTimeHisto;
 
   public GlobalIndexCheckerSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -54,6 +58,14 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
       getMetricsRegistry().newHistogram(INDEX_REPAIR_FAILURE_TIME, INDEX_REPAIR_FAILURE_TIME_DESC);
     unverifiedIndexRowAge =
       getMetricsRegistry().newHistogram(UNVERIFIED_INDEX_ROW_AGE, UNVERIFIED_INDEX_ROW_AGE_DESC);
+    indexBatchRepairs =
+      getMetricsRegistry().newCounter(INDEX_BATCH_REPAIR, INDEX_BATCH_REPAIR_DESC, 0L);
+    indexBatchRepairsThrottled = getMetricsRegistry().newCounter(INDEX_BATCH_REPAIR_THROTTLED,
+      INDEX_BATCH_REPAIR_THROTTLED_DESC, 0L);
+    indexBatchRepairSizeHisto =
+      getMetricsRegistry().newHistogram(INDEX_BATCH_REPAIR_SIZE, INDEX_BATCH_REPAIR_SIZE_DESC);
+    indexBatchRepairTimeHisto =
+      getMetricsRegistry().newHistogram(INDEX_BATCH_REPAIR_TIME, INDEX_BATCH_REPAIR_TIME_DESC);
   }
 
   /**
@@ -108,6 +120,40 @@ public class GlobalIndexCheckerSourceImpl extends BaseSourceImpl
     indexRepairFailureTimeHisto.add(t);
   }
 
+  /**
+   * Increments the number of batched index repairs
+   */
+  public void incrementIndexBatchRepairs(String indexName) {
+    incrementIndexSpecificCounter(INDEX_BATCH_REPAIR, indexName);
+    indexBatchRepairs.incr();
+  }
+
+  /**
+   * Increments the number of batched index repairs not done because of the rate limit
+   */
+  public void incrementIndexBatchRepairsThrottled(String indexName) {
+    incrementIndexSpecificCounter(INDEX_BATCH_REPAIR_THROTTLED, indexName);
+    indexBatchRepairsThrottled.incr();
+  }
+
+  /**
+   * Updates the batched index repair size histogram
+   * @param size number of unverified index rows in the batch
+   */
+  public void updateIndexBatchRepairSize(String indexName, long size) {
+    incrementIndexSpecificHistogram(INDEX_BATCH_REPAIR_SIZE, indexName, size);
+    indexBatchRepairSizeHisto.add(size);
+  }
+
+  /**
+   * Updates the batched index repair time histogram
+   * @param t time taken in milliseconds
+   */
+  public void updateIndexBatchRepairTime(String indexName, long t) {
+    incrementIndexSpecificHistogram(INDEX_BATCH_REPAIR_TIME, indexName, t);
+    indexBatchRepairTimeHisto.add(t);
+  }
+
   private void incrementIndexSpecificCounter(String baseCounterName, String indexName) {
     MutableFastCounter indexSpecificCounter =
       getMetricsRegistry().getCounter(getCounterName(baseCounterName, indexName), 0);
@@ -92,6 +92,23 @@ public interface MetricsIndexerSource extends BaseSource {
   String POST_INDEX_UPDATE_FAILURE_DESC =
     "The number of failures of index updates post data updates";
 
+  String ROW_STATE_CACHE_HITS = "rowStateCacheHits";
+  String ROW_STATE_CACHE_HITS_DESC =
+    "The number of data row states found in the row state cache of the region";
+  String ROW_STATE_CACHE_MISSES = "rowStateCacheMisses";
+  String ROW_STATE_CACHE_MISSES_DESC =
+    "The number of data row states read from the region as they were not in its row state cache";
+
+  String COALESCED_INDEX_WRITE_TIME = "coalescedIndexWriteTime";
+  String COALESCED_INDEX_WRITE_TIME_DESC =
+    "Histogram for the time in milliseconds for writing index mutations coalesced with others";
+  String COALESCED_INDEX_WRITE_BATCH_SIZE = "coalescedIndexWriteBatchSize";
+  String COALESCED_INDEX_WRITE_BATCH_SIZE_DESC =
+    "Histogram for the number of mutations of the coalesced index write batches";
+  String COALESCED_INDEX_WRITE_BATCH_TIME = "coalescedIndexWriteBatchTime";
+  String COALESCED_INDEX_WRITE_BATCH_TIME_DESC =
+    "Histogram for the time in milliseconds for sending a coalesced index write batch";
+
   /**
    * Updates the index preparation time histogram (preBatchMutate).
    * @param dataTableName Physical data table name
@@ -223,4 +240,40 @@ public interface MetricsIndexerSource extends BaseSource {
    * @param dataTableName Physical data table name
    */
   void incrementPostIndexUpdateFailures(String dataTableName);
+
+  /**
+   * Increments the number of data row states found in the row state cache.
+   * @param dataTableName Physical data table name
+   * @param count         number of row states
+   */
+  void incrementRowStateCacheHits(String dataTableName, long count);
+
+  /**
+   * Increments the number of data row states read from the region on row state cache misses.
+   * @param dataTableName Physical data table name
+   * @param count         number of row states
+   */
+  void incrementRowStateCacheMisses(String dataTableName, long count);
+
+  /**
+   * Updates the histogram of the time for writing index mutations coalesced with others, from
+   * queueing them until they are written.
+   * @param indexTableName Physical index table name
+   * @param t              time taken in milliseconds
+   */
+  void updateCoalescedIndexWriteTime(String indexTableName, long t);
+
+  /**
+   * Updates the histogram of the number of mutations of the coalesced index write batches.
+   * @param indexTableName Physical index table name
+   * @param size           number of mutations
+   */
+  void updateCoalescedIndexWriteBatchSize(String indexTableName, long size);
+
+  /**
+   * Updates the histogram of the time for sending a coalesced index write batch.
+   * @param indexTableName Physical index table name
+   * @param t              time taken in milliseconds
+   */
+  void updateCoalescedIndexWriteBatchTime(String indexTableName, long t);
 }
@@ -47,6 +47,11 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
   private final MetricHistogram postIndexUpdateFailureTimeHisto;
   private final MutableFastCounter preIndexUpdateFailures;
   private final MutableFastCounter postIndexUpdateFailures;
+  private final MutableFastCounter rowStateCacheHits;
+  private final MutableFastCounter rowStateCacheMisses;
+  private final MetricHistogram coalescedIndexWriteTimeHisto;
+  private final MetricHistogram coalescedIndexWriteBatchSizeHisto;
+  private final MetricHistogram coalescedIndexWriteBatchTimeHisto;
 
   public MetricsIndexerSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -93,6 +98,16 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
       POST_INDEX_UPDATE_FAILURE_DESC, 0L);
     preIndexUpdateFailures =
       getMetricsRegistry().newCounter(PRE_INDEX_UPDATE_FAILURE, PRE_INDEX_UPDATE_FAILURE_DESC, 0L);
+    rowStateCacheHits =
+      getMetricsRegistry().newCounter(ROW_STATE_CACHE_HITS, ROW_STATE_CACHE_HITS_DESC, 0L);
+    rowStateCacheMisses =
+      getMetricsRegistry().newCounter(ROW_STATE_CACHE_MISSES, ROW_STATE_CACHE_MISSES_DESC, 0L);
+    coalescedIndexWriteTimeHisto = getMetricsRegistry().newHistogram(COALESCED_INDEX_WRITE_TIME,
+      COALESCED_INDEX_WRITE_TIME_DESC);
+    coalescedIndexWriteBatchSizeHisto = getMetricsRegistry()
+      .newHistogram(COALESCED_INDEX_WRITE_BATCH_SIZE, COALESCED_INDEX_WRITE_BATCH_SIZE_DESC);
+    coalescedIndexWriteBatchTimeHisto = getMetricsRegistry()
+      .newHistogram(COALESCED_INDEX_WRITE_BATCH_TIME, COALESCED_INDEX_WRITE_BATCH_TIME_DESC);
   }
 
   @Override
@@ -215,10 +230,44 @@ public class MetricsIndexerSourceImpl extends BaseSourceImpl implements MetricsI
     postIndexUpdateFailures.incr();
   }
 
+  @Override
+  public void incrementRowStateCacheHits(String dataTableName, long count) {
+    incrementTableSpecificCounter(ROW_STATE_CACHE_HITS, dataTableName, count);
+    rowStateCacheHits.incr(count);
+  }
+
+  @Override
+  public void incrementRowStateCacheMisses(String dataTableName, long count) {
+    incrementTableSpecificCounter(ROW_STATE_CACHE_MISSES, dataTableName, count);
+    rowStateCacheMisses.incr(count);
+  }
+
+  @Override
+  public void updateCoalescedIndexWriteTime(String indexTableName, long t) {
+    incrementTableSpecificHistogram(COALESCED_INDEX_WRITE_TIME, indexTableName, t);
+    coalescedIndexWriteTimeHisto.add(t);
+  }
+
+  @Override
+  public void updateCoalescedIndexWriteBatchSize(String indexTableName, long size) {
+    incrementTableSpecificHistogram(COALESCED_INDEX_WRITE_BATCH_SIZE, indexTableName, size);
+    coalescedIndexWriteBatchSizeHisto.add(size);
+  }
+
+  @Override
+  public void updateCoalescedIndexWriteBatchTime(String indexTableName, long t) {
+    incrementTableSpecificHistogram(COALESCED_INDEX_WRITE_BATCH_TIME, indexTableName, t);
+    coalescedIndexWriteBatchTimeHisto.add(t);
+  }
+
   private void incrementTableSpecificCounter(String baseCounterName, String tableName) {
+    incrementTableSpecificCounter(baseCounterName, tableName, 1);
+  }
+
+  private void incrementTableSpecificCounter(String baseCounterName, String tableName, long count) {
     MutableFastCounter indexSpecificCounter =
       getMetricsRegistry().getCounter(getCounterName(baseCounterName, tableName), 0);
-    indexSpecificCounter.incr();
+    indexSpecificCounter.incr(count);
   }
 
   private void incrementTableSpecificHistogram(String baseCounterName, String tableName, long t) {
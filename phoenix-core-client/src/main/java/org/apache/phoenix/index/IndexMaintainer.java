@@ -121,6 +121,7 @@ import org.apache.phoenix.util.ExpressionUtil;
 import org.apache.phoenix.util.IndexUtil;
 import org.apache.phoenix.util.MetaDataUtil;
 import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.SizedUtil;
 import org.apache.phoenix.util.TransactionUtil;
 import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 
@@ -139,10 +140,52 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
  * separate RPC call using {@link org.apache.phoenix.cache.ServerCacheClient})
  * @since 2.1.0
  */
-public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
+public class IndexMaintainer implements Writable, Iterable<ColumnReference>, Cloneable {
 
   private static final int EXPRESSION_NOT_PRESENT = -1;
   private static final int ESTIMATED_EXPRESSION_SIZE = 8;
+  private static final ThreadLocal<RowKeyScratch> ROW_KEY_SCRATCH =
+    ThreadLocal.withInitial(RowKeyScratch::new);
+
+  /**
+   * Buffers reused across the index row keys built by a thread, the row key being copied out of the
+   * stream once built.
+   */
+  private static final class RowKeyScratch {
+    private final TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(64);
+    private final DataOutputStream output = new DataOutputStream(stream);
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    private int[][] dataRowKeyLocator = new int[2][0];
+    private PDataType[] indexedColumnDataTypes = new PDataType[0];
+    private boolean inUse;
+
+    /**
+     * Returns the scratch of the current thread, or a new one if the scratch of the thread is
+     * already being used further up the stack.
+     */
+    private static RowKeyScratch acquire(int nIndexedColumns) {
+      RowKeyScratch scratch = ROW_KEY_SCRATCH.get();
+      if (scratch.inUse) {
+        scratch = new RowKeyScratch();
+      }
+      scratch.inUse = true;
+      scratch.stream.reset();
+      if (scratch.indexedColumnDataTypes.length < nIndexedColumns) {
+        scratch.dataRowKeyLocator = new int[2][nIndexedColumns];
+        scratch.indexedColumnDataTypes = new PDataType[nIndexedColumns];
+      } else {
+        Arrays.fill(scratch.dataRowKeyLocator[0], 0, nIndexedColumns, 0);
+        Arrays.fill(scratch.dataRowKeyLocator[1], 0, nIndexedColumns, 0);
+      }
+      return scratch;
+    }
+
+    private void release() {
+      // Do not hold on to the row being indexed
+      ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+      inUse = false;
+    }
+  }
 
   public static IndexMaintainer create(PTable dataTable, PTable index, PhoenixConnection connection)
     throws SQLException {
@@ -477,6 +520,9 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
   private Expression indexWhere;
   private Set<ColumnReference> indexWhereColumns;
   private boolean isCDCIndex;
+  // Serialized expressions kept to deserialize them again for copies of the maintainer
+  private byte[] indexedExpressionsBytes;
+  private byte[] indexWhereBytes;
 
   protected IndexMaintainer(RowKeySchema dataRowKeySchema, boolean isDataTableSalted) {
     this.dataRowKeySchema = dataRowKeySchema;
@@ -768,15 +814,17 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     if (isCDCIndex && encodedRegionName == null) {
       throw new IllegalArgumentException("Encoded region name is required for a CDC index");
     }
-    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
     boolean prependRegionStartKey = isLocalIndex && regionStartKey != null;
     boolean isIndexSalted = !isLocalIndex && !isCDCIndex && nIndexSaltBuckets > 0;
     int prefixKeyLength = prependRegionStartKey
       ? (regionStartKey.length != 0 ? regionStartKey.length : regionEndKey.length)
       : 0;
-    TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(
-      estimatedIndexRowKeyBytes + (prependRegionStartKey ? prefixKeyLength : 0));
-    DataOutput output = new DataOutputStream(stream);
+    int nIndexedColumns = getIndexPkColumnCount() - getNumViewConstants();
+    // The row key is built in the buffers of the thread and only its final bytes are allocated
+    RowKeyScratch scratch = RowKeyScratch.acquire(nIndexedColumns);
+    ImmutableBytesWritable ptr = scratch.ptr;
+    TrustedByteArrayOutputStream stream = scratch.stream;
+    DataOutput output = scratch.output;
 
     try {
       // For local indexes, we must prepend the row key with the start region key
@@ -794,8 +842,7 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
       // so we must adjust for that here.
       int dataPosOffset = isDataTableSalted ? 1 : 0;
       BitSet viewConstantColumnBitSet = this.rowKeyMetaData.getViewConstantColumnBitSet();
-      int nIndexedColumns = getIndexPkColumnCount() - getNumViewConstants();
-      int[][] dataRowKeyLocator = new int[2][nIndexedColumns];
+      int[][] dataRowKeyLocator = scratch.dataRowKeyLocator;
       // Skip data table salt byte
       int maxRowKeyOffset = rowKeyPtr.getOffset() + rowKeyPtr.getLength();
       dataRowKeySchema.iterator(rowKeyPtr, ptr, dataPosOffset);
@@ -835,7 +882,8 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
       BitSet descIndexColumnBitSet = rowKeyMetaData.getDescIndexColumnBitSet();
       Iterator<Expression> expressionIterator = indexedExpressions.iterator();
       int trailingVariableWidthColumnNum = 0;
-      PDataType[] indexedColumnDataTypes = new PDataType[nIndexedColumns];
+      PDataType[] indexedColumnDataTypes = scratch.indexedColumnDataTypes;
+      ValueGetterTuple valueGetterTuple = null;
       for (int i = 0; i < nIndexedColumns; i++) {
         PDataType dataColumnType;
         boolean isNullable;
@@ -855,7 +903,10 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
             }
             ptr.set(encodedRegionName);
           } else {
-            expression.evaluate(new ValueGetterTuple(valueGetter, ts), ptr);
+            if (valueGetterTuple == null) {
+              valueGetterTuple = new ValueGetterTuple(valueGetter, ts);
+            }
+            expression.evaluate(valueGetterTuple, ptr);
           }
         } else {
           Field field = dataRowKeySchema.getField(dataPkPosition[i]);
@@ -930,15 +981,11 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
           length - SaltingUtil.NUM_SALTING_BYTES, nIndexSaltBuckets);
         indexRowKey[0] = saltByte;
       }
-      return indexRowKey.length == length ? indexRowKey : Arrays.copyOf(indexRowKey, length);
+      return Arrays.copyOf(indexRowKey, length);
     } catch (IOException e) {
       throw new RuntimeException(e); // Impossible
     } finally {
-      try {
-        stream.close();
-      } catch (IOException e) {
-        throw new RuntimeException(e); // Impossible
-      }
+      scratch.release();
     }
   }
 
@@ -1968,17 +2015,8 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     maintainer.emptyKeyValueCFPtr =
       new ImmutableBytesPtr(emptyKeyValueColFamily.getByteArray().toByteArray(),
         emptyKeyValueColFamily.getOffset(), emptyKeyValueColFamily.getLength());
-    maintainer.indexedExpressions = new ArrayList<>();
-    try (ByteArrayInputStream stream =
-      new ByteArrayInputStream(proto.getIndexedExpressions().toByteArray())) {
-      DataInput input = new DataInputStream(stream);
-      while (stream.available() > 0) {
-        int expressionOrdinal = WritableUtils.readVInt(input);
-        Expression expression = ExpressionType.values()[expressionOrdinal].newInstance();
-        expression.readFields(input);
-        maintainer.indexedExpressions.add(expression);
-      }
-    }
+    maintainer.indexedExpressionsBytes = proto.getIndexedExpressions().toByteArray();
+    maintainer.indexedExpressions = readExpressions(maintainer.indexedExpressionsBytes);
     maintainer.rowKeyMetaData = newRowKeyMetaData(maintainer, dataTableRowKeySchema,
       maintainer.indexedExpressions.size(), isDataTableSalted, maintainer.isMultiTenant);
     try (ByteArrayInputStream stream =
@@ -2043,21 +2081,14 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
       maintainer.isUncovered = false;
     }
     if (proto.hasIndexWhere()) {
-      try (ByteArrayInputStream stream =
-        new ByteArrayInputStream(proto.getIndexWhere().toByteArray())) {
-        DataInput input = new DataInputStream(stream);
-        int expressionOrdinal = WritableUtils.readVInt(input);
-        Expression expression = ExpressionType.values()[expressionOrdinal].newInstance();
-        expression.readFields(input);
-        maintainer.indexWhere = expression;
-        List<ServerCachingProtos.ColumnReference> indexWhereColumnsList =
-          proto.getIndexWhereColumnsList();
-        maintainer.indexWhereColumns = new HashSet<>(indexWhereColumnsList.size());
-        for (ServerCachingProtos.ColumnReference colRefFromProto : indexWhereColumnsList) {
-          maintainer.indexWhereColumns
-            .add(new ColumnReference(colRefFromProto.getFamily().toByteArray(),
-              colRefFromProto.getQualifier().toByteArray()));
-        }
+      maintainer.indexWhereBytes = proto.getIndexWhere().toByteArray();
+      maintainer.indexWhere = readExpressions(maintainer.indexWhereBytes).get(0);
+      List<ServerCachingProtos.ColumnReference> indexWhereColumnsList =
+        proto.getIndexWhereColumnsList();
+      maintainer.indexWhereColumns = new HashSet<>(indexWhereColumnsList.size());
+      for (ServerCachingProtos.ColumnReference colRefFromProto : indexWhereColumnsList) {
+        maintainer.indexWhereColumns.add(new ColumnReference(
+          colRefFromProto.getFamily().toByteArray(), colRefFromProto.getQualifier().toByteArray()));
       }
     } else {
       maintainer.indexWhere = null;
@@ -2074,6 +2105,97 @@ public class IndexMaintainer implements Writable, Iterable<ColumnReference> {
     return maintainer;
   }
 
+  private static List<Expression> readExpressions(byte[] bytes) throws IOException {
+    List<Expression> expressions = new ArrayList<>();
+    try (ByteArrayInputStream stream = new ByteArrayInputStream(bytes)) {
+      DataInput input = new DataInputStream(stream);
+      while (stream.available() > 0) {
+        int expressionOrdinal = WritableUtils.readVInt(input);
+        Expression expression = ExpressionType.values()[expressionOrdinal].newInstance();
+        expression.readFields(input);
+        expressions.add(expression);
+      }
+    }
+    return expressions;
+  }
+
+  /**
+   * Returns whether {@link #copyWithOwnExpressions()} can copy this maintainer, which requires it
+   * to have been deserialized from protobuf.
+   */
+  public boolean canCopyWithOwnExpressions() {
+    return getClass() == IndexMaintainer.class && indexedExpressionsBytes != null;
+  }
+
+  /**
+   * Returns a copy of this maintainer that shares its immutable state but deserializes its indexed
+   * and index where expressions again. Expressions keep the state of their evaluation (for example
+   * the elements of an ARRAY constructor), so a maintainer must not be used by several threads at
+   * once, while copies of the same maintainer can.
+   */
+  public IndexMaintainer copyWithOwnExpressions() throws IOException {
+    Preconditions.checkState(canCopyWithOwnExpressions());
+    IndexMaintainer copy;
+    try {
+      copy = (IndexMaintainer) clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+    copy.indexedExpressions = readExpressions(indexedExpressionsBytes);
+    copy.indexWhere = indexWhereBytes == null ? null : readExpressions(indexWhereBytes).get(0);
+    return copy;
+  }
+
+  /**
+   * Returns an estimate of the heap used by this maintainer once deserialized from protobuf, its
+   * expressions being counted by their serialized size.
+   */
+  public long getHeapSize() {
+    long size = SizedUtil.OBJECT_SIZE + 48 * SizedUtil.POINTER_SIZE;
+    size += sizeOf(viewIndexId) + sizeOf(indexTableName) + sizeOf(dataEmptyKeyValueCF);
+    size += SizedUtil.IMMUTABLE_BYTES_PTR_SIZE + emptyKeyValueCFPtr.get().length;
+    size += sizeOf(indexedExpressionsBytes) + sizeOf(indexWhereBytes);
+    size += sizeOf(indexedColumns) + sizeOf(allColumns) + sizeOf(indexWhereColumns);
+    size += SizedUtil.sizeOfArrayList(indexedColumnTypes.size());
+    size += SizedUtil.sizeOfMap(coveredColumnsMap.size());
+    for (Entry<ColumnReference, ColumnReference> entry : coveredColumnsMap.entrySet()) {
+      size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+    }
+    size += SizedUtil.sizeOfMap(indexedColumnsInfo.size());
+    for (Pair<String, String> info : indexedColumnsInfo) {
+      size += SizedUtil.OBJECT_SIZE + 2 * SizedUtil.POINTER_SIZE + sizeOf(info.getFirst())
+        + sizeOf(info.getSecond());
+    }
+    size += sizeOf(logicalIndexName) + rowKeyMetaData.getByteSize();
+    size += SizedUtil.ARRAY_SIZE + dataPkPosition.length * SizedUtil.INT_SIZE;
+    size += sizeOf(indexEmptyKeyValueRef) + sizeOf(dataEmptyKeyValueRef);
+    return size;
+  }
+
+  private static long sizeOf(byte[] bytes) {
+    return bytes == null ? 0 : SizedUtil.ARRAY_SIZE + bytes.length;
+  }
+
+  private static long sizeOf(String string) {
+    return string == null ? 0 : SizedUtil.OBJECT_SIZE + SizedUtil.ARRAY_SIZE + string.length();
+  }
+
+  private static long sizeOf(ColumnReference ref) {
+    return SizedUtil.OBJECT_SIZE + 2 * SizedUtil.IMMUTABLE_BYTES_PTR_SIZE + ref.getFamily().length
+      + ref.getQualifier().length;
+  }
+
+  private static long sizeOf(Set<ColumnReference> refs) {
+    if (refs == null) {
+      return 0;
+    }
+    long size = SizedUtil.sizeOfMap(refs.size());
+    for (ColumnReference ref : refs) {
+      size += sizeOf(ref);
+    }
+    return size;
+  }
+
   @Deprecated // Only called by code older than our 4.10 release
   @Override
   public void write(DataOutput output) throws IOException {
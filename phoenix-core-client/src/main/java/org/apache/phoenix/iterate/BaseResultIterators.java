@@ -52,6 +52,7 @@ import java.util.concurrent.TimeoutException;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Scan;
@@ -84,6 +85,7 @@ import org.apache.phoenix.filter.EncodedQualifiersColumnProjectionFilter;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.hbase.index.util.VersionUtil;
+import org.apache.phoenix.job.JobManager.JobClass;
 import org.apache.phoenix.join.HashCacheClient;
 import org.apache.phoenix.monitoring.OverAllQueryMetrics;
 import org.apache.phoenix.parse.FilterableStatement;
@@ -98,6 +100,7 @@ import org.apache.phoenix.schema.ColumnFamilyNotFoundException;
 import org.apache.phoenix.schema.CompiledConditionalTTLExpression;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnFamily;
+import org.apache.phoenix.schema.PName;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
@@ -659,6 +662,30 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
     return ranges;
   }
 
+  /**
+   * Returns the region server hosting the region a scan starts in, as of when the scans were
+   * generated, or null if it is not known.
+   */
+  protected ServerName getRegionServer(Scan scan) {
+    if (regionLocations == null || regionLocations.isEmpty()) {
+      return null;
+    }
+    byte[] lowerKey = scan.isReversed() ? scan.getStopRow() : scan.getStartRow();
+    // Find the last region that starts before or at the lower key of the scan
+    int low = 0;
+    int high = regionLocations.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      byte[] regionStartKey = regionLocations.get(mid).getRegion().getStartKey();
+      if (Bytes.compareTo(regionStartKey, lowerKey) <= 0) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return regionLocations.get(low).getServerName();
+  }
+
   private static int getIndexContainingInclusive(List<byte[]> boundaries, byte[] inclusiveKey) {
     int guideIndex = Collections.binarySearch(boundaries, inclusiveKey, Bytes.BYTES_COMPARATOR);
     // If we found an exact match, return the index+1, as the inclusiveKey will be contained
@@ -1148,12 +1175,17 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
       boolean delayAddingEst = false;
       ImmutableBytesWritable firstRegionStartKey = null;
       if (gpsSize > 0) {
-        stream = new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset(),
-          guidePosts.getLength());
-        input = new DataInputStream(stream);
-        decoder = new PrefixByteDecoder(gps.getMaxLength());
         firstRegionStartKey =
           new ImmutableBytesWritable(regionLocations.get(regionIndex).getRegion().getStartKey());
+        // Start decoding from the last guidepost stored without prefix compression before the
+        // first region, as the guideposts before the first region are skipped anyway
+        int restartPoint = gps.findRestartPoint(firstRegionStartKey);
+        int restartOffset = gps.getRestartOffsets()[restartPoint];
+        stream = new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset() + restartOffset,
+          guidePosts.getLength() - restartOffset);
+        input = new DataInputStream(stream);
+        decoder = new PrefixByteDecoder(gps.getMaxLength());
+        guideIndex = restartPoint * GuidePostsInfo.RESTART_INTERVAL;
         try {
           int c;
           // Continue walking guideposts until we get past the currentKey
@@ -1791,6 +1823,19 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
 
   abstract protected String getName();
 
+  /**
+   * Returns the tenant in whose share of the thread pool the scans are scheduled, or null for the
+   * global tenant.
+   */
+  protected String getJobTenantId() {
+    PName tenantId = context.getConnection().getTenantId();
+    return tenantId == null ? null : tenantId.getString();
+  }
+
+  protected JobClass getJobClass() {
+    return context.getScanRanges().isPointLookup() ? JobClass.POINT_LOOKUP : JobClass.SCAN;
+  }
+
   abstract protected void submitWork(List<List<Scan>> nestedScans,
     List<List<Pair<Scan, Future<PeekingResultIterator>>>> nestedFutures,
     Queue<PeekingResultIterator> allIterators, int estFlattenedSize, boolean isReverse,
@@ -1903,6 +1948,22 @@ public abstract class BaseResultIterators extends ExplainTable implements Result
     return this.estimateInfoTimestamp;
   }
 
+  /**
+   * Fails the query if it is past its deadline, unless it has no timeout or the test hook lets it
+   * reach the server.
+   */
+  protected void checkQueryDeadline(long maxQueryEndTime) throws SQLException {
+    int queryTimeout = context.getStatement().getQueryTimeoutInMillis();
+    if (
+      queryTimeout != Integer.MAX_VALUE && !forTestingSetTimeoutToMaxToLetQueryPassHere
+        && EnvironmentEdgeManager.currentTimeMillis() > maxQueryEndTime
+    ) {
+      throw new SQLExceptionInfo.Builder(OPERATION_TIMED_OUT)
+        .setMessage(". Query couldn't be completed in the allotted time: " + queryTimeout + " ms")
+        .build().buildException();
+    }
+  }
+
   /**
    * Used for specific test case to check if timeouts are working in ScanningResultIterator.
    */
@@ -36,9 +36,12 @@ import org.apache.phoenix.util.ResultUtil;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.MinMaxPriorityQueue;
 
-public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
+public class BufferedSortedQueue extends BufferedQueue<ResultEntry>
+  implements TopNQueue<ResultEntry> {
   private Comparator<ResultEntry> comparator;
   private final int limit;
+  // Lowest last entry of the full segments, kept once the next segment is started
+  private ResultEntry cutoff;
 
   public BufferedSortedQueue(Comparator<ResultEntry> comparator, Integer limit, long thresholdBytes)
     throws IOException {
@@ -52,6 +55,29 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
     return new BufferedResultEntryPriorityQueue(index, thresholdBytes, limit, comparator);
   }
 
+  /**
+   * Every segment keeps the first N entries offered to it, so the last entry of a full segment is a
+   * cutoff of the whole queue.
+   */
+  @Override
+  public ResultEntry getCutoff() {
+    List<BufferedSegmentQueue<ResultEntry>> segments = getSegmentQueues();
+    if (!segments.isEmpty()) {
+      ResultEntry last =
+        ((BufferedResultEntryPriorityQueue) segments.get(segments.size() - 1)).getCutoff();
+      if (last != null && (cutoff == null || comparator.compare(last, cutoff) < 0)) {
+        cutoff = last;
+      }
+    }
+    return cutoff;
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    cutoff = null;
+  }
+
   @Override
   protected Comparator<BufferedSegmentQueue<ResultEntry>> getSegmentQueueComparator() {
     return new Comparator<BufferedSegmentQueue<ResultEntry>>() {
@@ -65,10 +91,15 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
 
   private static class BufferedResultEntryPriorityQueue extends BufferedSegmentQueue<ResultEntry> {
     private MinMaxPriorityQueue<ResultEntry> results = null;
+    private final int limit;
+    // Entries spooled so far, in order, and the last of them once the segment was spooled full
+    private int spooledCount;
+    private ResultEntry spooledCutoff;
 
     public BufferedResultEntryPriorityQueue(int index, long thresholdBytes, int limit,
       Comparator<ResultEntry> comparator) {
       super(index, thresholdBytes, limit >= 0);
+      this.limit = limit;
       this.results = limit < 0
         ? MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).create()
         : MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).maximumSize(limit).create();
@@ -79,6 +110,26 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
       return results;
     }
 
+    /**
+     * Returns the last entry of the segment once it holds the limit of entries, or null.
+     */
+    ResultEntry getCutoff() {
+      if (limit <= 0) {
+        return null;
+      }
+      if (isFlushed()) {
+        return spooledCutoff;
+      }
+      return results.size() >= limit ? results.peekLast() : null;
+    }
+
+    @Override
+    public void clear() {
+      super.clear();
+      spooledCount = 0;
+      spooledCutoff = null;
+    }
+
     @Override
     protected long sizeOf(ResultEntry e) {
       return ResultEntry.sizeOf(e);
@@ -106,6 +157,9 @@ public class BufferedSortedQueue extends BufferedQueue<ResultEntry> {
           os.writeInt(0);
         }
       }
+      if (++spooledCount == limit) {
+        spooledCutoff = e;
+      }
     }
 
     @Override
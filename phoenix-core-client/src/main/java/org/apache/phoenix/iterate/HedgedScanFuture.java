@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HEDGED_SCANS_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_HEDGED_SCANS_WON_COUNTER;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Future of the iterator of a scan whose first batch is hedged. When the consumer waits for the
+ * scan after it has run for longer than the hedge delay, a duplicate of the scan is submitted, and
+ * the future completes with the iterator of whichever returns its first batch first. The iterator
+ * of the other one is closed as soon as it returns. The future only fails once both scans failed,
+ * with the failure of the original scan, so that either scan may still return while the other one
+ * failed.
+ */
+public abstract class HedgedScanFuture implements Future<PeekingResultIterator> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HedgedScanFuture.class);
+
+  private final CompletableFuture<PeekingResultIterator> result = new CompletableFuture<>();
+  @Nullable
+  private final ServerName server;
+  private final long hedgeDelayMs;
+  private volatile Future<?> primary;
+  private volatile Future<?> hedge;
+  // Time the original scan started running, or 0 while it is queued
+  private volatile long startTime;
+  // Only accessed by the consumer
+  private boolean hedged;
+  // Guarded by this: whether the duplicate scan was submitted, whether it failed, and the failure
+  // of the original scan
+  private boolean hedgeSubmitted;
+  private boolean hedgeFailed;
+  private Throwable primaryFailure;
+
+  /**
+   * @param server       region server of the scan, or null if it is not known
+   * @param hedgeDelayMs time in milliseconds the original scan runs before it is hedged, or
+   *                     {@link Long#MAX_VALUE} to never hedge it
+   */
+  public HedgedScanFuture(@Nullable ServerName server, long hedgeDelayMs) {
+    this.server = server;
+    this.hedgeDelayMs = hedgeDelayMs;
+  }
+
+  /**
+   * Submits the duplicate scan, which reports to this future with {@link #complete} and
+   * {@link #fail}.
+   */
+  protected abstract Future<?> submitHedge() throws Exception;
+
+  /**
+   * Sets the future of the original scan, which reports to this future with {@link #start},
+   * {@link #complete} and {@link #fail}.
+   */
+  public void setPrimary(Future<?> primary) {
+    this.primary = primary;
+  }
+
+  /**
+   * Called when the original scan starts running.
+   */
+  public void start(long startTime) {
+    this.startTime = startTime;
+  }
+
+  /**
+   * Called when a scan returned its first batch.
+   * @param latencyMs time in milliseconds the scan took to return its first batch
+   * @return true if the iterator of the scan is the result of this future, false if the other scan
+   *         returned first, in which case the caller closes the iterator
+   */
+  public boolean complete(PeekingResultIterator iterator, boolean isHedge, long latencyMs) {
+    ScanLatencyTracker.getInstance().update(server, latencyMs);
+    if (!result.complete(iterator)) {
+      return false;
+    }
+    if (isHedge) {
+      GLOBAL_HEDGED_SCANS_WON_COUNTER.increment();
+    }
+    return true;
+  }
+
+  /**
+   * Called when a scan failed.
+   */
+  public void fail(Throwable t, boolean isHedge) {
+    Throwable failure;
+    synchronized (this) {
+      if (isHedge) {
+        LOGGER.debug("Hedged scan failed", t);
+        hedgeFailed = true;
+        failure = primaryFailure;
+      } else {
+        primaryFailure = t;
+        failure = hedgeSubmitted && !hedgeFailed ? null : t;
+      }
+    }
+    if (failure != null) {
+      result.completeExceptionally(failure);
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    Future<?> hedge = this.hedge;
+    if (hedge != null) {
+      hedge.cancel(mayInterruptIfRunning);
+    }
+    // The scan is only hedged once the original one runs, so nothing completes this future if the
+    // original scan never runs
+    if (primary.cancel(mayInterruptIfRunning)) {
+      result.cancel(mayInterruptIfRunning);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return result.isCancelled();
+  }
+
+  @Override
+  public boolean isDone() {
+    return result.isDone();
+  }
+
+  @Override
+  public PeekingResultIterator get() throws InterruptedException, ExecutionException {
+    return result.get();
+  }
+
+  @Override
+  public PeekingResultIterator get(long timeout, TimeUnit unit)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    long now = EnvironmentEdgeManager.currentTimeMillis();
+    long timeoutMs = unit.toMillis(timeout);
+    long endTime = timeoutMs >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutMs;
+    while (!hedged && hedgeDelayMs != Long.MAX_VALUE && !result.isDone()) {
+      long startTime = this.startTime;
+      // Check again after the hedge delay while the original scan is queued
+      long hedgeTime = (startTime == 0 ? now : startTime) + hedgeDelayMs;
+      if (startTime != 0 && now >= hedgeTime) {
+        hedge();
+        break;
+      }
+      if (now >= endTime) {
+        throw new TimeoutException();
+      }
+      try {
+        return result.get(Math.max(1, Math.min(hedgeTime, endTime) - now), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        now = EnvironmentEdgeManager.currentTimeMillis();
+      }
+    }
+    return result.get(Math.max(0, endTime - EnvironmentEdgeManager.currentTimeMillis()),
+      TimeUnit.MILLISECONDS);
+  }
+
+  private void hedge() {
+    hedged = true;
+    synchronized (this) {
+      // The original scan failed in the meantime
+      if (primaryFailure != null) {
+        return;
+      }
+      hedgeSubmitted = true;
+    }
+    try {
+      hedge = submitHedge();
+      GLOBAL_HEDGED_SCANS_COUNTER.increment();
+    } catch (Exception e) {
+      LOGGER.debug("Could not hedge scan", e);
+      fail(e, true);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * K-way merge of sorted iterators with a tree of losers. Each internal node of the tree holds the
+ * iterator that lost the comparison of the heads of its two subtrees, and the root holds the
+ * overall winner, so that replacing the head of the winner takes a single comparison per level of
+ * the tree, instead of the two a heap takes.
+ */
+public class LoserTree<T> {
+  private final Comparator<? super T> comparator;
+  private final List<? extends Iterator<T>> iterators;
+  // Head of each iterator, or null once it is exhausted
+  private final Object[] heads;
+  // tree[0] is the winner and tree[1..k-1] are the losers of the internal nodes
+  private final int[] tree;
+  private final int k;
+
+  public LoserTree(List<? extends Iterator<T>> iterators, Comparator<? super T> comparator) {
+    this.comparator = comparator;
+    this.iterators = iterators;
+    this.k = iterators.size();
+    this.heads = new Object[k];
+    for (int i = 0; i < k; i++) {
+      heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+    }
+    this.tree = new int[Math.max(k, 1)];
+    if (k > 0) {
+      tree[0] = build(1);
+    }
+  }
+
+  /**
+   * Fills the losers of the subtree of the given node, whose leaves are the nodes k to 2k - 1.
+   * @return the winner of the subtree
+   */
+  private int build(int node) {
+    if (node >= k) {
+      return node - k;
+    }
+    int left = build(2 * node);
+    int right = build(2 * node + 1);
+    if (beats(left, right)) {
+      tree[node] = right;
+      return left;
+    }
+    tree[node] = left;
+    return right;
+  }
+
+  /**
+   * Returns whether the head of iterator i comes before the head of iterator j, exhausted iterators
+   * coming last and ties being broken by the index of the iterators.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean beats(int i, int j) {
+    Object head1 = heads[i];
+    Object head2 = heads[j];
+    if (head1 == null || head2 == null) {
+      return head2 == null && (head1 != null || i < j);
+    }
+    int c = comparator.compare((T) head1, (T) head2);
+    return c < 0 || (c == 0 && i < j);
+  }
+
+  /**
+   * Returns the smallest head of the iterators, or null if they are all exhausted.
+   */
+  @SuppressWarnings("unchecked")
+  public T peek() {
+    return k == 0 ? null : (T) heads[tree[0]];
+  }
+
+  /**
+   * Removes and returns the smallest head of the iterators, or null if they are all exhausted.
+   */
+  public T poll() {
+    T winner = peek();
+    if (winner == null) {
+      return null;
+    }
+    int i = tree[0];
+    Iterator<T> iterator = iterators.get(i);
+    heads[i] = iterator.hasNext() ? iterator.next() : null;
+    // Replay the matches from the leaf of the iterator up to the root
+    int candidate = i;
+    for (int node = (i + k) / 2; node > 0; node /= 2) {
+      if (beats(tree[node], candidate)) {
+        int loser = candidate;
+        candidate = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = candidate;
+    return winner;
+  }
+}
@@ -26,6 +26,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Result;
@@ -59,6 +61,11 @@ import org.apache.phoenix.thirdparty.com.google.common.collect.Ordering;
  * Result scanner that sorts aggregated rows by columns specified in the ORDER BY clause.
  * <p>
  * Note that currently the sort is entirely done in memory.
+ * <p>
+ * With a limit, once the sorted queue holds N rows, a row is only kept if it sorts before the last
+ * of them. The sort keys of a row are evaluated one at a time against the ones of the last row, so
+ * that the rows that cannot be part of the result are dropped before their remaining sort keys are
+ * evaluated and before they are sized and queued.
  * @since 0.1
  */
 public class OrderedResultIterator implements PeekingResultIterator {
@@ -168,6 +175,10 @@ public class OrderedResultIterator implements PeekingResultIterator {
   private boolean serverSideIterator = false;
   private boolean firstScan = true;
   private boolean skipValidRowsSent = false;
+  private List<Ordering<ImmutableBytesWritable>> sortKeyOrderings;
+  @Nullable
+  private ExecutorService sortExecutor;
+  private int maxConcurrentSortRuns;
 
   protected ResultIterator getDelegate() {
     return delegate;
@@ -191,6 +202,19 @@ public class OrderedResultIterator implements PeekingResultIterator {
       estimatedRowSize, Long.MAX_VALUE);
   }
 
+  /**
+   * Creates an iterator that, without a limit, sorts the runs of results it spools on the given
+   * executor, up to the given number of runs at a time.
+   */
+  public OrderedResultIterator(ResultIterator delegate, List<OrderByExpression> orderByExpressions,
+    boolean spoolingEnabled, long thresholdBytes, Integer limit, Integer offset,
+    int estimatedRowSize, ExecutorService sortExecutor, int maxConcurrentSortRuns) {
+    this(delegate, orderByExpressions, spoolingEnabled, thresholdBytes, limit, offset,
+      estimatedRowSize, Long.MAX_VALUE);
+    this.sortExecutor = sortExecutor;
+    this.maxConcurrentSortRuns = maxConcurrentSortRuns;
+  }
+
   public OrderedResultIterator(ResultIterator delegate, List<OrderByExpression> orderByExpressions,
     boolean spoolingEnabled, long thresholdBytes, Integer limit, Integer offset,
     int estimatedRowSize, long pageSizeMs, Scan scan, RegionInfo regionInfo) {
@@ -257,16 +281,16 @@ public class OrderedResultIterator implements PeekingResultIterator {
   }
 
   /**
-   * Builds a comparator from the list of columns in ORDER BY clause.
+   * Builds the orderings of the sort keys of the columns in ORDER BY clause.
    * @param orderByExpressions the columns in ORDER BY clause.
-   * @return the comparator built from the list of columns in ORDER BY clause.
+   * @return the ordering of the sort key of each column in ORDER BY clause.
    */
   // ImmutableBytesWritable.Comparator doesn't implement generics
   @SuppressWarnings("unchecked")
-  private static Comparator<ResultEntry>
-    buildComparator(List<OrderByExpression> orderByExpressions) {
-    Ordering<ResultEntry> ordering = null;
-    int pos = 0;
+  private static List<Ordering<ImmutableBytesWritable>>
+    buildSortKeyOrderings(List<OrderByExpression> orderByExpressions) {
+    List<Ordering<ImmutableBytesWritable>> orderings =
+      Lists.newArrayListWithExpectedSize(orderByExpressions.size());
     for (OrderByExpression col : orderByExpressions) {
       Expression e = col.getExpression();
       Comparator<ImmutableBytesWritable> comparator =
@@ -276,6 +300,21 @@ public class OrderedResultIterator implements PeekingResultIterator {
       Ordering<ImmutableBytesWritable> o = Ordering.from(comparator);
       if (!col.isAscending()) o = o.reverse();
       o = col.isNullsLast() ? o.nullsLast() : o.nullsFirst();
+      orderings.add(o);
+    }
+    return orderings;
+  }
+
+  /**
+   * Builds a comparator from the orderings of the sort keys of the columns in ORDER BY clause.
+   * @param sortKeyOrderings the orderings of the sort keys of the columns in ORDER BY clause.
+   * @return the comparator built from the list of columns in ORDER BY clause.
+   */
+  private static Comparator<ResultEntry>
+    buildComparator(List<Ordering<ImmutableBytesWritable>> sortKeyOrderings) {
+    Ordering<ResultEntry> ordering = null;
+    int pos = 0;
+    for (Ordering<ImmutableBytesWritable> o : sortKeyOrderings) {
       Ordering<ResultEntry> entryOrdering = o.onResultOf(new NthKey(pos++));
       ordering = ordering == null ? entryOrdering : ordering.compound(entryOrdering);
     }
@@ -414,14 +453,21 @@ public class OrderedResultIterator implements PeekingResultIterator {
     final int numSortKeys = orderByExpressions.size();
     List<Expression> expressions =
       Lists.newArrayList(Collections2.transform(orderByExpressions, TO_EXPRESSION));
-    final Comparator<ResultEntry> comparator = buildComparator(orderByExpressions);
     try {
       if (resultIterator == null) {
-        resultIterator = new RecordPeekingResultIterator(PhoenixQueues
-          .newResultEntrySortedQueue(comparator, limit, spoolingEnabled, thresholdBytes));
+        sortKeyOrderings = buildSortKeyOrderings(orderByExpressions);
+        Comparator<ResultEntry> comparator = buildComparator(sortKeyOrderings);
+        resultIterator =
+          new RecordPeekingResultIterator(spoolingEnabled && limit == null && sortExecutor != null
+            ? PhoenixQueues.newParallelResultEntrySortedQueue(comparator, thresholdBytes,
+              sortExecutor, maxConcurrentSortRuns)
+            : PhoenixQueues.newResultEntrySortedQueue(comparator, limit, spoolingEnabled,
+              thresholdBytes));
       }
       final SizeAwareQueue<ResultEntry> queueEntries =
         ((RecordPeekingResultIterator) resultIterator).getQueueEntries();
+      final TopNQueue<ResultEntry> topEntries =
+        queueEntries instanceof TopNQueue ? (TopNQueue<ResultEntry>) queueEntries : null;
       long startTime = EnvironmentEdgeManager.currentTimeMillis();
       for (Tuple result = delegate.next(); result != null; result = delegate.next()) {
         // result might be empty if it was filtered by a local index
@@ -433,15 +479,11 @@ public class OrderedResultIterator implements PeekingResultIterator {
           getDummyResult();
           return resultIterator;
         }
-        int pos = 0;
         ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[numSortKeys];
-        for (Expression expression : expressions) {
-          final ImmutableBytesWritable sortKey = new ImmutableBytesWritable();
-          boolean evaluated = expression.evaluate(result, sortKey);
-          // set the sort key that failed to get evaluated with null
-          sortKeys[pos++] = evaluated && sortKey.getLength() > 0 ? sortKey : null;
+        ResultEntry cutoff = topEntries == null ? null : topEntries.getCutoff();
+        if (evaluateSortKeys(expressions, result, sortKeys, cutoff)) {
+          queueEntries.add(new ResultEntry(sortKeys, result));
         }
-        queueEntries.add(new ResultEntry(sortKeys, result));
         if (EnvironmentEdgeManager.currentTimeMillis() - startTime >= pageSizeMs) {
           getDummyResult();
           return resultIterator;
@@ -460,6 +502,32 @@ public class OrderedResultIterator implements PeekingResultIterator {
     return resultIterator;
   }
 
+  /**
+   * Evaluates the sort keys of a row. Given the cutoff of the top rows, the evaluation stops as
+   * soon as the sort keys evaluated so far show that the row does not sort before it.
+   * @return true if the row may be part of the top rows, false otherwise
+   */
+  private boolean evaluateSortKeys(List<Expression> expressions, Tuple result,
+    ImmutableBytesWritable[] sortKeys, ResultEntry cutoff) {
+    ImmutableBytesWritable[] threshold = cutoff == null ? null : cutoff.sortKeys;
+    boolean sortsBefore = threshold == null;
+    for (int i = 0; i < sortKeys.length; i++) {
+      final ImmutableBytesWritable sortKey = new ImmutableBytesWritable();
+      boolean evaluated = expressions.get(i).evaluate(result, sortKey);
+      // set the sort key that failed to get evaluated with null
+      sortKeys[i] = evaluated && sortKey.getLength() > 0 ? sortKey : null;
+      if (!sortsBefore) {
+        int c = sortKeyOrderings.get(i).compare(sortKeys[i], threshold[i]);
+        if (c > 0) {
+          return false;
+        }
+        sortsBefore = c < 0;
+      }
+    }
+    // A row with the same sort keys as the cutoff may be dropped as well
+    return sortsBefore;
+  }
+
   /**
    * Retrieve dummy rowkey.
    */
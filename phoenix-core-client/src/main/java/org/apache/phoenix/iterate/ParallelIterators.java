@@ -26,18 +26,25 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobClass;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.trace.util.Tracing;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.LogUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.ScanUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,13 +90,13 @@ public class ParallelIterators extends BaseResultIterators {
   protected void submitWork(final List<List<Scan>> nestedScans,
     List<List<Pair<Scan, Future<PeekingResultIterator>>>> nestedFutures,
     final Queue<PeekingResultIterator> allIterators, int estFlattenedSize, final boolean isReverse,
-    ParallelScanGrouper scanGrouper, long maxQueryEndTime) throws SQLException {
+    ParallelScanGrouper scanGrouper, final long maxQueryEndTime) throws SQLException {
     // Pre-populate nestedFutures lists so that we can shuffle the scans
     // and add the future to the right nested list. By shuffling the scans
     // we get better utilization of the cluster since our thread executor
     // will spray the scans across machines as opposed to targeting a
     // single one since the scans are in row key order.
-    ExecutorService executor = context.getConnection().getQueryServices().getExecutor();
+    final ExecutorService executor = context.getConnection().getQueryServices().getExecutor();
     List<ScanLocator> scanLocations = Lists.newArrayListWithExpectedSize(estFlattenedSize);
     for (int i = 0; i < nestedScans.size(); i++) {
       List<Scan> scans = nestedScans.get(i);
@@ -106,69 +113,60 @@ public class ParallelIterators extends BaseResultIterators {
     // Shuffle so that we start execution across many machines
     // before we fill up the thread pool
     Collections.shuffle(scanLocations);
-    ReadMetricQueue readMetrics = context.getReadMetricsQueue();
+    final ReadMetricQueue readMetrics = context.getReadMetricsQueue();
     final String physicalTableName = tableRef.getTable().getPhysicalName().getString();
     int numScans = scanLocations.size();
     context.getOverallQueryMetrics().updateNumParallelScans(numScans);
     GLOBAL_NUM_PARALLEL_SCANS.update(numScans);
     final long renewLeaseThreshold =
       context.getConnection().getQueryServices().getRenewLeaseThresholdMilliSeconds();
+    final String tenantId = getJobTenantId();
+    final JobClass jobClass = getJobClass();
+    ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+    boolean hedgeScans = props.getBoolean(QueryServices.HEDGED_SCANS_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_HEDGED_SCANS_ENABLED);
+    float hedgeLatencyMultiplier =
+      props.getFloat(QueryServices.HEDGED_SCANS_LATENCY_MULTIPLIER_ATTRIB,
+        QueryServicesOptions.DEFAULT_HEDGED_SCANS_LATENCY_MULTIPLIER);
+    long hedgeMinDelayMs = props.getLong(QueryServices.HEDGED_SCANS_MIN_DELAY_MS_ATTRIB,
+      QueryServicesOptions.DEFAULT_HEDGED_SCANS_MIN_DELAY_MS);
     for (final ScanLocator scanLocation : scanLocations) {
+      // Stop queueing the scans of a query that already timed out, instead of letting them take
+      // the place of the scans of other queries until their futures are cancelled
+      checkQueryDeadline(maxQueryEndTime);
       final Scan scan = scanLocation.getScan();
+      // Fill the scanner's cache. This helps reduce latency since we are parallelizing
+      // the I/O needed.
+      final boolean peek = !initFirstScanOnly || (!isReverse && scanLocation.isFirstScan())
+        || (isReverse && scanLocation.isLastScan());
       final ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(readMetrics,
         physicalTableName, scan, context.getConnection().getLogLevel());
-      final TaskExecutionMetricsHolder taskMetrics =
-        new TaskExecutionMetricsHolder(readMetrics, physicalTableName);
-      final TableResultIterator tableResultItr =
-        context.getConnection().getTableResultIteratorFactory().newIterator(mutationState, tableRef,
-          scan, scanMetricsHolder, renewLeaseThreshold, plan, scanGrouper, caches, maxQueryEndTime);
-      context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
-      Future<PeekingResultIterator> future =
-        executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
-
+      Future<PeekingResultIterator> future;
+      if (hedgeScans && peek && isHedgeable(scan)) {
+        ServerName server = getRegionServer(scan);
+        final ExecutorService hedgeExecutor = executor;
+        final ParallelScanGrouper hedgeScanGrouper = scanGrouper;
+        HedgedScanFuture hedgedScan = new HedgedScanFuture(server, ScanLatencyTracker.getInstance()
+          .getHedgeDelayMs(server, hedgeLatencyMultiplier, hedgeMinDelayMs)) {
           @Override
-          public PeekingResultIterator call() throws Exception {
-            long startTime = EnvironmentEdgeManager.currentTimeMillis();
-            PeekingResultIterator iterator = iteratorFactory.newIterator(context, tableResultItr,
-              scan, physicalTableName, ParallelIterators.this.plan);
-            if (initFirstScanOnly) {
-              if (
-                (!isReverse && scanLocation.isFirstScan())
-                  || (isReverse && scanLocation.isLastScan())
-              ) {
-                // Fill the scanner's cache. This helps reduce latency since we are parallelizing
-                // the I/O needed.
-                iterator.peek();
-              }
-            } else {
-              iterator.peek();
-            }
-
-            if (LOGGER.isDebugEnabled()) {
-              LOGGER.debug(LogUtil.addCustomAnnotations("Id: " + scanId + ", Time: "
-                + (EnvironmentEdgeManager.currentTimeMillis() - startTime) + "ms, Table: "
-                + physicalTableName + ", Scan: " + scan, ScanUtil.getCustomAnnotations(scan)));
-            }
-
-            allIterators.add(iterator);
-            return iterator;
+          protected Future<?> submitHedge() throws Exception {
+            // The future completes with the first batch of a scan, so nothing was returned yet and
+            // the duplicate starts where the original scan did. It reports to the metrics holder
+            // of the original scan, so that the chunk is counted as a single scan.
+            return submitScan(hedgeExecutor, new Scan(scan), peek, allIterators, scanMetricsHolder,
+              physicalTableName, renewLeaseThreshold, hedgeScanGrouper, maxQueryEndTime, tenantId,
+              jobClass, this, true);
           }
-
-          /**
-           * Defines the grouping for round robin behavior. All threads spawned to process this scan
-           * will be grouped together and time sliced with other simultaneously executing parallel
-           * scans.
-           */
-          @Override
-          public Object getJobId() {
-            return ParallelIterators.this;
-          }
-
-          @Override
-          public TaskExecutionMetricsHolder getTaskExecutionMetric() {
-            return taskMetrics;
-          }
-        }, "Parallel scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
+        };
+        hedgedScan.setPrimary(submitScan(executor, scan, peek, allIterators, scanMetricsHolder,
+          physicalTableName, renewLeaseThreshold, scanGrouper, maxQueryEndTime, tenantId, jobClass,
+          hedgedScan, false));
+        future = hedgedScan;
+      } else {
+        future =
+          submitScan(executor, scan, peek, allIterators, scanMetricsHolder, physicalTableName,
+            renewLeaseThreshold, scanGrouper, maxQueryEndTime, tenantId, jobClass, null, false);
+      }
       // Add our future in the right place so that we can concatenate the
       // results of the inner futures versus merge sorting across all of them.
       nestedFutures.get(scanLocation.getOuterListIndex()).set(scanLocation.getInnerListIndex(),
@@ -176,6 +174,104 @@ public class ParallelIterators extends BaseResultIterators {
     }
   }
 
+  /**
+   * Returns whether a scan can be duplicated, which excludes the scans that write on the server
+   * side, such as the ones of UPSERT SELECT, DELETE or index builds.
+   */
+  private static boolean isHedgeable(Scan scan) {
+    return scan.getAttribute(BaseScannerRegionObserverConstants.UNGROUPED_AGG) == null
+      && scan.getAttribute(BaseScannerRegionObserverConstants.LOCAL_INDEX_BUILD) == null;
+  }
+
+  /**
+   * Submits the task creating the iterator of a scan.
+   * @param scanMetricsHolder metrics the scan reports to, shared by the scans of a hedged scan
+   * @param hedgedScan        future the task reports to if the scan is hedged, or null
+   * @param isHedge           whether the scan is the duplicate of a hedged scan
+   */
+  private Future<PeekingResultIterator> submitScan(ExecutorService executor, final Scan scan,
+    final boolean peek, final Queue<PeekingResultIterator> allIterators,
+    ScanMetricsHolder scanMetricsHolder, final String physicalTableName, long renewLeaseThreshold,
+    ParallelScanGrouper scanGrouper, final long maxQueryEndTime, final String tenantId,
+    final JobClass jobClass, @Nullable final HedgedScanFuture hedgedScan, final boolean isHedge)
+    throws SQLException {
+    final TaskExecutionMetricsHolder taskMetrics =
+      new TaskExecutionMetricsHolder(context.getReadMetricsQueue(), physicalTableName);
+    final TableResultIterator tableResultItr =
+      context.getConnection().getTableResultIteratorFactory().newIterator(mutationState, tableRef,
+        scan, scanMetricsHolder, renewLeaseThreshold, plan, scanGrouper, caches, maxQueryEndTime);
+    context.getConnection().addIteratorForLeaseRenewal(tableResultItr);
+    return executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
+
+      @Override
+      public PeekingResultIterator call() throws Exception {
+        long startTime = EnvironmentEdgeManager.currentTimeMillis();
+        if (hedgedScan != null && !isHedge) {
+          hedgedScan.start(startTime);
+        }
+        PeekingResultIterator iterator;
+        try {
+          iterator = iteratorFactory.newIterator(context, tableResultItr, scan, physicalTableName,
+            ParallelIterators.this.plan);
+          if (peek) {
+            iterator.peek();
+          }
+        } catch (Exception e) {
+          if (hedgedScan != null) {
+            hedgedScan.fail(e, isHedge);
+          }
+          throw e;
+        }
+        long time = EnvironmentEdgeManager.currentTimeMillis() - startTime;
+
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug(LogUtil.addCustomAnnotations(
+            "Id: " + scanId + ", Time: " + time + "ms, Table: " + physicalTableName
+              + (isHedge ? ", Hedged" : "") + ", Scan: " + scan,
+            ScanUtil.getCustomAnnotations(scan)));
+        }
+
+        // The other scan of a hedged scan returned first
+        if (hedgedScan != null && !hedgedScan.complete(iterator, isHedge, time)) {
+          iterator.close();
+          return iterator;
+        }
+        allIterators.add(iterator);
+        return iterator;
+      }
+
+      /**
+       * Defines the grouping for round robin behavior. All threads spawned to process this scan
+       * will be grouped together and time sliced with other simultaneously executing parallel
+       * scans.
+       */
+      @Override
+      public Object getJobId() {
+        return ParallelIterators.this;
+      }
+
+      @Override
+      public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+        return taskMetrics;
+      }
+
+      @Override
+      public String getTenantId() {
+        return tenantId;
+      }
+
+      @Override
+      public long getDeadline() {
+        return maxQueryEndTime;
+      }
+
+      @Override
+      public JobClass getJobClass() {
+        return jobClass;
+      }
+    }, "Parallel scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
+  }
+
   @Override
   protected String getName() {
     return NAME;
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.monitoring.TaskExecutionMetricsHolder.NO_OP_INSTANCE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.ResultUtil;
+
+/**
+ * Sorted queue of result entries that spills to disk like {@link BufferedSortedQueue}, but sorts
+ * the spilled runs on an executor while the next run is being filled, and merges the runs with a
+ * {@link LoserTree}. The sort keys of the entries of a run are written with the prefix they share
+ * with the sort keys of the previous entry omitted.
+ * <p>
+ * At most the given number of runs are sorted concurrently, each one holding up to the threshold in
+ * memory, after which adding entries waits for the oldest run. A run that is still queued on the
+ * executor when it is waited for is sorted by the waiting thread, so that the sort does not depend
+ * on the availability of the executor.
+ */
+public class ParallelSortedQueue extends AbstractQueue<ResultEntry>
+  implements SizeAwareQueue<ResultEntry> {
+  private static final int EOF = -1;
+
+  private final Comparator<ResultEntry> comparator;
+  private final long thresholdBytes;
+  private final ExecutorService executor;
+  private final int maxConcurrentRuns;
+  private final List<SortRun> runs = new ArrayList<>();
+  private final List<RunReader> readers = new ArrayList<>();
+  private List<ResultEntry> entries = new ArrayList<>();
+  private long byteSize;
+  private int size;
+  private LoserTree<ResultEntry> merged;
+  private volatile boolean isClosed;
+
+  public ParallelSortedQueue(Comparator<ResultEntry> comparator, long thresholdBytes,
+    ExecutorService executor, int maxConcurrentRuns) {
+    this.comparator = comparator;
+    this.thresholdBytes = thresholdBytes;
+    this.executor = executor;
+    this.maxConcurrentRuns = Math.max(1, maxConcurrentRuns);
+  }
+
+  /**
+   * Run of entries that is sorted and written to a file.
+   */
+  private class SortRun {
+    private final FutureTask<Void> task;
+    private volatile File file;
+
+    private SortRun(final List<ResultEntry> entries) {
+      this.task = new FutureTask<>(() -> {
+        Collections.sort(entries, comparator);
+        File file = File.createTempFile(UUID.randomUUID().toString(), null);
+        this.file = file;
+        try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+          writeRun(out, entries);
+        }
+        // The queue may have been closed without seeing the file
+        if (isClosed) {
+          file.delete();
+        }
+        return null;
+      });
+    }
+
+    private void submit() {
+      try {
+        executor.submit(new JobCallable<Void>() {
+          @Override
+          public Void call() {
+            task.run();
+            return null;
+          }
+
+          @Override
+          public Object getJobId() {
+            return ParallelSortedQueue.this;
+          }
+
+          @Override
+          public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+            return NO_OP_INSTANCE;
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The run is sorted when it is waited for
+      }
+    }
+
+    private void await() throws IOException {
+      // Sorts the run if it did not start yet, and does nothing otherwise
+      task.run();
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+      }
+    }
+
+    private void close() {
+      task.cancel(false);
+      File file = this.file;
+      if (file != null) {
+        file.delete();
+      }
+    }
+  }
+
+  private void writeRun(DataOutputStream out, List<ResultEntry> entries) throws IOException {
+    ImmutableBytesWritable[] previousSortKeys = null;
+    for (ResultEntry e : entries) {
+      List<KeyValue> keyValues = new ArrayList<>(e.getResult().size());
+      int totalLen = 0;
+      for (int i = 0; i < e.getResult().size(); i++) {
+        KeyValue kv = PhoenixKeyValueUtil.maybeCopyCell(e.getResult().getValue(i));
+        keyValues.add(kv);
+        totalLen += (kv.getLength() + Bytes.SIZEOF_INT);
+      }
+      out.writeInt(totalLen);
+      for (KeyValue kv : keyValues) {
+        out.writeInt(kv.getLength());
+        out.write(kv.getBuffer(), kv.getOffset(), kv.getLength());
+      }
+      ImmutableBytesWritable[] sortKeys = e.sortKeys;
+      WritableUtils.writeVInt(out, sortKeys.length);
+      for (int i = 0; i < sortKeys.length; i++) {
+        ImmutableBytesWritable sortKey = sortKeys[i];
+        if (sortKey == null) {
+          WritableUtils.writeVInt(out, EOF);
+          continue;
+        }
+        ImmutableBytesWritable previous = previousSortKeys == null ? null : previousSortKeys[i];
+        int prefixLength = previous == null
+          ? 0
+          : Bytes.findCommonPrefix(previous.get(), sortKey.get(), previous.getLength(),
+            sortKey.getLength(), previous.getOffset(), sortKey.getOffset());
+        WritableUtils.writeVInt(out, prefixLength);
+        WritableUtils.writeVInt(out, sortKey.getLength() - prefixLength);
+        out.write(sortKey.get(), sortKey.getOffset() + prefixLength,
+          sortKey.getLength() - prefixLength);
+      }
+      previousSortKeys = sortKeys;
+    }
+    out.writeInt(EOF);
+  }
+
+  /**
+   * Reader of the entries of a sorted run, which deletes the file of the run once it is read.
+   */
+  private static class RunReader implements Iterator<ResultEntry>, Closeable {
+    private final File file;
+    private final DataInputStream in;
+    private ImmutableBytesWritable[] previousSortKeys;
+    private ResultEntry next;
+    private boolean isEnd;
+
+    private RunReader(File file) throws IOException {
+      this.file = file;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())));
+    }
+
+    private ResultEntry read() throws IOException {
+      int length = in.readInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] rb = new byte[length];
+      in.readFully(rb);
+      Result result = ResultUtil.toResult(new ImmutableBytesWritable(rb));
+      Tuple tuple = new ResultTuple(result);
+      int sortKeySize = WritableUtils.readVInt(in);
+      ImmutableBytesWritable[] sortKeys = new ImmutableBytesWritable[sortKeySize];
+      for (int i = 0; i < sortKeySize; i++) {
+        int prefixLength = WritableUtils.readVInt(in);
+        if (prefixLength < 0) {
+          continue;
+        }
+        int suffixLength = WritableUtils.readVInt(in);
+        byte[] sortKey = new byte[prefixLength + suffixLength];
+        if (prefixLength > 0) {
+          ImmutableBytesWritable previous = previousSortKeys[i];
+          System.arraycopy(previous.get(), previous.getOffset(), sortKey, 0, prefixLength);
+        }
+        in.readFully(sortKey, prefixLength, suffixLength);
+        sortKeys[i] = new ImmutableBytesWritable(sortKey);
+      }
+      previousSortKeys = sortKeys;
+      return new ResultEntry(sortKeys, tuple);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null && !isEnd) {
+        try {
+          next = read();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        if (next == null) {
+          close();
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public ResultEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      ResultEntry ret = next;
+      next = null;
+      return ret;
+    }
+
+    @Override
+    public void close() {
+      if (!isEnd) {
+        isEnd = true;
+        try {
+          in.close();
+        } catch (IOException ignored) {
+        }
+        file.delete();
+      }
+    }
+  }
+
+  @Override
+  public boolean offer(ResultEntry e) {
+    if (isClosed || merged != null) {
+      return false;
+    }
+    entries.add(e);
+    byteSize += ResultEntry.sizeOf(e);
+    size++;
+    if (byteSize >= thresholdBytes) {
+      try {
+        startRun();
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+    return true;
+  }
+
+  private void startRun() throws IOException {
+    // Bound the memory held by the runs being sorted
+    int pending = 0;
+    for (int i = runs.size() - 1; i >= 0; i--) {
+      SortRun run = runs.get(i);
+      if (!run.task.isDone() && ++pending >= maxConcurrentRuns) {
+        run.await();
+      }
+    }
+    SortRun run = new SortRun(entries);
+    runs.add(run);
+    entries = new ArrayList<>();
+    byteSize = 0;
+    run.submit();
+  }
+
+  private LoserTree<ResultEntry> getMerged() {
+    if (merged == null) {
+      if (isClosed) {
+        return null;
+      }
+      List<Iterator<ResultEntry>> iterators = new ArrayList<>(runs.size() + 1);
+      try {
+        for (SortRun run : runs) {
+          run.await();
+          RunReader reader = new RunReader(run.file);
+          readers.add(reader);
+          iterators.add(reader);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      // The last run is merged from memory
+      Collections.sort(entries, comparator);
+      iterators.add(entries.iterator());
+      merged = new LoserTree<>(iterators, comparator);
+    }
+    return merged;
+  }
+
+  @Override
+  public ResultEntry poll() {
+    LoserTree<ResultEntry> merged = getMerged();
+    if (merged == null) {
+      return null;
+    }
+    ResultEntry e = merged.poll();
+    if (e != null) {
+      size--;
+    }
+    return e;
+  }
+
+  @Override
+  public ResultEntry peek() {
+    LoserTree<ResultEntry> merged = getMerged();
+    return merged == null ? null : merged.peek();
+  }
+
+  @Override
+  public Iterator<ResultEntry> iterator() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long getByteSize() {
+    return byteSize;
+  }
+
+  @Override
+  public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    for (RunReader reader : readers) {
+      reader.close();
+    }
+    for (SortRun run : runs) {
+      run.close();
+    }
+    readers.clear();
+    runs.clear();
+    entries = Collections.emptyList();
+    merged = null;
+    size = 0;
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.phoenix.iterate;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry;
@@ -39,6 +40,12 @@ public class PhoenixQueues {
     return new BufferedSortedQueue(comparator, limit, thresholdBytes);
   }
 
+  public static SizeAwareQueue<ResultEntry> newParallelResultEntrySortedQueue(
+    Comparator<ResultEntry> comparator, long thresholdBytes, ExecutorService executor,
+    int maxConcurrentRuns) {
+    return new ParallelSortedQueue(comparator, thresholdBytes, executor, maxConcurrentRuns);
+  }
+
   public static SizeAwareQueue<Tuple> newBufferedTupleQueue(long thresholdBytes) {
     return new BufferedTupleQueue(thresholdBytes);
   }
@@ -49,13 +56,7 @@ public class PhoenixQueues {
     MinMaxPriorityQueue<ResultEntry> queue = limit < 0
       ? MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).create()
       : MinMaxPriorityQueue.<ResultEntry> orderedBy(comparator).maximumSize(limit).create();
-    return new SizeBoundQueue<ResultEntry>(maxSizeBytes, queue) {
-      @Override
-      public long sizeOf(org.apache.phoenix.iterate.OrderedResultIterator.ResultEntry e) {
-        return ResultEntry.sizeOf(e);
-      }
-
-    };
+    return new SizeBoundResultEntrySortedQueue(maxSizeBytes, queue, limit);
   }
 
   public static SizeAwareQueue<Tuple> newSizeBoundTupleQueue(long maxSizeBytes) {
@@ -89,4 +90,27 @@ public class PhoenixQueues {
     }
   }
 
+  private static class SizeBoundResultEntrySortedQueue extends SizeBoundQueue<ResultEntry>
+    implements TopNQueue<ResultEntry> {
+    private final MinMaxPriorityQueue<ResultEntry> queue;
+    private final int limit;
+
+    SizeBoundResultEntrySortedQueue(long maxSizeBytes, MinMaxPriorityQueue<ResultEntry> queue,
+      int limit) {
+      super(maxSizeBytes, queue);
+      this.queue = queue;
+      this.limit = limit;
+    }
+
+    @Override
+    public long sizeOf(ResultEntry e) {
+      return ResultEntry.sizeOf(e);
+    }
+
+    @Override
+    public ResultEntry getCutoff() {
+      return limit >= 0 && queue.size() >= limit ? queue.peekLast() : null;
+    }
+  }
+
 }
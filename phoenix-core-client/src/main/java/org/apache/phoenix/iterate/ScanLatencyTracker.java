@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.hadoop.hbase.ServerName;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * Tracks the time the scans of each region server take to return their first batch, as an
+ * exponentially weighted moving average, to decide when a scan is late enough to be hedged. A scan
+ * is compared with the usual latency of its own region server, so that a server that is
+ * persistently slower than the others, which a duplicate scan would not help, is not hedged on
+ * every query.
+ */
+public class ScanLatencyTracker {
+  private static final ScanLatencyTracker INSTANCE = new ScanLatencyTracker();
+  // Weight of the latest latency in the moving averages
+  private static final double ALPHA = 0.2;
+  // Region servers that restarted or left the cluster are forgotten after a while
+  private static final long EXPIRE_AFTER_ACCESS_MINUTES = 10;
+
+  private final Cache<ServerName, MovingAverage> serverLatencies = CacheBuilder.newBuilder()
+    .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES).build();
+  // Latency of the scans of all region servers, for the servers without any scan yet
+  private final MovingAverage overallLatency = new MovingAverage();
+
+  @VisibleForTesting
+  ScanLatencyTracker() {
+  }
+
+  public static ScanLatencyTracker getInstance() {
+    return INSTANCE;
+  }
+
+  private static class MovingAverage {
+    private double average = -1;
+
+    private synchronized void update(long value) {
+      average = average < 0 ? value : ALPHA * value + (1 - ALPHA) * average;
+    }
+
+    private synchronized double get() {
+      return average;
+    }
+  }
+
+  /**
+   * Records the time a scan took to return its first batch.
+   * @param server    region server of the scan, or null if it is not known
+   * @param latencyMs time in milliseconds
+   */
+  public void update(@Nullable ServerName server, long latencyMs) {
+    if (server != null) {
+      serverLatencies.asMap().computeIfAbsent(server, k -> new MovingAverage()).update(latencyMs);
+    }
+    overallLatency.update(latencyMs);
+  }
+
+  /**
+   * Returns the usual time in milliseconds the scans of a region server take to return their first
+   * batch, which is the one of all region servers if the server has no scan yet, or a negative
+   * value if there was no scan at all.
+   */
+  public double getLatencyMs(@Nullable ServerName server) {
+    MovingAverage serverLatency = server == null ? null : serverLatencies.getIfPresent(server);
+    return serverLatency == null ? overallLatency.get() : serverLatency.get();
+  }
+
+  /**
+   * Returns the time in milliseconds after which a scan of a region server is hedged, or
+   * {@link Long#MAX_VALUE} if no scan latency was recorded yet.
+   * @param multiplier multiple of the usual latency of the scans of the region server
+   * @param minDelayMs minimum time in milliseconds
+   */
+  public long getHedgeDelayMs(@Nullable ServerName server, float multiplier, long minDelayMs) {
+    double latencyMs = getLatencyMs(server);
+    if (latencyMs < 0) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(minDelayMs, (long) Math.ceil(multiplier * latencyMs));
+  }
+}
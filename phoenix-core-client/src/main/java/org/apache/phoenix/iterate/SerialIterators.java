@@ -34,6 +34,7 @@ import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobClass;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
 import org.apache.phoenix.monitoring.ScanMetricsHolder;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
@@ -80,7 +81,7 @@ public class SerialIterators extends BaseResultIterators {
   protected void submitWork(final List<List<Scan>> nestedScans,
     List<List<Pair<Scan, Future<PeekingResultIterator>>>> nestedFutures,
     final Queue<PeekingResultIterator> allIterators, int estFlattenedSize, boolean isReverse,
-    final ParallelScanGrouper scanGrouper, long maxQueryEndTime) {
+    final ParallelScanGrouper scanGrouper, final long maxQueryEndTime) {
     ExecutorService executor = context.getConnection().getQueryServices().getExecutor();
     final String tableName = tableRef.getTable().getPhysicalName().getString();
     final TaskExecutionMetricsHolder taskMetrics =
@@ -97,6 +98,8 @@ public class SerialIterators extends BaseResultIterators {
         flattenedScans = Lists.reverse(flattenedScans);
       }
       final List<Scan> finalScans = flattenedScans;
+      final String tenantId = getJobTenantId();
+      final JobClass jobClass = getJobClass();
       Future<PeekingResultIterator> future =
         executor.submit(Tracing.wrap(new JobCallable<PeekingResultIterator>() {
           @Override
@@ -120,6 +123,21 @@ public class SerialIterators extends BaseResultIterators {
           public TaskExecutionMetricsHolder getTaskExecutionMetric() {
             return taskMetrics;
           }
+
+          @Override
+          public String getTenantId() {
+            return tenantId;
+          }
+
+          @Override
+          public long getDeadline() {
+            return maxQueryEndTime;
+          }
+
+          @Override
+          public JobClass getJobClass() {
+            return jobClass;
+          }
         }, "Serial scanner for table: " + tableRef.getTable().getPhysicalName().getString()));
       // Add our singleton Future which will execute serially
       nestedFutures.add(Collections.singletonList(
@@ -28,12 +28,17 @@ import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.sql.SQLException;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.compile.ExplainPlanAttributes.ExplainPlanAttributesBuilder;
 import org.apache.phoenix.compile.QueryPlan;
@@ -51,7 +56,9 @@ import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.ClientUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.ResultUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
 
 /**
  * Result iterator that spools the results of a scan to disk once an in-memory threshold has been
@@ -67,6 +74,9 @@ import org.apache.phoenix.util.TupleUtil;
 @Deprecated
 public class SpoolingResultIterator implements PeekingResultIterator {
 
+  // Size of the batches of results when they are written in batches
+  private static final int BATCH_SIZE_BYTES = 64 * 1024;
+
   private final PeekingResultIterator spoolFrom;
   private final SpoolingMetricsHolder spoolMetrics;
   private final MemoryMetricsHolder memoryMetrics;
@@ -105,7 +115,18 @@ public class SpoolingResultIterator implements PeekingResultIterator {
       services.getProps().getLongBytes(QueryServices.MAX_SPOOL_TO_DISK_BYTES_ATTRIB,
         QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES),
       services.getProps().get(QueryServices.SPOOL_DIRECTORY,
-        QueryServicesOptions.DEFAULT_SPOOL_DIRECTORY));
+        QueryServicesOptions.DEFAULT_SPOOL_DIRECTORY),
+      services.getProps().getBoolean(QueryServices.SPOOL_BATCHES_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_SPOOL_BATCHES_ENABLED),
+      services.getProps().getBoolean(QueryServices.SPOOL_BATCHES_COMPRESSION_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_SPOOL_BATCHES_COMPRESSION_ENABLED));
+  }
+
+  SpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics,
+    ResultIterator scanner, MemoryManager mm, final long thresholdBytes, final long maxSpoolToDisk,
+    final String spoolDirectory) throws SQLException {
+    this(sMetrics, mMetrics, scanner, mm, thresholdBytes, maxSpoolToDisk, spoolDirectory, false,
+      false);
   }
 
   /**
@@ -115,10 +136,13 @@ public class SpoolingResultIterator implements PeekingResultIterator {
    * @param mm             memory manager tracking memory usage across threads.
    * @param thresholdBytes the requested threshold. Will be dialed down if memory usage (as
    *                       determined by the memory manager) is exceeded.
+   * @param batched        whether the results are written in batches, which are read back a batch
+   *                       at a time once spooled to disk
+   * @param compressed     whether the batches are compressed
    */
   SpoolingResultIterator(SpoolingMetricsHolder sMetrics, MemoryMetricsHolder mMetrics,
     ResultIterator scanner, MemoryManager mm, final long thresholdBytes, final long maxSpoolToDisk,
-    final String spoolDirectory) throws SQLException {
+    final String spoolDirectory, boolean batched, boolean compressed) throws SQLException {
     this.spoolMetrics = sMetrics;
     this.memoryMetrics = mMetrics;
     boolean success = false;
@@ -146,18 +170,23 @@ public class SpoolingResultIterator implements PeekingResultIterator {
       final long maxBytesAllowed =
         maxSpoolToDisk == -1 ? Long.MAX_VALUE : thresholdBytes + maxSpoolToDisk;
       long bytesWritten = 0L;
+      BatchWriter batchWriter = batched ? new BatchWriter(out, compressed) : null;
       for (Tuple result = scanner.next(); result != null; result = scanner.next()) {
-        int length = TupleUtil.write(result, out);
+        int length = batchWriter == null ? TupleUtil.write(result, out) : batchWriter.write(result);
         bytesWritten += length;
         if (bytesWritten > maxBytesAllowed) {
           throw new SpoolTooBigToDiskException(
             "result too big, max allowed(bytes): " + maxBytesAllowed);
         }
       }
+      if (batchWriter != null) {
+        batchWriter.flush();
+      }
       if (spoolTo.isInMemory()) {
         byte[] data = spoolTo.getData();
         chunk.resize(data.length);
-        spoolFrom = new InMemoryResultIterator(data, chunk);
+        spoolFrom =
+          batched ? new BatchResultIterator(data, chunk) : new InMemoryResultIterator(data, chunk);
         GLOBAL_MEMORY_CHUNK_BYTES.update(data.length);
         memoryMetrics.getMemoryChunkSizeMetric().change(data.length);
       } else {
@@ -166,7 +195,9 @@ public class SpoolingResultIterator implements PeekingResultIterator {
         GLOBAL_SPOOL_FILE_COUNTER.increment();
         spoolMetrics.getNumSpoolFileMetric().increment();
         spoolMetrics.getSpoolFileSizeMetric().change(sizeOfSpoolFile);
-        spoolFrom = new OnDiskResultIterator(spoolTo.getFile());
+        spoolFrom = batched
+          ? new BatchResultIterator(spoolTo.getFile())
+          : new OnDiskResultIterator(spoolTo.getFile());
         if (spoolTo.getFile() != null) {
           spoolTo.getFile().deleteOnExit();
         }
@@ -370,6 +401,236 @@ public class SpoolingResultIterator implements PeekingResultIterator {
     }
   }
 
+  /**
+   * Writes results in batches of about {@link #BATCH_SIZE_BYTES}, each one preceded by its length
+   * and by its compressed length, which is 0 if the batch is not compressed. The results of a batch
+   * are written as {@link TupleUtil#write} does.
+   */
+  private static class BatchWriter {
+    private final DataOutputStream out;
+    private final boolean compress;
+    private final TrustedByteArrayOutputStream batch =
+      new TrustedByteArrayOutputStream(BATCH_SIZE_BYTES);
+    private final DataOutputStream batchOut = new DataOutputStream(batch);
+    private byte[] compressed;
+
+    private BatchWriter(DataOutputStream out, boolean compress) {
+      this.out = out;
+      this.compress = compress;
+    }
+
+    private int write(Tuple result) throws IOException {
+      int length = TupleUtil.write(result, batchOut);
+      if (batch.size() >= BATCH_SIZE_BYTES) {
+        flush();
+      }
+      return length;
+    }
+
+    private void flush() throws IOException {
+      int length = batch.size();
+      if (length == 0) {
+        return;
+      }
+      out.writeInt(length);
+      int compressedLength = 0;
+      if (compress) {
+        int maxCompressedLength = Snappy.maxCompressedLength(length);
+        if (compressed == null || compressed.length < maxCompressedLength) {
+          compressed = new byte[maxCompressedLength];
+        }
+        compressedLength = Snappy.compress(batch.getBuffer(), 0, length, compressed, 0);
+      }
+      // Batches that do not shrink are not worth decompressing
+      if (compressedLength > 0 && compressedLength < length) {
+        out.writeInt(compressedLength);
+        out.write(compressed, 0, compressedLength);
+      } else {
+        out.writeInt(0);
+        out.write(batch.getBuffer(), 0, length);
+      }
+      batch.reset();
+    }
+  }
+
+  /**
+   * Backing result iterator of results written in batches, either held in memory or spooled to a
+   * file. Each batch is read at once from the file with a positional read of its channel, or
+   * decompressed, and its results are read without copying them from the batch. The file is not
+   * memory mapped, as a mapping is only unmapped once garbage collected and would hold on to the
+   * deleted file until then.
+   */
+  private static class BatchResultIterator implements PeekingResultIterator {
+    @Nullable
+    private final File file;
+    @Nullable
+    private final MemoryChunk memoryChunk;
+    private FileChannel channel;
+    // Results held in memory, or null when they are read from the file
+    @Nullable
+    private ByteBuffer buffer;
+    // Length and compressed length of the batch read from the file
+    private final ByteBuffer header = ByteBuffer.allocate(2 * Bytes.SIZEOF_INT);
+    private long length;
+    // Position of the next batch
+    private long position;
+    private byte[] batch;
+    private int batchOffset;
+    private int batchEnd;
+    private Tuple next;
+    private boolean isClosed;
+
+    private BatchResultIterator(byte[] bytes, MemoryChunk memoryChunk) throws SQLException {
+      this.file = null;
+      this.memoryChunk = memoryChunk;
+      this.buffer = ByteBuffer.wrap(bytes);
+      this.length = bytes.length;
+      advance();
+    }
+
+    private BatchResultIterator(File file) {
+      this.file = file;
+      this.memoryChunk = null;
+    }
+
+    private void init() throws SQLException {
+      if (channel == null && buffer == null && !isClosed) {
+        try {
+          channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+          length = channel.size();
+        } catch (IOException e) {
+          throw ClientUtil.parseServerException(e);
+        }
+        advance();
+      }
+    }
+
+    /**
+     * Fills the given buffer with the bytes of the file from the given position.
+     */
+    private void read(ByteBuffer dst, long filePosition) throws IOException {
+      while (dst.hasRemaining()) {
+        int read = channel.read(dst, filePosition);
+        if (read < 0) {
+          throw new EOFException("Unexpected end of spool file " + file);
+        }
+        filePosition += read;
+      }
+    }
+
+    private boolean readBatch() throws IOException {
+      if (position >= length) {
+        return false;
+      }
+      int batchLength;
+      int compressedLength;
+      if (buffer != null) {
+        buffer.position((int) position);
+        batchLength = buffer.getInt();
+        compressedLength = buffer.getInt();
+      } else {
+        header.clear();
+        read(header, position);
+        batchLength = header.getInt(0);
+        compressedLength = header.getInt(Bytes.SIZEOF_INT);
+      }
+      int storedLength = compressedLength == 0 ? batchLength : compressedLength;
+      long storedPosition = position + 2 * Bytes.SIZEOF_INT;
+      position = storedPosition + storedLength;
+      byte[] stored;
+      int storedOffset;
+      if (buffer != null) {
+        stored = buffer.array();
+        storedOffset = buffer.arrayOffset() + (int) storedPosition;
+      } else {
+        // A new array for each batch, as the results of the previous one may still be referenced
+        stored = new byte[storedLength];
+        storedOffset = 0;
+        read(ByteBuffer.wrap(stored), storedPosition);
+      }
+      if (compressedLength == 0) {
+        batch = stored;
+        batchOffset = storedOffset;
+      } else {
+        batch = new byte[batchLength];
+        batchOffset = 0;
+        Snappy.uncompress(stored, storedOffset, compressedLength, batch, 0);
+      }
+      batchEnd = batchOffset + batchLength;
+      return true;
+    }
+
+    private Tuple advance() throws SQLException {
+      try {
+        if (batchOffset >= batchEnd && !readBatch()) {
+          reachedEnd();
+          return next = null;
+        }
+      } catch (IOException e) {
+        throw ClientUtil.parseServerException(e);
+      }
+      int resultSize = ByteUtil.vintFromBytes(batch, batchOffset);
+      batchOffset += WritableUtils.getVIntSize(resultSize);
+      ImmutableBytesWritable value = new ImmutableBytesWritable(batch, batchOffset, resultSize);
+      batchOffset += resultSize;
+      return next = new ResultTuple(ResultUtil.toResult(value));
+    }
+
+    private void reachedEnd() throws SQLException {
+      if (isClosed) {
+        return;
+      }
+      isClosed = true;
+      buffer = null;
+      batch = null;
+      try {
+        if (channel != null) {
+          channel.close();
+        }
+      } catch (IOException e) {
+        throw ClientUtil.parseServerException(e);
+      } finally {
+        if (file != null) {
+          file.delete();
+        }
+        if (memoryChunk != null) {
+          memoryChunk.close();
+        }
+      }
+    }
+
+    @Override
+    public Tuple peek() throws SQLException {
+      init();
+      return next;
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+      init();
+      Tuple current = next;
+      if (current != null) {
+        advance();
+      }
+      return current;
+    }
+
+    @Override
+    public void close() throws SQLException {
+      next = null;
+      reachedEnd();
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+    }
+
+    @Override
+    public void explain(List<String> planSteps,
+      ExplainPlanAttributesBuilder explainPlanAttributesBuilder) {
+    }
+  }
+
   @Override
   public void explain(List<String> planSteps) {
   }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.jdbc;
+
+import org.apache.phoenix.jdbc.PhoenixStatement.CompilableStatement;
+import org.apache.phoenix.monitoring.GlobalClientMetrics;
+
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * LRU cache of parsed statements, shared by all connections of a
+ * {@link org.apache.phoenix.query.ConnectionQueryServices}. Only SELECT, UPSERT and DELETE
+ * statements are cached. Their parse trees are immutable and independent of tenant, bind values and
+ * table metadata (tables are only resolved at compile time), so a cached statement may be compiled
+ * by any number of statements concurrently, exactly as a {@link PhoenixPreparedStatement} already
+ * re-compiles its parsed statement on every execution.
+ */
+public class ParsedStatementCache {
+
+  private final Cache<String, CompilableStatement> statements;
+
+  public ParsedStatementCache(long maxSize) {
+    this.statements = maxSize <= 0 ? null : CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /** Returns the parsed statement for the given SQL, or null if it is not cached */
+  CompilableStatement get(String sql) {
+    if (statements == null) {
+      return null;
+    }
+    CompilableStatement statement = statements.getIfPresent(sql);
+    if (statement == null) {
+      GlobalClientMetrics.GLOBAL_CLIENT_PARSED_STATEMENT_CACHE_MISS_COUNTER.increment();
+    } else {
+      GlobalClientMetrics.GLOBAL_CLIENT_PARSED_STATEMENT_CACHE_HIT_COUNTER.increment();
+    }
+    return statement;
+  }
+
+  void put(String sql, CompilableStatement statement) {
+    if (statements != null) {
+      statements.put(sql, statement);
+    }
+  }
+
+  public boolean isEnabled() {
+    return statements != null;
+  }
+
+  public long size() {
+    return statements == null ? 0 : statements.size();
+  }
+
+  public void invalidateAll() {
+    if (statements != null) {
+      statements.invalidateAll();
+    }
+  }
+}
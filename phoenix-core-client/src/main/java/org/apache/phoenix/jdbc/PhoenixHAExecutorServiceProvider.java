@@ -41,6 +41,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.phoenix.job.VirtualThreads;
 import org.apache.phoenix.monitoring.GlobalClientMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +70,9 @@ public class PhoenixHAExecutorServiceProvider {
   public static final String DEFAULT_HA_CLOSE_MAX_POOL_SIZE = "15";
   public static final String HA_CLOSE_MAX_QUEUE_SIZE = "phoenix.ha.close.max.queue.size";
   public static final String DEFAULT_HA_CLOSE_MAX_QUEUE_SIZE = "150";
+  // Whether the tasks run in virtual threads when the JVM supports them (Java 21+)
+  public static final String HA_VIRTUAL_THREADS_ENABLED = "phoenix.ha.virtual.threads.enabled";
+  public static final String DEFAULT_HA_VIRTUAL_THREADS_ENABLED = "false";
 
   private static final Logger LOGGER =
     LoggerFactory.getLogger(PhoenixHAExecutorServiceProvider.class);
@@ -162,10 +166,17 @@ public class PhoenixHAExecutorServiceProvider {
       Integer.parseInt(properties.getProperty(HA_MAX_POOL_SIZE, DEFAULT_HA_MAX_POOL_SIZE));
     int maxQueueSize =
       Integer.parseInt(properties.getProperty(HA_MAX_QUEUE_SIZE, DEFAULT_HA_MAX_QUEUE_SIZE));
-    ThreadPoolExecutor pool1 =
-      createThreadPool(maxPoolSize, maxQueueSize, "phoenixha1", getGlobalExecutorMetricsForPool1());
-    ThreadPoolExecutor pool2 =
-      createThreadPool(maxPoolSize, maxQueueSize, "phoenixha2", getGlobalExecutorMetricsForPool2());
+    boolean useVirtualThreads = Boolean.parseBoolean(
+      properties.getProperty(HA_VIRTUAL_THREADS_ENABLED, DEFAULT_HA_VIRTUAL_THREADS_ENABLED));
+    if (useVirtualThreads && !VirtualThreads.isSupported()) {
+      LOGGER.warn("Virtual threads are enabled but not supported by this JVM, using platform "
+        + "threads for the HA thread pools");
+      useVirtualThreads = false;
+    }
+    ThreadPoolExecutor pool1 = createThreadPool(maxPoolSize, maxQueueSize, "phoenixha1",
+      getGlobalExecutorMetricsForPool1(), useVirtualThreads);
+    ThreadPoolExecutor pool2 = createThreadPool(maxPoolSize, maxQueueSize, "phoenixha2",
+      getGlobalExecutorMetricsForPool2(), useVirtualThreads);
 
     // Make the close executor services
     maxPoolSize = Integer
@@ -173,8 +184,10 @@ public class PhoenixHAExecutorServiceProvider {
     maxQueueSize = Integer
       .parseInt(properties.getProperty(HA_CLOSE_MAX_QUEUE_SIZE, DEFAULT_HA_CLOSE_MAX_QUEUE_SIZE));
 
-    ThreadPoolExecutor closePool1 = createThreadPool(maxPoolSize, maxQueueSize, "phoenixha1close");
-    ThreadPoolExecutor closePool2 = createThreadPool(maxPoolSize, maxQueueSize, "phoenixha2close");
+    ThreadPoolExecutor closePool1 =
+      createThreadPool(maxPoolSize, maxQueueSize, "phoenixha1close", null, useVirtualThreads);
+    ThreadPoolExecutor closePool2 =
+      createThreadPool(maxPoolSize, maxQueueSize, "phoenixha2close", null, useVirtualThreads);
     closePool1.allowCoreThreadTimeOut(true);
     closePool2.allowCoreThreadTimeOut(true);
 
@@ -183,12 +196,8 @@ public class PhoenixHAExecutorServiceProvider {
   }
 
   private static ThreadPoolExecutor createThreadPool(int maxPoolSize, int maxQueueSize,
-    String threadPoolNamePrefix) {
-    return createThreadPool(maxPoolSize, maxQueueSize, threadPoolNamePrefix, null);
-  }
-
-  private static ThreadPoolExecutor createThreadPool(int maxPoolSize, int maxQueueSize,
-    String threadPoolNamePrefix, @Nullable GlobalExecutorMetrics metrics) {
+    String threadPoolNamePrefix, @Nullable GlobalExecutorMetrics metrics,
+    boolean useVirtualThreads) {
     BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(maxQueueSize);
     RejectedExecutionHandler handler;
     if (metrics != null) {
@@ -196,10 +205,13 @@ public class PhoenixHAExecutorServiceProvider {
     } else {
       handler = new ThreadPoolExecutor.CallerRunsPolicy();
     }
+    ThreadFactoryBuilder threadFactory =
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadPoolNamePrefix + "-%d");
+    if (useVirtualThreads) {
+      threadFactory.setThreadFactory(VirtualThreads.newThreadFactory());
+    }
     ThreadPoolExecutor pool = new PhoenixHAThreadPoolExecutor(maxPoolSize, maxPoolSize,
-      KEEP_ALIVE_TIME_SECONDS, TimeUnit.SECONDS, queue, new ThreadFactoryBuilder().setDaemon(true)
-        .setNameFormat(threadPoolNamePrefix + "-%d").build(),
-      handler, metrics);
+      KEEP_ALIVE_TIME_SECONDS, TimeUnit.SECONDS, queue, threadFactory.build(), handler, metrics);
     pool.allowCoreThreadTimeOut(true);
     return pool;
   }
@@ -2482,17 +2482,35 @@ public class PhoenixStatement implements PhoenixMonitoredStatement, SQLCloseable
 
   protected CompilableStatement parseStatement(String sql) throws SQLException {
     long startQueryParsingTime = EnvironmentEdgeManager.currentTimeMillis();
-    PhoenixStatementParser parser = null;
-    try {
-      parser = new PhoenixStatementParser(sql, new ExecutableNodeFactory());
-    } catch (IOException e) {
-      throw ClientUtil.parseServerException(e);
+    ParsedStatementCache parsedStatementCache =
+      connection.getQueryServices().getParsedStatementCache();
+    CompilableStatement statement = parsedStatementCache.get(sql);
+    if (statement == null) {
+      PhoenixStatementParser parser = null;
+      try {
+        parser = new PhoenixStatementParser(sql, new ExecutableNodeFactory());
+      } catch (IOException e) {
+        throw ClientUtil.parseServerException(e);
+      }
+      statement = parser.parseStatement();
+      if (isCacheable(statement)) {
+        parsedStatementCache.put(sql, statement);
+      }
     }
-    CompilableStatement statement = parser.parseStatement();
     setSqlQueryParsingTime(EnvironmentEdgeManager.currentTimeMillis() - startQueryParsingTime);
     return statement;
   }
 
+  /**
+   * Only plain DML and queries are shared through the {@link ParsedStatementCache}. DDL and cursor
+   * statements are rarely re-executed and some of them carry mutable state.
+   */
+  private static boolean isCacheable(CompilableStatement statement) {
+    return statement instanceof ExecutableSelectStatement
+      || statement instanceof ExecutableUpsertStatement
+      || statement instanceof ExecutableDeleteStatement;
+  }
+
   public QueryPlan optimizeQuery(String sql) throws SQLException {
     QueryPlan plan = compileQuery(sql);
     return connection.getQueryServices().getOptimizer().optimize(this, plan);
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import static org.apache.phoenix.query.QueryServicesOptions.UNLIMITED_QUEUE_SIZE;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.job.JobManager.JobClass;
+import org.apache.phoenix.job.JobManager.JobFutureTask;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+
+/**
+ * A bounded blocking queue of jobs that shares the thread pool between tenants by weighted fair
+ * queueing. Every tenant with queued jobs has a virtual time, which advances by the inverse of its
+ * weight each time one of its jobs is dispatched, and the tenant with the smallest virtual time is
+ * served next. A tenant that becomes active starts at the virtual time of the last dispatched job,
+ * so that it cannot claim the share it did not use while idle. Within the share of a tenant, point
+ * lookups are dispatched before other scans, then the job with the earliest deadline first, and
+ * jobs with the same deadline in round robin fashion.
+ */
+public class FairJobQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+  // Tenant of the jobs that do not belong to a tenant
+  private static final String GLOBAL_TENANT = "";
+  private static final int DEFAULT_WEIGHT = 1;
+
+  private final Object lock = new Object();
+  private final int maxSize;
+  private final Map<String, Integer> tenantWeights;
+  // Tenants with queued jobs
+  private final Map<String, TenantQueue> tenants = new HashMap<>();
+  private double virtualTime;
+  private int size;
+
+  /**
+   * @param tenantWeights weights of the tenants, the share of the thread pool of a tenant with
+   *                      queued jobs being proportional to its weight. Tenants without a weight
+   *                      have a weight of 1.
+   */
+  public FairJobQueue(int maxSize, Map<String, Integer> tenantWeights) {
+    this.maxSize = maxSize;
+    this.tenantWeights = tenantWeights;
+  }
+
+  /**
+   * The jobs of a tenant, by class and by producer in the order the producers were last served.
+   */
+  private static class TenantQueue {
+    private final double increment;
+    private final Map<JobClass, LinkedHashMap<Object, ArrayDeque<Runnable>>> producers =
+      new EnumMap<>(JobClass.class);
+    private double virtualTime;
+
+    private TenantQueue(int weight, double virtualTime) {
+      this.increment = 1.0 / weight;
+      this.virtualTime = virtualTime;
+    }
+
+    private void add(Runnable job) {
+      producers.computeIfAbsent(getJobClass(job), k -> new LinkedHashMap<>())
+        .computeIfAbsent(getProducer(job), k -> new ArrayDeque<>()).add(job);
+    }
+
+    private Runnable peek() {
+      for (LinkedHashMap<Object, ArrayDeque<Runnable>> classProducers : producers.values()) {
+        Map.Entry<Object, ArrayDeque<Runnable>> next = getEarliestDeadline(classProducers);
+        if (next != null) {
+          return next.getValue().peek();
+        }
+      }
+      return null;
+    }
+
+    private Runnable poll() {
+      for (LinkedHashMap<Object, ArrayDeque<Runnable>> classProducers : producers.values()) {
+        Map.Entry<Object, ArrayDeque<Runnable>> next = getEarliestDeadline(classProducers);
+        if (next != null) {
+          Object producer = next.getKey();
+          ArrayDeque<Runnable> jobs = classProducers.remove(producer);
+          Runnable job = jobs.poll();
+          // Move the producer behind the others to round robin between producers
+          if (!jobs.isEmpty()) {
+            classProducers.put(producer, jobs);
+          }
+          return job;
+        }
+      }
+      return null;
+    }
+
+    private boolean isEmpty() {
+      for (LinkedHashMap<Object, ArrayDeque<Runnable>> classProducers : producers.values()) {
+        if (!classProducers.isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void addAllTo(Collection<Runnable> c) {
+      for (LinkedHashMap<Object, ArrayDeque<Runnable>> classProducers : producers.values()) {
+        for (ArrayDeque<Runnable> jobs : classProducers.values()) {
+          c.addAll(jobs);
+        }
+      }
+    }
+
+    /**
+     * Returns the first producer whose next job has the earliest deadline, or null if there is no
+     * producer.
+     */
+    private static Map.Entry<Object, ArrayDeque<Runnable>>
+      getEarliestDeadline(LinkedHashMap<Object, ArrayDeque<Runnable>> classProducers) {
+      Map.Entry<Object, ArrayDeque<Runnable>> earliest = null;
+      long earliestDeadline = Long.MAX_VALUE;
+      for (Map.Entry<Object, ArrayDeque<Runnable>> entry : classProducers.entrySet()) {
+        long deadline = getDeadline(entry.getValue().peek());
+        if (earliest == null || deadline < earliestDeadline) {
+          earliest = entry;
+          earliestDeadline = deadline;
+        }
+      }
+      return earliest;
+    }
+  }
+
+  private static Object getProducer(Runnable job) {
+    return job instanceof JobFutureTask ? ((JobFutureTask<?>) job).getJobId() : job;
+  }
+
+  private static String getTenantId(Runnable job) {
+    String tenantId = job instanceof JobFutureTask ? ((JobFutureTask<?>) job).getTenantId() : null;
+    return tenantId == null ? GLOBAL_TENANT : tenantId;
+  }
+
+  private static long getDeadline(Runnable job) {
+    return job instanceof JobFutureTask ? ((JobFutureTask<?>) job).getDeadline() : Long.MAX_VALUE;
+  }
+
+  private static JobClass getJobClass(Runnable job) {
+    return job instanceof JobFutureTask ? ((JobFutureTask<?>) job).getJobClass() : JobClass.SCAN;
+  }
+
+  @Override
+  public boolean offer(Runnable job) {
+    if (job == null) throw new NullPointerException();
+
+    String tenantId = getTenantId(job);
+    synchronized (lock) {
+      if (maxSize != UNLIMITED_QUEUE_SIZE && size == maxSize) {
+        return false;
+      }
+      TenantQueue tenant = tenants.get(tenantId);
+      if (tenant == null) {
+        Integer weight = tenantWeights.get(tenantId);
+        tenant = new TenantQueue(weight == null ? DEFAULT_WEIGHT : weight, virtualTime);
+        tenants.put(tenantId, tenant);
+      }
+      tenant.add(job);
+      size++;
+      lock.notifyAll();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean offer(Runnable job, long timeout, TimeUnit unit) throws InterruptedException {
+    boolean taken = false;
+    long endAt = EnvironmentEdgeManager.currentTimeMillis() + unit.toMillis(timeout);
+    synchronized (lock) {
+      long waitTime = endAt - EnvironmentEdgeManager.currentTimeMillis();
+      while (!(taken = offer(job)) && waitTime > 0) {
+        lock.wait(waitTime);
+        waitTime = endAt - EnvironmentEdgeManager.currentTimeMillis();
+      }
+    }
+    return taken;
+  }
+
+  @Override
+  public void put(Runnable job) {
+    offer(job);
+  }
+
+  @Override
+  public Runnable poll() {
+    synchronized (lock) {
+      TenantQueue next = getNextTenant();
+      if (next == null) {
+        return null;
+      }
+      Runnable job = next.poll();
+      virtualTime = next.virtualTime;
+      next.virtualTime += next.increment;
+      if (next.isEmpty()) {
+        tenants.values().remove(next);
+      }
+      size--;
+      lock.notifyAll();
+      return job;
+    }
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    synchronized (lock) {
+      while (size == 0) {
+        lock.wait();
+      }
+      return poll();
+    }
+  }
+
+  @Override
+  public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long endAt = EnvironmentEdgeManager.currentTimeMillis() + unit.toMillis(timeout);
+    synchronized (lock) {
+      long waitTime = endAt - EnvironmentEdgeManager.currentTimeMillis();
+      while (size == 0 && waitTime > 0) {
+        lock.wait(waitTime);
+        waitTime = endAt - EnvironmentEdgeManager.currentTimeMillis();
+      }
+      return poll();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    synchronized (lock) {
+      TenantQueue next = getNextTenant();
+      return next == null ? null : next.peek();
+    }
+  }
+
+  private TenantQueue getNextTenant() {
+    TenantQueue next = null;
+    for (TenantQueue tenant : tenants.values()) {
+      if (next == null || tenant.virtualTime < next.virtualTime) {
+        next = tenant;
+      }
+    }
+    return next;
+  }
+
+  @Override
+  public Iterator<Runnable> iterator() {
+    synchronized (lock) {
+      List<Runnable> allJobs = new ArrayList<>(size);
+      for (TenantQueue tenant : tenants.values()) {
+        tenant.addAllTo(allJobs);
+      }
+      return allJobs.iterator();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(Collection<? super Runnable> c, int maxElements) {
+    if (c == null) throw new NullPointerException();
+    if (c == this) throw new IllegalArgumentException();
+
+    synchronized (lock) {
+      int i = 0;
+      while (i < maxElements) {
+        Runnable job = poll();
+        if (job == null) {
+          break;
+        }
+        c.add(job);
+        i++;
+      }
+      return i;
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int size() {
+    synchronized (lock) {
+      return size;
+    }
+  }
+}
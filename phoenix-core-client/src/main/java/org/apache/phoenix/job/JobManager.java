@@ -17,12 +17,15 @@
  */
 package org.apache.phoenix.job;
 
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_POINT_LOOKUP_TASK_QUEUE_WAIT_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_REJECTED_TASK_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_SCAN_TASK_QUEUE_WAIT_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_END_TO_END_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_EXECUTED_COUNTER;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_EXECUTION_TIME;
 import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_TASK_QUEUE_WAIT_TIME;
 
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
@@ -68,19 +71,49 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     public TaskExecutionMetricsHolder getTaskExecutionMetric();
   }
 
+  /**
+   * Class of a job, which the {@link FairJobQueue} dispatches in order of declaration within the
+   * share of a tenant, and for which the queue wait time is tracked separately.
+   */
+  public static enum JobClass {
+    // Latency sensitive lookup of individual rows
+    POINT_LOOKUP,
+    // Any other scan
+    SCAN
+  }
+
   public static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize,
     boolean useInstrumentedThreadPool) {
+    return createThreadPoolExec(keepAliveMs, size, queueSize, useInstrumentedThreadPool, null,
+      false);
+  }
+
+  /**
+   * @param tenantWeights     if not null, the queued jobs are shared between tenants with a
+   *                          {@link FairJobQueue} using these weights, otherwise they are round
+   *                          robined between jobs
+   * @param useVirtualThreads whether the jobs run in virtual threads, in which case size only
+   *                          bounds the number of jobs running at once. Must only be set when
+   *                          {@link VirtualThreads#isSupported()}.
+   */
+  public static ThreadPoolExecutor createThreadPoolExec(int keepAliveMs, int size, int queueSize,
+    boolean useInstrumentedThreadPool, @Nullable Map<String, Integer> tenantWeights,
+    boolean useVirtualThreads) {
     BlockingQueue<Runnable> queue;
     if (queueSize == 0) {
       queue = new SynchronousQueue<Runnable>(); // Specialized for 0 length.
+    } else if (tenantWeights != null) {
+      queue = new FairJobQueue(queueSize, tenantWeights);
     } else {
       queue = new JobManager<Runnable>(queueSize);
     }
     String name = "phoenix-" + PHOENIX_POOL_INDEX.getAndIncrement();
-    ThreadFactory threadFactory =
-      new ThreadFactoryBuilder().setNameFormat(name + "-thread-%s").setDaemon(true)
-        .setThreadFactory(new ContextClassLoaderThreadFactory(JobManager.class.getClassLoader()))
-        .build();
+    ThreadFactory threadFactory = new ThreadFactoryBuilder()
+      .setNameFormat(name + (useVirtualThreads ? "-virtual-thread-%s" : "-thread-%s"))
+      .setDaemon(true)
+      .setThreadFactory(new ContextClassLoaderThreadFactory(JobManager.class.getClassLoader(),
+        useVirtualThreads ? VirtualThreads.newThreadFactory() : Executors.defaultThreadFactory()))
+      .build();
     ThreadPoolExecutor exec;
     if (useInstrumentedThreadPool) {
       // For thread pool, set core threads = max threads -- we don't ever want to exceed core
@@ -129,9 +162,16 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     private final Object jobId;
     @Nullable
     private final TaskExecutionMetricsHolder taskMetric;
+    @Nullable
+    private final String tenantId;
+    private final long deadline;
+    private final JobClass jobClass;
 
     public JobFutureTask(Runnable r, T t) {
       super(r, t);
+      this.tenantId = null;
+      this.deadline = Long.MAX_VALUE;
+      this.jobClass = JobClass.SCAN;
       if (r instanceof JobRunnable) {
         this.jobId = ((JobRunnable) r).getJobId();
         this.taskMetric = ((JobRunnable) r).getTaskExecutionMetric();
@@ -145,17 +185,37 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
       super(c);
       // FIXME: this fails when executor used by hbase
       if (c instanceof JobCallable) {
-        this.jobId = ((JobCallable<T>) c).getJobId();
-        this.taskMetric = ((JobCallable<T>) c).getTaskExecutionMetric();
+        JobCallable<T> job = (JobCallable<T>) c;
+        this.jobId = job.getJobId();
+        this.taskMetric = job.getTaskExecutionMetric();
+        this.tenantId = job.getTenantId();
+        this.deadline = job.getDeadline();
+        this.jobClass = job.getJobClass();
       } else {
         this.jobId = this;
         this.taskMetric = null;
+        this.tenantId = null;
+        this.deadline = Long.MAX_VALUE;
+        this.jobClass = JobClass.SCAN;
       }
     }
 
     public Object getJobId() {
       return jobId;
     }
+
+    @Nullable
+    public String getTenantId() {
+      return tenantId;
+    }
+
+    public long getDeadline() {
+      return deadline;
+    }
+
+    public JobClass getJobClass() {
+      return jobClass;
+    }
   }
 
   /**
@@ -206,6 +266,26 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     public Object getJobId();
 
     public TaskExecutionMetricsHolder getTaskExecutionMetric();
+
+    /**
+     * Returns the tenant in whose share of the thread pool the job is scheduled, or null for the
+     * global tenant.
+     */
+    public default String getTenantId() {
+      return null;
+    }
+
+    /**
+     * Returns the time in milliseconds by which the job must have completed, which the
+     * {@link FairJobQueue} dispatches the earliest of first.
+     */
+    public default long getDeadline() {
+      return Long.MAX_VALUE;
+    }
+
+    public default JobClass getJobClass() {
+      return JobClass.SCAN;
+    }
   }
 
   /**
@@ -221,7 +301,12 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
     private final ClassLoader contextClassLoader;
 
     public ContextClassLoaderThreadFactory(ClassLoader contextClassLoader) {
-      baseFactory = Executors.defaultThreadFactory();
+      this(contextClassLoader, Executors.defaultThreadFactory());
+    }
+
+    public ContextClassLoaderThreadFactory(ClassLoader contextClassLoader,
+      ThreadFactory baseFactory) {
+      this.baseFactory = baseFactory;
       this.contextClassLoader = contextClassLoader;
     }
 
@@ -276,6 +361,11 @@ public class JobManager<T> extends AbstractRoundRobinQueue<T> {
       long queueWaitTime =
         EnvironmentEdgeManager.currentTimeMillis() - instrumentedTask.getTaskSubmissionTime();
       GLOBAL_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+      if (instrumentedTask.getJobClass() == JobClass.POINT_LOOKUP) {
+        GLOBAL_POINT_LOOKUP_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+      } else {
+        GLOBAL_SCAN_TASK_QUEUE_WAIT_TIME.update(queueWaitTime);
+      }
       TaskExecutionMetricsHolder metrics = getRequestMetric(task);
       if (metrics != null) {
         metrics.getTaskQueueWaitTime().change(queueWaitTime);
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates virtual threads when the JVM supports them, which is from Java 21 on, or on Java 19 and
+ * 20 with preview features enabled. A task blocked on an RPC in a virtual thread releases its
+ * carrier thread, so a pool of virtual threads bounds the number of tasks in flight without pinning
+ * as many platform threads. Phoenix is built for Java 8, so the virtual thread API is looked up by
+ * reflection.
+ */
+public final class VirtualThreads {
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+  // Thread.ofVirtual(), or null if the JVM has no virtual threads
+  @Nullable
+  private static final Method OF_VIRTUAL;
+  // Thread.Builder.factory()
+  @Nullable
+  private static final Method FACTORY;
+
+  static {
+    Method ofVirtual = null;
+    Method factory = null;
+    try {
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+      // The API is there on Java 19 and 20 as a preview, which throws unless preview features are
+      // enabled, so create a factory once to know whether it works
+      factory.invoke(ofVirtual.invoke(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Virtual threads are not supported by this JVM", e);
+      ofVirtual = null;
+      factory = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    FACTORY = factory;
+  }
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * Returns whether the JVM supports virtual threads.
+   */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * Returns a factory of virtual threads.
+   * @throws UnsupportedOperationException if the JVM does not support virtual threads
+   */
+  public static ThreadFactory newThreadFactory() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+    }
+    try {
+      return (ThreadFactory) FACTORY.invoke(OF_VIRTUAL.invoke(null));
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("Could not create a virtual thread factory", e);
+    }
+  }
+}
@@ -41,6 +41,7 @@ import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.TrustedByteArrayOutputStream;
 import org.apache.phoenix.util.TupleUtil;
 import org.iq80.snappy.Snappy;
@@ -78,22 +79,41 @@ public class HashCacheClient {
 
   /**
    * Send the results of scanning through the scanner to all region servers for regions of the table
-   * that will use the cache that intersect with the minMaxKeyRange.
+   * that will use the cache that intersect with the minMaxKeyRange. If partitioning is enabled and
+   * keyRangeLhsExpression is the leading row key column of the table, each region server is only
+   * sent the rows its regions can join with.
    * @return client-side {@link ServerCache} representing the added hash cache
    * @throws MaxServerCacheSizeExceededException if size of hash cache exceeds max allowed size
    */
   public ServerCache addHashCache(ScanRanges keyRanges, byte[] cacheId, ResultIterator iterator,
     long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly,
-    boolean usePersistentCache, PTable cacheUsingTable, Expression keyRangeRhsExpression,
-    List<Expression> keyRangeRhsValues) throws SQLException {
+    boolean usePersistentCache, PTable cacheUsingTable, Expression keyRangeLhsExpression,
+    Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues) throws SQLException {
+    ReadOnlyProps props = serverCache.getConnection().getQueryServices().getProps();
+    long maxSize = props.getLongBytes(QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB,
+      QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+    HashCachePartitioner partitioner = null;
+    if (
+      !usePersistentCache && props.getBoolean(QueryServices.HASH_CACHE_PARTITIONED_ENABLED_ATTRIB,
+        QueryServicesOptions.DEFAULT_HASH_CACHE_PARTITIONED_ENABLED)
+    ) {
+      partitioner = HashCachePartitioner.create(cacheUsingTable, keyRangeLhsExpression,
+        keyRangeRhsExpression, isOffHeap(), maxSize);
+    }
+    // The size limit applies to what a single region server is sent
+    long maxTotalSize = partitioner == null
+      ? maxSize
+      : Math.min(Integer.MAX_VALUE,
+        maxSize * Math.max(1, serverCache.getServerCount(keyRanges, cacheUsingTable)));
     /**
      * Serialize and compress hashCacheTable
      */
     ImmutableBytesWritable ptr = new ImmutableBytesWritable();
-    serialize(ptr, iterator, estimatedSize, onExpressions, singleValueOnly, keyRangeRhsExpression,
-      keyRangeRhsValues);
+    serialize(ptr, iterator, estimatedSize, maxSize, maxTotalSize, onExpressions, singleValueOnly,
+      keyRangeRhsExpression, keyRangeRhsValues);
     ServerCache cache = serverCache.addServerCache(keyRanges, cacheId, ptr,
-      ByteUtil.EMPTY_BYTE_ARRAY, new HashCacheFactory(), cacheUsingTable, usePersistentCache, true);
+      ByteUtil.EMPTY_BYTE_ARRAY, newHashCacheFactory(partitioner != null), cacheUsingTable,
+      usePersistentCache, true, partitioner);
     return cache;
   }
 
@@ -107,16 +127,26 @@ public class HashCacheClient {
     if (cache == null) {
       return false;
     }
-    return serverCache.addServerCache(startkeyOfRegion, cache, new HashCacheFactory(),
-      ByteUtil.EMPTY_BYTE_ARRAY, pTable);
+    return serverCache.addServerCache(startkeyOfRegion, cache,
+      newHashCacheFactory(cache.getPartitioner() != null), ByteUtil.EMPTY_BYTE_ARRAY, pTable);
+  }
+
+  private boolean isOffHeap() {
+    return serverCache.getConnection().getQueryServices().getProps().getBoolean(
+      QueryServices.HASH_CACHE_OFF_HEAP_ENABLED_ATTRIB,
+      QueryServicesOptions.DEFAULT_HASH_CACHE_OFF_HEAP_ENABLED);
+  }
+
+  private HashCacheFactory newHashCacheFactory(boolean partitioned) {
+    if (partitioned) {
+      return new PartitionedHashCacheFactory();
+    }
+    return isOffHeap() ? new OffHeapHashCacheFactory() : new HashCacheFactory();
   }
 
   private void serialize(ImmutableBytesWritable ptr, ResultIterator iterator, long estimatedSize,
-    List<Expression> onExpressions, boolean singleValueOnly, Expression keyRangeRhsExpression,
-    List<Expression> keyRangeRhsValues) throws SQLException {
-    long maxSize = serverCache.getConnection().getQueryServices().getProps().getLongBytes(
-      QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB,
-      QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+    long maxSize, long maxTotalSize, List<Expression> onExpressions, boolean singleValueOnly,
+    Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues) throws SQLException {
     estimatedSize = Math.min(estimatedSize, maxSize);
     if (estimatedSize > Integer.MAX_VALUE) {
       throw new IllegalStateException("Estimated size(" + estimatedSize
@@ -138,9 +168,9 @@ public class HashCacheClient {
       ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
       for (Tuple result = iterator.next(); result != null; result = iterator.next()) {
         TupleUtil.write(result, out);
-        if (baOut.size() > maxSize) {
+        if (baOut.size() > maxTotalSize) {
           throw new MaxServerCacheSizeExceededException("Size of hash cache (" + baOut.size()
-            + " bytes) exceeds the maximum allowed size (" + maxSize + " bytes)");
+            + " bytes) exceeds the maximum allowed size (" + maxTotalSize + " bytes)");
         }
         // Evaluate key expressions for hash join key range optimization.
         if (keyRangeRhsExpression != null) {
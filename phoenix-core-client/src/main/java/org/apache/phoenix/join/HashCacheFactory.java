@@ -74,12 +74,20 @@ public class HashCacheFactory implements ServerCacheFactory {
       byte[] uncompressed = new byte[uncompressedLen];
       Snappy.uncompress(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength(), uncompressed,
         0);
-      return new HashCacheImpl(uncompressed, chunk, clientVersion);
+      return newHashCache(uncompressed, chunk, clientVersion);
     } catch (CorruptionException e) {
       throw ClientUtil.parseServerException(e);
     }
   }
 
+  /**
+   * Builds the {@link HashCache} from the uncompressed serialized hash cache sent by
+   * {@link HashCacheClient}.
+   */
+  protected HashCache newHashCache(byte[] hashCacheBytes, MemoryChunk chunk, int clientVersion) {
+    return new HashCacheImpl(hashCacheBytes, chunk, clientVersion);
+  }
+
   @Immutable
   private static class HashCacheImpl implements HashCache {
     private final Map<ImmutableBytesPtr, List<Tuple>> hashCache;
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.ServerCachePartitioner;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.RowKeyColumnExpression;
+import org.apache.phoenix.expression.RowValueConstructorExpression;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.IndexType;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.ResultUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Splits a hash cache serialized by {@link HashCacheClient} between region servers when the join
+ * key is the leading row key column of the table using the cache. A row of the cache can only join
+ * with rows of that table whose row key starts with the join key value of the row, so it is only
+ * sent to the region servers hosting a region that overlaps this row key prefix. Rows without a
+ * join key value are sent to every region server.
+ */
+public class HashCachePartitioner implements ServerCachePartitioner {
+  private final Expression rhsKeyExpression;
+  private final boolean invertKey;
+  private final boolean offHeap;
+  private final long maxSize;
+
+  private HashCachePartitioner(Expression rhsKeyExpression, SortOrder lhsSortOrder, boolean offHeap,
+    long maxSize) {
+    this.rhsKeyExpression = rhsKeyExpression;
+    this.invertKey = rhsKeyExpression.getSortOrder() != lhsSortOrder;
+    this.offHeap = offHeap;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns a partitioner for a hash cache used by cacheUsingTable, or null if the cache cannot be
+   * partitioned because the join key is not the leading row key column of the table.
+   * @param lhsKeyExpression the key expression of cacheUsingTable used for the hash join key range
+   *                         optimization
+   * @param rhsKeyExpression the matching key expression of the rows of the hash cache
+   * @param offHeap          whether the hash cache is kept off heap on the region servers
+   * @param maxSize          the maximum size of the part of the cache sent to a region server
+   */
+  public static HashCachePartitioner create(PTable cacheUsingTable, Expression lhsKeyExpression,
+    Expression rhsKeyExpression, boolean offHeap, long maxSize) {
+    if (
+      lhsKeyExpression == null || rhsKeyExpression == null
+        || cacheUsingTable.getIndexType() == IndexType.LOCAL
+    ) {
+      return null;
+    }
+    // The leading column of a row value constructor is enough to partition the rows
+    if (lhsKeyExpression instanceof RowValueConstructorExpression) {
+      if (!(rhsKeyExpression instanceof RowValueConstructorExpression)) {
+        return null;
+      }
+      lhsKeyExpression = lhsKeyExpression.getChildren().get(0);
+      rhsKeyExpression = rhsKeyExpression.getChildren().get(0);
+    }
+    // A salt byte, tenant id or view index id would precede the join key in the row key
+    if (
+      !(lhsKeyExpression instanceof RowKeyColumnExpression)
+        || ((RowKeyColumnExpression) lhsKeyExpression).getPosition() != 0
+    ) {
+      return null;
+    }
+    // The serialized join key value must be a prefix of the row keys it joins with, which does
+    // not hold when it would need coercion or padding.
+    PDataType type = lhsKeyExpression.getDataType();
+    if (
+      type != rhsKeyExpression.getDataType() || (type.isFixedWidth() && type.getByteSize() == null)
+    ) {
+      return null;
+    }
+    return new HashCachePartitioner(rhsKeyExpression, lhsKeyExpression.getSortOrder(), offHeap,
+      maxSize);
+  }
+
+  @Override
+  public synchronized Map<HRegionLocation, ImmutableBytesWritable> partition(
+    ImmutableBytesWritable cachePtr, Map<HRegionLocation, List<RegionInfo>> regionsByServer)
+    throws SQLException {
+    try {
+      int uncompressedLen = Snappy.getUncompressedLength(cachePtr.get(), cachePtr.getOffset());
+      byte[] hashCacheBytes = new byte[uncompressedLen];
+      Snappy.uncompress(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength(), hashCacheBytes,
+        0);
+      // Skip the join expressions to find where the rows start
+      DataInputStream dataInput =
+        new DataInputStream(new ByteArrayInputStream(hashCacheBytes, 0, hashCacheBytes.length));
+      int nExprs = dataInput.readInt();
+      for (int i = 0; i < nExprs; i++) {
+        int expressionOrdinal = WritableUtils.readVInt(dataInput);
+        ExpressionType.values()[expressionOrdinal].newInstance().readFields(dataInput);
+      }
+      int nRowsOffset = Math.abs(dataInput.readInt());
+      int nRows = Bytes.toInt(hashCacheBytes, nRowsOffset);
+
+      // Sort the regions of all servers by start key to find the regions of a row key prefix
+      List<HRegionLocation> servers = new ArrayList<HRegionLocation>(regionsByServer.keySet());
+      List<Region> regions = new ArrayList<Region>();
+      for (int i = 0; i < servers.size(); i++) {
+        for (RegionInfo region : regionsByServer.get(servers.get(i))) {
+          regions.add(new Region(region.getStartKey(), region.getEndKey(), i));
+        }
+      }
+      Collections.sort(regions);
+      byte[][] startKeys = new byte[regions.size()][];
+      for (int i = 0; i < startKeys.length; i++) {
+        startKeys[i] = regions.get(i).startKey;
+      }
+
+      TrustedByteArrayOutputStream[] outputs = new TrustedByteArrayOutputStream[servers.size()];
+      int[] rowCounts = new int[servers.size()];
+      for (int i = 0; i < outputs.length; i++) {
+        outputs[i] = new TrustedByteArrayOutputStream(nRowsOffset + Bytes.SIZEOF_INT);
+        outputs[i].write(hashCacheBytes, 0, nRowsOffset + Bytes.SIZEOF_INT);
+      }
+      int[] lastRowWritten = new int[servers.size()];
+      Arrays.fill(lastRowWritten, -1);
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      int offset = nRowsOffset + Bytes.SIZEOF_INT;
+      for (int i = 0; i < nRows; i++) {
+        int rowStart = offset;
+        int resultSize = (int) Bytes.readAsVLong(hashCacheBytes, offset);
+        offset += WritableUtils.decodeVIntSize(hashCacheBytes[offset]);
+        ImmutableBytesWritable value =
+          new ImmutableBytesWritable(hashCacheBytes, offset, resultSize);
+        offset += resultSize;
+        rhsKeyExpression.reset();
+        if (
+          !rhsKeyExpression.evaluate(new ResultTuple(ResultUtil.toResult(value)), ptr)
+            || ptr.getLength() == 0
+        ) {
+          for (int server = 0; server < outputs.length; server++) {
+            outputs[server].write(hashCacheBytes, rowStart, offset - rowStart);
+            rowCounts[server]++;
+          }
+          continue;
+        }
+        byte[] lowerKey = invertKey
+          ? SortOrder.invert(ptr.get(), ptr.getOffset(), ptr.getLength())
+          : ByteUtil.copyKeyBytesIfNecessary(ptr);
+        byte[] upperKey = ByteUtil.nextKey(lowerKey);
+        // Start from the last region starting at or before the row key prefix
+        int index = Arrays.binarySearch(startKeys, lowerKey, Bytes.BYTES_COMPARATOR);
+        index = index >= 0 ? index : Math.max(0, -index - 2);
+        for (; index < regions.size(); index++) {
+          Region region = regions.get(index);
+          if (upperKey != null && Bytes.compareTo(region.startKey, upperKey) >= 0) {
+            break;
+          }
+          if (
+            (region.endKey.length > 0 && Bytes.compareTo(region.endKey, lowerKey) <= 0)
+              || lastRowWritten[region.server] == i
+          ) {
+            continue;
+          }
+          outputs[region.server].write(hashCacheBytes, rowStart, offset - rowStart);
+          rowCounts[region.server]++;
+          lastRowWritten[region.server] = i;
+        }
+      }
+
+      Map<HRegionLocation, ImmutableBytesWritable> partitions =
+        new HashMap<HRegionLocation, ImmutableBytesWritable>(servers.size());
+      for (int server = 0; server < outputs.length; server++) {
+        TrustedByteArrayOutputStream out = outputs[server];
+        if (out.size() > maxSize) {
+          throw new MaxServerCacheSizeExceededException(
+            "Size of hash cache partition for " + servers.get(server) + " (" + out.size()
+              + " bytes) exceeds the maximum allowed size (" + maxSize + " bytes)");
+        }
+        Bytes.putInt(out.getBuffer(), nRowsOffset, rowCounts[server]);
+        List<KeyRange> coveredRanges = new ArrayList<KeyRange>();
+        for (RegionInfo region : regionsByServer.get(servers.get(server))) {
+          coveredRanges.add(KeyRange.getKeyRange(region.getStartKey(), region.getEndKey()));
+        }
+        PartitionedHashCacheFactory.writeTrailer(out, offHeap, KeyRange.coalesce(coveredRanges));
+        byte[] compressed = new byte[Snappy.maxCompressedLength(out.size())];
+        int compressedSize = Snappy.compress(out.getBuffer(), 0, out.size(), compressed, 0);
+        partitions.put(servers.get(server),
+          new ImmutableBytesWritable(compressed, 0, compressedSize));
+      }
+      return partitions;
+    } catch (IOException e) {
+      throw ClientUtil.parseServerException(e);
+    }
+  }
+
+  private static class Region implements Comparable<Region> {
+    private final byte[] startKey;
+    private final byte[] endKey;
+    private final int server;
+
+    private Region(byte[] startKey, byte[] endKey, int server) {
+      this.startKey = startKey;
+      this.endKey = endKey;
+      this.server = server;
+    }
+
+    @Override
+    public int compareTo(Region other) {
+      return Bytes.compareTo(startKey, other.startKey);
+    }
+  }
+}
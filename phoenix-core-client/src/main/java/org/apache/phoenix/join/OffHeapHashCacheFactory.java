@@ -0,0 +1,517 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jcip.annotations.Immutable;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.ByteBufferUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.tuple.BaseTuple;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ClientUtil;
+import org.apache.phoenix.util.ResultUtil;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TupleUtil;
+
+/**
+ * {@link HashCacheFactory} that keeps the hash cache outside of the Java heap. All serialized rows
+ * and their join keys are copied into a single direct {@link ByteBuffer} indexed by an open
+ * addressing hash table, so a cache holds a couple of objects no matter how many rows it has,
+ * instead of a map entry, a list and a {@link Tuple} per row. Probing a key does not allocate, and
+ * the rows returned by {@link HashCache#get(ImmutableBytesPtr)} are views that read their cells in
+ * place, only copying the values asked for. The buffer is freed when the cache is closed and no
+ * scanner retains it anymore. Used for the hash caches of a client when
+ * phoenix.query.hashCache.offHeap.enabled is set.
+ */
+public class OffHeapHashCacheFactory extends HashCacheFactory {
+
+  public OffHeapHashCacheFactory() {
+  }
+
+  @Override
+  protected HashCache newHashCache(byte[] hashCacheBytes, MemoryChunk chunk, int clientVersion) {
+    return new OffHeapHashCacheImpl(hashCacheBytes, chunk, clientVersion);
+  }
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Before Java 9 the buffers are only freed once they are garbage collected
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  /**
+   * Frees the memory of a direct buffer right away instead of when it is garbage collected. The
+   * buffer must not be read anymore afterwards.
+   */
+  private static void free(ByteBuffer buffer) {
+    if (INVOKE_CLEANER != null) {
+      try {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      } catch (ReflectiveOperationException e) {
+        throw new RuntimeException(e); // Impossible
+      }
+    }
+  }
+
+  /**
+   * The buffer starts with the index: one slot of two ints (key hash, entry offset + 1, 0 meaning
+   * empty) per power of two bucket, sized for a load factor of at most one half. It is followed by
+   * the entries, each laid out as [next entry offset][key length][key][row length][row] where rows
+   * with the same key are chained through the next offset (-1 terminated) in their original order.
+   */
+  @Immutable
+  private static class OffHeapHashCacheImpl implements HashCache {
+    private static final int SLOT_SIZE = 2 * Bytes.SIZEOF_INT;
+    private static final int NO_ENTRY = -1;
+
+    private final ByteBuffer buffer;
+    private final int slotMask;
+    private final int nRows;
+    private final int nKeys;
+    private final MemoryChunk memoryChunk;
+    private final boolean singleValueOnly;
+    private final int clientVersion;
+    // One reference for the server cache holding the cache, and one for each scanner retaining it
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private OffHeapHashCacheImpl(byte[] hashCacheBytes, MemoryChunk memoryChunk,
+      int clientVersion) {
+      try {
+        this.memoryChunk = memoryChunk;
+        this.clientVersion = clientVersion;
+        DataInputStream dataInput =
+          new DataInputStream(new ByteArrayInputStream(hashCacheBytes, 0, hashCacheBytes.length));
+        int nExprs = dataInput.readInt();
+        List<Expression> onExpressions = new ArrayList<Expression>(nExprs);
+        for (int i = 0; i < nExprs; i++) {
+          int expressionOrdinal = WritableUtils.readVInt(dataInput);
+          Expression expression = ExpressionType.values()[expressionOrdinal].newInstance();
+          expression.readFields(dataInput);
+          onExpressions.add(expression);
+        }
+        int exprSize = dataInput.readInt();
+        this.singleValueOnly = exprSize < 0;
+        int offset = Math.abs(exprSize);
+        this.nRows = dataInput.readInt();
+        offset += Bytes.SIZEOF_INT;
+
+        // Evaluate the join keys first to size the buffer. Both the keys and the row pointers
+        // are only referenced until the buffer is filled, but are accounted for until then.
+        long buildSize = 3 * SizedUtil.ARRAY_SIZE
+          + (long) nRows * (SizedUtil.POINTER_SIZE + 2 * SizedUtil.INT_SIZE);
+        this.memoryChunk.resize(buildSize);
+        ImmutableBytesPtr[] keys = new ImmutableBytesPtr[nRows];
+        int[] rowOffsets = new int[nRows];
+        int[] rowLengths = new int[nRows];
+        long entriesSize = 0;
+        for (int i = 0; i < nRows; i++) {
+          int resultSize = (int) Bytes.readAsVLong(hashCacheBytes, offset);
+          offset += WritableUtils.decodeVIntSize(hashCacheBytes[offset]);
+          ImmutableBytesWritable value =
+            new ImmutableBytesWritable(hashCacheBytes, offset, resultSize);
+          Tuple result = new ResultTuple(ResultUtil.toResult(value));
+          keys[i] = TupleUtil.getConcatenatedValue(result, onExpressions);
+          rowOffsets[i] = offset;
+          rowLengths[i] = resultSize;
+          buildSize += SizedUtil.IMMUTABLE_BYTES_PTR_SIZE + keys[i].getLength();
+          entriesSize += 3 * Bytes.SIZEOF_INT + keys[i].getLength() + resultSize;
+          offset += resultSize;
+        }
+        int nSlots = Integer.highestOneBit(Math.max(1, nRows) * 2 - 1) << 1;
+        long indexSize = (long) nSlots * SLOT_SIZE;
+        long bufferSize = indexSize + entriesSize;
+        if (bufferSize > Integer.MAX_VALUE) {
+          throw new IllegalStateException("Size of hash cache (" + bufferSize
+            + " bytes) exceeds the maximum off heap buffer size (" + Integer.MAX_VALUE + " bytes)");
+        }
+        // Account for the off heap buffer before allocating it, along with what the build holds
+        this.memoryChunk.resize(
+          bufferSize + buildSize + SizedUtil.ARRAY_SIZE + (long) nSlots * SizedUtil.INT_SIZE);
+        this.buffer = ByteBuffer.allocateDirect((int) bufferSize);
+        this.slotMask = nSlots - 1;
+
+        int[] chainTails = new int[nSlots];
+        int entryOffset = (int) indexSize;
+        int distinctKeys = 0;
+        for (int i = 0; i < nRows; i++) {
+          ImmutableBytesPtr key = keys[i];
+          int hash = key.hashCode();
+          int slot = findSlot(hash, key.get(), key.getOffset(), key.getLength());
+          int slotOffset = slot * SLOT_SIZE;
+          buffer.putInt(entryOffset, NO_ENTRY);
+          buffer.putInt(entryOffset + Bytes.SIZEOF_INT, key.getLength());
+          putBytes(entryOffset + 2 * Bytes.SIZEOF_INT, key.get(), key.getOffset(), key.getLength());
+          int rowLengthOffset = entryOffset + 2 * Bytes.SIZEOF_INT + key.getLength();
+          buffer.putInt(rowLengthOffset, rowLengths[i]);
+          putBytes(rowLengthOffset + Bytes.SIZEOF_INT, hashCacheBytes, rowOffsets[i],
+            rowLengths[i]);
+          if (buffer.getInt(slotOffset + Bytes.SIZEOF_INT) == 0) {
+            buffer.putInt(slotOffset, hash);
+            buffer.putInt(slotOffset + Bytes.SIZEOF_INT, entryOffset + 1);
+            distinctKeys++;
+          } else {
+            buffer.putInt(chainTails[slot], entryOffset);
+          }
+          chainTails[slot] = entryOffset;
+          entryOffset = rowLengthOffset + Bytes.SIZEOF_INT + rowLengths[i];
+        }
+        this.nKeys = distinctKeys;
+        this.memoryChunk.resize(bufferSize);
+      } catch (IOException e) { // Not possible with ByteArrayInputStream
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void putBytes(int index, byte[] src, int offset, int length) {
+      ByteBuffer dup = buffer.duplicate();
+      dup.position(index);
+      dup.put(src, offset, length);
+    }
+
+    /**
+     * Returns the slot holding the given key, or the empty slot where it belongs. Only absolute
+     * reads are used so that concurrent probes from several scanners are safe.
+     */
+    private int findSlot(int hash, byte[] key, int keyOffset, int keyLength) {
+      int slot = hash & slotMask;
+      while (true) {
+        int slotOffset = slot * SLOT_SIZE;
+        int entry = buffer.getInt(slotOffset + Bytes.SIZEOF_INT) - 1;
+        if (entry < 0) {
+          return slot;
+        }
+        if (
+          buffer.getInt(slotOffset) == hash && buffer.getInt(entry + Bytes.SIZEOF_INT) == keyLength
+            && ByteBufferUtils.equals(buffer, entry + 2 * Bytes.SIZEOF_INT, keyLength, key,
+              keyOffset, keyLength)
+        ) {
+          return slot;
+        }
+        slot = (slot + 1) & slotMask;
+      }
+    }
+
+    /**
+     * Returns the offset of the first entry for the given key, or {@link #NO_ENTRY}.
+     */
+    private int findFirstEntry(ImmutableBytesPtr hashKey) {
+      int slot =
+        findSlot(hashKey.hashCode(), hashKey.get(), hashKey.getOffset(), hashKey.getLength());
+      return buffer.getInt(slot * SLOT_SIZE + Bytes.SIZEOF_INT) - 1;
+    }
+
+    private void checkSingleValue(int firstEntry) throws IOException {
+      if (singleValueOnly && buffer.getInt(firstEntry) != NO_ENTRY) {
+        SQLException ex =
+          new SQLExceptionInfo.Builder(SQLExceptionCode.SINGLE_ROW_SUBQUERY_RETURNS_MULTIPLE_ROWS)
+            .build().buildException();
+        ClientUtil.throwIOException(ex.getMessage(), ex);
+      }
+    }
+
+    private void checkNotReleased() throws IOException {
+      if (references.get() == 0) {
+        throw new IOException("Hash cache was released: " + this);
+      }
+    }
+
+    @Override
+    public boolean containsKey(ImmutableBytesPtr hashKey) throws IOException {
+      checkNotReleased();
+      int entry = findFirstEntry(hashKey);
+      if (entry == NO_ENTRY) {
+        return false;
+      }
+      checkSingleValue(entry);
+      return true;
+    }
+
+    @Override
+    public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException {
+      checkNotReleased();
+      int entry = findFirstEntry(hashKey);
+      if (entry == NO_ENTRY) {
+        return null;
+      }
+      checkSingleValue(entry);
+      return new EntryList(entry);
+    }
+
+    @Override
+    public boolean retain() {
+      while (true) {
+        int count = references.get();
+        if (count == 0) {
+          return false;
+        }
+        if (references.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    @Override
+    public void release() {
+      if (references.decrementAndGet() == 0) {
+        free(buffer);
+        memoryChunk.close();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "OffHeapHashCache rows: " + nRows + " keys: " + nKeys + " bytes: " + buffer.capacity();
+    }
+
+    @Override
+    public void close() {
+      // The scanners still retaining the cache release the buffer once they are done with it
+      if (closed.compareAndSet(false, true)) {
+        release();
+      }
+    }
+
+    /**
+     * Returns the offset of the row of the given entry, which starts with its length.
+     */
+    private int getRowLengthOffset(int entry) {
+      return entry + 2 * Bytes.SIZEOF_INT + buffer.getInt(entry + Bytes.SIZEOF_INT);
+    }
+
+    /**
+     * The rows of a chain of entries with the same key, read from the buffer when iterated.
+     */
+    private class EntryList extends AbstractList<Tuple> {
+      private final int firstEntry;
+      private final int size;
+
+      private EntryList(int firstEntry) {
+        this.firstEntry = firstEntry;
+        int size = 0;
+        for (int entry = firstEntry; entry != NO_ENTRY; entry = buffer.getInt(entry)) {
+          size++;
+        }
+        this.size = size;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public Tuple get(int index) {
+        if (index < 0 || index >= size) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int entry = firstEntry;
+        for (int i = 0; i < index; i++) {
+          entry = buffer.getInt(entry);
+        }
+        return new RowTuple(getRowLengthOffset(entry));
+      }
+
+      @Override
+      public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+          private int entry = firstEntry;
+
+          @Override
+          public boolean hasNext() {
+            return entry != NO_ENTRY;
+          }
+
+          @Override
+          public Tuple next() {
+            if (entry == NO_ENTRY) {
+              throw new NoSuchElementException();
+            }
+            Tuple tuple = new RowTuple(getRowLengthOffset(entry));
+            entry = buffer.getInt(entry);
+            return tuple;
+          }
+        };
+      }
+    }
+
+    /**
+     * A row serialized as by {@link TupleUtil#write(Tuple, java.io.DataOutput)}, each cell as its
+     * length followed by its {@link KeyValue} bytes, read in place from the buffer. Only valid
+     * while the cache is retained.
+     */
+    private class RowTuple extends BaseTuple {
+      private final int rowOffset;
+      private final int rowEnd;
+
+      private RowTuple(int rowLengthOffset) {
+        this.rowOffset = rowLengthOffset + Bytes.SIZEOF_INT;
+        this.rowEnd = rowOffset + buffer.getInt(rowLengthOffset);
+      }
+
+      private int nextCell(int cell) {
+        return cell + Bytes.SIZEOF_INT + buffer.getInt(cell);
+      }
+
+      private Cell newCell(int cell) {
+        return new ByteBufferKeyValue(buffer, cell + Bytes.SIZEOF_INT, buffer.getInt(cell));
+      }
+
+      /**
+       * Returns the offset of the cell with the given column, or -1 if the row has none.
+       */
+      private int findCell(byte[] family, byte[] qualifier) {
+        for (int cell = rowOffset; cell < rowEnd; cell = nextCell(cell)) {
+          int keyValue = cell + Bytes.SIZEOF_INT;
+          int keyLength = buffer.getInt(keyValue);
+          int rowLength = buffer.getShort(keyValue + KeyValue.ROW_OFFSET);
+          int familyLengthOffset = keyValue + KeyValue.ROW_KEY_OFFSET + rowLength;
+          int familyLength = buffer.get(familyLengthOffset);
+          int qualifierLength =
+            keyLength - rowLength - familyLength - KeyValue.KEY_INFRASTRUCTURE_SIZE;
+          if (
+            ByteBufferUtils.equals(buffer, familyLengthOffset + 1, familyLength, family, 0,
+              family.length)
+              && ByteBufferUtils.equals(buffer, familyLengthOffset + 1 + familyLength,
+                qualifierLength, qualifier, 0, qualifier.length)
+          ) {
+            return cell;
+          }
+        }
+        return -1;
+      }
+
+      @Override
+      public boolean isImmutable() {
+        return true;
+      }
+
+      @Override
+      public int size() {
+        int size = 0;
+        for (int cell = rowOffset; cell < rowEnd; cell = nextCell(cell)) {
+          size++;
+        }
+        return size;
+      }
+
+      @Override
+      public void getKey(ImmutableBytesWritable ptr) {
+        int keyValue = rowOffset + Bytes.SIZEOF_INT;
+        byte[] row = new byte[buffer.getShort(keyValue + KeyValue.ROW_OFFSET)];
+        ByteBufferUtils.copyFromBufferToArray(row, buffer, keyValue + KeyValue.ROW_KEY_OFFSET, 0,
+          row.length);
+        ptr.set(row);
+      }
+
+      @Override
+      public Cell getValue(int index) {
+        int cell = rowOffset;
+        for (int i = 0; i < index && cell < rowEnd; i++) {
+          cell = nextCell(cell);
+        }
+        if (index < 0 || cell >= rowEnd) {
+          throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return newCell(cell);
+      }
+
+      @Override
+      public Cell getValue(byte[] family, byte[] qualifier) {
+        int cell = findCell(family, qualifier);
+        return cell < 0 ? null : newCell(cell);
+      }
+
+      @Override
+      public boolean getValue(byte[] family, byte[] qualifier, ImmutableBytesWritable ptr) {
+        int cell = findCell(family, qualifier);
+        if (cell < 0) {
+          return false;
+        }
+        int keyValue = cell + Bytes.SIZEOF_INT;
+        byte[] value = new byte[buffer.getInt(keyValue + Bytes.SIZEOF_INT)];
+        ByteBufferUtils.copyFromBufferToArray(value, buffer,
+          keyValue + KeyValue.ROW_OFFSET + buffer.getInt(keyValue), 0, value.length);
+        ptr.set(value);
+        return true;
+      }
+
+      @Override
+      public long getSerializedSize() {
+        long size = 0;
+        for (int cell = rowOffset; cell < rowEnd; cell = nextCell(cell)) {
+          size += buffer.getInt(cell);
+        }
+        return size;
+      }
+
+      @Override
+      public String toString() {
+        StringBuilder sb = new StringBuilder("keyvalues=");
+        for (int cell = rowOffset; cell < rowEnd; cell = nextCell(cell)) {
+          sb.append(cell == rowOffset ? "" : ",").append(newCell(cell));
+        }
+        return sb.toString();
+      }
+    }
+
+    @Override
+    public int getClientVersion() {
+      return clientVersion;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.jcip.annotations.Immutable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+/**
+ * {@link HashCacheFactory} for the part of a hash cache that {@link HashCachePartitioner} sends to
+ * a region server. The rows are serialized as for {@link HashCacheFactory}, followed by a trailer
+ * holding the row key ranges of the regions the rows were selected for and whether the cache is
+ * kept off heap. A region outside of these ranges must not use the cache, as it may be missing rows
+ * the region joins with.
+ */
+public class PartitionedHashCacheFactory extends HashCacheFactory {
+
+  public PartitionedHashCacheFactory() {
+  }
+
+  @Override
+  protected HashCache newHashCache(byte[] hashCacheBytes, MemoryChunk chunk, int clientVersion) {
+    try {
+      int trailerLength = Bytes.toInt(hashCacheBytes, hashCacheBytes.length - Bytes.SIZEOF_INT);
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(hashCacheBytes,
+        hashCacheBytes.length - Bytes.SIZEOF_INT - trailerLength, trailerLength));
+      boolean offHeap = input.readBoolean();
+      int nRanges = WritableUtils.readVInt(input);
+      List<KeyRange> coveredRanges = new ArrayList<KeyRange>(nRanges);
+      for (int i = 0; i < nRanges; i++) {
+        coveredRanges.add(KeyRange.read(input));
+      }
+      // The trailer is ignored when reading the rows
+      HashCache hashCache = offHeap
+        ? new OffHeapHashCacheFactory().newHashCache(hashCacheBytes, chunk, clientVersion)
+        : super.newHashCache(hashCacheBytes, chunk, clientVersion);
+      return new PartitionedHashCache(hashCache, coveredRanges);
+    } catch (IOException e) { // Not possible with ByteArrayInputStream
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Appends the trailer read by {@link #newHashCache(byte[], MemoryChunk, int)} to a serialized
+   * hash cache.
+   */
+  static void writeTrailer(TrustedByteArrayOutputStream out, boolean offHeap,
+    List<KeyRange> coveredRanges) throws IOException {
+    int start = out.size();
+    DataOutputStream dataOut = new DataOutputStream(out);
+    dataOut.writeBoolean(offHeap);
+    WritableUtils.writeVInt(dataOut, coveredRanges.size());
+    for (KeyRange range : coveredRanges) {
+      range.write(dataOut);
+    }
+    dataOut.writeInt(out.size() - start);
+    dataOut.flush();
+  }
+
+  @Immutable
+  private static class PartitionedHashCache implements HashCache {
+    private final HashCache delegate;
+    private final List<KeyRange> coveredRanges;
+
+    private PartitionedHashCache(HashCache delegate, List<KeyRange> coveredRanges) {
+      this.delegate = delegate;
+      this.coveredRanges = coveredRanges;
+    }
+
+    @Override
+    public boolean coversRegion(byte[] regionStartKey, byte[] regionEndKey) {
+      for (KeyRange range : coveredRanges) {
+        if (
+          (range.lowerUnbound() || Bytes.compareTo(range.getLowerRange(), regionStartKey) <= 0)
+            && (range.upperUnbound() || (regionEndKey.length > 0
+              && Bytes.compareTo(regionEndKey, range.getUpperRange()) <= 0))
+        ) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean containsKey(ImmutableBytesPtr hashKey) throws IOException {
+      return delegate.containsKey(hashKey);
+    }
+
+    @Override
+    public List<Tuple> get(ImmutableBytesPtr hashKey) throws IOException {
+      return delegate.get(hashKey);
+    }
+
+    @Override
+    public boolean retain() {
+      return delegate.retain();
+    }
+
+    @Override
+    public void release() {
+      delegate.release();
+    }
+
+    @Override
+    public int getClientVersion() {
+      return delegate.getClientVersion();
+    }
+
+    @Override
+    public String toString() {
+      return "PartitionedHashCache ranges: " + coveredRanges + " " + delegate;
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
@@ -17,6 +17,11 @@
  */
 package org.apache.phoenix.memory;
 
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_ALLOCATION_CONTENDED_COUNTER;
+import static org.apache.phoenix.monitoring.GlobalClientMetrics.GLOBAL_MEMORY_ALLOCATION_FAILED_COUNTER;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import net.jcip.annotations.GuardedBy;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
@@ -24,16 +29,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Global memory manager to track course grained memory usage across all requests.
+ * Global memory manager to track course grained memory usage across all requests. The used memory
+ * is updated with compare and set, so that concurrent allocations do not serialize on a lock.
  * @since 0.1
  */
 public class GlobalMemoryManager implements MemoryManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(GlobalMemoryManager.class);
 
-  private final Object sync = new Object();
   private final long maxMemoryBytes;
-  @GuardedBy("sync")
-  private volatile long usedMemoryBytes;
+  private final AtomicLong usedMemoryBytes = new AtomicLong();
+  // Number of times an allocation retried updating the used memory after a concurrent update
+  private final LongAdder contendedUpdates = new LongAdder();
+  // Number of allocations that failed because the memory was not available
+  private final LongAdder failedAllocations = new LongAdder();
 
   public GlobalMemoryManager(long maxBytes) {
     if (maxBytes <= 0) {
@@ -41,14 +49,11 @@ public class GlobalMemoryManager implements MemoryManager {
         "Total number of available bytes (" + maxBytes + ") must be greater than zero");
     }
     this.maxMemoryBytes = maxBytes;
-    this.usedMemoryBytes = 0;
   }
 
   @Override
   public long getAvailableMemory() {
-    synchronized (sync) {
-      return maxMemoryBytes - usedMemoryBytes;
-    }
+    return maxMemoryBytes - usedMemoryBytes.get();
   }
 
   @Override
@@ -56,6 +61,22 @@ public class GlobalMemoryManager implements MemoryManager {
     return maxMemoryBytes;
   }
 
+  /**
+   * Get the number of times an allocation had to retry updating the used memory because another
+   * thread updated it concurrently.
+   */
+  public long getContendedUpdateCount() {
+    return contendedUpdates.sum();
+  }
+
+  /**
+   * Get the number of allocations that failed because the minimum requested memory was not
+   * available.
+   */
+  public long getFailedAllocationCount() {
+    return failedAllocations.sum();
+  }
+
   // TODO: Work on fairness: One big memory request can cause all others to fail here.
   private long allocateBytes(long minBytes, long reqBytes) {
     if (minBytes < 0 || reqBytes < 0) {
@@ -63,31 +84,41 @@ public class GlobalMemoryManager implements MemoryManager {
         + ") and requested bytes (" + reqBytes + ") must be greater than zero");
     }
     if (minBytes > maxMemoryBytes) {
-      throw new InsufficientMemoryException(
-        new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
-          .setMessage("Requested memory of " + minBytes + " bytes is larger than global pool of "
-            + maxMemoryBytes + " bytes.")
-          .build().buildException());
+      throw newInsufficientMemoryException("Requested memory of " + minBytes
+        + " bytes is larger than global pool of " + maxMemoryBytes + " bytes.");
     }
-    long nBytes;
-    synchronized (sync) {
-      if (usedMemoryBytes + minBytes > maxMemoryBytes) {
-        throw new InsufficientMemoryException(
-          new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY)
-            .setMessage(
-              "Requested memory of " + minBytes + " bytes could not be allocated. Using memory of "
-                + usedMemoryBytes + " bytes from global pool of " + maxMemoryBytes)
-            .build().buildException());
+    while (true) {
+      long used = usedMemoryBytes.get();
+      if (used + minBytes > maxMemoryBytes) {
+        throw newInsufficientMemoryException(
+          "Requested memory of " + minBytes + " bytes could not be allocated. Using memory of "
+            + used + " bytes from global pool of " + maxMemoryBytes);
       }
       // Allocate at most reqBytes, but at least minBytes
-      nBytes = Math.min(reqBytes, maxMemoryBytes - usedMemoryBytes);
+      long nBytes = Math.min(reqBytes, maxMemoryBytes - used);
       if (nBytes < minBytes) {
         throw new IllegalStateException("Allocated bytes (" + nBytes
           + ") should be at least the minimum requested bytes (" + minBytes + ")");
       }
-      usedMemoryBytes += nBytes;
+      if (usedMemoryBytes.compareAndSet(used, used + nBytes)) {
+        return nBytes;
+      }
+      // Another thread changed the used memory since it was read, so try again with its new value
+      contendedUpdates.increment();
+      GLOBAL_MEMORY_ALLOCATION_CONTENDED_COUNTER.increment();
     }
-    return nBytes;
+  }
+
+  private InsufficientMemoryException newInsufficientMemoryException(String message) {
+    failedAllocations.increment();
+    GLOBAL_MEMORY_ALLOCATION_FAILED_COUNTER.increment();
+    return new InsufficientMemoryException(
+      new SQLExceptionInfo.Builder(SQLExceptionCode.INSUFFICIENT_MEMORY).setMessage(message).build()
+        .buildException());
+  }
+
+  private void freeBytes(long nBytes) {
+    usedMemoryBytes.addAndGet(-nBytes);
   }
 
   @Override
@@ -106,6 +137,8 @@ public class GlobalMemoryManager implements MemoryManager {
   }
 
   private class GlobalMemoryChunk implements MemoryChunk {
+    // Only guards the size of this chunk against a concurrent resize and close
+    @GuardedBy("this")
     private volatile long size;
     // private volatile String stack;
 
@@ -130,10 +163,10 @@ public class GlobalMemoryManager implements MemoryManager {
         throw new IllegalStateException(
           "Number of bytes to resize to must be greater than zero, but instead is " + nBytes);
       }
-      synchronized (sync) {
+      synchronized (this) {
         long nAdditionalBytes = (nBytes - size);
         if (nAdditionalBytes < 0) {
-          usedMemoryBytes += nAdditionalBytes;
+          freeBytes(-nAdditionalBytes);
           size = nBytes;
         } else {
           allocateBytes(nAdditionalBytes, nAdditionalBytes);
@@ -161,8 +194,8 @@ public class GlobalMemoryManager implements MemoryManager {
     }
 
     private void freeMemory() {
-      synchronized (sync) {
-        usedMemoryBytes -= size;
+      synchronized (this) {
+        freeBytes(size);
         size = 0;
       }
     }
@@ -50,7 +50,11 @@ import static org.apache.phoenix.monitoring.MetricType.HA_PARALLEL_POOL2_TASK_QU
 import static org.apache.phoenix.monitoring.MetricType.HA_PARALLEL_POOL2_TASK_REJECTED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.HA_PARALLEL_TASK_TIMEOUT_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.HCONNECTIONS_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.HEDGED_SCANS_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.HEDGED_SCANS_WON_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.INDEX_COMMIT_FAILURE_SIZE;
+import static org.apache.phoenix.monitoring.MetricType.MEMORY_ALLOCATION_CONTENDED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.MEMORY_ALLOCATION_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.MEMORY_CHUNK_BYTES;
 import static org.apache.phoenix.monitoring.MetricType.MEMORY_WAIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.MUTATION_BATCH_FAILED_SIZE;
@@ -63,14 +67,18 @@ import static org.apache.phoenix.monitoring.MetricType.NUM_PARALLEL_SCANS;
 import static org.apache.phoenix.monitoring.MetricType.OPEN_INTERNAL_PHOENIX_CONNECTIONS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.OPEN_PHOENIX_CONNECTIONS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PAGED_ROWS_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_HIT_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.PARSED_STATEMENT_CACHE_MISS_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_ATTEMPTED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.PHOENIX_CONNECTIONS_THROTTLED_COUNTER;
+import static org.apache.phoenix.monitoring.MetricType.POINT_LOOKUP_TASK_QUEUE_WAIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_FAILED_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_SERVICES_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_TIME;
 import static org.apache.phoenix.monitoring.MetricType.QUERY_TIMEOUT_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.SCAN_BYTES;
+import static org.apache.phoenix.monitoring.MetricType.SCAN_TASK_QUEUE_WAIT_TIME;
 import static org.apache.phoenix.monitoring.MetricType.SELECT_SQL_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_COUNTER;
 import static org.apache.phoenix.monitoring.MetricType.SPOOL_FILE_SIZE;
@@ -113,7 +121,13 @@ public enum GlobalClientMetrics {
   GLOBAL_SPOOL_FILE_SIZE(SPOOL_FILE_SIZE),
   GLOBAL_MEMORY_CHUNK_BYTES(MEMORY_CHUNK_BYTES),
   GLOBAL_MEMORY_WAIT_TIME(MEMORY_WAIT_TIME),
+  GLOBAL_MEMORY_ALLOCATION_CONTENDED_COUNTER(MEMORY_ALLOCATION_CONTENDED_COUNTER),
+  GLOBAL_MEMORY_ALLOCATION_FAILED_COUNTER(MEMORY_ALLOCATION_FAILED_COUNTER),
   GLOBAL_TASK_QUEUE_WAIT_TIME(TASK_QUEUE_WAIT_TIME),
+  GLOBAL_POINT_LOOKUP_TASK_QUEUE_WAIT_TIME(POINT_LOOKUP_TASK_QUEUE_WAIT_TIME),
+  GLOBAL_SCAN_TASK_QUEUE_WAIT_TIME(SCAN_TASK_QUEUE_WAIT_TIME),
+  GLOBAL_HEDGED_SCANS_COUNTER(HEDGED_SCANS_COUNTER),
+  GLOBAL_HEDGED_SCANS_WON_COUNTER(HEDGED_SCANS_WON_COUNTER),
   GLOBAL_TASK_END_TO_END_TIME(TASK_END_TO_END_TIME),
   GLOBAL_TASK_EXECUTION_TIME(TASK_EXECUTION_TIME),
   GLOBAL_MUTATION_SQL_COUNTER(MUTATION_SQL_COUNTER),
@@ -167,7 +181,9 @@ public enum GlobalClientMetrics {
   GLOBAL_CLIENT_METADATA_CACHE_REMOVAL_COUNTER(CLIENT_METADATA_CACHE_REMOVAL_COUNTER),
   GLOBAL_CLIENT_METADATA_CACHE_ADD_COUNTER(CLIENT_METADATA_CACHE_ADD_COUNTER),
   GLOBAL_CLIENT_METADATA_CACHE_ESTIMATED_USED_SIZE(CLIENT_METADATA_CACHE_ESTIMATED_USED_SIZE),
-  GLOBAL_CLIENT_STALE_METADATA_CACHE_EXCEPTION_COUNTER(STALE_METADATA_CACHE_EXCEPTION_COUNTER);
+  GLOBAL_CLIENT_STALE_METADATA_CACHE_EXCEPTION_COUNTER(STALE_METADATA_CACHE_EXCEPTION_COUNTER),
+  GLOBAL_CLIENT_PARSED_STATEMENT_CACHE_HIT_COUNTER(PARSED_STATEMENT_CACHE_HIT_COUNTER),
+  GLOBAL_CLIENT_PARSED_STATEMENT_CACHE_MISS_COUNTER(PARSED_STATEMENT_CACHE_MISS_COUNTER);
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GlobalClientMetrics.class);
   private static final boolean isGlobalMetricsEnabled =
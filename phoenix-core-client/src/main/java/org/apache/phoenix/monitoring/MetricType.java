@@ -183,6 +183,20 @@ public enum MetricType {
     LogLevel.DEBUG, PLong.INSTANCE),
   TASK_END_TO_END_TIME("tee", "Time in milliseconds spent by tasks from creation to completion",
     LogLevel.DEBUG, PLong.INSTANCE),
+  POINT_LOOKUP_TASK_QUEUE_WAIT_TIME("pqw",
+    "Time in milliseconds point lookup tasks had to wait in the queue of the thread pool executor",
+    LogLevel.OFF, PLong.INSTANCE),
+  SCAN_TASK_QUEUE_WAIT_TIME("sqw",
+    "Time in milliseconds scan tasks other than point lookups had to wait in the queue of the "
+      + "thread pool executor",
+    LogLevel.OFF, PLong.INSTANCE),
+  HEDGED_SCANS_COUNTER("hsc",
+    "Number of scans duplicated because their first batch took longer than the usual latency of "
+      + "their region server",
+    LogLevel.OFF, PLong.INSTANCE),
+  HEDGED_SCANS_WON_COUNTER("hsw",
+    "Number of duplicated scans whose first batch returned before the one of the original scan",
+    LogLevel.OFF, PLong.INSTANCE),
   TASK_EXECUTION_TIME("tx", "Time in milliseconds tasks took to execute", LogLevel.DEBUG,
     PLong.INSTANCE),
   TASK_EXECUTED_COUNTER("te", "Counter for number of tasks submitted to the thread pool executor",
@@ -199,6 +213,12 @@ public enum MetricType {
   MEMORY_WAIT_TIME("mw",
     "Number of milliseconds threads needed to wait for memory to be allocated through memory manager",
     LogLevel.DEBUG, PLong.INSTANCE),
+  MEMORY_ALLOCATION_CONTENDED_COUNTER("mac",
+    "Number of times an allocation of the memory manager was retried because of a concurrent one",
+    LogLevel.OFF, PLong.INSTANCE),
+  MEMORY_ALLOCATION_FAILED_COUNTER("maf",
+    "Number of allocations that failed because the memory manager was out of memory", LogLevel.OFF,
+    PLong.INSTANCE),
   CACHE_REFRESH_SPLITS_COUNTER("cr", "Number of times cache was refreshed because of splits",
     LogLevel.DEBUG, PLong.INSTANCE),
   WALL_CLOCK_TIME_MS("tq", "Wall clock time elapsed for the overall query execution", LogLevel.INFO,
@@ -244,6 +264,10 @@ public enum MetricType {
     LogLevel.DEBUG, PLong.INSTANCE),
   STALE_METADATA_CACHE_EXCEPTION_COUNTER("smce",
     "Number of StaleMetadataCacheException encountered.", LogLevel.DEBUG, PLong.INSTANCE),
+  PARSED_STATEMENT_CACHE_HIT_COUNTER("psch",
+    "Number of cache hits for the CQSI parsed statement cache.", LogLevel.DEBUG, PLong.INSTANCE),
+  PARSED_STATEMENT_CACHE_MISS_COUNTER("pscm",
+    "Number of cache misses for the CQSI parsed statement cache.", LogLevel.DEBUG, PLong.INSTANCE),
 
   // hbase metrics
   COUNT_RPC_CALLS("rp", "Number of RPC calls", LogLevel.DEBUG, PLong.INSTANCE),
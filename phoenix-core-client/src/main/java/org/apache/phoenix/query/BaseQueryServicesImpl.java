@@ -19,24 +19,38 @@ package org.apache.phoenix.query;
 
 import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.phoenix.job.JobManager;
+import org.apache.phoenix.job.VirtualThreads;
 import org.apache.phoenix.memory.GlobalMemoryManager;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.optimize.QueryOptimizer;
 import org.apache.phoenix.util.ReadOnlyProps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Base class for QueryService implementors.
  * @since 0.1
  */
 public abstract class BaseQueryServicesImpl implements QueryServices {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BaseQueryServicesImpl.class);
+
   private final ThreadPoolExecutor executor;
   private final MemoryManager memoryManager;
   private final ReadOnlyProps props;
   private final QueryOptimizer queryOptimizer;
 
   public BaseQueryServicesImpl(ReadOnlyProps defaultProps, QueryServicesOptions options) {
+    boolean useVirtualThreads = options.isVirtualThreadsEnabled();
+    if (useVirtualThreads && !VirtualThreads.isSupported()) {
+      LOGGER.warn("Virtual threads are enabled but not supported by this JVM, using a pool of "
+        + options.getThreadPoolSize() + " platform threads instead");
+      useVirtualThreads = false;
+    }
     this.executor = JobManager.createThreadPoolExec(options.getKeepAliveMs(),
-      options.getThreadPoolSize(), options.getQueueSize(), options.isGlobalMetricsEnabled());
+      useVirtualThreads ? options.getVirtualThreadsMaxConcurrency() : options.getThreadPoolSize(),
+      options.getQueueSize(), options.isGlobalMetricsEnabled(),
+      options.isFairSchedulingEnabled() ? options.getFairSchedulingTenantWeights() : null,
+      useVirtualThreads);
     this.memoryManager =
       new GlobalMemoryManager(Runtime.getRuntime().maxMemory() * options.getMaxMemoryPerc() / 100);
     this.props = options.getProps(defaultProps);
@@ -39,6 +39,7 @@ import org.apache.phoenix.coprocessorclient.MetaDataProtocol.MetaDataMutationRes
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
+import org.apache.phoenix.jdbc.ParsedStatementCache;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.ConnectionLimiter;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
@@ -306,6 +307,11 @@ public interface ConnectionQueryServices extends QueryServices, MetaDataMutated
 
   PMetaData getMetaDataCache();
 
+  /**
+   * Get the cache of parsed statements shared by all connections of this CQS.
+   */
+  ParsedStatementCache getParsedStatementCache();
+
   public default ConnectionLimiter getConnectionLimiter() {
     throw new UnsupportedOperationException();
   }
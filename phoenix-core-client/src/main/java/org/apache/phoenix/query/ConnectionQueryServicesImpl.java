@@ -247,6 +247,7 @@ import org.apache.phoenix.iterate.TableResultIterator;
 import org.apache.phoenix.iterate.TableResultIterator.RenewLeaseStatus;
 import org.apache.phoenix.jdbc.AbstractRPCConnectionInfo;
 import org.apache.phoenix.jdbc.ConnectionInfo;
+import org.apache.phoenix.jdbc.ParsedStatementCache;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.jdbc.RPCConnectionInfo;
@@ -364,6 +365,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
   private final User user;
   private final ConcurrentHashMap<ImmutableBytesWritable, ConnectionQueryServices> childServices;
   private final GuidePostsCacheWrapper tableStatsCache;
+  private final ParsedStatementCache parsedStatementCache;
 
   // Cache the latest meta data here for future connections
   // writes guarded by "latestMetaDataLock"
@@ -563,6 +565,9 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
     this.userName = connectionInfo.getPrincipal();
     this.user = connectionInfo.getUser();
     this.latestMetaData = newEmptyMetaData();
+    this.parsedStatementCache = new ParsedStatementCache(
+      props.getLong(QueryServices.MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE_ATTRIB,
+        QueryServicesOptions.DEFAULT_MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE));
     // TODO: should we track connection wide memory usage or just org-wide usage?
     // If connection-wide, create a MemoryManager here, otherwise just use the one from the delegate
     this.childServices = new ConcurrentHashMap<ImmutableBytesWritable, ConnectionQueryServices>(
@@ -1088,6 +1093,11 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
     return latestMetaData;
   }
 
+  @Override
+  public ParsedStatementCache getParsedStatementCache() {
+    return parsedStatementCache;
+  }
+
   @Override
   public int getConnectionCount(boolean isInternal) {
     if (isInternal) {
@@ -5782,6 +5792,7 @@ public class ConnectionQueryServicesImpl extends DelegateQueryServices
       latestMetaData = newEmptyMetaData();
     }
     tableStatsCache.invalidateAll();
+    parsedStatementCache.invalidateAll();
     long startTime = 0L;
     long systemCatalogRpcTime;
     Map<byte[], Long> results;
@@ -57,6 +57,7 @@ import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.GenericKeyValueBuilder;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
 import org.apache.phoenix.jdbc.ConnectionInfo;
+import org.apache.phoenix.jdbc.ParsedStatementCache;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
@@ -120,6 +121,7 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
   private volatile SQLException initializationException;
   private final Map<String, List<HRegionLocation>> tableSplits = Maps.newHashMap();
   private final GuidePostsCacheWrapper guidePostsCache;
+  private final ParsedStatementCache parsedStatementCache;
   private final Configuration config;
 
   private User user;
@@ -157,6 +159,9 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
     this.guidePostsCache =
       GUIDE_POSTS_CACHE_PROVIDER.getGuidePostsCache(props.get(GUIDE_POSTS_CACHE_FACTORY_CLASS,
         QueryServicesOptions.DEFAULT_GUIDE_POSTS_CACHE_FACTORY_CLASS), null, config);
+    this.parsedStatementCache = new ParsedStatementCache(
+      props.getLong(QueryServices.MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE_ATTRIB,
+        QueryServicesOptions.DEFAULT_MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE));
   }
 
   private PMetaData newEmptyMetaData() {
@@ -722,6 +727,7 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
 
   @Override
   public long clearCache() throws SQLException {
+    parsedStatementCache.invalidateAll();
     return 0;
   }
 
@@ -889,6 +895,11 @@ public class ConnectionlessQueryServicesImpl extends DelegateQueryServices
     return metaData;
   }
 
+  @Override
+  public ParsedStatementCache getParsedStatementCache() {
+    return parsedStatementCache;
+  }
+
   @Override
   public int getConnectionCount(boolean isInternal) {
     return 0;
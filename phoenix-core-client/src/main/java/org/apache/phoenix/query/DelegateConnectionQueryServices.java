@@ -38,6 +38,7 @@ import org.apache.phoenix.coprocessorclient.InvalidateServerMetadataCacheRequest
 import org.apache.phoenix.coprocessorclient.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
+import org.apache.phoenix.jdbc.ParsedStatementCache;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.log.ConnectionLimiter;
 import org.apache.phoenix.log.QueryLoggerDisruptor;
@@ -455,6 +456,11 @@ public class DelegateConnectionQueryServices extends DelegateQueryServices
     return getDelegate().getMetaDataCache();
   }
 
+  @Override
+  public ParsedStatementCache getParsedStatementCache() {
+    return getDelegate().getParsedStatementCache();
+  }
+
   public ConnectionLimiter getConnectionLimiter() {
     return getDelegate().getConnectionLimiter();
   }
@@ -67,7 +67,7 @@ public class GuidePostsCacheImpl implements GuidePostsCache {
         }
       })
       // Log removals at TRACE for debugging
-      .removalListener(new PhoenixStatsCacheRemovalListener())
+      .removalListener(new PhoenixStatsCacheRemovalListener(cacheLoader))
       // Automatically load the cache when entries need to be refreshed
       .build(cacheLoader);
   }
@@ -118,12 +118,26 @@ public class GuidePostsCacheImpl implements GuidePostsCache {
   }
 
   /**
-   * A {@link RemovalListener} implementation to track evictions from the table stats cache.
+   * A {@link RemovalListener} implementation to track evictions from the table stats cache, which
+   * also tells the stats loader about the removed entries.
    */
   static class PhoenixStatsCacheRemovalListener
     implements RemovalListener<GuidePostsKey, GuidePostsInfo> {
+    private final PhoenixStatsCacheLoader cacheLoader;
+
+    PhoenixStatsCacheRemovalListener() {
+      this(null);
+    }
+
+    PhoenixStatsCacheRemovalListener(PhoenixStatsCacheLoader cacheLoader) {
+      this.cacheLoader = cacheLoader;
+    }
+
     @Override
     public void onRemoval(RemovalNotification<GuidePostsKey, GuidePostsInfo> notification) {
+      if (cacheLoader != null && notification.getCause() != RemovalCause.REPLACED) {
+        cacheLoader.statsRemoved(notification.getKey());
+      }
       if (logger.isTraceEnabled()) {
         final RemovalCause cause = notification.getCause();
         if (wasEvicted(cause)) {
@@ -65,6 +65,13 @@ public class PhoenixStatsCacheLoader extends CacheLoader<GuidePostsKey, GuidePos
     return statsLoader.loadStats(statsKey);
   }
 
+  /**
+   * Notifies the stats loader that the stats of the given key were removed from the cache.
+   */
+  public void statsRemoved(GuidePostsKey statsKey) {
+    statsLoader.statsRemoved(statsKey);
+  }
+
   @Override
   public ListenableFuture<GuidePostsInfo> reload(final GuidePostsKey key,
     GuidePostsInfo prevGuidepostInfo) {
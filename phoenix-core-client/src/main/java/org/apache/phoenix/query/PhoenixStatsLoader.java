@@ -48,4 +48,12 @@ public interface PhoenixStatsLoader {
    */
   GuidePostsInfo loadStats(GuidePostsKey statsKey, GuidePostsInfo prevGuidepostInfo)
     throws Exception;
+
+  /**
+   * Called by client stats cache when the stats of a key are removed from the cache, other than by
+   * being replaced with reloaded stats
+   * @param statsKey the stats key whose stats were removed
+   */
+  default void statsRemoved(GuidePostsKey statsKey) {
+  }
 }
@@ -36,6 +36,31 @@ public interface QueryServices extends SQLCloseable {
   public static final String KEEP_ALIVE_MS_ATTRIB = "phoenix.query.keepAliveMs";
   public static final String THREAD_POOL_SIZE_ATTRIB = "phoenix.query.threadPoolSize";
   public static final String QUEUE_SIZE_ATTRIB = "phoenix.query.queueSize";
+  // Whether the queued scans are shared between tenants by weighted fair queueing, point lookups
+  // and earlier deadlines first, instead of round robin between queries
+  public static final String FAIR_SCHEDULING_ENABLED_ATTRIB =
+    "phoenix.query.fairScheduling.enabled";
+  // Comma separated tenant=weight pairs giving the relative shares of the thread pool of the
+  // tenants under fair scheduling, the global tenant being the empty tenant id
+  public static final String FAIR_SCHEDULING_TENANT_WEIGHTS_ATTRIB =
+    "phoenix.query.fairScheduling.tenantWeights";
+  // Whether the scans run in virtual threads when the JVM supports them (Java 21+), so that scans
+  // blocked on RPCs do not pin platform threads
+  public static final String VIRTUAL_THREADS_ENABLED_ATTRIB =
+    "phoenix.query.virtualThreads.enabled";
+  // Maximum number of scans running at once in virtual threads, which replaces the thread pool size
+  // when virtual threads are used
+  public static final String VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB =
+    "phoenix.query.virtualThreads.maxConcurrency";
+  // Whether the scan of a chunk of a query is duplicated when its first batch takes much longer
+  // than the scans of the same region server usually do, the query using whichever returns first
+  public static final String HEDGED_SCANS_ENABLED_ATTRIB = "phoenix.query.hedgedScans.enabled";
+  // Multiple of the usual latency of the scans of a region server after which a scan is duplicated
+  public static final String HEDGED_SCANS_LATENCY_MULTIPLIER_ATTRIB =
+    "phoenix.query.hedgedScans.latencyMultiplier";
+  // Minimum time in milliseconds a scan runs before it is duplicated
+  public static final String HEDGED_SCANS_MIN_DELAY_MS_ATTRIB =
+    "phoenix.query.hedgedScans.minDelayMs";
   public static final String THREAD_TIMEOUT_MS_ATTRIB = "phoenix.query.timeoutMs";
   public static final String SERVER_SPOOL_THRESHOLD_BYTES_ATTRIB =
     "phoenix.query.server.spoolThresholdBytes";
@@ -43,6 +68,14 @@ public interface QueryServices extends SQLCloseable {
     "phoenix.query.client.spoolThresholdBytes";
   public static final String CLIENT_ORDERBY_SPOOLING_ENABLED_ATTRIB =
     "phoenix.query.client.orderBy.spooling.enabled";
+  // Whether the client sorts the runs of spooled results of an ORDER BY without LIMIT on the query
+  // thread pool, merging them once they are all sorted
+  public static final String CLIENT_ORDERBY_PARALLEL_SORT_ENABLED_ATTRIB =
+    "phoenix.query.client.orderBy.parallelSort.enabled";
+  // Maximum number of runs of spooled results a client ORDER BY sorts at a time, each one holding
+  // up to the client spool threshold in memory
+  public static final String CLIENT_ORDERBY_PARALLEL_SORT_MAX_RUNS_ATTRIB =
+    "phoenix.query.client.orderBy.parallelSort.maxRuns";
   public static final String CLIENT_JOIN_SPOOLING_ENABLED_ATTRIB =
     "phoenix.query.client.join.spooling.enabled";
   public static final String SERVER_ORDERBY_SPOOLING_ENABLED_ATTRIB =
@@ -53,6 +86,12 @@ public interface QueryServices extends SQLCloseable {
   public static final String HBASE_CLIENT_PRINCIPAL = "hbase.myclient.principal";
   String QUERY_SERVICES_NAME = "phoenix.query.services.name";
   public static final String SPOOL_DIRECTORY = "phoenix.spool.directory";
+  // Whether spooled results are written in batches of rows, which are read back a batch at a time
+  // once spooled to disk
+  public static final String SPOOL_BATCHES_ENABLED_ATTRIB = "phoenix.spool.batches.enabled";
+  // Whether the batches of spooled results are compressed
+  public static final String SPOOL_BATCHES_COMPRESSION_ENABLED_ATTRIB =
+    "phoenix.spool.batches.compression.enabled";
   public static final String AUTO_COMMIT_ATTRIB = "phoenix.connection.autoCommit";
   // consistency configuration setting
   public static final String CONSISTENCY_ATTRIB = "phoenix.connection.consistency";
@@ -85,6 +124,26 @@ public interface QueryServices extends SQLCloseable {
   public static final String MAX_TENANT_MEMORY_PERC_ATTRIB =
     "phoenix.query.maxTenantMemoryPercentage";
   public static final String MAX_SERVER_CACHE_SIZE_ATTRIB = "phoenix.query.maxServerCacheBytes";
+  // Whether hash join caches are kept off heap on the region servers. Region servers must be on a
+  // version that ships OffHeapHashCacheFactory.
+  public static final String HASH_CACHE_OFF_HEAP_ENABLED_ATTRIB =
+    "phoenix.query.hashCache.offHeap.enabled";
+  // Whether each region server is only sent the rows of a hash join cache that the regions it hosts
+  // can join with, when joining on the leading row key column. Region servers must be on a version
+  // that ships PartitionedHashCacheFactory.
+  public static final String HASH_CACHE_PARTITIONED_ENABLED_ATTRIB =
+    "phoenix.query.hashCache.partitioned.enabled";
+  // Whether the probe side scan of a hash join drops the rows whose join key is not in a Bloom
+  // filter of the build side keys, for inner and semi joins. Region servers must be on a version
+  // that ships JoinKeyBloomFilterFunction.
+  public static final String HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB =
+    "phoenix.query.hashJoin.bloomFilter.enabled";
+  // Maximum number of distinct build side keys a hash join Bloom filter is built for
+  public static final String HASH_JOIN_BLOOM_FILTER_MAX_KEYS_ATTRIB =
+    "phoenix.query.hashJoin.bloomFilter.maxKeys";
+  // False positive probability of a hash join Bloom filter
+  public static final String HASH_JOIN_BLOOM_FILTER_FPP_ATTRIB =
+    "phoenix.query.hashJoin.bloomFilter.fpp";
   public static final String APPLY_TIME_ZONE_DISPLACMENT_ATTRIB =
     "phoenix.query.applyTimeZoneDisplacement";
   public static final String DATE_FORMAT_TIMEZONE_ATTRIB = "phoenix.query.dateFormatTimeZone";
@@ -101,6 +160,10 @@ public interface QueryServices extends SQLCloseable {
 
   public static final String MUTATE_BATCH_SIZE_ATTRIB = "phoenix.mutate.batchSize";
   public static final String MUTATE_BATCH_SIZE_BYTES_ATTRIB = "phoenix.mutate.batchSizeBytes";
+  // Whether an auto committed UPSERT SELECT run on the client sends each batch of rows on the query
+  // thread pool while it reads the rows of the next batch. One batch is in flight at a time.
+  public static final String MUTATE_PIPELINED_SEND_ENABLED_ATTRIB =
+    "phoenix.mutate.pipelinedSend.enabled";
   public static final String MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB =
     "phoenix.coprocessor.maxServerCacheTimeToLiveMs";
   public static final String MAX_SERVER_CACHE_PERSISTENCE_TIME_TO_LIVE_MS_ATTRIB =
@@ -119,10 +182,24 @@ public interface QueryServices extends SQLCloseable {
   public static final String GROUPBY_SPILLABLE_ATTRIB = "phoenix.groupby.spillable";
   public static final String GROUPBY_SPILL_FILES_ATTRIB = "phoenix.groupby.spillFiles";
   public static final String GROUPBY_MAX_CACHE_SIZE_ATTRIB = "phoenix.groupby.maxCacheSize";
+  // Whether the spillable group by cache keeps the state of fixed width aggregators in primitive
+  // arrays indexed by group instead of in aggregator instances per group
+  public static final String GROUPBY_PRIMITIVE_CACHE_ENABLED_ATTRIB =
+    "phoenix.groupby.primitiveCache.enabled";
+  // Number of rows an unordered group by aggregates into its cache before checking whether the
+  // cache reduces them enough to be worth keeping. Zero or less never stops caching.
+  public static final String GROUPBY_BYPASS_MIN_ROWS_ATTRIB = "phoenix.groupby.bypass.minRows";
+  // Ratio of distinct groups to aggregated rows at or above which an unordered group by stops
+  // caching groups and streams the aggregate of each row to the client instead
+  public static final String GROUPBY_BYPASS_DISTINCT_RATIO_ATTRIB =
+    "phoenix.groupby.bypass.distinctRatio";
   public static final String GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB =
     "phoenix.groupby.estimatedDistinctValues";
   public static final String AGGREGATE_CHUNK_SIZE_INCREASE_ATTRIB =
     "phoenix.aggregate.chunk_size_increase";
+  // Number of rows whose aggregated values are decoded into primitive vectors and aggregated
+  // together on the server side. Zero or less aggregates a row at a time.
+  public static final String AGGREGATE_BATCH_SIZE_ATTRIB = "phoenix.aggregate.batchSize";
 
   public static final String CALL_QUEUE_PRODUCER_ATTRIB_NAME = "CALL_QUEUE_PRODUCER";
 
@@ -147,6 +224,10 @@ public interface QueryServices extends SQLCloseable {
     "phoenix.coprocessor.maxMetaDataCacheSize";
   public static final String MAX_CLIENT_METADATA_CACHE_SIZE_ATTRIB =
     "phoenix.client.maxMetaDataCacheSize";
+  // Maximum number of parsed SELECT/UPSERT/DELETE statements cached per ConnectionQueryServices.
+  // A value of 0 disables the cache.
+  public static final String MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE_ATTRIB =
+    "phoenix.client.maxParsedStatementCacheSize";
   public static final String HA_GROUP_NAME_ATTRIB = "phoenix.ha.group";
   public static final String AUTO_UPGRADE_WHITELIST_ATTRIB = "phoenix.client.autoUpgradeWhiteList";
   // Mainly for testing to force spilling
@@ -170,6 +251,14 @@ public interface QueryServices extends SQLCloseable {
     "phoenix.index.rebuild.rpc.retries.counter";
   public static final String INDEX_REBUILD_RPC_RETRY_PAUSE_TIME =
     "phoenix.index.rebuild.rpc.retry.pause";
+  // Number of data table scans run concurrently by IndexTool when it rebuilds an index without a
+  // MapReduce job
+  public static final String INDEX_REBUILD_STANDALONE_THREADS_ATTRIB =
+    "phoenix.index.rebuild.standalone.threads";
+  // Max number of data rows rebuilt or verified per second by IndexTool when it rebuilds an index
+  // without a MapReduce job, 0 for no limit
+  public static final String INDEX_REBUILD_STANDALONE_MAX_ROWS_PER_SEC_ATTRIB =
+    "phoenix.index.rebuild.standalone.max.rows.per.sec";
 
   // Time interval to check if there is an index needs to be rebuild
   public static final String INDEX_FAILURE_HANDLING_REBUILD_INTERVAL_ATTRIB =
@@ -249,6 +338,13 @@ public interface QueryServices extends SQLCloseable {
   public static final String STATS_MAX_CACHE_SIZE = "phoenix.stats.cache.maxSize";
   // The size of the thread pool used for refreshing cached table stats in stats client cache
   public static final String STATS_CACHE_THREAD_POOL_SIZE = "phoenix.stats.cache.threadPoolSize";
+  // Whether refreshing cached table stats only reads the guideposts written or deleted since the
+  // latest cached guidepost, which needs stats to be written with the current time
+  public static final String STATS_CACHE_INCREMENTAL_REFRESH_ENABLED =
+    "phoenix.stats.cache.incrementalRefresh.enabled";
+  // Time in milliseconds after which cached table stats refreshed incrementally are read entirely
+  public static final String STATS_CACHE_FULL_REFRESH_INTERVAL_MS =
+    "phoenix.stats.cache.fullRefreshIntervalMs";
 
   public static final String LOG_SALT_BUCKETS_ATTRIB = "phoenix.log.saltBuckets";
   public static final String SEQUENCE_SALT_BUCKETS_ATTRIB = "phoenix.sequence.saltBuckets";
@@ -412,6 +508,25 @@ public interface QueryServices extends SQLCloseable {
   // The minimum age of an unverified global index row to be eligible for deletion
   public static final String GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS_ATTRIB =
     "phoenix.global.index.row.age.threshold.to.delete.ms";
+  // Maximum number of unverified global index rows repaired together by a batched read repair, 0
+  // repairing them one at a time
+  public static final String GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB =
+    "phoenix.global.index.repair.batch.size";
+  // Number of index rows looked ahead for unverified rows to repair in the same batch
+  public static final String GLOBAL_INDEX_REPAIR_BATCH_WINDOW_ROWS_ATTRIB =
+    "phoenix.global.index.repair.batch.window.rows";
+  // Maximum number of index rows per second repaired in batches per index region, beyond which
+  // they are repaired one at a time, 0 for no limit
+  public static final String GLOBAL_INDEX_REPAIR_BATCH_MAX_ROWS_PER_SEC_ATTRIB =
+    "phoenix.global.index.repair.batch.max.rows.per.sec";
+  // Maximum total size of the serialized index maintainers whose deserialized form region servers
+  // keep to share across scans and mutation batches carrying the same ones, 0 disabling the cache
+  public static final String INDEX_MAINTAINER_CACHE_MAX_BYTES_ATTRIB =
+    "phoenix.regionserver.index.maintainer.cache.maxBytes";
+  // Maximum heap size of the latest data row states that IndexRegionObserver keeps per region to
+  // skip reading recently written rows again, 0 disabling the cache
+  public static final String INDEX_ROW_STATE_CACHE_MAX_BYTES_ATTRIB =
+    "phoenix.index.region.observer.rowStateCache.maxBytes";
   // Enable the IndexRegionObserver coprocessor
   public static final String INDEX_REGION_OBSERVER_ENABLED_ATTRIB =
     "phoenix.index.region.observer.enabled";
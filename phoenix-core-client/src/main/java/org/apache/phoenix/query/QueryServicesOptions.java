@@ -55,6 +55,8 @@ import static org.apache.phoenix.query.QueryServices.DROP_METADATA_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.EXPLAIN_CHUNK_COUNT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.EXPLAIN_ROW_COUNT_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.EXTRA_JDBC_ARGUMENTS_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.FAIR_SCHEDULING_ENABLED_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.FAIR_SCHEDULING_TENANT_WEIGHTS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.FORCE_ROW_KEY_ORDER_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GLOBAL_METRICS_ENABLED;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB;
@@ -125,8 +127,12 @@ import static org.apache.phoenix.query.QueryServices.UPLOAD_BINARY_DATA_TYPE_ENC
 import static org.apache.phoenix.query.QueryServices.USE_BYTE_BASED_REGEX_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.USE_INDEXES_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.USE_STATS_FOR_PARALLELIZATION;
+import static org.apache.phoenix.query.QueryServices.VIRTUAL_THREADS_ENABLED_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.WAL_EDIT_CODEC_ATTRIB;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Coprocessor;
@@ -155,14 +161,24 @@ public class QueryServicesOptions {
   public static final int DEFAULT_THREAD_POOL_SIZE = 128;
   public static final int DEFAULT_QUEUE_SIZE = 5000;
   public static final int UNLIMITED_QUEUE_SIZE = -1;
+  public static final boolean DEFAULT_FAIR_SCHEDULING_ENABLED = false;
+  public static final boolean DEFAULT_VIRTUAL_THREADS_ENABLED = false;
+  public static final int DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY = 1024;
+  public static final boolean DEFAULT_HEDGED_SCANS_ENABLED = false;
+  public static final float DEFAULT_HEDGED_SCANS_LATENCY_MULTIPLIER = 3f;
+  public static final long DEFAULT_HEDGED_SCANS_MIN_DELAY_MS = 100;
   public static final int DEFAULT_THREAD_TIMEOUT_MS = 600000; // 10min
   public static final int DEFAULT_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
   public static final int DEFAULT_SERVER_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
   public static final int DEFAULT_CLIENT_SPOOL_THRESHOLD_BYTES = 1024 * 1024 * 20; // 20m
   public static final boolean DEFAULT_CLIENT_ORDERBY_SPOOLING_ENABLED = true;
   public static final boolean DEFAULT_CLIENT_JOIN_SPOOLING_ENABLED = true;
+  public static final boolean DEFAULT_CLIENT_ORDERBY_PARALLEL_SORT_ENABLED = false;
+  public static final int DEFAULT_CLIENT_ORDERBY_PARALLEL_SORT_MAX_RUNS = 2;
   public static final boolean DEFAULT_SERVER_ORDERBY_SPOOLING_ENABLED = true;
   public static final String DEFAULT_SPOOL_DIRECTORY = System.getProperty("java.io.tmpdir");
+  public static final boolean DEFAULT_SPOOL_BATCHES_ENABLED = false;
+  public static final boolean DEFAULT_SPOOL_BATCHES_COMPRESSION_ENABLED = false;
   public static final int DEFAULT_MAX_MEMORY_PERC = 15; // 15% of heap
   public static final int DEFAULT_MAX_TENANT_MEMORY_PERC = 100;
   public static final long DEFAULT_MAX_SERVER_CACHE_SIZE = 1024 * 1024 * 100; // 100 Mb
@@ -191,6 +207,7 @@ public class QueryServicesOptions {
                                                            // DELETE
   // Batch size in bytes for UPSERT, SELECT and DELETE. By default, 2MB
   public final static long DEFAULT_MUTATE_BATCH_SIZE_BYTES = 2097152;
+  public final static boolean DEFAULT_MUTATE_PIPELINED_SEND_ENABLED = false;
   // The only downside of it being out-of-sync is that the parallelization of the scan won't be as
   // balanced as it could be.
   public static final int DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS = 30000; // 30 sec (with no
@@ -201,6 +218,7 @@ public class QueryServicesOptions {
   public static final int DEFAULT_MAX_INTRA_REGION_PARALLELIZATION = DEFAULT_MAX_QUERY_CONCURRENCY;
   public static final int DEFAULT_DISTINCT_VALUE_COMPRESS_THRESHOLD = 1024 * 1024 * 1; // 1 Mb
   public static final int DEFAULT_AGGREGATE_CHUNK_SIZE_INCREASE = 1024 * 1024 * 1; // 1 Mb
+  public static final int DEFAULT_AGGREGATE_BATCH_SIZE = 0;
   public static final int DEFAULT_INDEX_MUTATE_BATCH_SIZE_THRESHOLD = 3;
   public static final long DEFAULT_MAX_SPOOL_TO_DISK_BYTES = 1024000000;
   // Only the first chunked batches are fetched in parallel, so this default
@@ -217,6 +235,9 @@ public class QueryServicesOptions {
   //
   // Enable / disable spillable group by
   public static final boolean DEFAULT_GROUPBY_SPILLABLE = true;
+  public static final boolean DEFAULT_GROUPBY_PRIMITIVE_CACHE_ENABLED = false;
+  public static final long DEFAULT_GROUPBY_BYPASS_MIN_ROWS = 0;
+  public static final float DEFAULT_GROUPBY_BYPASS_DISTINCT_RATIO = 0.9f;
   // Number of spill files / partitions the keys are distributed to
   // Each spill file fits 2GB of data
   public static final int DEFAULT_GROUPBY_SPILL_FILES = 2;
@@ -229,6 +250,12 @@ public class QueryServicesOptions {
                                                                                            // mins
   public static final long DEFAULT_MAX_SERVER_METADATA_CACHE_SIZE = 1024L * 1024L * 20L; // 20 Mb
   public static final long DEFAULT_MAX_CLIENT_METADATA_CACHE_SIZE = 1024L * 1024L * 10L; // 10 Mb
+  public static final long DEFAULT_MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE = 1000;
+  public static final boolean DEFAULT_HASH_CACHE_OFF_HEAP_ENABLED = false;
+  public static final boolean DEFAULT_HASH_CACHE_PARTITIONED_ENABLED = false;
+  public static final boolean DEFAULT_HASH_JOIN_BLOOM_FILTER_ENABLED = false;
+  public static final int DEFAULT_HASH_JOIN_BLOOM_FILTER_MAX_KEYS = 100000;
+  public static final float DEFAULT_HASH_JOIN_BLOOM_FILTER_FPP = 0.01f;
   public static final int DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES = 1000;
   public static final int DEFAULT_CLOCK_SKEW_INTERVAL = 2000;
   public static final boolean DEFAULT_INDEX_FAILURE_HANDLING_REBUILD = true; // auto rebuild on
@@ -247,6 +274,8 @@ public class QueryServicesOptions {
   public static final long DEFAULT_INDEX_REBUILD_CLIENT_SCANNER_TIMEOUT = 30000 * 60; // 30 mins
   public static final int DEFAULT_INDEX_REBUILD_RPC_RETRIES_COUNTER = 5; // 5 total tries at rpc
                                                                          // level
+  public static final int DEFAULT_INDEX_REBUILD_STANDALONE_THREADS = 8;
+  public static final long DEFAULT_INDEX_REBUILD_STANDALONE_MAX_ROWS_PER_SEC = 0;
   public static final int DEFAULT_INDEX_REBUILD_DISABLE_TIMESTAMP_THRESHOLD = 60000 * 60 * 24; // 24
                                                                                                // hrs
   public static final long DEFAULT_INDEX_PENDING_DISABLE_THRESHOLD = 30000; // 30 secs
@@ -295,6 +324,8 @@ public class QueryServicesOptions {
   // Allow stats collection to be initiated by client multiple times immediately
   public static final int DEFAULT_MIN_STATS_UPDATE_FREQ_MS = 0;
   public static final int DEFAULT_STATS_CACHE_THREAD_POOL_SIZE = 4;
+  public static final boolean DEFAULT_STATS_CACHE_INCREMENTAL_REFRESH_ENABLED = false;
+  public static final long DEFAULT_STATS_CACHE_FULL_REFRESH_INTERVAL_MS = 4 * 60 * 60000; // 4h
 
   public static final boolean DEFAULT_USE_REVERSE_SCAN = true;
 
@@ -423,6 +454,11 @@ public class QueryServicesOptions {
 
   public static final long DEFAULT_GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS =
     7 * 24 * 60 * 60 * 1000; /* 7 days */
+  public static final int DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_SIZE = 0;
+  public static final int DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_WINDOW_ROWS = 1000;
+  public static final long DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_MAX_ROWS_PER_SEC = 0;
+  public static final long DEFAULT_INDEX_MAINTAINER_CACHE_MAX_BYTES = 0;
+  public static final long DEFAULT_INDEX_ROW_STATE_CACHE_MAX_BYTES = 0;
   public static final boolean DEFAULT_INDEX_REGION_OBSERVER_ENABLED = true;
   public static final boolean DEFAULT_SERVER_SIDE_IMMUTABLE_INDEXES_ENABLED = false;
 
@@ -779,6 +815,37 @@ public class QueryServicesOptions {
     return config.getInt(QUEUE_SIZE_ATTRIB, DEFAULT_QUEUE_SIZE);
   }
 
+  public boolean isFairSchedulingEnabled() {
+    return config.getBoolean(FAIR_SCHEDULING_ENABLED_ATTRIB, DEFAULT_FAIR_SCHEDULING_ENABLED);
+  }
+
+  public boolean isVirtualThreadsEnabled() {
+    return config.getBoolean(VIRTUAL_THREADS_ENABLED_ATTRIB, DEFAULT_VIRTUAL_THREADS_ENABLED);
+  }
+
+  public int getVirtualThreadsMaxConcurrency() {
+    return config.getInt(VIRTUAL_THREADS_MAX_CONCURRENCY_ATTRIB,
+      DEFAULT_VIRTUAL_THREADS_MAX_CONCURRENCY);
+  }
+
+  /**
+   * Returns the weights of the tenants under fair scheduling, parsed from comma separated
+   * tenant=weight pairs.
+   */
+  public Map<String, Integer> getFairSchedulingTenantWeights() {
+    Map<String, Integer> weights = new HashMap<>();
+    for (String pair : config.getTrimmedStrings(FAIR_SCHEDULING_TENANT_WEIGHTS_ATTRIB)) {
+      int separator = pair.lastIndexOf('=');
+      int weight = separator < 0 ? 0 : Integer.parseInt(pair.substring(separator + 1).trim());
+      if (weight <= 0) {
+        throw new IllegalArgumentException("Invalid tenant weight " + pair + " in "
+          + FAIR_SCHEDULING_TENANT_WEIGHTS_ATTRIB + ", expected tenant=weight with weight > 0");
+      }
+      weights.put(pair.substring(0, separator).trim(), weight);
+    }
+    return weights;
+  }
+
   public int getMaxMemoryPerc() {
     return config.getInt(MAX_MEMORY_PERC_ATTRIB, DEFAULT_MAX_MEMORY_PERC);
   }
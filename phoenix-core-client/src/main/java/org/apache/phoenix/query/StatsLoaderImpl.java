@@ -19,6 +19,8 @@ package org.apache.phoenix.query;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.TableNotFoundException;
@@ -27,6 +29,8 @@ import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
 import org.apache.phoenix.schema.stats.GuidePostsInfo;
 import org.apache.phoenix.schema.stats.GuidePostsKey;
 import org.apache.phoenix.schema.stats.StatisticsUtil;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.SchemaUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +43,19 @@ class StatsLoaderImpl implements PhoenixStatsLoader {
   private static final Logger LOGGER = LoggerFactory.getLogger(StatsLoaderImpl.class);
 
   private final ConnectionQueryServices queryServices;
+  private final boolean incrementalRefresh;
+  private final long fullRefreshIntervalMs;
+  // Time at which the stats refreshed incrementally were last read entirely
+  private final ConcurrentMap<GuidePostsKey, Long> fullRefreshTimes = new ConcurrentHashMap<>();
 
   public StatsLoaderImpl(ConnectionQueryServices queryServices) {
     this.queryServices = queryServices;
+    ReadOnlyProps props = queryServices.getProps();
+    this.incrementalRefresh =
+      props.getBoolean(QueryServices.STATS_CACHE_INCREMENTAL_REFRESH_ENABLED,
+        QueryServicesOptions.DEFAULT_STATS_CACHE_INCREMENTAL_REFRESH_ENABLED);
+    this.fullRefreshIntervalMs = props.getLong(QueryServices.STATS_CACHE_FULL_REFRESH_INTERVAL_MS,
+      QueryServicesOptions.DEFAULT_STATS_CACHE_FULL_REFRESH_INTERVAL_MS);
   }
 
   @Override
@@ -69,8 +83,28 @@ class StatsLoaderImpl implements PhoenixStatsLoader {
     Table statsHTable = queryServices.getTable(tableName.getName());
 
     try {
+      long currentTime = EnvironmentEdgeManager.currentTimeMillis();
+      if (incrementalRefresh) {
+        // Read only the changes to the cached stats, unless they were read entirely too long ago,
+        // as the changes of the guideposts whose delete markers were already compacted away
+        // are missed
+        Long fullRefreshTime = fullRefreshTimes.get(statsKey);
+        if (fullRefreshTime != null && currentTime - fullRefreshTime < fullRefreshIntervalMs) {
+          GuidePostsInfo guidePostsInfo =
+            StatisticsUtil.readStatisticsChanges(statsHTable, statsKey, prevGuidepostInfo);
+          if (guidePostsInfo != null) {
+            if (guidePostsInfo != prevGuidepostInfo) {
+              traceStatsUpdate(statsKey, guidePostsInfo);
+            }
+            return guidePostsInfo;
+          }
+        }
+      }
       GuidePostsInfo guidePostsInfo =
         StatisticsUtil.readStatistics(statsHTable, statsKey, HConstants.LATEST_TIMESTAMP);
+      if (incrementalRefresh) {
+        fullRefreshTimes.put(statsKey, currentTime);
+      }
       traceStatsUpdate(statsKey, guidePostsInfo);
       return guidePostsInfo;
     } catch (TableNotFoundException e) {
@@ -90,6 +124,11 @@ class StatsLoaderImpl implements PhoenixStatsLoader {
     }
   }
 
+  @Override
+  public void statsRemoved(GuidePostsKey statsKey) {
+    fullRefreshTimes.remove(statsKey);
+  }
+
   /**
    * Logs a trace message for newly inserted entries to the stats cache.
    */
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.SizedUtil;
 
@@ -32,6 +33,14 @@ import org.apache.phoenix.thirdparty.com.google.common.primitives.Longs;
  * different regions when the GuidePostsInfo is formed for a table.
  */
 public class GuidePostsInfo {
+  /**
+   * Number of guidePosts between two guidePosts stored without prefix compression, which are the
+   * restart points from which decoding can start
+   */
+  public final static int RESTART_INTERVAL = 16;
+  private final static int[] NO_RESTART_POINTS = new int[0];
+  private final static int[] FIRST_RESTART_POINT = new int[] { 0 };
+
   public final static GuidePostsInfo NO_GUIDEPOST = new GuidePostsInfo(
     Collections.<Long> emptyList(), new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY),
     Collections.<Long> emptyList(), 0, 0, Collections.<Long> emptyList()) {
@@ -71,6 +80,11 @@ public class GuidePostsInfo {
    * The timestamps at which guideposts were created/updated
    */
   private final long[] gpTimestamps;
+  /**
+   * The offsets in guidePosts of every {@link #RESTART_INTERVAL}th guidePost, which is stored
+   * without prefix compression
+   */
+  private final int[] restartOffsets;
 
   /**
    * Constructor that creates GuidePostsInfo per region The bytecounts of each guidePost traversed
@@ -79,12 +93,25 @@ public class GuidePostsInfo {
    */
   public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts,
     List<Long> rowCounts, int maxLength, int guidePostsCount, List<Long> updateTimes) {
+    // The first guidePost is always stored without prefix compression
+    this(byteCounts, guidePosts, rowCounts, maxLength, guidePostsCount, updateTimes,
+      guidePostsCount > 0 ? FIRST_RESTART_POINT : NO_RESTART_POINTS);
+  }
+
+  /**
+   * Constructor that creates GuidePostsInfo with the offsets of the guidePosts stored without
+   * prefix compression every {@link #RESTART_INTERVAL} guidePosts, starting with the first one.
+   */
+  public GuidePostsInfo(List<Long> byteCounts, ImmutableBytesWritable guidePosts,
+    List<Long> rowCounts, int maxLength, int guidePostsCount, List<Long> updateTimes,
+    int[] restartOffsets) {
     this.guidePosts = new ImmutableBytesWritable(guidePosts);
     this.maxLength = maxLength;
     this.guidePostsCount = guidePostsCount;
     this.rowCounts = Longs.toArray(rowCounts);
     this.byteCounts = Longs.toArray(byteCounts);
     this.gpTimestamps = Longs.toArray(updateTimes);
+    this.restartOffsets = restartOffsets;
     // Those Java equivalents of sizeof() in C/C++, mentioned on the Web, might be overkilled here.
     int estimatedSize =
       SizedUtil.OBJECT_SIZE + SizedUtil.IMMUTABLE_BYTES_WRITABLE_SIZE + guidePosts.getLength() // guidePosts
@@ -93,6 +120,7 @@ public class GuidePostsInfo {
         + SizedUtil.ARRAY_SIZE + this.rowCounts.length * SizedUtil.LONG_SIZE // rowCounts
         + SizedUtil.ARRAY_SIZE + this.byteCounts.length * SizedUtil.LONG_SIZE // byteCounts
         + SizedUtil.ARRAY_SIZE + this.gpTimestamps.length * SizedUtil.LONG_SIZE // gpTimestamps
+        + SizedUtil.ARRAY_SIZE + this.restartOffsets.length * SizedUtil.INT_SIZE // restartOffsets
         + SizedUtil.INT_SIZE; // estimatedSize
     this.estimatedSize = estimatedSize;
   }
@@ -125,6 +153,42 @@ public class GuidePostsInfo {
     return estimatedSize;
   }
 
+  /**
+   * Returns the offsets in guidePosts of the restart points, the guidePost index of restart point i
+   * being i * {@link #RESTART_INTERVAL}.
+   */
+  public int[] getRestartOffsets() {
+    return restartOffsets;
+  }
+
+  /**
+   * Returns the last restart point whose guidePost is less than or equal to the key, or 0 if there
+   * is none, by binary search over the restart points without decoding the guidePosts in between.
+   */
+  public int findRestartPoint(ImmutableBytesWritable key) {
+    int low = 0;
+    int high = restartOffsets.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (compareRestartPoint(mid, key) <= 0) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  private int compareRestartPoint(int restartPoint, ImmutableBytesWritable key) {
+    byte[] b = guidePosts.get();
+    // Skip the prefix length, which is 0 at restart points
+    int offset = guidePosts.getOffset() + restartOffsets[restartPoint];
+    offset += WritableUtils.decodeVIntSize(b[offset]);
+    int length = (int) Bytes.readAsVLong(b, offset);
+    offset += WritableUtils.decodeVIntSize(b[offset]);
+    return Bytes.compareTo(b, offset, length, key.get(), key.getOffset(), key.getLength());
+  }
+
   @SuppressWarnings(value = "EC_ARRAY_AND_NONARRAY",
       justification = "ImmutableBytesWritable DOES implement equals(byte])")
   public boolean isEmptyGuidePost() {
@@ -20,6 +20,7 @@ package org.apache.phoenix.schema.stats;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.util.ByteUtil;
@@ -50,6 +51,8 @@ public class GuidePostsInfoBuilder {
   private List<Long> rowCounts = new ArrayList<Long>();
   private List<Long> byteCounts = new ArrayList<Long>();
   private List<Long> guidePostsTimestamps = new ArrayList<Long>();
+  private int[] restartOffsets = new int[1];
+  private int restartPointCount;
 
   public boolean isEmpty() {
     return rowCounts.size() == 0;
@@ -98,6 +101,15 @@ public class GuidePostsInfoBuilder {
     long updateTimestamp) {
     if (row.getLength() != 0 && lastRow.compareTo(row) < 0) {
       try {
+        // Store every RESTART_INTERVALth guidePost without prefix compression so that lookups can
+        // binary search them
+        if (guidePostsCount % GuidePostsInfo.RESTART_INTERVAL == 0) {
+          encoder.reset();
+          if (restartPointCount == restartOffsets.length) {
+            restartOffsets = Arrays.copyOf(restartOffsets, restartPointCount * 2);
+          }
+          restartOffsets[restartPointCount++] = stream.size();
+        }
         encoder.encode(output, row.get(), row.getOffset(), row.getLength());
         rowCounts.add(rowCount);
         byteCounts.add(byteCount);
@@ -116,7 +128,8 @@ public class GuidePostsInfoBuilder {
   public GuidePostsInfo build() {
     this.guidePosts.set(stream.getBuffer(), 0, stream.size());
     GuidePostsInfo guidePostsInfo = new GuidePostsInfo(this.byteCounts, this.guidePosts,
-      this.rowCounts, this.maxLength, this.guidePostsCount, this.guidePostsTimestamps);
+      this.rowCounts, this.maxLength, this.guidePostsCount, this.guidePostsTimestamps,
+      Arrays.copyOf(restartOffsets, restartPointCount));
     return guidePostsInfo;
   }
 
@@ -21,11 +21,17 @@ import static org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverCons
 import static org.apache.phoenix.schema.types.PDataType.TRUE_BYTES;
 import static org.apache.phoenix.util.SchemaUtil.getVarCharLength;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Result;
@@ -45,6 +51,7 @@ import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PLong;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.MetaDataUtil;
+import org.apache.phoenix.util.PrefixByteDecoder;
 import org.apache.phoenix.util.SchemaUtil;
 
 import org.apache.phoenix.thirdparty.com.google.common.collect.Sets;
@@ -222,6 +229,166 @@ public class StatisticsUtil {
       : guidePostsInfoBuilder.build();
   }
 
+  /**
+   * Applies to previously read statistics the guideposts written or deleted since the latest
+   * guidepost of the previous statistics, which are read by a raw scan of the cells from then on
+   * instead of a scan of all the guideposts of the table. This relies on the statistics being
+   * written with the current time as timestamp, which is the default.
+   * @return the updated statistics, the previous ones if nothing changed, or null if the statistics
+   *         need to be read entirely, which is the case when the previous statistics have no
+   *         guideposts or when the changes leave no guidepost
+   */
+  public static GuidePostsInfo readStatisticsChanges(Table statsHTable, GuidePostsKey key,
+    GuidePostsInfo prevGuidePostsInfo) throws IOException {
+    if (prevGuidePostsInfo.getGuidePostsCount() == 0) {
+      return null;
+    }
+    long latestTimeStamp = HConstants.OLDEST_TIMESTAMP;
+    for (long timeStamp : prevGuidePostsInfo.getGuidePostTimestamps()) {
+      latestTimeStamp = Math.max(latestTimeStamp, timeStamp);
+    }
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable(key.getColumnFamily());
+    byte[] tableNameBytes = key.getPhysicalName();
+    byte[] cfName = key.getColumnFamily();
+    Scan s = new Scan().withStartRow(getStartKey(tableNameBytes, ptr))
+      .withStopRow(getEndKey(tableNameBytes, ptr)).setRaw(true).readAllVersions()
+      .setTimeRange(latestTimeStamp, HConstants.LATEST_TIMESTAMP);
+    s.addFamily(QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES);
+    // The changed guideposts by key, with their byte count, row count and timestamp, or null for
+    // the deleted ones
+    TreeMap<byte[], long[]> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    try (ResultScanner scanner = statsHTable.getScanner(s)) {
+      Result result;
+      while ((result = scanner.next()) != null) {
+        long putTimeStamp = -1;
+        long deleteTimeStamp = -1;
+        long byteCount = 0;
+        long rowCount = 0;
+        for (Cell cell : result.rawCells()) {
+          long timeStamp = cell.getTimestamp();
+          if (CellUtil.isDelete(cell)) {
+            deleteTimeStamp = Math.max(deleteTimeStamp, timeStamp);
+            continue;
+          }
+          putTimeStamp = Math.max(putTimeStamp, timeStamp);
+          // The versions of a column are sorted from the latest, which is the one of the row as
+          // all the columns of a guidepost are written together
+          if (
+            Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(),
+              cell.getQualifierLength(), PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES, 0,
+              PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES.length)
+              && timeStamp == putTimeStamp
+          ) {
+            rowCount = PLong.INSTANCE.getCodec().decodeLong(cell.getValueArray(),
+              cell.getValueOffset(), SortOrder.getDefault());
+          } else if (
+            Bytes.equals(cell.getQualifierArray(), cell.getQualifierOffset(),
+              cell.getQualifierLength(), PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES, 0,
+              PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES.length) && timeStamp == putTimeStamp
+          ) {
+            byteCount = PLong.INSTANCE.getCodec().decodeLong(cell.getValueArray(),
+              cell.getValueOffset(), SortOrder.getDefault());
+          }
+        }
+        byte[] gpKey = getGuidePostsInfoFromRowKey(tableNameBytes, cfName, result.getRow());
+        // A delete masks the puts with the same or an older timestamp
+        changes.put(gpKey,
+          putTimeStamp > deleteTimeStamp ? new long[] { byteCount, rowCount, putTimeStamp } : null);
+      }
+    }
+    removeUnchanged(changes, prevGuidePostsInfo, latestTimeStamp);
+    if (changes.isEmpty()) {
+      return prevGuidePostsInfo;
+    }
+    // Regions without enough data for a guidepost are tracked by the empty guidepost
+    if (changes.containsKey(GuidePostsInfo.EMPTY_GUIDEPOST_KEY)) {
+      return null;
+    }
+    GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+    ImmutableBytesWritable guidePosts = prevGuidePostsInfo.getGuidePosts();
+    long[] byteCounts = prevGuidePostsInfo.getByteCounts();
+    long[] rowCounts = prevGuidePostsInfo.getRowCounts();
+    long[] timeStamps = prevGuidePostsInfo.getGuidePostTimestamps();
+    Iterator<Map.Entry<byte[], long[]>> changeIterator = changes.entrySet().iterator();
+    Map.Entry<byte[], long[]> change = changeIterator.next();
+    try (ByteArrayInputStream stream =
+      new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset(), guidePosts.getLength())) {
+      DataInput input = new DataInputStream(stream);
+      PrefixByteDecoder decoder = new PrefixByteDecoder(prevGuidePostsInfo.getMaxLength());
+      for (int i = 0; i < prevGuidePostsInfo.getGuidePostsCount(); i++) {
+        ImmutableBytesWritable gp = decoder.decode(input);
+        boolean changed = false;
+        int c;
+        // Add the changes up to this guidepost, which replace it if it changed
+        while (
+          change != null && (c = Bytes.compareTo(change.getKey(), 0, change.getKey().length,
+            gp.get(), gp.getOffset(), gp.getLength())) <= 0
+        ) {
+          changed |= c == 0;
+          addChange(builder, change);
+          change = changeIterator.hasNext() ? changeIterator.next() : null;
+        }
+        if (!changed) {
+          builder.trackGuidePost(new ImmutableBytesWritable(gp.copyBytes()), byteCounts[i],
+            rowCounts[i], timeStamps[i]);
+        }
+      }
+    }
+    while (change != null) {
+      addChange(builder, change);
+      change = changeIterator.hasNext() ? changeIterator.next() : null;
+    }
+    return builder.isEmpty() ? null : builder.build();
+  }
+
+  /**
+   * Removes from the changes the guideposts read again as they are, which are the ones written at
+   * the latest timestamp of the previous statistics as the time range of the scan includes it.
+   */
+  private static void removeUnchanged(TreeMap<byte[], long[]> changes,
+    GuidePostsInfo prevGuidePostsInfo, long latestTimeStamp) throws IOException {
+    int candidates = 0;
+    for (long[] values : changes.values()) {
+      if (values != null && values[2] == latestTimeStamp) {
+        candidates++;
+      }
+    }
+    if (candidates == 0) {
+      return;
+    }
+    ImmutableBytesWritable guidePosts = prevGuidePostsInfo.getGuidePosts();
+    long[] byteCounts = prevGuidePostsInfo.getByteCounts();
+    long[] rowCounts = prevGuidePostsInfo.getRowCounts();
+    long[] timeStamps = prevGuidePostsInfo.getGuidePostTimestamps();
+    try (ByteArrayInputStream stream =
+      new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset(), guidePosts.getLength())) {
+      DataInput input = new DataInputStream(stream);
+      PrefixByteDecoder decoder = new PrefixByteDecoder(prevGuidePostsInfo.getMaxLength());
+      for (int i = 0; i < prevGuidePostsInfo.getGuidePostsCount() && candidates > 0; i++) {
+        ImmutableBytesWritable gp = decoder.decode(input);
+        if (timeStamps[i] != latestTimeStamp) {
+          continue;
+        }
+        byte[] gpKey = gp.copyBytes();
+        long[] values = changes.get(gpKey);
+        if (values != null && values[2] == latestTimeStamp) {
+          candidates--;
+          if (values[0] == byteCounts[i] && values[1] == rowCounts[i]) {
+            changes.remove(gpKey);
+          }
+        }
+      }
+    }
+  }
+
+  private static void addChange(GuidePostsInfoBuilder builder, Map.Entry<byte[], long[]> change) {
+    long[] values = change.getValue();
+    if (values != null) {
+      builder.trackGuidePost(new ImmutableBytesWritable(change.getKey()), values[0], values[1],
+        values[2]);
+    }
+  }
+
   public static long getGuidePostDepth(int guidepostPerRegion, long guidepostWidth,
     TableDescriptor tableDesc) {
     if (guidepostPerRegion > 0) {
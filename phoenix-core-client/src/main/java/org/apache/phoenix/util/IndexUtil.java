@@ -1023,6 +1023,28 @@ public class IndexUtil {
 
   }
 
+  /**
+   * {@link SimpleValueGetter} remembering the cells it looked up, so that the index maintainers of
+   * a data table building the index mutations of the same row look up each column once.
+   */
+  public static class CachingValueGetter extends SimpleValueGetter {
+    private final Map<ColumnReference, Cell> cells = new HashMap<>();
+
+    public CachingValueGetter(final Put put) {
+      super(put);
+    }
+
+    @Override
+    public Cell getLatestCell(ColumnReference ref, long ts) {
+      Cell cell = cells.get(ref);
+      if (cell == null && !cells.containsKey(ref)) {
+        cell = super.getLatestCell(ref, ts);
+        cells.put(ref, cell);
+      }
+      return cell;
+    }
+  }
+
   /**
    * Updates the EMPTY cell value to VERIFIED for global index table rows.
    */
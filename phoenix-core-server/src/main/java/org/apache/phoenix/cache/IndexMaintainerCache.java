@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.phoenix.coprocessorclient.metrics.MetricsMetadataCachingSource;
+import org.apache.phoenix.coprocessorclient.metrics.MetricsPhoenixCoprocessorSourceFactory;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Weigher;
+
+/**
+ * Region server level cache of the index maintainers deserialized from the attributes of scans and
+ * mutations, keyed by their serialized form. Scans and mutation batches of the same plans carry the
+ * same serialized maintainers, whose column references, row key metadata and other immutable state
+ * are then deserialized once. The expressions of the maintainers keep the state of their
+ * evaluation, so every caller gets copies of the cached maintainers with expressions of their own
+ * (see {@link IndexMaintainer#copyWithOwnExpressions()}). The least recently used entries are
+ * evicted once the estimated heap size of the cached maintainers exceeds
+ * {@link QueryServices#INDEX_MAINTAINER_CACHE_MAX_BYTES_ATTRIB}, the cache being disabled when it
+ * is 0.
+ */
+public class IndexMaintainerCache {
+  private static volatile IndexMaintainerCache INSTANCE;
+
+  private final Cache<ImmutableBytesPtr, List<IndexMaintainer>> cache;
+  private final MetricsMetadataCachingSource metricsSource;
+
+  public static IndexMaintainerCache getInstance(Configuration conf) {
+    IndexMaintainerCache result = INSTANCE;
+    if (result == null) {
+      synchronized (IndexMaintainerCache.class) {
+        result = INSTANCE;
+        if (result == null) {
+          INSTANCE = result = new IndexMaintainerCache(conf);
+        }
+      }
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  IndexMaintainerCache(Configuration conf) {
+    long maxBytes = conf.getLong(QueryServices.INDEX_MAINTAINER_CACHE_MAX_BYTES_ATTRIB,
+      QueryServicesOptions.DEFAULT_INDEX_MAINTAINER_CACHE_MAX_BYTES);
+    this.cache = maxBytes <= 0
+      ? null
+      : CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher(new Weigher<ImmutableBytesPtr, List<IndexMaintainer>>() {
+          @Override
+          public int weigh(ImmutableBytesPtr key, List<IndexMaintainer> value) {
+            long size = key.getLength();
+            for (IndexMaintainer maintainer : value) {
+              size += maintainer.getHeapSize();
+            }
+            return (int) Math.min(size, Integer.MAX_VALUE);
+          }
+        }).build();
+    this.metricsSource =
+      MetricsPhoenixCoprocessorSourceFactory.getInstance().getMetadataCachingSource();
+  }
+
+  /**
+   * Returns the index maintainers serialized in the given bytes, which belong to the caller.
+   */
+  public List<IndexMaintainer> getIndexMaintainers(byte[] md, boolean useProto) {
+    // The legacy serialization is not cached
+    if (cache == null || !useProto || md.length == 0) {
+      return IndexMaintainer.deserialize(md, useProto);
+    }
+    ImmutableBytesPtr key = new ImmutableBytesPtr(md);
+    List<IndexMaintainer> templates = cache.getIfPresent(key);
+    if (templates != null) {
+      metricsSource.incrementRegionServerIndexMaintainerCacheHitCount();
+      return copyWithOwnExpressions(templates);
+    }
+    metricsSource.incrementRegionServerIndexMaintainerCacheMissCount();
+    List<IndexMaintainer> maintainers = IndexMaintainer.deserialize(md, true);
+    for (IndexMaintainer maintainer : maintainers) {
+      // Transform maintainers are not deserialized the same way, and are rare enough not to cache
+      if (!maintainer.canCopyWithOwnExpressions()) {
+        return maintainers;
+      }
+    }
+    // The maintainers deserialized here become the templates, the caller getting copies of them
+    cache.put(key, Collections.unmodifiableList(maintainers));
+    return copyWithOwnExpressions(maintainers);
+  }
+
+  private static List<IndexMaintainer> copyWithOwnExpressions(List<IndexMaintainer> templates) {
+    List<IndexMaintainer> maintainers = new ArrayList<>(templates.size());
+    try {
+      for (IndexMaintainer template : templates) {
+        maintainers.add(template.copyWithOwnExpressions());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e); // Impossible
+    }
+    return maintainers;
+  }
+}
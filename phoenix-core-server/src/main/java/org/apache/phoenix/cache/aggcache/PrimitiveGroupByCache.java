@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
+import static org.apache.phoenix.query.QueryConstants.GROUPED_AGGREGATOR_VALUE_BYTES;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILL_FILES_ATTRIB;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_MAX_CACHE_MAX;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILL_FILES;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.ScannerContext;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.GroupByCache;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.AggregatorSlab;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.InsufficientMemoryException;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.KeyValueSchema;
+import org.apache.phoenix.schema.ValueBitSet;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.Closeables;
+import org.apache.phoenix.util.PhoenixKeyValueUtil;
+import org.apache.phoenix.util.SizedUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Group by cache for aggregators whose state is a single fixed width value, see
+ * {@link AggregatorSlab}. Instead of an {@link ImmutableBytesPtr} key and an array of
+ * {@link Aggregator} instances per group, group keys are appended to a single byte array, found
+ * through an open addressing hash table of group ids, and the state of each aggregator is kept in a
+ * primitive array indexed by group id. The cache therefore only allocates when it grows, and holds
+ * many more groups in the same amount of memory. Once the memory for the cache cannot be grown
+ * anymore, all its groups are spilled through a {@link SpillManager} the same way
+ * {@link SpillableGroupByCache} spills its evicted groups, and the cache starts over. A group that
+ * is seen again after it was spilled is loaded back into the cache.
+ */
+public class PrimitiveGroupByCache implements GroupByCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrimitiveGroupByCache.class);
+
+  private static final int MIN_CAPACITY = 16;
+  private static final int ESTIMATED_KEY_SIZE = 16;
+  // Bytes used per group other than the key, the aggregator state and the hash table: the key
+  // offset, length and hash, and the last scanned row key array, offset and length
+  private static final int GROUP_OVERHEAD = 5 * Bytes.SIZEOF_INT + SizedUtil.POINTER_SIZE;
+
+  private final ServerAggregators aggregators;
+  private final AggregatorSlab[] slabs;
+  private final int bytesPerGroup;
+  private final Configuration conf;
+  private final int numSpillFiles;
+  private final boolean isIncompatibleClient;
+  private final MemoryChunk chunk;
+
+  private byte[] keys;
+  private int keysLength;
+  private int[] keyOffsets;
+  private int[] keyLengths;
+  private int[] keyHashes;
+  private byte[][] rowKeys;
+  private int[] rowKeyOffsets;
+  private int[] rowKeyLengths;
+  // Group id + 1 of the group hashed to each slot, or 0 for an empty slot
+  private int[] table;
+  private int numGroups;
+  private long totalNumGroups;
+
+  // The key and group of the last row, which has its row key cached right after it is aggregated
+  private ImmutableBytesPtr lastKey;
+  private int lastGroup;
+
+  private SpillManager spillManager;
+  private boolean spilling;
+  private Map<ImmutableBytesPtr, ImmutableBytesPtr> spilledRowKeys;
+
+  /**
+   * Returns whether the state of all the given aggregators can be kept in an
+   * {@link AggregatorSlab}.
+   */
+  public static boolean isSupported(ServerAggregators aggregators) {
+    for (Aggregator aggregator : aggregators.getAggregators()) {
+      if (AggregatorSlab.newSlab(aggregator) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public PrimitiveGroupByCache(Configuration conf, MemoryManager memoryManager,
+    ServerAggregators aggregators, int estSizeNum, boolean isIncompatibleClient) {
+    this.conf = conf;
+    this.aggregators = aggregators;
+    this.isIncompatibleClient = isIncompatibleClient;
+    Aggregator[] templates = aggregators.getAggregators();
+    slabs = new AggregatorSlab[templates.length];
+    int bytesPerGroup = 0;
+    for (int i = 0; i < templates.length; i++) {
+      slabs[i] = AggregatorSlab.newSlab(templates[i]);
+      Preconditions.checkArgument(slabs[i] != null, "Unsupported aggregator %s", templates[i]);
+      bytesPerGroup += slabs[i].getBytesPerGroup();
+    }
+    this.bytesPerGroup = bytesPerGroup;
+    numSpillFiles = conf.getInt(GROUPBY_SPILL_FILES_ATTRIB, DEFAULT_GROUPBY_SPILL_FILES);
+
+    long maxCacheSizeConf =
+      conf.getLongBytes(GROUPBY_MAX_CACHE_SIZE_ATTRIB, DEFAULT_GROUPBY_MAX_CACHE_MAX);
+    long estGroupSize = getByteSize(1, ESTIMATED_KEY_SIZE);
+    int capacity =
+      (int) Math.max(MIN_CAPACITY, Math.min(estSizeNum, maxCacheSizeConf / estGroupSize));
+    int keyCapacity = capacity * ESTIMATED_KEY_SIZE;
+    try {
+      chunk = memoryManager.allocate(getByteSize(capacity, keyCapacity));
+    } catch (InsufficientMemoryException ime) {
+      LOGGER.error("Requested Map size exceeds memory limit, "
+        + "please decrease max size via config paramter: " + GROUPBY_MAX_CACHE_SIZE_ATTRIB);
+      throw ime;
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Instantiating primitive groupby cache of element size: " + capacity);
+    }
+    allocate(capacity, keyCapacity);
+  }
+
+  private static int getTableSize(int capacity) {
+    // Keep the load factor of the hash table at or below 0.5
+    return Integer.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+  }
+
+  private long getByteSize(int capacity, int keyCapacity) {
+    return (long) capacity * (bytesPerGroup + GROUP_OVERHEAD)
+      + (long) getTableSize(capacity) * Bytes.SIZEOF_INT + keyCapacity;
+  }
+
+  private void allocate(int capacity, int keyCapacity) {
+    keys = keys == null ? new byte[keyCapacity] : Arrays.copyOf(keys, keyCapacity);
+    if (keyOffsets == null || keyOffsets.length != capacity) {
+      keyOffsets = keyOffsets == null ? new int[capacity] : Arrays.copyOf(keyOffsets, capacity);
+      keyLengths = keyLengths == null ? new int[capacity] : Arrays.copyOf(keyLengths, capacity);
+      keyHashes = keyHashes == null ? new int[capacity] : Arrays.copyOf(keyHashes, capacity);
+      rowKeys = rowKeys == null ? new byte[capacity][] : Arrays.copyOf(rowKeys, capacity);
+      rowKeyOffsets =
+        rowKeyOffsets == null ? new int[capacity] : Arrays.copyOf(rowKeyOffsets, capacity);
+      rowKeyLengths =
+        rowKeyLengths == null ? new int[capacity] : Arrays.copyOf(rowKeyLengths, capacity);
+      table = new int[getTableSize(capacity)];
+      for (int group = 0; group < numGroups; group++) {
+        table[findSlot(keys, keyOffsets[group], keyLengths[group], keyHashes[group])] = group + 1;
+      }
+    }
+  }
+
+  /**
+   * Grows the cache to hold one more group with a key of the given length.
+   * @return false if there is not enough memory to grow the cache
+   */
+  private boolean ensureCapacity(int keyLength) {
+    int capacity = keyOffsets.length;
+    int keyCapacity = keys.length;
+    if (numGroups < capacity && keysLength + keyLength <= keyCapacity) {
+      return true;
+    }
+    if (numGroups >= capacity) {
+      capacity += capacity >> 1;
+    }
+    if (keysLength + keyLength > keyCapacity) {
+      keyCapacity = Math.max(keysLength + keyLength, keyCapacity + (keyCapacity >> 1));
+    }
+    try {
+      chunk.resize(getByteSize(capacity, keyCapacity));
+    } catch (InsufficientMemoryException e) {
+      return false;
+    }
+    allocate(capacity, keyCapacity);
+    return true;
+  }
+
+  private static int hash(ImmutableBytesPtr key) {
+    int hash = key.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the slot of the group with the given key, or the empty slot the group would be added to
+   * if it is not in the cache.
+   */
+  private int findSlot(byte[] key, int offset, int length, int hash) {
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != 0) {
+      int group = table[slot] - 1;
+      if (
+        keyHashes[group] == hash
+          && Bytes.equals(keys, keyOffsets[group], keyLengths[group], key, offset, length)
+      ) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int findGroup(ImmutableBytesPtr key) {
+    return table[findSlot(key.get(), key.getOffset(), key.getLength(), hash(key))] - 1;
+  }
+
+  private int getGroup(ImmutableBytesPtr key) {
+    if (key == lastKey) {
+      return lastGroup;
+    }
+    int hash = hash(key);
+    int slot = findSlot(key.get(), key.getOffset(), key.getLength(), hash);
+    int group = table[slot] - 1;
+    if (group < 0) {
+      if (!ensureCapacity(key.getLength())) {
+        spill();
+        if (!ensureCapacity(key.getLength())) {
+          throw new InsufficientMemoryException(
+            "Unable to allocate memory for a group by key of " + key.getLength() + " bytes");
+        }
+      }
+      slot = findSlot(key.get(), key.getOffset(), key.getLength(), hash);
+      group = addGroup(key, hash, slot);
+    }
+    lastKey = key;
+    lastGroup = group;
+    return group;
+  }
+
+  private int addGroup(ImmutableBytesPtr key, int hash, int slot) {
+    int group = numGroups++;
+    System.arraycopy(key.get(), key.getOffset(), keys, keysLength, key.getLength());
+    keyOffsets[group] = keysLength;
+    keyLengths[group] = key.getLength();
+    keyHashes[group] = hash;
+    keysLength += key.getLength();
+    rowKeys[group] = null;
+    table[slot] = group + 1;
+    setGroup(group);
+    for (AggregatorSlab slab : slabs) {
+      slab.reset();
+    }
+    ImmutableBytesPtr spilledValue = null;
+    if (spillManager != null) {
+      // Check if key has been spilled before
+      try {
+        spilledValue = spillManager.loadValue(key);
+      } catch (IOException ioe) {
+        // Ensure that we always close and delete the temp files
+        try {
+          throw new RuntimeException(ioe);
+        } finally {
+          Closeables.closeQuietly(this);
+        }
+      }
+    }
+    if (spilledValue != null) {
+      load(spilledValue);
+    } else {
+      totalNumGroups++;
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Adding new aggregate bucket for row key "
+          + Bytes.toStringBinary(key.get(), key.getOffset(), key.getLength()));
+      }
+    }
+    return group;
+  }
+
+  private void setGroup(int group) {
+    for (AggregatorSlab slab : slabs) {
+      slab.setGroup(group);
+    }
+  }
+
+  /**
+   * Loads the serialized aggregate values of a spilled group into the current group.
+   */
+  private void load(ImmutableBytesPtr value) {
+    KeyValueSchema schema = aggregators.getValueSchema();
+    ValueBitSet valueSet = ValueBitSet.newInstance(schema);
+    valueSet.clear();
+    valueSet.or(value);
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable(value);
+    int i = 0, maxOffset = ptr.getOffset() + ptr.getLength();
+    Boolean hasValue;
+    schema.iterator(ptr);
+    while ((hasValue = schema.next(ptr, i, maxOffset, valueSet)) != null) {
+      if (hasValue) {
+        slabs[i].load(ptr);
+      }
+      i++;
+    }
+  }
+
+  /**
+   * Spills all the groups of the cache and clears it.
+   */
+  private void spill() {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Spilling " + numGroups + " groups of primitive groupby cache");
+    }
+    spilling = true;
+    try {
+      if (spillManager == null) {
+        // Lazy instantiation of spillable data structures
+        spillManager = new SpillManager(numSpillFiles, aggregators, conf,
+          key -> !spilling && findGroup(key) >= 0);
+        spilledRowKeys = Maps.newHashMap();
+      }
+      for (int group = 0; group < numGroups; group++) {
+        // Copied, as the spill data structures keep the key
+        ImmutableBytesPtr key = new ImmutableBytesPtr(
+          Arrays.copyOfRange(keys, keyOffsets[group], keyOffsets[group] + keyLengths[group]));
+        setGroup(group);
+        spillManager.spill(key, slabs);
+        if (rowKeys[group] != null) {
+          spilledRowKeys.put(key,
+            new ImmutableBytesPtr(rowKeys[group], rowKeyOffsets[group], rowKeyLengths[group]));
+        }
+      }
+    } catch (IOException ioe) {
+      // Ensure that we always close and delete the temp files
+      try {
+        throw new RuntimeException(ioe);
+      } finally {
+        Closeables.closeQuietly(this);
+      }
+    } finally {
+      spilling = false;
+    }
+    numGroups = 0;
+    keysLength = 0;
+    Arrays.fill(table, 0);
+    Arrays.fill(rowKeys, null);
+    lastKey = null;
+  }
+
+  /**
+   * Size function returns the number of distinct groups seen
+   */
+  @Override
+  public long size() {
+    return totalNumGroups;
+  }
+
+  @Override
+  public void aggregate(ImmutableBytesPtr key, ServerAggregators aggregators, Tuple result) {
+    setGroup(getGroup(key));
+    aggregators.aggregate(slabs, result);
+  }
+
+  @Override
+  public void cacheAggregateRowKey(ImmutableBytesPtr value, ImmutableBytesPtr rowKey) {
+    int group = value == lastKey ? lastGroup : findGroup(value);
+    if (group >= 0) {
+      rowKeys[group] = rowKey.get();
+      rowKeyOffsets[group] = rowKey.getOffset();
+      rowKeyLengths[group] = rowKey.getLength();
+    }
+  }
+
+  /**
+   * Closes cache and releases spill resources
+   */
+  @Override
+  public void close() throws IOException {
+    Closeables.closeQuietly(spillManager);
+    Closeables.closeQuietly(chunk);
+  }
+
+  private void addResult(List<Cell> results, ImmutableBytesWritable aggregateGroupValPtr,
+    byte[] aggregateArrayBytes, ImmutableBytesWritable lastScannedRowKey) {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Adding new distinct group: "
+        + Bytes.toStringBinary(aggregateGroupValPtr.get(), aggregateGroupValPtr.getOffset(),
+          aggregateGroupValPtr.getLength())
+        + " value = " + Bytes.toStringBinary(aggregateArrayBytes));
+    }
+    if (!isIncompatibleClient) {
+      byte[] aggregateGroupValueBytes = aggregateGroupValPtr.copyBytes();
+      byte[] finalValue =
+        ByteUtil.concat(PInteger.INSTANCE.toBytes(aggregateGroupValueBytes.length),
+          aggregateGroupValueBytes, aggregateArrayBytes);
+      results
+        .add(PhoenixKeyValueUtil.newKeyValue(lastScannedRowKey.get(), lastScannedRowKey.getOffset(),
+          lastScannedRowKey.getLength(), GROUPED_AGGREGATOR_VALUE_BYTES,
+          GROUPED_AGGREGATOR_VALUE_BYTES, AGG_TIMESTAMP, finalValue, 0, finalValue.length));
+    } else {
+      results.add(PhoenixKeyValueUtil.newKeyValue(aggregateGroupValPtr.get(),
+        aggregateGroupValPtr.getOffset(), aggregateGroupValPtr.getLength(), SINGLE_COLUMN_FAMILY,
+        SINGLE_COLUMN, AGG_TIMESTAMP, aggregateArrayBytes, 0, aggregateArrayBytes.length));
+    }
+  }
+
+  @Override
+  public RegionScanner getScanner(final RegionScanner s) {
+    final Iterator<byte[]> spilledIter =
+      spillManager == null ? null : spillManager.newDataIterator();
+
+    return new BaseRegionScanner(s) {
+      private int group = 0;
+
+      @Override
+      public void close() throws IOException {
+        try {
+          s.close();
+        } finally {
+          // Always close gbCache and swallow possible Exceptions
+          Closeables.closeQuietly(PrimitiveGroupByCache.this);
+        }
+      }
+
+      @Override
+      public boolean next(List<Cell> result, ScannerContext scannerContext) throws IOException {
+        return next(result);
+      }
+
+      private boolean hasNext() {
+        return (spilledIter != null && spilledIter.hasNext()) || group < numGroups;
+      }
+
+      @Override
+      public boolean next(List<Cell> results) throws IOException {
+        // Spilled groups first, skipping the ones loaded back into the cache since then, which are
+        // more up to date
+        while (spilledIter != null && spilledIter.hasNext()) {
+          byte[] data = spilledIter.next();
+          ImmutableBytesPtr key = SpillManager.getKey(data);
+          if (findGroup(key) < 0) {
+            addResult(results, key, SpillManager.getValue(data).copyBytes(),
+              spilledRowKeys.get(key));
+            return hasNext();
+          }
+        }
+        if (group >= numGroups) {
+          return false;
+        }
+        setGroup(group);
+        ImmutableBytesPtr key = new ImmutableBytesPtr(keys, keyOffsets[group], keyLengths[group]);
+        ImmutableBytesPtr rowKey = rowKeys[group] == null
+          ? null
+          : new ImmutableBytesPtr(rowKeys[group], rowKeyOffsets[group], rowKeyLengths[group]);
+        addResult(results, key, aggregators.toBytes(slabs), rowKey);
+        group++;
+        return hasNext();
+      }
+    };
+  }
+}
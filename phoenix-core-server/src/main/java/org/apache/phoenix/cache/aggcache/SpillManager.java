@@ -181,6 +181,25 @@ public class SpillManager implements Closeable {
     }
   }
 
+  /**
+   * Helper method to get the serialized aggregate values, in the format produced by
+   * {@link ServerAggregators#toBytes(Aggregator[])}, from a serialized byte array
+   */
+  static ImmutableBytesPtr getValue(byte[] data) throws IOException {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new ByteArrayInputStream(data));
+      int keyLength = WritableUtils.readVInt(input);
+      input.skip(keyLength);
+      int valueLength = WritableUtils.readVInt(input);
+      int offset =
+        WritableUtils.getVIntSize(keyLength) + keyLength + WritableUtils.getVIntSize(valueLength);
+      return new ImmutableBytesPtr(data, offset, valueLength);
+    } finally {
+      Closeables.closeQuietly(input);
+    }
+  }
+
   // Instantiate Aggregators from a serialized byte array
   private Aggregator[] getAggregators(byte[] data) throws IOException {
     DataInputStream input = null;
@@ -265,6 +284,20 @@ public class SpillManager implements Closeable {
     return null;
   }
 
+  /**
+   * Function that loads the serialized aggregate values of a spilled key/value groupby tuple,
+   * without instantiating its aggregators
+   * @return the values, or null if the key was never spilled
+   */
+  public ImmutableBytesPtr loadValue(ImmutableBytesWritable key) throws IOException {
+    SpillMap spillMap = spillMaps.get(getPartition(key));
+    byte[] data = spillMap.get(key);
+    if (data != null) {
+      return getValue(data);
+    }
+    return null;
+  }
+
   /**
    * Close the attached spillMap
    */
@@ -52,6 +52,7 @@ import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.util.ByteUtil;
 import org.apache.phoenix.util.Closeables;
@@ -124,13 +125,11 @@ public class SpillableGroupByCache implements GroupByCache {
   private final MemoryChunk chunk;
 
   /*
-   * inner class that makes cache queryable for other classes that should not get the full instance.
-   * Queryable view of the cache
+   * Makes the in-memory part of a group by cache queryable for other classes that should not get
+   * the full instance. Queryable view of the cache
    */
-  public class QueryCache {
-    public boolean isKeyContained(ImmutableBytesPtr key) {
-      return cache.containsKey(key);
-    }
+  public interface QueryCache {
+    boolean isKeyContained(ImmutableBytesPtr key);
   }
 
   /**
@@ -202,7 +201,7 @@ public class SpillableGroupByCache implements GroupByCache {
               // Only create spill data structs if LRU
               // cache is too small
               spillManager = new SpillManager(numSpillFilesConf, aggregators,
-                env.getConfiguration(), new QueryCache());
+                env.getConfiguration(), key -> cache.containsKey(key));
             }
             spillManager.spill(eldest.getKey(), eldest.getValue());
           } catch (IOException ioe) {
@@ -229,12 +228,16 @@ public class SpillableGroupByCache implements GroupByCache {
     return totalNumElements;
   }
 
+  @Override
+  public void aggregate(ImmutableBytesPtr key, ServerAggregators aggregators, Tuple result) {
+    aggregators.aggregate(cache(key), result);
+  }
+
   /**
    * Extract an element from the Cache If element is not present in in-memory cache / or in spill
    * files cache implements an implicit put() of a new key/value tuple and loads it into the cache
    */
-  @Override
-  public Aggregator[] cache(ImmutableBytesPtr cacheKey) {
+  private Aggregator[] cache(ImmutableBytesPtr cacheKey) {
     ImmutableBytesPtr key = new ImmutableBytesPtr(cacheKey);
     Aggregator[] rowAggregators = cache.get(key);
     if (rowAggregators == null) {
@@ -19,8 +19,9 @@ package org.apache.phoenix.coprocessor;
 
 import java.io.Closeable;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
-import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.schema.tuple.Tuple;
 
 /**
  * Interface to abstract the way in which distinct group by elements are cached
@@ -29,7 +30,10 @@ import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 public interface GroupByCache extends Closeable {
   long size();
 
-  Aggregator[] cache(ImmutableBytesPtr key);
+  /**
+   * Aggregates a row into the group of the given key, adding the group if it is not cached yet.
+   */
+  void aggregate(ImmutableBytesPtr key, ServerAggregators aggregators, Tuple result);
 
   RegionScanner getScanner(RegionScanner s);
 
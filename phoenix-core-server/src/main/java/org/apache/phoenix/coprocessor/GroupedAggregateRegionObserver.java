@@ -21,9 +21,17 @@ import static org.apache.phoenix.query.QueryConstants.AGG_TIMESTAMP;
 import static org.apache.phoenix.query.QueryConstants.GROUPED_AGGREGATOR_VALUE_BYTES;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.apache.phoenix.query.QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_BYPASS_DISTINCT_RATIO_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_BYPASS_MIN_ROWS_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB;
+import static org.apache.phoenix.query.QueryServices.GROUPBY_PRIMITIVE_CACHE_ENABLED_ATTRIB;
 import static org.apache.phoenix.query.QueryServices.GROUPBY_SPILLABLE_ATTRIB;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_BYPASS_DISTINCT_RATIO;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_BYPASS_MIN_ROWS;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES;
+import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_PRIMITIVE_CACHE_ENABLED;
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_GROUPBY_SPILLABLE;
 import static org.apache.phoenix.util.ScanUtil.getDummyResult;
 import static org.apache.phoenix.util.ScanUtil.getPageSizeMsForRegionScanner;
@@ -59,12 +67,14 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.cache.TenantCache;
+import org.apache.phoenix.cache.aggcache.PrimitiveGroupByCache;
 import org.apache.phoenix.cache.aggcache.SpillableGroupByCache;
 import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.execute.TupleProjector;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
 import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregatorBatch;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
@@ -264,7 +274,11 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
     }
 
     @Override
-    public Aggregator[] cache(ImmutableBytesPtr cacheKey) {
+    public void aggregate(ImmutableBytesPtr key, ServerAggregators aggregators, Tuple result) {
+      aggregators.aggregate(cache(key), result);
+    }
+
+    private Aggregator[] cache(ImmutableBytesPtr cacheKey) {
       ImmutableBytesPtr key = new ImmutableBytesPtr(cacheKey);
       Aggregator[] rowAggregators = aggregateMap.get(key);
       if (rowAggregators == null) {
@@ -384,6 +398,15 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       boolean spillableEnabled =
         conf.getBoolean(GROUPBY_SPILLABLE_ATTRIB, DEFAULT_GROUPBY_SPILLABLE);
       if (spillableEnabled) {
+        if (
+          conf.getBoolean(GROUPBY_PRIMITIVE_CACHE_ENABLED_ATTRIB,
+            DEFAULT_GROUPBY_PRIMITIVE_CACHE_ENABLED)
+            && PrimitiveGroupByCache.isSupported(aggregators)
+        ) {
+          return new PrimitiveGroupByCache(conf,
+            GlobalCache.getTenantCache(env, tenantId).getMemoryManager(), aggregators, estDistVals,
+            isIncompatibleClient);
+        }
         return new SpillableGroupByCache(env, tenantId, aggregators, estDistVals,
           isIncompatibleClient);
       }
@@ -395,7 +418,10 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
   /**
    * Used for an aggregate query in which the key order does not necessarily match the group by key
    * order. In this case, we must collect all distinct groups within a region into a map,
-   * aggregating as we go.
+   * aggregating as we go. If, after a sample of rows, nearly every row turns out to be a group of
+   * its own, the map does not reduce the rows sent to the client and only costs memory and spills.
+   * The cached groups are then returned and each remaining row is returned as a group of its own,
+   * leaving the aggregation to the client, which merges rows with the same group key anyway.
    */
   private static class UnorderedGroupByRegionScanner extends BaseRegionScanner {
     private final Region region;
@@ -416,6 +442,14 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
     private boolean firstScan = true;
     private boolean skipValidRowsSent = false;
     private byte[] lastReturnedRowKey = null;
+    private final Configuration conf;
+    private final long bypassMinRows;
+    private final float bypassDistinctRatio;
+    private long rowCount = 0;
+    // Whether the cache has been given up on and rows are returned as they are aggregated
+    private boolean bypassed = false;
+    private boolean cachedGroupsReturned = false;
+    private Aggregator[] rowAggregators;
 
     private UnorderedGroupByRegionScanner(final ObserverContext<RegionCoprocessorEnvironment> c,
       final Scan scan, final RegionScanner scanner, final List<Expression> expressions,
@@ -435,7 +469,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       this.pageSizeMs = pageSizeMs;
       this.expressions = expressions;
       RegionCoprocessorEnvironment env = c.getEnvironment();
-      Configuration conf = env.getConfiguration();
+      this.conf = env.getConfiguration();
       int estDistVals = conf.getInt(GROUPBY_ESTIMATED_DISTINCT_VALUES_ATTRIB,
         DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES);
       byte[] estDistValsBytes =
@@ -453,6 +487,13 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
       final boolean isIncompatibleClient =
         ScanUtil.isIncompatibleClientForServerReturnValidRowKey(scan);
+      // With a limit, the groups returned before the scan stops must be complete, and old clients
+      // expect the group key instead of the last scanned row key as the row key of each group
+      bypassMinRows = limit == Long.MAX_VALUE && !isIncompatibleClient
+        ? conf.getLong(GROUPBY_BYPASS_MIN_ROWS_ATTRIB, DEFAULT_GROUPBY_BYPASS_MIN_ROWS)
+        : 0;
+      bypassDistinctRatio =
+        conf.getFloat(GROUPBY_BYPASS_DISTINCT_RATIO_ATTRIB, DEFAULT_GROUPBY_BYPASS_DISTINCT_RATIO);
       groupByCache = GroupByCacheFactory.INSTANCE.newCache(env, ScanUtil.getTenantId(scan),
         ScanUtil.getCustomAnnotations(scan), aggregators, estDistVals, isIncompatibleClient);
       if (LOGGER.isDebugEnabled()) {
@@ -612,6 +653,9 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
         region.startRegionOperation();
         acquiredLock = true;
         synchronized (delegate) {
+          if (bypassed) {
+            return nextBypassed(resultsToReturn, scannerContext);
+          }
           if (regionScanner != null) {
             return regionScanner.next(resultsToReturn, scannerContext);
           }
@@ -636,10 +680,14 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
               ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, expressions);
               ImmutableBytesPtr originalRowKey = new ImmutableBytesPtr();
               result.getKey(originalRowKey);
-              Aggregator[] rowAggregators = groupByCache.cache(key);
-              groupByCache.cacheAggregateRowKey(key, originalRowKey);
               // Aggregate values here
-              aggregators.aggregate(rowAggregators, result);
+              groupByCache.aggregate(key, aggregators, result);
+              groupByCache.cacheAggregateRowKey(key, originalRowKey);
+              if (++rowCount == bypassMinRows && hasMore && isBypassWorthwhile()) {
+                bypassed = true;
+                regionScanner = groupByCache.getScanner(delegate);
+                return nextBypassed(resultsToReturn, scannerContext);
+              }
             }
             if (
               hasMore && groupByCache.size() < limit
@@ -669,6 +717,69 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       }
     }
 
+    private boolean isBypassWorthwhile() {
+      boolean worthwhile = groupByCache.size() >= rowCount * bypassDistinctRatio;
+      if (worthwhile && LOGGER.isDebugEnabled()) {
+        LOGGER.debug(
+          "Returning rows of region {} without grouping them, as {} rows are in {} groups",
+          region.getRegionInfo().getRegionNameAsString(), rowCount, groupByCache.size());
+      }
+      return worthwhile;
+    }
+
+    /**
+     * Returns the groups cached before the cache was given up on and then the remaining rows, each
+     * aggregated on its own.
+     */
+    private boolean nextBypassed(List<Cell> resultsToReturn, ScannerContext scannerContext)
+      throws IOException {
+      if (!cachedGroupsReturned) {
+        cachedGroupsReturned = !regionScanner.next(resultsToReturn);
+        if (!resultsToReturn.isEmpty()) {
+          return true;
+        }
+      }
+      if (rowAggregators == null) {
+        rowAggregators = aggregators.newAggregators(conf);
+      }
+      Tuple result =
+        useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new MultiKeyValueTuple();
+      boolean hasMore;
+      do {
+        List<Cell> results = useQualifierAsIndex
+          ? new EncodedColumnQualiferCellsList(minMaxQualifiers.getFirst(),
+            minMaxQualifiers.getSecond(), encodingScheme)
+          : new ArrayList<Cell>();
+        hasMore = (scannerContext == null)
+          ? delegate.nextRaw(results)
+          : delegate.nextRaw(results, scannerContext);
+        if (!results.isEmpty()) {
+          if (isDummy(results)) {
+            return getDummyResult(resultsToReturn);
+          }
+          result.setKeyValues(results);
+          ImmutableBytesPtr key = TupleUtil.getConcatenatedValue(result, expressions);
+          ImmutableBytesPtr rowKey = new ImmutableBytesPtr();
+          result.getKey(rowKey);
+          aggregators.reset(rowAggregators);
+          aggregators.aggregate(rowAggregators, result);
+          byte[] value = ByteUtil.concat(PInteger.INSTANCE.toBytes(key.getLength()),
+            key.copyBytesIfNecessary(), aggregators.toBytes(rowAggregators));
+          resultsToReturn.add(PhoenixKeyValueUtil.newKeyValue(rowKey.get(), rowKey.getOffset(),
+            rowKey.getLength(), GROUPED_AGGREGATOR_VALUE_BYTES, GROUPED_AGGREGATOR_VALUE_BYTES,
+            AGG_TIMESTAMP, value, 0, value.length));
+          return hasMore;
+        }
+        if (
+          hasMore && (PhoenixScannerContext.isReturnImmediately(scannerContext)
+            || PhoenixScannerContext.isTimedOut(scannerContext, pageSizeMs))
+        ) {
+          return getDummyResult(resultsToReturn);
+        }
+      } while (hasMore);
+      return false;
+    }
+
     /**
      * Retrieve dummy rowkey and return to the client.
      * @param resultsToReturn dummy cell.
@@ -733,6 +844,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
     private final boolean useQualifierAsIndex;
     private final PTable.QualifierEncodingScheme encodingScheme;
     private final ServerAggregators aggregators;
+    private final ServerAggregatorBatch batch;
     private final long limit;
     private final List<Expression> expressions;
     private final long pageSizeMs;
@@ -751,6 +863,8 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       this.scan = scan;
       isIncompatibleClient = ScanUtil.isIncompatibleClientForServerReturnValidRowKey(scan);
       this.aggregators = aggregators;
+      this.batch = aggregators.newBatch(c.getEnvironment().getConfiguration()
+        .getInt(AGGREGATE_BATCH_SIZE_ATTRIB, DEFAULT_AGGREGATE_BATCH_SIZE));
       this.limit = limit;
       this.pageSizeMs = pageSizeMs;
       this.expressions = expressions;
@@ -770,6 +884,14 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
       }
     }
 
+    private void aggregate(Aggregator[] rowAggregators, Tuple result) {
+      if (batch != null) {
+        batch.aggregate(rowAggregators, result);
+      } else {
+        aggregators.aggregate(rowAggregators, result);
+      }
+    }
+
     @Override
     public boolean nextRaw(List<Cell> results, ScannerContext scannerContext) throws IOException {
       return next(results, scannerContext);
@@ -820,10 +942,13 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
               key = TupleUtil.getConcatenatedValue(result, expressions);
               aggBoundary = currentKey != null && currentKey.compareTo(key) != 0;
               if (!aggBoundary) {
-                aggregators.aggregate(rowAggregators, result);
+                aggregate(rowAggregators, result);
                 if (LOGGER.isDebugEnabled()) {
+                  // Batched rows are only aggregated once the batch is flushed
                   LOGGER.debug(LogUtil.addCustomAnnotations("Row passed filters: " + kvs
-                    + ", aggregated values: " + Arrays.asList(rowAggregators),
+                    + (batch == null
+                      ? ", aggregated values: " + Arrays.asList(rowAggregators)
+                      : ""),
                     ScanUtil.getCustomAnnotations(scan)));
                 }
                 currentKey = key;
@@ -861,6 +986,9 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
           return true;
         }
         if (currentKey != null) {
+          if (batch != null) {
+            batch.flush();
+          }
           if (!isIncompatibleClient) {
             byte[] aggregateArrayBytes = aggregators.toBytes(rowAggregators);
             byte[] aggregateGroupValueBytes = new byte[currentKey.getLength()];
@@ -887,7 +1015,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver
           // the returned result).
           if (aggBoundary) {
             aggregators.reset(rowAggregators);
-            aggregators.aggregate(rowAggregators, result);
+            aggregate(rowAggregators, result);
             currentKey = key;
             if (result.size() > 0) {
               result.getKey(currentKeyRowKey);
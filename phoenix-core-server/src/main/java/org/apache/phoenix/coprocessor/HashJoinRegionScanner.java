@@ -73,6 +73,7 @@ public class HashJoinRegionScanner implements RegionScanner {
   private long count;
   private long limit;
   private HashCache[] hashCaches;
+  private boolean hashCachesReleased;
   private List<Tuple>[] tempTuples;
   private ValueBitSet tempDestBitSet;
   private ValueBitSet[] tempSrcBitSet;
@@ -128,7 +129,23 @@ public class HashJoinRegionScanner implements RegionScanner {
         continue;
       }
       HashCache hashCache = (HashCache) cache.getServerCache(joinId);
+      // Keeps the cache usable by this scanner even if it is removed from the server meanwhile
+      if (hashCache != null && !hashCache.retain()) {
+        hashCache = null;
+      }
+      RegionInfo regionInfo = env.getRegion().getRegionInfo();
+      if (
+        hashCache != null
+          && !hashCache.coversRegion(regionInfo.getStartKey(), regionInfo.getEndKey())
+      ) {
+        // The cache was partitioned for the regions the server hosted at the time, so drop it to
+        // have the client send a partition that includes this region.
+        hashCache.release();
+        cache.removeServerCache(joinId);
+        hashCache = null;
+      }
       if (hashCache == null) {
+        releaseHashCaches();
         Exception cause = new HashJoinCacheNotFoundException(Bytes.toLong(joinId.get()));
         throw new DoNotRetryIOException(cause.getMessage(), cause);
       }
@@ -171,11 +188,19 @@ public class HashJoinRegionScanner implements RegionScanner {
       if (!(joinInfo.earlyEvaluation()[i]) || hashCaches[i] == null) continue;
       ImmutableBytesPtr key =
         TupleUtil.getConcatenatedValue(tuple, joinInfo.getJoinExpressions()[i]);
-      tempTuples[i] = hashCaches[i].get(key);
       JoinType type = joinInfo.getJoinTypes()[i];
+      boolean matched;
+      if (projector != null && (type == JoinType.Semi || type == JoinType.Anti)) {
+        // The matching rows are never merged in, only whether there is one matters
+        tempTuples[i] = null;
+        matched = hashCaches[i].containsKey(key);
+      } else {
+        tempTuples[i] = hashCaches[i].get(key);
+        matched = tempTuples[i] != null;
+      }
       if (
-        ((type == JoinType.Inner || type == JoinType.Semi) && tempTuples[i] == null)
-          || (type == JoinType.Anti && tempTuples[i] != null)
+        ((type == JoinType.Inner || type == JoinType.Semi) && !matched)
+          || (type == JoinType.Anti && matched)
       ) {
         cont = false;
         break;
@@ -345,9 +370,25 @@ public class HashJoinRegionScanner implements RegionScanner {
     return scanner.reseek(row);
   }
 
+  private void releaseHashCaches() {
+    if (hashCachesReleased) {
+      return;
+    }
+    hashCachesReleased = true;
+    for (HashCache hashCache : hashCaches) {
+      if (hashCache != null) {
+        hashCache.release();
+      }
+    }
+  }
+
   @Override
   public void close() throws IOException {
-    scanner.close();
+    try {
+      scanner.close();
+    } finally {
+      releaseHashCaches();
+    }
   }
 
   @Override
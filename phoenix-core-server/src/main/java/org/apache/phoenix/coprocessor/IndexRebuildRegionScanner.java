@@ -84,6 +84,7 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
   }
 
   private int singleRowRebuildReturnCode;
+  private final boolean batchReadRepair;
 
   @VisibleForTesting
   public IndexRebuildRegionScanner(final RegionScanner innerScanner, final Region region,
@@ -97,6 +98,13 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
     if (indexRowKeyforReadRepair != null) {
       setReturnCodeForSingleRowRebuild();
       pageSizeInRows = 1;
+      batchReadRepair = false;
+      return;
+    }
+    // The rows of a batched read repair are few enough not to be split by index region
+    batchReadRepair =
+      scan.getAttribute(BaseScannerRegionObserverConstants.BATCH_READ_REPAIR) != null;
+    if (batchReadRepair) {
       return;
     }
     try (org.apache.hadoop.hbase.client.Connection connection =
@@ -388,7 +396,7 @@ public class IndexRebuildRegionScanner extends GlobalIndexRegionScanner {
           }
         } while (hasMore && indexMutationCount < pageSizeInRows && dataRowCount < pageSizeInRows);
         if (!indexMutationMap.isEmpty()) {
-          if (indexRowKeyforReadRepair != null) {
+          if (indexRowKeyforReadRepair != null || batchReadRepair) {
             rebuildIndexRows(indexMutationMap, Collections.EMPTY_LIST, verificationResult);
           } else {
             verifyAndOrRebuildIndex(indexMutationMap, mostRecentIndexRowKeys);
@@ -68,13 +68,14 @@ import org.apache.hadoop.hbase.regionserver.ScannerContext;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.cache.IndexMaintainerCache;
 import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.exception.DataExceedsCapacityException;
 import org.apache.phoenix.execute.MutationState;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.aggregator.Aggregator;
-import org.apache.phoenix.expression.aggregator.Aggregators;
+import org.apache.phoenix.expression.aggregator.ServerAggregatorBatch;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.hbase.index.ValueGetter;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
@@ -86,6 +87,7 @@ import org.apache.phoenix.index.PhoenixIndexCodec;
 import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PRow;
@@ -223,8 +225,10 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
     if (localIndexBytes == null) {
       localIndexBytes = scan.getAttribute(LOCAL_INDEX_BUILD);
     }
-    indexMaintainers =
-      localIndexBytes == null ? null : IndexMaintainer.deserialize(localIndexBytes, useProto);
+    indexMaintainers = localIndexBytes == null
+      ? null
+      : IndexMaintainerCache.getInstance(env.getConfiguration())
+        .getIndexMaintainers(localIndexBytes, useProto);
     indexMutations = localIndexBytes == null
       ? new UngroupedAggregateRegionObserver.MutationList()
       : new UngroupedAggregateRegionObserver.MutationList(1024);
@@ -606,10 +610,13 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
     Configuration conf = env.getConfiguration();
     final TenantCache tenantCache = GlobalCache.getTenantCache(env, ScanUtil.getTenantId(scan));
     try (MemoryManager.MemoryChunk em = tenantCache.getMemoryManager().allocate(0)) {
-      Aggregators aggregators = ServerAggregators
+      ServerAggregators aggregators = ServerAggregators
         .deserialize(scan.getAttribute(BaseScannerRegionObserverConstants.AGGREGATORS), conf, em);
       Aggregator[] rowAggregators = aggregators.getAggregators();
       aggregators.reset(rowAggregators);
+      ServerAggregatorBatch batch =
+        aggregators.newBatch(conf.getInt(QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB,
+          QueryServicesOptions.DEFAULT_AGGREGATE_BATCH_SIZE));
       Cell lastCell = null;
       boolean hasAny = false;
       ImmutableBytesWritable ptr = new ImmutableBytesWritable();
@@ -699,7 +706,11 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
                   blockingMemStoreSize);
                 indexMutations.clear();
               }
-              aggregators.aggregate(rowAggregators, result);
+              if (batch != null) {
+                batch.aggregate(rowAggregators, result);
+              } else {
+                aggregators.aggregate(rowAggregators, result);
+              }
               hasAny = true;
             }
             if (
@@ -743,6 +754,9 @@ public class UngroupedAggregateRegionScanner extends BaseRegionScanner {
           resultsToReturn.addAll(atomicSingleRowDeleteResult.listCells());
           return hasMore;
         } else {
+          if (batch != null) {
+            batch.flush();
+          }
           value = aggregators.toBytes(rowAggregators);
         }
         if (pageSizeMs == Long.MAX_VALUE) {
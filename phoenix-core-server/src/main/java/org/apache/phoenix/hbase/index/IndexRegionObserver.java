@@ -47,6 +47,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellScanner;
@@ -55,7 +56,9 @@ import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Durability;
 import org.apache.hadoop.hbase.client.Increment;
@@ -74,6 +77,10 @@ import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
 import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionLifeCycleTracker;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.hbase.wal.WALEdit;
@@ -115,6 +122,7 @@ import org.apache.phoenix.index.PhoenixIndexMetaData;
 import org.apache.phoenix.jdbc.HAGroupStoreManager;
 import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.CompiledConditionalTTLExpression;
 import org.apache.phoenix.schema.PColumn;
@@ -145,6 +153,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.phoenix.thirdparty.com.google.common.base.Preconditions;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Cache;
+import org.apache.phoenix.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.phoenix.thirdparty.com.google.common.cache.Weigher;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ArrayListMultimap;
 import org.apache.phoenix.thirdparty.com.google.common.collect.ListMultimap;
 import org.apache.phoenix.thirdparty.com.google.common.collect.Lists;
@@ -280,6 +291,10 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     private Set<ImmutableBytesPtr> rowsToLock = new TreeSet<>();
     // The current and next states of the data rows corresponding to the pending mutations
     private HashMap<ImmutableBytesPtr, Pair<Put, Put>> dataRowStates;
+    // Whether the current data row states hold all the columns of the rows
+    private boolean rowStatesComplete;
+    // Whether the next data row states can be cached once the batch is applied
+    private boolean cacheRowStates;
     // The previous concurrent batch contexts
     private HashMap<ImmutableBytesPtr, BatchMutateContext> lastConcurrentBatchContext = null;
     // The latches of the threads waiting for this batch to complete
@@ -399,6 +414,8 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
 
   // The collection of pending data table rows
   private Map<ImmutableBytesPtr, PendingRow> pendingRows = new ConcurrentHashMap<>();
+  // The latest states of the data table rows written through this coprocessor, or null if disabled
+  private Cache<ImmutableBytesPtr, Put> rowStateCache;
 
   private MetricsIndexerSource metricSource;
 
@@ -471,6 +488,7 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       BloomType bloomFilterType = tableDescriptor.getColumnFamilies()[0].getBloomFilterType();
       // when the table descriptor changes, the coproc is reloaded
       this.useBloomFilter = bloomFilterType == BloomType.ROW;
+      this.rowStateCache = createRowStateCache(env.getConfiguration(), tableDescriptor);
     } catch (NoSuchMethodError ex) {
       disabled = true;
       LOG.error("Must be too early a version of HBase. Disabled coprocessor ", ex);
@@ -503,12 +521,63 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       return;
     }
     this.stopped = true;
+    if (this.rowStateCache != null) {
+      this.rowStateCache.invalidateAll();
+    }
     String msg = "Indexer is being stopped";
     this.builder.stop(msg);
     this.preWriter.stop(msg);
     this.postWriter.stop(msg);
   }
 
+  /**
+   * Creates the cache of the latest data row states, or returns null if it is disabled. The cells
+   * expired by the TTL of a column family would still be visible in the cached row states, so the
+   * cache is not used for the tables having one.
+   */
+  private static Cache<ImmutableBytesPtr, Put> createRowStateCache(Configuration conf,
+    TableDescriptor tableDescriptor) {
+    long maxBytes = conf.getLong(QueryServices.INDEX_ROW_STATE_CACHE_MAX_BYTES_ATTRIB,
+      QueryServicesOptions.DEFAULT_INDEX_ROW_STATE_CACHE_MAX_BYTES);
+    if (maxBytes <= 0) {
+      return null;
+    }
+    for (ColumnFamilyDescriptor family : tableDescriptor.getColumnFamilies()) {
+      if (family.getTimeToLive() != HConstants.FOREVER) {
+        return null;
+      }
+    }
+    return CacheBuilder.newBuilder().maximumWeight(maxBytes)
+      .weigher(new Weigher<ImmutableBytesPtr, Put>() {
+        @Override
+        public int weigh(ImmutableBytesPtr rowKey, Put put) {
+          return (int) Math.min(put.heapSize(), Integer.MAX_VALUE);
+        }
+      }).build();
+  }
+
+  /**
+   * Compactions may drop the cells masked by the Phoenix level TTL, which the cached row states
+   * would still have.
+   */
+  @Override
+  public void postCompact(ObserverContext<RegionCoprocessorEnvironment> c, Store store,
+    StoreFile resultFile, CompactionLifeCycleTracker tracker, CompactionRequest request)
+    throws IOException {
+    if (this.rowStateCache != null) {
+      this.rowStateCache.invalidateAll();
+    }
+  }
+
+  @Override
+  public void postBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> ctx,
+    List<Pair<byte[], String>> stagingFamilyPaths, Map<byte[], List<Path>> finalPaths)
+    throws IOException {
+    if (this.rowStateCache != null) {
+      this.rowStateCache.invalidateAll();
+    }
+  }
+
   /**
    * We use an Increment to serialize the ON DUPLICATE KEY clause so that the HBase plumbing sets up
    * the necessary locks and mvcc to allow an atomic update. The Increment is not a real increment,
@@ -1072,14 +1141,25 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
   private void getCurrentRowStates(ObserverContext<RegionCoprocessorEnvironment> c,
     BatchMutateContext context) throws IOException {
     Set<KeyRange> keys = new HashSet<KeyRange>(context.rowsToLock.size());
+    context.rowStatesComplete = true;
+    int cacheHits = 0;
     for (ImmutableBytesPtr rowKeyPtr : context.rowsToLock) {
       PendingRow pendingRow = new PendingRow(rowKeyPtr, context);
       // Add the data table rows in the mini batch to the per region collection of pending
       // rows. This will be used to detect concurrent updates
       PendingRow existingPendingRow = pendingRows.putIfAbsent(rowKeyPtr, pendingRow);
       if (existingPendingRow == null) {
-        // There was no pending row for this row key. We need to retrieve this row from disk
-        keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+        // There was no pending row for this row key. We need to retrieve this row from the row
+        // state cache or disk
+        Put cachedRowState = rowStateCache == null ? null : rowStateCache.getIfPresent(rowKeyPtr);
+        if (cachedRowState != null) {
+          // The cached row state is shared, but its cells are never modified
+          Put rowState = new Put(cachedRowState);
+          context.dataRowStates.put(rowKeyPtr, new Pair<>(rowState, new Put(rowState)));
+          cacheHits++;
+        } else {
+          keys.add(PVarbinary.INSTANCE.getKeyRange(rowKeyPtr.get(), SortOrder.ASC));
+        }
       } else {
         // There is a pending row for this row key. We need to retrieve the row from memory
         BatchMutateContext lastContext = existingPendingRow.getLastContext();
@@ -1088,6 +1168,9 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
           Preconditions.checkArgument(phase != BatchMutatePhase.POST,
             "the phase of the last batch cannot be POST");
           if (phase == BatchMutatePhase.PRE) {
+            if (!lastContext.rowStatesComplete) {
+              context.rowStatesComplete = false;
+            }
             if (context.lastConcurrentBatchContext == null) {
               context.lastConcurrentBatchContext = new HashMap<>();
             }
@@ -1115,6 +1198,10 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
         }
       }
     }
+    if (rowStateCache != null) {
+      metricSource.incrementRowStateCacheHits(dataTableName, cacheHits);
+      metricSource.incrementRowStateCacheMisses(dataTableName, keys.size());
+    }
     if (keys.isEmpty()) {
       return;
     }
@@ -1162,7 +1249,13 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
 
   public static Mutation getDeleteIndexMutation(Put dataRowState, IndexMaintainer indexMaintainer,
     long ts, ImmutableBytesPtr rowKeyPtr, byte[] encodedRegionName) {
-    ValueGetter dataRowVG = new IndexUtil.SimpleValueGetter(dataRowState);
+    return getDeleteIndexMutation(new IndexUtil.SimpleValueGetter(dataRowState), indexMaintainer,
+      ts, rowKeyPtr, encodedRegionName);
+  }
+
+  private static Mutation getDeleteIndexMutation(ValueGetter dataRowVG,
+    IndexMaintainer indexMaintainer, long ts, ImmutableBytesPtr rowKeyPtr,
+    byte[] encodedRegionName) {
     byte[] indexRowKey =
       indexMaintainer.buildRowKey(dataRowVG, rowKeyPtr, null, null, ts, encodedRegionName);
     return indexMaintainer.buildRowDeleteMutation(indexRowKey,
@@ -1193,13 +1286,17 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       if (currentDataRowState == null && nextDataRowState == null) {
         continue;
       }
+      // The columns of the row states are looked up once for all the indexes
+      ValueGetter nextDataRowVG =
+        nextDataRowState == null ? null : new IndexUtil.CachingValueGetter(nextDataRowState);
+      ValueGetter currentDataRowVG =
+        currentDataRowState == null ? null : new IndexUtil.CachingValueGetter(currentDataRowState);
       for (Pair<IndexMaintainer, HTableInterfaceReference> pair : indexTables) {
         IndexMaintainer indexMaintainer = pair.getFirst();
         HTableInterfaceReference hTableInterfaceReference = pair.getSecond();
         if (
           nextDataRowState != null && indexMaintainer.shouldPrepareIndexMutations(nextDataRowState)
         ) {
-          ValueGetter nextDataRowVG = new IndexUtil.SimpleValueGetter(nextDataRowState);
           Put indexPut = indexMaintainer.buildUpdateMutation(GenericKeyValueBuilder.INSTANCE,
             nextDataRowVG, rowKeyPtr, ts, null, null, false, encodedRegionName);
           if (indexPut == null) {
@@ -1226,7 +1323,6 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
           // Delete the current index row if the new index key is different from the
           // current one and the index is not a CDC index
           if (currentDataRowState != null) {
-            ValueGetter currentDataRowVG = new IndexUtil.SimpleValueGetter(currentDataRowState);
             byte[] indexRowKeyForCurrentDataRow = indexMaintainer.buildRowKey(currentDataRowVG,
               rowKeyPtr, null, null, ts, encodedRegionName);
             if (
@@ -1256,8 +1352,8 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
                 ts, rowKeyPtr, encodedRegionName), rowKeyPtr.get()));
           } else {
             context.indexUpdates.put(hTableInterfaceReference,
-              new Pair<Mutation, byte[]>(getDeleteIndexMutation(currentDataRowState,
-                indexMaintainer, ts, rowKeyPtr, encodedRegionName), rowKeyPtr.get()));
+              new Pair<Mutation, byte[]>(getDeleteIndexMutation(currentDataRowVG, indexMaintainer,
+                ts, rowKeyPtr, encodedRegionName), rowKeyPtr.get()));
           }
         }
       }
@@ -1618,6 +1714,8 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     if (context.hasGlobalIndex || context.hasUncoveredIndex || context.hasTransform) {
       // Prepare next data rows states for pending mutations (for global indexes)
       prepareDataRowStates(c, miniBatchOp, context, batchTimestamp);
+      context.cacheRowStates = rowStateCache != null && context.rowStatesComplete
+        && !context.hasAtomic && !context.returnResult && !context.hasConditionalTTL;
       // early exit if it turns out we don't have any edits
       long start = EnvironmentEdgeManager.currentTimeMillis();
       preparePreIndexMutations(context, batchTimestamp, indexMetaData);
@@ -1735,6 +1833,9 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
       return;
     }
     try {
+      // The rows of a successful batch are still locked, so the batches cache the row states in
+      // the order they are applied
+      updateRowStateCache(miniBatchOp, context, success);
       // We add to pending rows only after we have locked all the rows in the batch
       // If we are in the INIT phase that means we failed to acquire the locks before the
       // PRE phase
@@ -1889,6 +1990,66 @@ public class IndexRegionObserver implements RegionCoprocessor, RegionObserver {
     }
   }
 
+  /**
+   * Caches the next states of the rows of a successful batch, and invalidates the cached states of
+   * the other rows the batch may have changed. This includes the rows of failed batches and of the
+   * mutations that do not go through the index maintenance, whose next row states are not known.
+   */
+  private void updateRowStateCache(MiniBatchOperationInProgress<Mutation> miniBatchOp,
+    BatchMutateContext context, boolean success) throws IOException {
+    if (rowStateCache == null) {
+      return;
+    }
+    boolean cacheRowStates = success && context.cacheRowStates;
+    Set<ImmutableBytesPtr> invalidatedRows = null;
+    for (int i = 0; i < miniBatchOp.size(); i++) {
+      Mutation m = miniBatchOp.getOperation(i);
+      if (
+        !cacheRowStates || !(m instanceof Put) || !this.builder.isEnabled(m)
+          || miniBatchOp.getOperationStatus(i).getOperationStatusCode() != SUCCESS
+          || miniBatchOp.getOperationsFromCoprocessors(i) != null
+      ) {
+        ImmutableBytesPtr rowKeyPtr = new ImmutableBytesPtr(m.getRow());
+        rowStateCache.invalidate(rowKeyPtr);
+        if (cacheRowStates) {
+          if (invalidatedRows == null) {
+            invalidatedRows = new HashSet<>();
+          }
+          invalidatedRows.add(rowKeyPtr);
+        }
+      }
+    }
+    if (!cacheRowStates) {
+      return;
+    }
+    for (ImmutableBytesPtr rowKeyPtr : context.rowsToLock) {
+      if (invalidatedRows != null && invalidatedRows.contains(rowKeyPtr)) {
+        continue;
+      }
+      Pair<Put, Put> dataRowState = context.dataRowStates.get(rowKeyPtr);
+      Put nextDataRowState = dataRowState == null ? null : dataRowState.getSecond();
+      if (nextDataRowState == null) {
+        rowStateCache.invalidate(rowKeyPtr);
+      } else {
+        rowStateCache.put(rowKeyPtr, copyRowState(nextDataRowState));
+      }
+    }
+  }
+
+  /**
+   * Copies the cells of a row state, which may be backed by the buffers of the RPC request or of
+   * the block cache, so that the cached row state only holds its own bytes.
+   */
+  private static Put copyRowState(Put rowState) throws IOException {
+    Put copy = new Put(rowState.getRow());
+    for (List<Cell> cells : rowState.getFamilyCellMap().values()) {
+      for (Cell cell : cells) {
+        copy.add(KeyValueUtil.copyToNewKeyValue(cell));
+      }
+    }
+    return copy;
+  }
+
   private void removePendingRows(BatchMutateContext context) {
     for (ImmutableBytesPtr rowKey : context.rowsToLock) {
       PendingRow pendingRow = pendingRows.get(rowKey);
@@ -64,6 +64,8 @@ public abstract class AbstractParallelWriterIndexCommitter implements IndexCommi
   protected KeyValueBuilder kvBuilder;
   protected RegionCoprocessorEnvironment env;
   protected boolean disableIndexOnFailure = false;
+  // Aggregator of the index writes of the region server, or null if they are written separately
+  protected IndexWriteCoalescer coalescer;
 
   // This relies on Hadoop Configuration to handle warning about deprecated configs and
   // to set the correct non-deprecated configs when an old one shows up.
@@ -109,6 +111,8 @@ public abstract class AbstractParallelWriterIndexCommitter implements IndexCommi
     this.pool = new QuickFailingTaskRunner(pool);
     this.stopped = stop;
     this.env = env;
+    Configuration conf = env == null ? null : env.getConfiguration();
+    this.coalescer = conf == null ? null : IndexWriteCoalescer.getInstance(conf);
   }
 
   @Override
@@ -226,6 +230,11 @@ public abstract class AbstractParallelWriterIndexCommitter implements IndexCommi
             } else {
               factory = retryingFactory;
             }
+            if (coalescer != null) {
+              throwFailureIfDone();
+              coalescer.write(tableReference, factory == retryingFactory, factory, mutations);
+              return null;
+            }
             try (Table table = factory.getTable(tableReference.get())) {
               throwFailureIfDone();
               table.batch(mutations, null);
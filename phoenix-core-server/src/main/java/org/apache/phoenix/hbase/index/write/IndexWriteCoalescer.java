@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index.write;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSource;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.hbase.index.table.HTableFactory;
+import org.apache.phoenix.hbase.index.table.HTableInterfaceReference;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Region server level aggregator of the index writes of the concurrent mini batches of its regions.
+ * The writes to an index table are queued, and the first writer finding no batch being gathered for
+ * the table leads the next one: it waits up to the configured delay for more writes, unless enough
+ * mutations are queued already, and sends the queued mutations with a single
+ * {@link Table#batch(List, Object[])} call, which HBase splits by destination region server. The
+ * other writers wait for the batch holding their mutations. At most the configured number of
+ * batches are in flight per index table, and the writes arriving meanwhile are merged into the next
+ * batch.
+ * <p>
+ * A writer only fails if one of its own mutations could not be written.
+ */
+public class IndexWriteCoalescer {
+  public static final String INDEX_WRITE_COALESCING_ENABLED_CONF_KEY =
+    "phoenix.index.writer.coalescing.enabled";
+  private static final boolean DEFAULT_INDEX_WRITE_COALESCING_ENABLED = false;
+  public static final String INDEX_WRITE_COALESCING_MAX_DELAY_MS_CONF_KEY =
+    "phoenix.index.writer.coalescing.maxDelayMs";
+  private static final long DEFAULT_INDEX_WRITE_COALESCING_MAX_DELAY_MS = 1;
+  public static final String INDEX_WRITE_COALESCING_MAX_BATCH_SIZE_CONF_KEY =
+    "phoenix.index.writer.coalescing.maxBatchSize";
+  private static final int DEFAULT_INDEX_WRITE_COALESCING_MAX_BATCH_SIZE = 5000;
+  public static final String INDEX_WRITE_COALESCING_MAX_IN_FLIGHT_CONF_KEY =
+    "phoenix.index.writer.coalescing.maxInFlightBatches";
+  private static final int DEFAULT_INDEX_WRITE_COALESCING_MAX_IN_FLIGHT = 2;
+
+  private static volatile IndexWriteCoalescer INSTANCE;
+
+  private final long maxDelayMs;
+  private final int maxBatchSize;
+  private final int maxInFlight;
+  private final ConcurrentMap<Pair<HTableInterfaceReference, Boolean>, Destination> destinations =
+    new ConcurrentHashMap<>();
+  private final MetricsIndexerSource metricSource;
+
+  /**
+   * Returns the index write coalescer of the region server, or null if index writes are not
+   * coalesced.
+   */
+  public static IndexWriteCoalescer getInstance(Configuration conf) {
+    if (
+      !conf.getBoolean(INDEX_WRITE_COALESCING_ENABLED_CONF_KEY,
+        DEFAULT_INDEX_WRITE_COALESCING_ENABLED)
+    ) {
+      return null;
+    }
+    IndexWriteCoalescer result = INSTANCE;
+    if (result == null) {
+      synchronized (IndexWriteCoalescer.class) {
+        result = INSTANCE;
+        if (result == null) {
+          INSTANCE = result = new IndexWriteCoalescer(conf);
+        }
+      }
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  IndexWriteCoalescer(Configuration conf) {
+    this.maxDelayMs = conf.getLong(INDEX_WRITE_COALESCING_MAX_DELAY_MS_CONF_KEY,
+      DEFAULT_INDEX_WRITE_COALESCING_MAX_DELAY_MS);
+    this.maxBatchSize = Math.max(1, conf.getInt(INDEX_WRITE_COALESCING_MAX_BATCH_SIZE_CONF_KEY,
+      DEFAULT_INDEX_WRITE_COALESCING_MAX_BATCH_SIZE));
+    this.maxInFlight = Math.max(1, conf.getInt(INDEX_WRITE_COALESCING_MAX_IN_FLIGHT_CONF_KEY,
+      DEFAULT_INDEX_WRITE_COALESCING_MAX_IN_FLIGHT));
+    this.metricSource = MetricsIndexerSourceFactory.getInstance().getIndexerSource();
+  }
+
+  /**
+   * Mutations of a writer waiting to be sent.
+   */
+  private static final class PendingWrite {
+    private final List<Mutation> mutations;
+    private final CountDownLatch done = new CountDownLatch(1);
+    // Guarded by the destination
+    private boolean taken;
+    private volatile IOException error;
+
+    private PendingWrite(List<Mutation> mutations) {
+      this.mutations = mutations;
+    }
+
+    private void complete(IOException error) {
+      this.error = error;
+      done.countDown();
+    }
+  }
+
+  /**
+   * Queue of the writes to an index table, guarded by itself.
+   */
+  private static final class Destination {
+    private final HTableInterfaceReference tableReference;
+    private final ArrayDeque<PendingWrite> queue = new ArrayDeque<>();
+    private int queuedMutations;
+    private boolean hasLeader;
+    private int inFlight;
+
+    private Destination(HTableInterfaceReference tableReference) {
+      this.tableReference = tableReference;
+    }
+
+    /**
+     * Takes the oldest queued writes, at least one, up to the given number of mutations.
+     */
+    private List<PendingWrite> take(int maxBatchSize) {
+      List<PendingWrite> batch = new ArrayList<>();
+      int size = 0;
+      while (!queue.isEmpty()) {
+        PendingWrite write = queue.peek();
+        if (!batch.isEmpty() && size + write.mutations.size() > maxBatchSize) {
+          break;
+        }
+        queue.poll();
+        write.taken = true;
+        size += write.mutations.size();
+        batch.add(write);
+      }
+      queuedMutations -= size;
+      return batch;
+    }
+  }
+
+  /**
+   * Writes the given mutations to the index table along with the mutations written concurrently to
+   * the same table, and returns once they are written.
+   * @param tableReference the index table
+   * @param retrying       whether the tables of the factory retry the writes, the writes being only
+   *                       coalesced with the writes with the same retry behavior
+   * @param factory        the factory of the table used if this writer sends the batch
+   * @param mutations      the mutations to write
+   * @throws IOException if any of the given mutations could not be written
+   */
+  public void write(HTableInterfaceReference tableReference, boolean retrying,
+    HTableFactory factory, List<Mutation> mutations) throws IOException, InterruptedException {
+    Destination destination = destinations.computeIfAbsent(new Pair<>(tableReference, retrying),
+      key -> new Destination(tableReference));
+    PendingWrite write = new PendingWrite(mutations);
+    long start = EnvironmentEdgeManager.currentTimeMillis();
+    synchronized (destination) {
+      destination.queue.add(write);
+      destination.queuedMutations += mutations.size();
+      // Let the leader gathering the next batch know about the new mutations
+      destination.notifyAll();
+    }
+    try {
+      while (true) {
+        List<PendingWrite> batch;
+        synchronized (destination) {
+          while (!write.taken && (destination.hasLeader || destination.inFlight >= maxInFlight)) {
+            destination.wait();
+          }
+          if (write.taken) {
+            break;
+          }
+          batch = gather(destination);
+        }
+        try {
+          send(destination, batch, factory);
+        } finally {
+          synchronized (destination) {
+            destination.inFlight--;
+            destination.notifyAll();
+          }
+        }
+      }
+      write.done.await();
+    } catch (InterruptedException e) {
+      synchronized (destination) {
+        // The write may already be in flight, otherwise it is not sent anymore
+        if (destination.queue.remove(write)) {
+          destination.queuedMutations -= mutations.size();
+        }
+      }
+      throw e;
+    }
+    metricSource.updateCoalescedIndexWriteTime(tableReference.getTableName(),
+      EnvironmentEdgeManager.currentTimeMillis() - start);
+    if (write.error != null) {
+      throw write.error;
+    }
+  }
+
+  /**
+   * Waits for more writes as the leader of the next batch of the destination, and takes the batch.
+   * Called while holding the lock of the destination.
+   */
+  private List<PendingWrite> gather(Destination destination) throws InterruptedException {
+    destination.hasLeader = true;
+    try {
+      long deadline = EnvironmentEdgeManager.currentTimeMillis() + maxDelayMs;
+      long remaining = maxDelayMs;
+      while (destination.queuedMutations < maxBatchSize && remaining > 0) {
+        destination.wait(remaining);
+        remaining = deadline - EnvironmentEdgeManager.currentTimeMillis();
+      }
+      List<PendingWrite> batch = destination.take(maxBatchSize);
+      destination.inFlight++;
+      return batch;
+    } finally {
+      destination.hasLeader = false;
+      destination.notifyAll();
+    }
+  }
+
+  private void send(Destination destination, List<PendingWrite> batch, HTableFactory factory) {
+    int size = 0;
+    for (PendingWrite write : batch) {
+      size += write.mutations.size();
+    }
+    List<Mutation> mutations = new ArrayList<>(size);
+    for (PendingWrite write : batch) {
+      mutations.addAll(write.mutations);
+    }
+    Object[] results = new Object[size];
+    IOException failure = null;
+    long start = EnvironmentEdgeManager.currentTimeMillis();
+    try (Table table = factory.getTable(destination.tableReference.get())) {
+      table.batch(mutations, results);
+    } catch (IOException e) {
+      failure = e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = (IOException) new InterruptedIOException(
+        "Interrupted while writing to " + destination.tableReference).initCause(e);
+    } catch (RuntimeException e) {
+      failure = new IOException(e);
+    }
+    String tableName = destination.tableReference.getTableName();
+    metricSource.updateCoalescedIndexWriteBatchSize(tableName, size);
+    metricSource.updateCoalescedIndexWriteBatchTime(tableName,
+      EnvironmentEdgeManager.currentTimeMillis() - start);
+    int offset = 0;
+    for (PendingWrite write : batch) {
+      IOException error = null;
+      if (failure != null) {
+        // The results of the mutations that were written are set even if the batch failed
+        for (int i = offset; i < offset + write.mutations.size(); i++) {
+          if (results[i] == null || results[i] instanceof Throwable) {
+            error = failure;
+            break;
+          }
+        }
+      }
+      offset += write.mutations.size();
+      write.complete(error);
+    }
+  }
+}
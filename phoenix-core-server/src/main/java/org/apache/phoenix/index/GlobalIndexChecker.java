@@ -27,16 +27,24 @@ import static org.apache.phoenix.util.ScanUtil.isDummy;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.PackagePrivateFieldAccessor;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
@@ -56,21 +64,26 @@ import org.apache.hadoop.hbase.regionserver.Region;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.regionserver.ScannerContext;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.IndexMaintainerCache;
+import org.apache.phoenix.compile.ScanRanges;
 import org.apache.phoenix.coprocessor.BaseRegionScanner;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.coprocessor.DelegateRegionScanner;
 import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
 import org.apache.phoenix.filter.EmptyColumnOnlyFilter;
 import org.apache.phoenix.filter.PagingFilter;
+import org.apache.phoenix.filter.SkipScanFilter;
 import org.apache.phoenix.filter.UnverifiedRowFilter;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
 import org.apache.phoenix.hbase.index.metrics.GlobalIndexCheckerSource;
 import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.SortOrder;
 import org.apache.phoenix.schema.transform.TransformMaintainer;
 import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.ClientUtil;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.IndexUtil;
@@ -79,6 +92,8 @@ import org.apache.phoenix.util.ServerUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.RateLimiter;
+
 /**
  * Coprocessor that verifies the scanned rows of a non-transactional global index. If an index row
  * is unverified (i.e., the row status is unverified), the following steps are taken : (1) We
@@ -99,6 +114,13 @@ import org.slf4j.LoggerFactory;
  * unverified index row updates) complete but the second phase updates (i.e., data table row
  * updates) fail. There could be back to back such events so we need to scan older versions to
  * retrieve the verified version that is masked by the unverified version(s).
+ * <p>
+ * If {@link QueryServices#GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB} is set, an unverified index row is
+ * repaired along with the unverified rows found in the next index rows of the region: their data
+ * rows are read with a single skip scan, and the index rows of the data rows pointing back to them
+ * are rebuilt with a single rebuild scan. The unverified rows without such data row are then
+ * skipped without going to the data table again when the scan reaches them, and the other ones are
+ * repaired the usual way if they are still unverified.
  */
 public class GlobalIndexChecker extends BaseScannerRegionObserver implements RegionCoprocessor {
   private static final Logger LOG = LoggerFactory.getLogger(GlobalIndexChecker.class);
@@ -108,6 +130,8 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
 
   private GlobalIndexCheckerSource metricsSource;
   private CoprocessorEnvironment env;
+  // Limits the rows repaired in batches in the region, null if not limited
+  private RateLimiter batchRepairRateLimiter;
 
   public enum RebuildReturnCode {
     NO_DATA_ROW(0),
@@ -155,6 +179,13 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
     private String indexName;
     private long pageSizeMs;
     private boolean initialized = false;
+    private int repairBatchSize;
+    private int repairBatchWindowRows;
+    // The unverified rows found not to have a data row pointing back to them by the last batched
+    // repair, with the timestamp of their empty column
+    private final Map<byte[], Long> batchInvalidRows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    // The last index row looked at by the last batched repair
+    private byte[] batchRepairEndKey;
 
     public GlobalIndexScanner(RegionCoprocessorEnvironment env, Scan scan, RegionScanner scanner,
       GlobalIndexCheckerSource metricsSource) throws IOException {
@@ -175,7 +206,8 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       byte[] indexTableNameBytes = region.getRegionInfo().getTable().getName();
       this.indexName = Bytes.toString(indexTableNameBytes);
       byte[] md = scan.getAttribute(PhoenixIndexCodec.INDEX_PROTO_MD);
-      List<IndexMaintainer> maintainers = IndexMaintainer.deserialize(md, true);
+      List<IndexMaintainer> maintainers =
+        IndexMaintainerCache.getInstance(env.getConfiguration()).getIndexMaintainers(md, true);
       indexMaintainer = getIndexMaintainer(maintainers, indexTableNameBytes);
       if (indexMaintainer == null) {
         throw new DoNotRetryIOException(
@@ -186,6 +218,18 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
         DEFAULT_REPAIR_LOGGING_PERCENT);
       random = new Random(EnvironmentEdgeManager.currentTimeMillis());
       pageSizeMs = getPageSizeMsForRegionScanner(scan);
+      // Batched repairs look ahead in the scan order of the index rows
+      if (
+        !scan.isReversed() && !(indexMaintainer instanceof TransformMaintainer)
+          && !indexMaintainer.isCDCIndex()
+      ) {
+        repairBatchSize =
+          env.getConfiguration().getInt(QueryServices.GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB,
+            QueryServicesOptions.DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_SIZE);
+        repairBatchWindowRows =
+          env.getConfiguration().getInt(QueryServices.GLOBAL_INDEX_REPAIR_BATCH_WINDOW_ROWS_ATTRIB,
+            QueryServicesOptions.DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_WINDOW_ROWS);
+      }
     }
 
     @Override
@@ -343,7 +387,7 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       return scanner.getMvccReadPoint();
     }
 
-    private void repairIndexRows(byte[] indexRowKey, long ts, List<Cell> row) throws IOException {
+    private void initRepair() throws IOException {
       if (buildIndexScanForDataTable == null) {
         buildIndexScanForDataTable = new Scan();
         indexScan = new Scan(scan);
@@ -387,6 +431,10 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
         buildIndexScanForDataTable.addColumn(indexMaintainer.getDataEmptyKeyValueCF(),
           indexMaintainer.getEmptyKeyValueQualifierForDataTable());
       }
+    }
+
+    private void repairIndexRows(byte[] indexRowKey, long ts, List<Cell> row) throws IOException {
+      initRepair();
       // Rebuild the index row from the corresponding the row in the the data table
       // Get the data row key from the index row key
       byte[] dataRowKey =
@@ -409,6 +457,14 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
       byte[] value = result.value();
       long code = PLong.INSTANCE.getCodec().decodeLong(new ImmutableBytesWritable(value),
         SortOrder.getDefault());
+      repairIndexRows(code, indexRowKey, ts, row);
+    }
+
+    /**
+     * Completes the repair of an unverified index row given the outcome of its rebuild.
+     */
+    private void repairIndexRows(long code, byte[] indexRowKey, long ts, List<Cell> row)
+      throws IOException {
       if (code == RebuildReturnCode.NO_DATA_ROW.getValue()) {
         // This means there does not exist a data table row for the data row key derived from
         // this unverified index row. So, no index row has been built
@@ -538,6 +594,179 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
           + region.getRegionInfo().getTable().getNameAsString());
     }
 
+    /**
+     * Repairs the given unverified index row along with the unverified rows following it in the
+     * region, or skips it if the previous batched repair found that its data row does not point
+     * back to it.
+     * @param emptyColumnTs the timestamp of the empty column of the row
+     * @return false if the row is to be repaired on its own
+     */
+    private boolean repairIndexRowsInBatch(byte[] indexRowKey, long ts, long emptyColumnTs,
+      List<Cell> row) throws IOException {
+      if (repairBatchSize <= 0) {
+        return false;
+      }
+      Long invalidRowTs = batchInvalidRows.remove(indexRowKey);
+      if (invalidRowTs != null && invalidRowTs == emptyColumnTs) {
+        // No data row points back to this row, and the scanner has been reopened after the rows
+        // of the batch were rebuilt
+        repairIndexRows(RebuildReturnCode.NO_DATA_ROW.getValue(), indexRowKey, ts, row);
+        return true;
+      }
+      if (batchRepairEndKey != null && Bytes.compareTo(indexRowKey, batchRepairEndKey) <= 0) {
+        // The row has been written or is still masked by newer unverified versions since the
+        // previous batch looked at it
+        return false;
+      }
+      Map<byte[], Long> unverifiedRows = getUnverifiedRows(indexRowKey);
+      if (unverifiedRows.size() <= 1) {
+        return false;
+      }
+      if (
+        batchRepairRateLimiter != null && !batchRepairRateLimiter.tryAcquire(unverifiedRows.size())
+      ) {
+        metricsSource.incrementIndexBatchRepairsThrottled(indexName);
+        return false;
+      }
+      long start = EnvironmentEdgeManager.currentTimeMillis();
+      initRepair();
+      batchInvalidRows.clear();
+      Map<byte[], List<byte[]>> dataRowKeys = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] unverifiedRowKey : unverifiedRows.keySet()) {
+        byte[] dataRowKey = indexMaintainer
+          .buildDataRowKey(new ImmutableBytesWritable(unverifiedRowKey), viewConstants);
+        List<byte[]> indexRowKeys = dataRowKeys.get(dataRowKey);
+        if (indexRowKeys == null) {
+          indexRowKeys = new ArrayList<>(1);
+          dataRowKeys.put(dataRowKey, indexRowKeys);
+        }
+        indexRowKeys.add(unverifiedRowKey);
+      }
+      // Read the data rows the same way the single row rebuild does
+      Set<byte[]> validRowKeys = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+      List<byte[]> dataRowKeysToRebuild = new ArrayList<>();
+      Scan dataScan = new Scan();
+      for (ColumnReference column : indexMaintainer.getAllColumnsForDataTable()) {
+        dataScan.addColumn(column.getFamily(), column.getQualifier());
+      }
+      dataScan.addColumn(indexMaintainer.getDataEmptyKeyValueCF(),
+        indexMaintainer.getEmptyKeyValueQualifierForDataTable());
+      ScanRanges dataScanRanges = getPointLookup(dataRowKeys.keySet());
+      dataScanRanges.initializeScan(dataScan);
+      dataScan.setFilter(dataScanRanges.getSkipScanFilter());
+      dataScan.setTimeRange(0, maxTimestamp);
+      try (ResultScanner resultScanner = dataHTable.getScanner(dataScan)) {
+        for (Result result = resultScanner.next(); result != null; result = resultScanner.next()) {
+          List<byte[]> indexRowKeys = dataRowKeys.get(result.getRow());
+          if (indexRowKeys == null) {
+            continue;
+          }
+          Put put = new Put(result.getRow());
+          for (Cell cell : result.rawCells()) {
+            put.add(cell);
+          }
+          boolean rebuild = false;
+          for (byte[] unverifiedRowKey : indexRowKeys) {
+            if (indexMaintainer.checkIndexRow(unverifiedRowKey, put)) {
+              validRowKeys.add(unverifiedRowKey);
+              rebuild = true;
+            }
+          }
+          if (rebuild) {
+            dataRowKeysToRebuild.add(result.getRow());
+          }
+        }
+      } catch (Throwable t) {
+        ClientUtil.throwIOException(dataHTable.getName().toString(), t);
+      }
+      if (!dataRowKeysToRebuild.isEmpty()) {
+        Scan rebuildScan = new Scan(buildIndexScanForDataTable);
+        rebuildScan.setAttribute(BaseScannerRegionObserverConstants.INDEX_ROW_KEY, null);
+        rebuildScan.setAttribute(BaseScannerRegionObserverConstants.BATCH_READ_REPAIR, TRUE_BYTES);
+        ScanRanges rebuildScanRanges = getPointLookup(dataRowKeysToRebuild);
+        rebuildScanRanges.initializeScan(rebuildScan);
+        rebuildScan
+          .setFilter(new SkipScanFilter(rebuildScanRanges.getSkipScanFilter(), true, true));
+        rebuildScan.setTimeRange(0, maxTimestamp);
+        try (ResultScanner resultScanner = dataHTable.getScanner(rebuildScan)) {
+          while (resultScanner.next() != null) {
+            // The rebuild of each data region returns the number of rebuilt rows
+          }
+        } catch (Throwable t) {
+          ClientUtil.throwIOException(dataHTable.getName().toString(), t);
+        }
+      }
+      for (Map.Entry<byte[], Long> entry : unverifiedRows.entrySet()) {
+        if (!validRowKeys.contains(entry.getKey())) {
+          batchInvalidRows.put(entry.getKey(), entry.getValue());
+        }
+      }
+      metricsSource.incrementIndexBatchRepairs(indexName);
+      metricsSource.updateIndexBatchRepairSize(indexName, unverifiedRows.size());
+      metricsSource.updateIndexBatchRepairTime(indexName,
+        EnvironmentEdgeManager.currentTimeMillis() - start);
+      // Complete the repair of the current row as if it was rebuilt on its own
+      if (validRowKeys.contains(indexRowKey)) {
+        repairIndexRows(RebuildReturnCode.INDEX_ROW_EXISTS.getValue(), indexRowKey, ts, row);
+      } else {
+        batchInvalidRows.remove(indexRowKey);
+        if (!dataRowKeysToRebuild.isEmpty()) {
+          // The rebuilt rows are not visible to the current scanner
+          scanner.close();
+          indexScan.withStartRow(indexRowKey, false);
+          scanner = ((DelegateRegionScanner) delegate).getNewRegionScanner(indexScan);
+          hasMore = true;
+        }
+        repairIndexRows(RebuildReturnCode.NO_DATA_ROW.getValue(), indexRowKey, ts, row);
+      }
+      return true;
+    }
+
+    /**
+     * Returns the unverified rows, with the timestamp of their empty column, in the window of index
+     * rows starting from the given one.
+     */
+    private Map<byte[], Long> getUnverifiedRows(byte[] indexRowKey) throws IOException {
+      Map<byte[], Long> unverifiedRows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      Scan lookAheadScan = new Scan();
+      lookAheadScan.withStartRow(indexRowKey, true);
+      if (scan.getStopRow().length > 0) {
+        lookAheadScan.withStopRow(scan.getStopRow(), scan.includeStopRow());
+      }
+      lookAheadScan.setTimeRange(minTimestamp, maxTimestamp);
+      lookAheadScan.addColumn(emptyCF, emptyCQ);
+      List<Cell> row = new ArrayList<>();
+      int rowCount = 0;
+      boolean hasMoreRows;
+      try (RegionScanner lookAheadScanner = region.getScanner(lookAheadScan)) {
+        do {
+          row.clear();
+          hasMoreRows = lookAheadScanner.next(row);
+          if (row.isEmpty()) {
+            continue;
+          }
+          rowCount++;
+          Cell cell = row.get(0);
+          batchRepairEndKey = CellUtil.cloneRow(cell);
+          if (!verifyRowAndRemoveEmptyColumn(row)) {
+            unverifiedRows.put(batchRepairEndKey, cell.getTimestamp());
+          }
+        } while (
+          hasMoreRows && rowCount < repairBatchWindowRows && unverifiedRows.size() < repairBatchSize
+        );
+      }
+      return unverifiedRows;
+    }
+
+    private long getEmptyColumnTimestamp(List<Cell> cellList) {
+      for (Cell cell : cellList) {
+        if (isEmptyColumn(cell)) {
+          return cell.getTimestamp();
+        }
+      }
+      return HConstants.LATEST_TIMESTAMP;
+    }
+
     private boolean isEmptyColumn(Cell cell) {
       return Bytes.compareTo(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength(),
         emptyCF, 0, emptyCF.length) == 0
@@ -613,10 +842,13 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
 
         byte[] rowKey = CellUtil.cloneRow(cell);
         long ts = cellList.get(0).getTimestamp();
+        long emptyColumnTs = getEmptyColumnTimestamp(cellList);
         cellList.clear();
         long repairTime;
         try {
-          repairIndexRows(rowKey, ts, cellList);
+          if (!repairIndexRowsInBatch(rowKey, ts, emptyColumnTs, cellList)) {
+            repairIndexRows(rowKey, ts, cellList);
+          }
           repairTime = EnvironmentEdgeManager.currentTimeMillis() - repairStart;
           metricsSource.incrementIndexRepairs(indexName);
           metricsSource.updateUnverifiedIndexRowAge(indexName,
@@ -676,6 +908,19 @@ public class GlobalIndexChecker extends BaseScannerRegionObserver implements Reg
   public void start(CoprocessorEnvironment e) throws IOException {
     this.env = e;
     this.metricsSource = MetricsIndexerSourceFactory.getInstance().getGlobalIndexCheckerSource();
+    long batchRepairMaxRowsPerSec =
+      e.getConfiguration().getLong(QueryServices.GLOBAL_INDEX_REPAIR_BATCH_MAX_ROWS_PER_SEC_ATTRIB,
+        QueryServicesOptions.DEFAULT_GLOBAL_INDEX_REPAIR_BATCH_MAX_ROWS_PER_SEC);
+    this.batchRepairRateLimiter =
+      batchRepairMaxRowsPerSec > 0 ? RateLimiter.create(batchRepairMaxRowsPerSec) : null;
+  }
+
+  private static ScanRanges getPointLookup(Collection<byte[]> rowKeys) {
+    List<KeyRange> keys = new ArrayList<>(rowKeys.size());
+    for (byte[] rowKey : rowKeys) {
+      keys.add(PVarbinary.INSTANCE.getKeyRange(rowKey, SortOrder.ASC));
+    }
+    return ScanRanges.createPointLookup(keys);
   }
 
 }
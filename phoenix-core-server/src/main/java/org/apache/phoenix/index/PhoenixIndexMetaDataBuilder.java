@@ -26,6 +26,7 @@ import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.cache.IndexMaintainerCache;
 import org.apache.phoenix.cache.IndexMetaDataCache;
 import org.apache.phoenix.cache.ServerCacheClient;
 import org.apache.phoenix.cache.TenantCache;
@@ -70,7 +71,8 @@ public class PhoenixIndexMetaDataBuilder {
     if (md != null) {
       boolean useProto = md != null;
       byte[] txState = attributes.get(BaseScannerRegionObserverConstants.TX_STATE);
-      final List<IndexMaintainer> indexMaintainers = IndexMaintainer.deserialize(md, useProto);
+      final List<IndexMaintainer> indexMaintainers =
+        IndexMaintainerCache.getInstance(env.getConfiguration()).getIndexMaintainers(md, useProto);
       byte[] clientVersionBytes = attributes.get(BaseScannerRegionObserverConstants.CLIENT_VERSION);
       final int clientVersion = clientVersionBytes == null
         ? ScanUtil.UNKNOWN_CLIENT_VERSION
@@ -143,6 +143,14 @@ public class PhoenixServerBuildIndexInputFormat<T extends DBWritable> extends Ph
   protected QueryPlan getQueryPlan(final JobContext context, final Configuration configuration)
     throws IOException {
     Preconditions.checkNotNull(context);
+    return getQueryPlan(configuration);
+  }
+
+  /**
+   * Returns the plan of the server side build configured in the given configuration, which is also
+   * used to run the build without a MapReduce job.
+   */
+  public QueryPlan getQueryPlan(final Configuration configuration) throws IOException {
     if (queryPlan != null) {
       return queryPlan;
     }
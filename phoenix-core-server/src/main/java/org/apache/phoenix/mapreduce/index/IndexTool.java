@@ -203,7 +203,7 @@ public class IndexTool extends Configured implements Tool {
   private String dataTableWithSchema;
   private String indexTableWithSchema;
 
-  private boolean isPartialBuild, isForeground;
+  private boolean isPartialBuild, isForeground, isStandalone;
   private IndexVerifyType indexVerifyType = IndexVerifyType.NONE;
   private IndexDisableLoggingType disableLoggingType = IndexDisableLoggingType.NONE;
   private SourceTable sourceTable = SourceTable.DATA_TABLE_SOURCE;
@@ -276,6 +276,12 @@ public class IndexTool extends Configured implements Tool {
       "Applicable only to global indexes on tables, not to local or view indexes. "
         + "If specified, truncates the index table and rebuilds (optional)");
 
+  private static final Option STANDALONE_OPTION = new Option("nomr", "no-map-reduce", false,
+    "Applicable only to non-transactional global indexes. If specified, rebuilds or verifies the "
+      + "index from this process, region by region, instead of with a MapReduce job, and waits for "
+      + "the build to complete. The build can be resumed by running it again with the same "
+      + "end time (optional)");
+
   private static final Option HELP_OPTION = new Option("h", "help", false, "Help");
   private static final Option START_TIME_OPTION =
     new Option("st", "start-time", true, "Start time for indextool rebuild or verify");
@@ -303,6 +309,9 @@ public class IndexTool extends Configured implements Tool {
     "start-time/end-time and retry verify feature are only "
       + "applicable for local or non-transactional global indexes";
 
+  public static final String STANDALONE_NOT_APPLICABLE =
+    "no-map-reduce is only applicable for non-transactional global indexes";
+
   public static final String RETRY_VERIFY_NOT_APPLICABLE = "retry verify feature accepts "
     + "non-zero ts set in the past and ts must be present in PHOENIX_INDEX_TOOL_RESULT table";
 
@@ -319,6 +328,7 @@ public class IndexTool extends Configured implements Tool {
     options.addOption(SNAPSHOT_OPTION);
     options.addOption(TENANT_ID_OPTION);
     options.addOption(DELETE_ALL_AND_REBUILD_OPTION);
+    options.addOption(STANDALONE_OPTION);
     options.addOption(HELP_OPTION);
     AUTO_SPLIT_INDEX_OPTION.setOptionalArg(true);
     SPLIT_INDEX_OPTION.setOptionalArg(true);
@@ -388,6 +398,15 @@ public class IndexTool extends Configured implements Tool {
         + " is not compatible with " + PARTIAL_REBUILD_OPTION.getLongOpt());
     }
 
+    if (
+      cmdLine.hasOption(STANDALONE_OPTION.getOpt())
+        && (cmdLine.hasOption(PARTIAL_REBUILD_OPTION.getOpt())
+          || cmdLine.hasOption(SNAPSHOT_OPTION.getOpt()))
+    ) {
+      throw new IllegalStateException(STANDALONE_OPTION.getLongOpt() + " is not compatible with "
+        + PARTIAL_REBUILD_OPTION.getLongOpt() + " or " + SNAPSHOT_OPTION.getLongOpt());
+    }
+
     boolean splitIndex = cmdLine.hasOption(AUTO_SPLIT_INDEX_OPTION.getOpt())
       || cmdLine.hasOption(SPLIT_INDEX_OPTION.getOpt());
     if (splitIndex && !cmdLine.hasOption(INDEX_TABLE_OPTION.getOpt())) {
@@ -520,17 +539,25 @@ public class IndexTool extends Configured implements Tool {
           // IndexTool.
           // When endTime is passed for local and non-tx global indexes, we'll override the
           // CURRENT_SCN_VALUE.
-          if (endTime != null) {
-            PhoenixConfigurationUtil.setCurrentScnValue(configuration, endTime);
-          }
-          if (lastVerifyTime != null) {
-            PhoenixConfigurationUtil.setIndexToolLastVerifyTime(configuration, lastVerifyTime);
-          }
           return configureJobForServerBuildIndex();
         }
       }
     }
 
+    /**
+     * Runs the server side build of a non-transactional global index from this process with a
+     * {@link StandaloneIndexRebuilder} instead of a job.
+     */
+    public boolean runStandalone() throws Exception {
+      if (isLocalIndexBuild || pDataTable.isTransactional()) {
+        throw new IllegalArgumentException(STANDALONE_NOT_APPLICABLE);
+      }
+      configureServerBuildIndex();
+      PhoenixConfigurationUtil.setInputTableName(configuration, dataTableWithSchema);
+      new StandaloneIndexRebuilder(configuration).run();
+      return true;
+    }
+
     private Job configureJobForPartialBuild() throws Exception {
       connection = ConnectionUtil.getInputConnection(configuration);
       long minDisableTimestamp = HConstants.LATEST_TIMESTAMP;
@@ -727,7 +754,13 @@ public class IndexTool extends Configured implements Tool {
       return configureSubmittableJobUsingDirectApi(job);
     }
 
-    private Job configureJobForServerBuildIndex() throws Exception {
+    private void configureServerBuildIndex() {
+      if (endTime != null) {
+        PhoenixConfigurationUtil.setCurrentScnValue(configuration, endTime);
+      }
+      if (lastVerifyTime != null) {
+        PhoenixConfigurationUtil.setIndexToolLastVerifyTime(configuration, lastVerifyTime);
+      }
       long indexRebuildQueryTimeoutMs =
         configuration.getLong(QueryServices.INDEX_REBUILD_QUERY_TIMEOUT_ATTRIB,
           QueryServicesOptions.DEFAULT_INDEX_REBUILD_QUERY_TIMEOUT);
@@ -769,7 +802,10 @@ public class IndexTool extends Configured implements Tool {
       if (tenantId != null) {
         PhoenixConfigurationUtil.setTenantId(configuration, tenantId);
       }
+    }
 
+    private Job configureJobForServerBuildIndex() throws Exception {
+      configureServerBuildIndex();
       if (outputPath != null) {
         fs = outputPath.getFileSystem(configuration);
         fs.delete(outputPath, true);
@@ -820,9 +856,11 @@ public class IndexTool extends Configured implements Tool {
 
   public static void createIndexToolTables(Connection connection) throws Exception {
     try (IndexVerificationResultRepository resultRepo = new IndexVerificationResultRepository();
-      IndexVerificationOutputRepository outputRepo = new IndexVerificationOutputRepository()) {
+      IndexVerificationOutputRepository outputRepo = new IndexVerificationOutputRepository();
+      IndexToolCheckpointRepository checkpointRepo = new IndexToolCheckpointRepository()) {
       resultRepo.createResultTable(connection);
       outputRepo.createOutputTable(connection);
+      checkpointRepo.createCheckpointTable(connection);
     }
   }
 
@@ -891,6 +929,10 @@ public class IndexTool extends Configured implements Tool {
       fs.delete(outputPath, true);
     }
     JobFactory jobFactory = new JobFactory(conn, configuration, outputPath);
+    if (isStandalone) {
+      LOGGER.info("Running Index Build without MapReduce. Waits for the build to complete.");
+      return jobFactory.runStandalone();
+    }
     job = jobFactory.getJob();
     if (!isForeground) {
       LOGGER.info("Running Index Build in Background - Submit async and exit");
@@ -952,6 +994,7 @@ public class IndexTool extends Configured implements Tool {
     isForeground = cmdLine.hasOption(RUN_FOREGROUND_OPTION.getOpt());
     useSnapshot = cmdLine.hasOption(SNAPSHOT_OPTION.getOpt());
     shouldDeleteBeforeRebuild = cmdLine.hasOption(DELETE_ALL_AND_REBUILD_OPTION.getOpt());
+    isStandalone = cmdLine.hasOption(STANDALONE_OPTION.getOpt());
     return 0;
   }
 
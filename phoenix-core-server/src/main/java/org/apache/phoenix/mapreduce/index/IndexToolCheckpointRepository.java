@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.index;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hbase.TableExistsException;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptor;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessorclient.MetaDataProtocol;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.util.ByteUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of the data table scans of the index builds run by {@link StandaloneIndexRebuilder},
+ * stored next to the other IndexTool tables. The row key is scan max timestamp | index table name |
+ * scan start row, and each row records how far the scan starting at that row got, so that a build
+ * with the same max timestamp resumes after the rows already rebuilt or verified.
+ */
+public class IndexToolCheckpointRepository implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexToolCheckpointRepository.class);
+
+  public final static String CHECKPOINT_TABLE_NAME = "PHOENIX_INDEX_TOOL_CHECKPOINT";
+  public final static byte[] CHECKPOINT_TABLE_NAME_BYTES = Bytes.toBytes(CHECKPOINT_TABLE_NAME);
+  public final static byte[] CHECKPOINT_TABLE_COLUMN_FAMILY =
+    QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES;
+  public final static String START_ROW = "StartRow";
+  public final static byte[] START_ROW_BYTES = Bytes.toBytes(START_ROW);
+  public final static String STOP_ROW = "StopRow";
+  public final static byte[] STOP_ROW_BYTES = Bytes.toBytes(STOP_ROW);
+  public final static String NEXT_ROW = "NextRow";
+  public final static byte[] NEXT_ROW_BYTES = Bytes.toBytes(NEXT_ROW);
+  public final static String DONE = "Done";
+  public final static byte[] DONE_BYTES = Bytes.toBytes(DONE);
+  public final static String ROW_COUNT = "RowCount";
+  public final static byte[] ROW_COUNT_BYTES = Bytes.toBytes(ROW_COUNT);
+
+  private Table checkpointTable;
+
+  /**
+   * Progress of a scan of the data table.
+   */
+  public static class Checkpoint {
+    private final byte[] startRow;
+    private final byte[] stopRow;
+    private final byte[] nextRow;
+    private final boolean done;
+    private final long rowCount;
+
+    /**
+     * @param startRow the start row of the scan
+     * @param stopRow  the stop row of the scan, empty for the end of the table
+     * @param nextRow  the first row that is not rebuilt yet
+     * @param done     whether all the rows of the scan are rebuilt
+     * @param rowCount the number of data rows rebuilt by the scan so far
+     */
+    public Checkpoint(byte[] startRow, byte[] stopRow, byte[] nextRow, boolean done,
+      long rowCount) {
+      this.startRow = startRow;
+      this.stopRow = stopRow;
+      this.nextRow = nextRow;
+      this.done = done;
+      this.rowCount = rowCount;
+    }
+
+    public byte[] getStartRow() {
+      return startRow;
+    }
+
+    public byte[] getStopRow() {
+      return stopRow;
+    }
+
+    public byte[] getNextRow() {
+      return nextRow;
+    }
+
+    public boolean isDone() {
+      return done;
+    }
+
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * Returns the end of the range of rows rebuilt by the scan, empty for the end of the table.
+     */
+    public byte[] getEndRow() {
+      return done ? stopRow : nextRow;
+    }
+  }
+
+  /***
+   * Only usable for create methods. To read or write use the other constructor.
+   */
+  public IndexToolCheckpointRepository() {
+
+  }
+
+  public IndexToolCheckpointRepository(Connection conn) throws SQLException {
+    checkpointTable =
+      conn.unwrap(PhoenixConnection.class).getQueryServices().getTable(CHECKPOINT_TABLE_NAME_BYTES);
+  }
+
+  public void createCheckpointTable(Connection connection) throws IOException, SQLException {
+    ConnectionQueryServices queryServices =
+      connection.unwrap(PhoenixConnection.class).getQueryServices();
+    try (Admin admin = queryServices.getAdmin()) {
+      TableName checkpointTableName = TableName.valueOf(CHECKPOINT_TABLE_NAME);
+      if (!admin.tableExists(checkpointTableName)) {
+        ColumnFamilyDescriptor columnDescriptor =
+          ColumnFamilyDescriptorBuilder.newBuilder(CHECKPOINT_TABLE_COLUMN_FAMILY)
+            .setTimeToLive(MetaDataProtocol.DEFAULT_LOG_TTL).build();
+        TableDescriptor tableDescriptor = TableDescriptorBuilder.newBuilder(checkpointTableName)
+          .setColumnFamily(columnDescriptor).build();
+        try {
+          admin.createTable(tableDescriptor);
+        } catch (TableExistsException e) {
+          LOGGER.warn("Table exists, ignoring", e);
+        }
+      }
+    }
+  }
+
+  private static byte[] generatePartialRowKey(long ts, byte[] indexTableName) {
+    return ByteUtil.concat(Bytes.toBytes(Long.toString(ts)),
+      IndexVerificationResultRepository.ROW_KEY_SEPARATOR_BYTE, indexTableName,
+      IndexVerificationResultRepository.ROW_KEY_SEPARATOR_BYTE);
+  }
+
+  public void logCheckpoint(long ts, byte[] indexTableName, Checkpoint checkpoint)
+    throws IOException {
+    Put put =
+      new Put(ByteUtil.concat(generatePartialRowKey(ts, indexTableName), checkpoint.getStartRow()));
+    put.addColumn(CHECKPOINT_TABLE_COLUMN_FAMILY, START_ROW_BYTES, checkpoint.getStartRow());
+    put.addColumn(CHECKPOINT_TABLE_COLUMN_FAMILY, STOP_ROW_BYTES, checkpoint.getStopRow());
+    put.addColumn(CHECKPOINT_TABLE_COLUMN_FAMILY, NEXT_ROW_BYTES, checkpoint.getNextRow());
+    put.addColumn(CHECKPOINT_TABLE_COLUMN_FAMILY, DONE_BYTES, Bytes.toBytes(checkpoint.isDone()));
+    put.addColumn(CHECKPOINT_TABLE_COLUMN_FAMILY, ROW_COUNT_BYTES,
+      Bytes.toBytes(Long.toString(checkpoint.getRowCount())));
+    checkpointTable.put(put);
+  }
+
+  /**
+   * Returns the progress of the scans of the builds of the given index with the given scan max
+   * timestamp.
+   */
+  public List<Checkpoint> getCheckpoints(long ts, byte[] indexTableName) throws IOException {
+    List<Checkpoint> checkpoints = new ArrayList<>();
+    Scan scan = new Scan();
+    scan.setRowPrefixFilter(generatePartialRowKey(ts, indexTableName));
+    try (ResultScanner scanner = checkpointTable.getScanner(scan)) {
+      for (Result result = scanner.next(); result != null; result = scanner.next()) {
+        checkpoints
+          .add(new Checkpoint(result.getValue(CHECKPOINT_TABLE_COLUMN_FAMILY, START_ROW_BYTES),
+            result.getValue(CHECKPOINT_TABLE_COLUMN_FAMILY, STOP_ROW_BYTES),
+            result.getValue(CHECKPOINT_TABLE_COLUMN_FAMILY, NEXT_ROW_BYTES),
+            Bytes.toBoolean(result.getValue(CHECKPOINT_TABLE_COLUMN_FAMILY, DONE_BYTES)),
+            Long.parseLong(
+              Bytes.toString(result.getValue(CHECKPOINT_TABLE_COLUMN_FAMILY, ROW_COUNT_BYTES)))));
+      }
+    }
+    return checkpoints;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (checkpointTable != null) {
+      checkpointTable.close();
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.index;
+
+import static org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil.getCurrentScnValue;
+import static org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil.getIndexVerifyType;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.coprocessor.IndexToolVerificationResult;
+import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
+import org.apache.phoenix.iterate.MapReduceParallelScanGrouper;
+import org.apache.phoenix.iterate.TableResultIterator;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.mapreduce.PhoenixServerBuildIndexInputFormat;
+import org.apache.phoenix.mapreduce.index.IndexToolCheckpointRepository.Checkpoint;
+import org.apache.phoenix.mapreduce.util.ConnectionUtil;
+import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
+import org.apache.phoenix.monitoring.ScanMetricsHolder;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.phoenix.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.RateLimiter;
+import org.apache.phoenix.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the server side build of a global index configured for IndexTool from this process instead
+ * of a MapReduce job. The scans of the data table that the job would split among its mappers are
+ * run by a local thread pool, each one rebuilding and/or verifying the index rows of its key range
+ * through {@code IndexRebuildRegionScanner} one page at a time. The progress of every scan is
+ * recorded after each page with {@link IndexToolCheckpointRepository}, and a build with the same
+ * max timestamp, i.e. the same IndexTool end time, skips the key ranges already done, even if the
+ * regions of the data table changed meanwhile. The number of data rows processed per second can be
+ * limited with {@link QueryServices#INDEX_REBUILD_STANDALONE_MAX_ROWS_PER_SEC_ATTRIB}.
+ * <p>
+ * The region servers log the verification results to the IndexTool result table as for the
+ * MapReduce job, and the index is made active once all the scans completed and the verification did
+ * not fail.
+ */
+public class StandaloneIndexRebuilder {
+  private static final Logger LOGGER = LoggerFactory.getLogger(StandaloneIndexRebuilder.class);
+
+  private final Configuration configuration;
+
+  public StandaloneIndexRebuilder(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * Returns the row the scan of the given key range should start from, skipping the rows already
+   * rebuilt according to the given checkpoints, or null if all the rows of the range were rebuilt.
+   */
+  @VisibleForTesting
+  static byte[] getResumeRow(List<Checkpoint> checkpoints, byte[] startRow, byte[] stopRow) {
+    byte[] row = startRow;
+    boolean advanced = true;
+    while (advanced) {
+      advanced = false;
+      for (Checkpoint checkpoint : checkpoints) {
+        byte[] endRow = checkpoint.getEndRow();
+        if (
+          Bytes.compareTo(checkpoint.getStartRow(), row) <= 0
+            && (endRow.length == 0 || Bytes.compareTo(row, endRow) < 0)
+        ) {
+          if (endRow.length == 0 || (stopRow.length > 0 && Bytes.compareTo(endRow, stopRow) >= 0)) {
+            return null;
+          }
+          row = endRow;
+          advanced = true;
+        }
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Rebuilds and/or verifies the index and returns the verification result of the build.
+   * @throws IOException if the verification failed
+   */
+  public IndexToolVerificationResult run() throws Exception {
+    PhoenixServerBuildIndexInputFormat<?> inputFormat = new PhoenixServerBuildIndexInputFormat<>();
+    final QueryPlan plan = inputFormat.getQueryPlan(configuration);
+    // Sets up the scans, one or more per region of the data table
+    plan.iterator(MapReduceParallelScanGrouper.getInstance());
+    final long ts = Long.parseLong(getCurrentScnValue(configuration));
+    String indexTableName = PhoenixConfigurationUtil.getPhysicalTableName(configuration);
+    final byte[] indexTableNameBytes = Bytes.toBytes(indexTableName);
+    int threads =
+      Math.max(1, configuration.getInt(QueryServices.INDEX_REBUILD_STANDALONE_THREADS_ATTRIB,
+        QueryServicesOptions.DEFAULT_INDEX_REBUILD_STANDALONE_THREADS));
+    long maxRowsPerSec =
+      configuration.getLong(QueryServices.INDEX_REBUILD_STANDALONE_MAX_ROWS_PER_SEC_ATTRIB,
+        QueryServicesOptions.DEFAULT_INDEX_REBUILD_STANDALONE_MAX_ROWS_PER_SEC);
+    final RateLimiter rateLimiter = maxRowsPerSec > 0 ? RateLimiter.create(maxRowsPerSec) : null;
+    // Pages of about one second of rows keep the rate smooth
+    final byte[] pageRows = rateLimiter != null
+      && configuration.get(QueryServices.INDEX_REBUILD_PAGE_SIZE_IN_ROWS) == null
+        ? Bytes.toBytes(
+          Math.min(maxRowsPerSec, QueryServicesOptions.DEFAULT_INDEX_REBUILD_PAGE_SIZE_IN_ROWS))
+        : null;
+    LOGGER.info("Building index {} with scan max timestamp {}, rerun IndexTool with end time {}"
+      + " to resume the build if it fails", indexTableName, ts, ts);
+
+    try (Connection connection = ConnectionUtil.getInputConnection(configuration)) {
+      final List<Checkpoint> checkpoints;
+      try (IndexToolCheckpointRepository checkpointRepository =
+        new IndexToolCheckpointRepository(connection)) {
+        checkpoints = checkpointRepository.getCheckpoints(ts, indexTableNameBytes);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat("index-rebuild-" + indexTableName + "-%d").build());
+      long rowCount = 0;
+      try {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (List<Scan> regionScans : plan.getScans()) {
+          for (final Scan scan : regionScans) {
+            futures.add(executor.submit(() -> rebuild(plan, scan, connection, checkpoints, ts,
+              indexTableNameBytes, rateLimiter, pageRows)));
+          }
+        }
+        for (Future<Long> future : futures) {
+          rowCount += future.get();
+        }
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw cause instanceof Exception ? (Exception) cause : new IOException(cause);
+      } finally {
+        executor.shutdownNow();
+      }
+      LOGGER.info("Scanned {} data rows to build index {}", rowCount, indexTableName);
+
+      IndexTool.IndexVerifyType verifyType = getIndexVerifyType(configuration);
+      IndexToolVerificationResult verificationResult = new IndexVerificationResultRepository()
+        .getVerificationResult(connection, ts, indexTableNameBytes);
+      if (
+        verifyType != IndexTool.IndexVerifyType.NONE && verificationResult.isVerificationFailed()
+      ) {
+        throw new IOException("Index verification failed! " + verificationResult);
+      }
+      if (verifyType != IndexTool.IndexVerifyType.ONLY) {
+        // "ONLY" option should not turn index state to ACTIVE, as it doesn't rebuild the index
+        IndexToolUtil.updateIndexState(configuration, PIndexState.ACTIVE);
+      }
+      return verificationResult;
+    }
+  }
+
+  /**
+   * Runs the given scan of the plan from its checkpoint, and returns the number of data rows
+   * scanned.
+   */
+  private long rebuild(QueryPlan plan, Scan planScan, Connection connection,
+    List<Checkpoint> checkpoints, long ts, byte[] indexTableName, RateLimiter rateLimiter,
+    byte[] pageRows) throws SQLException, IOException {
+    byte[] startRow = getResumeRow(checkpoints, planScan.getStartRow(), planScan.getStopRow());
+    if (startRow == null) {
+      return 0;
+    }
+    Scan scan = new Scan(planScan);
+    scan.withStartRow(startRow);
+    // Skip the region boundary check if the region splits, as for the MapReduce job
+    scan.setAttribute(BaseScannerRegionObserverConstants.SKIP_REGION_BOUNDARY_CHECK,
+      Bytes.toBytes(true));
+    if (pageRows != null) {
+      scan.setAttribute(BaseScannerRegionObserverConstants.INDEX_REBUILD_PAGE_ROWS, pageRows);
+    }
+    StatementContext context = plan.getContext();
+    PhoenixConnection phoenixConnection = context.getConnection();
+    ScanMetricsHolder scanMetricsHolder = ScanMetricsHolder.getInstance(
+      context.getReadMetricsQueue(), plan.getTableRef().getTable().getPhysicalName().getString(),
+      scan, phoenixConnection.getLogLevel());
+    long maxQueryEndTime =
+      EnvironmentEdgeManager.currentTimeMillis() + context.getStatement().getQueryTimeoutInMillis();
+    long rowCount = 0;
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    TableResultIterator iterator =
+      new TableResultIterator(phoenixConnection.getMutationState(), scan, scanMetricsHolder,
+        phoenixConnection.getQueryServices().getRenewLeaseThresholdMilliSeconds(), plan,
+        MapReduceParallelScanGrouper.getInstance(), true, maxQueryEndTime);
+    try (IndexToolCheckpointRepository checkpointRepository =
+      new IndexToolCheckpointRepository(connection)) {
+      // Each page of the rebuild returns the number of data rows scanned with the last row key
+      for (Tuple tuple = iterator.next(); tuple != null; tuple = iterator.next()) {
+        Cell cell = tuple.getValue(0);
+        ptr.set(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+        long pageRowCount = PLong.INSTANCE.getCodec().decodeLong(ptr, SortOrder.getDefault());
+        rowCount += pageRowCount;
+        tuple.getKey(ptr);
+        byte[] lastRow = ptr.copyBytes();
+        checkpointRepository.logCheckpoint(ts, indexTableName, new Checkpoint(startRow,
+          scan.getStopRow(), Arrays.copyOf(lastRow, lastRow.length + 1), false, rowCount));
+        if (rateLimiter != null && pageRowCount > 0) {
+          rateLimiter.acquire((int) Math.min(pageRowCount, Integer.MAX_VALUE));
+        }
+      }
+      checkpointRepository.logCheckpoint(ts, indexTableName,
+        new Checkpoint(startRow, scan.getStopRow(), scan.getStopRow(), true, rowCount));
+    } finally {
+      iterator.close();
+    }
+    return rowCount;
+  }
+}
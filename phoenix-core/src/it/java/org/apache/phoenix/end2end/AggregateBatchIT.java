@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests the aggregation of rows in batches on the server side, with batches smaller than the groups
+ * and a page per row.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class AggregateBatchIT extends ParallelStatsDisabledIT {
+  private static final int GROUPS = 10;
+  private static final int ROWS_PER_GROUP = 23;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(QueryServices.AGGREGATE_BATCH_SIZE_ATTRIB, Integer.toString(7));
+    props.put(QueryServices.PHOENIX_SERVER_PAGE_SIZE_MS, Long.toString(0));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static Integer value(int k1, int k2) {
+    return k2 % 5 == 0 ? null : (k1 * k2) % 11;
+  }
+
+  private static String createTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement()
+      .execute("CREATE TABLE " + tableName
+        + " (k1 INTEGER NOT NULL, k2 INTEGER NOT NULL, v INTEGER, d DOUBLE, b BIGINT"
+        + " CONSTRAINT pk PRIMARY KEY (k1, k2)) SPLIT ON (3, 7)");
+    PreparedStatement stmt =
+      conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?, ?)");
+    for (int k1 = 0; k1 < GROUPS; k1++) {
+      for (int k2 = 0; k2 < ROWS_PER_GROUP; k2++) {
+        stmt.setInt(1, k1);
+        stmt.setInt(2, k2);
+        stmt.setObject(3, value(k1, k2));
+        stmt.setDouble(4, k2 / 2.0);
+        stmt.setLong(5, k1 * 1000L + k2);
+        stmt.executeUpdate();
+      }
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  private static void assertGroup(ResultSet rs, int k1) throws Exception {
+    int count = 0;
+    long sum = 0;
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    for (int k2 = 0; k2 < ROWS_PER_GROUP; k2++) {
+      Integer v = value(k1, k2);
+      if (v != null) {
+        count++;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+    }
+    assertEquals(k1, rs.getInt(1));
+    assertEquals(ROWS_PER_GROUP, rs.getLong(2));
+    assertEquals(count, rs.getLong(3));
+    assertEquals(sum, rs.getLong(4));
+    assertEquals(min, rs.getInt(5));
+    assertEquals(max, rs.getInt(6));
+    assertEquals((ROWS_PER_GROUP - 1) * ROWS_PER_GROUP / 4.0, rs.getDouble(7), 0);
+    assertEquals(k1 * 1000L, rs.getLong(8));
+    assertEquals(k1 * 1000L + ROWS_PER_GROUP - 1, rs.getLong(9));
+  }
+
+  @Test
+  public void testOrderedGroupBy() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      String query = "SELECT k1, COUNT(*), COUNT(v), SUM(v), MIN(v), MAX(v), SUM(d), MIN(b), MAX(b)"
+        + " FROM " + tableName + " GROUP BY k1";
+      ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+      assertTrue(QueryUtil.getExplainPlan(rs)
+        .contains("SERVER AGGREGATE INTO ORDERED DISTINCT ROWS BY [K1]"));
+      rs = conn.createStatement().executeQuery(query);
+      for (int k1 = 0; k1 < GROUPS; k1++) {
+        assertTrue(rs.next());
+        assertGroup(rs, k1);
+      }
+      assertFalse(rs.next());
+
+      // Groups cut by a filter and by a limit
+      rs = conn.createStatement().executeQuery(
+        "SELECT k1, COUNT(*) FROM " + tableName + " WHERE k2 >= 4 GROUP BY k1 LIMIT 4");
+      for (int k1 = 0; k1 < 4; k1++) {
+        assertTrue(rs.next());
+        assertEquals(k1, rs.getInt(1));
+        assertEquals(ROWS_PER_GROUP - 4, rs.getLong(2));
+      }
+      assertFalse(rs.next());
+    }
+  }
+
+  @Test
+  public void testUngroupedAggregate() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      ResultSet rs = conn.createStatement()
+        .executeQuery("SELECT COUNT(*), SUM(b), MIN(b), MAX(b), SUM(d) FROM " + tableName);
+      assertTrue(rs.next());
+      long sum = 0;
+      for (int k1 = 0; k1 < GROUPS; k1++) {
+        for (int k2 = 0; k2 < ROWS_PER_GROUP; k2++) {
+          sum += k1 * 1000L + k2;
+        }
+      }
+      assertEquals(GROUPS * ROWS_PER_GROUP, rs.getLong(1));
+      assertEquals(sum, rs.getLong(2));
+      assertEquals(0, rs.getLong(3));
+      assertEquals((GROUPS - 1) * 1000L + ROWS_PER_GROUP - 1, rs.getLong(4));
+      assertEquals(GROUPS * (ROWS_PER_GROUP - 1) * ROWS_PER_GROUP / 4.0, rs.getDouble(5), 0);
+      assertFalse(rs.next());
+
+      // Rows without the aggregated column and a filter leaving no row
+      rs = conn.createStatement()
+        .executeQuery("SELECT COUNT(v), MIN(v), MAX(v) FROM " + tableName + " WHERE k2 = 10");
+      assertTrue(rs.next());
+      assertEquals(0, rs.getLong(1));
+      rs.getInt(2);
+      assertTrue(rs.wasNull());
+      rs.getInt(3);
+      assertTrue(rs.wasNull());
+      assertFalse(rs.next());
+      rs = conn.createStatement()
+        .executeQuery("SELECT COUNT(*), SUM(b) FROM " + tableName + " WHERE k1 > 100");
+      assertTrue(rs.next());
+      assertEquals(0, rs.getLong(1));
+      rs.getLong(2);
+      assertTrue(rs.wasNull());
+      assertFalse(rs.next());
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.coprocessorclient.BaseScannerRegionObserverConstants;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.ScanUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests the unordered group by returning the rows of a region without grouping them once it has
+ * seen that they hardly share groups, with the rows of a table split in three regions.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class GroupByBypassIT extends ParallelStatsDisabledWithRegionMovesIT {
+  private static final int ROWS = 300;
+  private static final int NEARLY_UNIQUE_GROUPS = 150;
+  private static final int FEW_GROUPS = 3;
+  // Distinct over the first rows of each region, but repeated over all of them
+  private static final int LATE_REPEATING_GROUPS = 50;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(6);
+    props.put(QueryServices.GROUPBY_BYPASS_MIN_ROWS_ATTRIB, Long.toString(10));
+    props.put(QueryServices.USE_STATS_FOR_PARALLELIZATION, Boolean.toString(false));
+    props.put(QueryServices.PHOENIX_SERVER_PAGE_SIZE_MS, Long.toString(0));
+    props.put(QueryServices.TESTS_MINI_CLUSTER_NUM_REGION_SERVERS, String.valueOf(2));
+    props.put(HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY, String.valueOf(1));
+    props.put(QueryServices.PHOENIX_POST_DUMMY_PROCESS,
+      TestScanningResultPostDummyResultCaller.class.getName());
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    countOfDummyResults = 0;
+    TABLE_NAMES.clear();
+    hasTestStarted = false;
+  }
+
+  private static String createTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement()
+      .execute("CREATE TABLE " + tableName
+        + " (k INTEGER NOT NULL PRIMARY KEY, g1 INTEGER, g2 INTEGER, g3 INTEGER, v INTEGER)"
+        + " SPLIT ON (100, 200)");
+    PreparedStatement stmt =
+      conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?, ?)");
+    for (int k = 0; k < ROWS; k++) {
+      stmt.setInt(1, k);
+      stmt.setInt(2, k % NEARLY_UNIQUE_GROUPS);
+      stmt.setInt(3, k % FEW_GROUPS);
+      stmt.setInt(4, k % LATE_REPEATING_GROUPS);
+      stmt.setInt(5, k);
+      stmt.executeUpdate();
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  /**
+   * Runs the scans of the last query of the given statement again, straight against the regions,
+   * and counts the rows the regions return for them.
+   */
+  private static int countRegionRows(Connection conn, PhoenixStatement stmt, boolean oldClient)
+    throws Exception {
+    QueryPlan plan = stmt.getQueryPlan();
+    int count = 0;
+    try (Table table = conn.unwrap(PhoenixConnection.class).getQueryServices()
+      .getTable(plan.getTableRef().getTable().getPhysicalName().getBytes())) {
+      for (List<Scan> scans : plan.getScans()) {
+        for (Scan planScan : scans) {
+          Scan scan = new Scan(planScan);
+          ScanUtil.setScanAttributesForClient(scan, plan.getTableRef().getTable(),
+            plan.getContext());
+          if (oldClient) {
+            scan.setAttribute(BaseScannerRegionObserverConstants.SCAN_SERVER_RETURN_VALID_ROW_KEY,
+              null);
+          }
+          try (ResultScanner scanner = table.getScanner(scan)) {
+            for (Result result = scanner.next(); result != null; result = scanner.next()) {
+              if (!ScanUtil.isDummy(result)) {
+                count++;
+              }
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  private static void assertNearlyUniqueGroups(ResultSet rs) throws Exception {
+    Set<Integer> groups = new HashSet<>();
+    while (rs.next()) {
+      int group = rs.getInt(1);
+      assertTrue(groups.add(group));
+      assertEquals(2, rs.getLong(2));
+      assertEquals(2 * group + NEARLY_UNIQUE_GROUPS, rs.getLong(3));
+    }
+    assertEquals(NEARLY_UNIQUE_GROUPS, groups.size());
+  }
+
+  private static void assertFewGroups(ResultSet rs) throws Exception {
+    Set<Integer> groups = new HashSet<>();
+    while (rs.next()) {
+      int group = rs.getInt(1);
+      assertTrue(groups.add(group));
+      long sum = 0;
+      for (int k = group; k < ROWS; k += FEW_GROUPS) {
+        sum += k;
+      }
+      assertEquals(ROWS / FEW_GROUPS, rs.getLong(2));
+      assertEquals(sum, rs.getLong(3));
+    }
+    assertEquals(FEW_GROUPS, groups.size());
+  }
+
+  private static void assertLateRepeatingGroups(ResultSet rs) throws Exception {
+    Set<Integer> groups = new HashSet<>();
+    while (rs.next()) {
+      int group = rs.getInt(1);
+      assertTrue(groups.add(group));
+      int count = ROWS / LATE_REPEATING_GROUPS;
+      assertEquals(count, rs.getLong(2));
+      assertEquals(count * group + LATE_REPEATING_GROUPS * count * (count - 1) / 2, rs.getLong(3));
+    }
+    assertEquals(LATE_REPEATING_GROUPS, groups.size());
+  }
+
+  @Test
+  public void testBypassedAndGroupedRegions() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      String query = "SELECT g1, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g1";
+      ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + query);
+      assertTrue(QueryUtil.getExplainPlan(rs).contains("SERVER AGGREGATE INTO DISTINCT ROWS"));
+      // The groups are spread over two regions, so the rows each region returns on its own are
+      // still merged into one row per group
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      assertNearlyUniqueGroups(stmt.executeQuery(query));
+      assertEquals(ROWS, countRegionRows(conn, stmt, false));
+
+      stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      assertFewGroups(
+        stmt.executeQuery("SELECT g2, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g2"));
+      assertEquals(3 * FEW_GROUPS, countRegionRows(conn, stmt, false));
+    }
+  }
+
+  @Test
+  public void testNotBypassedWithLimit() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      ResultSet rs = stmt.executeQuery("SELECT DISTINCT g1 FROM " + tableName + " LIMIT 50");
+      Set<Integer> groups = new HashSet<>();
+      while (rs.next()) {
+        assertTrue(groups.add(rs.getInt(1)));
+      }
+      assertEquals(50, groups.size());
+      // Each region stops at the limit instead of returning all of its rows
+      assertEquals(3 * 50, countRegionRows(conn, stmt, false));
+    }
+  }
+
+  @Test
+  public void testNotBypassedForOldClient() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      assertLateRepeatingGroups(
+        stmt.executeQuery("SELECT g3, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g3"));
+      // The first rows of each region are all in distinct groups, so the regions give up on
+      // grouping them, unless the client expects the group key as the row key of each group
+      assertEquals(ROWS, countRegionRows(conn, stmt, false));
+      assertEquals(3 * LATE_REPEATING_GROUPS, countRegionRows(conn, stmt, true));
+    }
+  }
+
+  @Test
+  public void testBypassedWithRegionMoves() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      TABLE_NAMES.add(tableName);
+      hasTestStarted = true;
+      // The regions move while they return the cached groups and the rows after them
+      assertNearlyUniqueGroups(conn.createStatement()
+        .executeQuery("SELECT g1, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g1"));
+      assertLateRepeatingGroups(conn.createStatement()
+        .executeQuery("SELECT g3, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g3"));
+      assertFewGroups(conn.createStatement()
+        .executeQuery("SELECT g2, COUNT(*), SUM(v) FROM " + tableName + " GROUP BY g2"));
+      assertTrue(countOfDummyResults > 0);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.IndexToolVerificationResult;
+import org.apache.phoenix.mapreduce.index.IndexTool;
+import org.apache.phoenix.mapreduce.index.IndexToolCheckpointRepository;
+import org.apache.phoenix.mapreduce.index.IndexToolCheckpointRepository.Checkpoint;
+import org.apache.phoenix.mapreduce.index.IndexVerificationResultRepository;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PIndexState;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class IndexToolWithoutMapReduceIT extends BaseTest {
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+    // Several pages, and so checkpoints, per region
+    props.put(QueryServices.INDEX_REBUILD_PAGE_SIZE_IN_ROWS, Long.toString(2));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static int runIndexTool(String dataTableName, String indexTableName,
+    IndexTool.IndexVerifyType verifyType, long endTime) throws Exception {
+    IndexTool indexTool = new IndexTool();
+    indexTool.setConf(new Configuration(getUtility().getConfiguration()));
+    return indexTool.run(new String[] { "-dt", dataTableName, "-it", indexTableName, "-v",
+      verifyType.getValue(), "-et", Long.toString(endTime), "-nomr" });
+  }
+
+  private static void createTable(Connection conn, String dataTableName, String indexTableName)
+    throws Exception {
+    conn.createStatement().execute("CREATE TABLE " + dataTableName
+      + " (id VARCHAR NOT NULL PRIMARY KEY, val1 VARCHAR, val2 VARCHAR) SPLIT ON ('c', 'f')");
+    for (char c = 'a'; c <= 'j'; c++) {
+      conn.createStatement().execute(
+        "UPSERT INTO " + dataTableName + " VALUES ('" + c + "', 'v" + c + "', 'w" + c + "')");
+    }
+    conn.commit();
+    conn.createStatement().execute(
+      "CREATE INDEX " + indexTableName + " ON " + dataTableName + " (val1) INCLUDE (val2) ASYNC");
+  }
+
+  @Test
+  public void testRebuildAndResume() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName);
+      Thread.sleep(1);
+      long endTime = EnvironmentEdgeManager.currentTimeMillis();
+      assertEquals(0,
+        runIndexTool(dataTableName, indexTableName, IndexTool.IndexVerifyType.AFTER, endTime));
+      assertEquals(PIndexState.ACTIVE, TestUtil.getIndexState(conn, indexTableName));
+      ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + indexTableName);
+      assertTrue(rs.next());
+      assertEquals(10, rs.getLong(1));
+
+      byte[] indexTableNameBytes = Bytes.toBytes(indexTableName);
+      IndexToolVerificationResult result = new IndexVerificationResultRepository()
+        .getVerificationResult(conn, endTime, indexTableNameBytes);
+      assertEquals(10, result.getScannedDataRowCount());
+      assertEquals(10, result.getRebuiltIndexRowCount());
+      assertEquals(10, result.getAfterRebuildValidIndexRowCount());
+      long rowCount = 0;
+      try (IndexToolCheckpointRepository checkpointRepository =
+        new IndexToolCheckpointRepository(conn)) {
+        List<Checkpoint> checkpoints =
+          checkpointRepository.getCheckpoints(endTime, indexTableNameBytes);
+        assertEquals(3, checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+          assertTrue(checkpoint.isDone());
+          rowCount += checkpoint.getRowCount();
+        }
+      }
+      assertEquals(10, rowCount);
+
+      // A build with the same end time has nothing left to do
+      assertEquals(0,
+        runIndexTool(dataTableName, indexTableName, IndexTool.IndexVerifyType.AFTER, endTime));
+      result = new IndexVerificationResultRepository().getVerificationResult(conn, endTime,
+        indexTableNameBytes);
+      assertEquals(10, result.getScannedDataRowCount());
+    }
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName);
+      Thread.sleep(1);
+      long endTime = EnvironmentEdgeManager.currentTimeMillis();
+      byte[] indexTableNameBytes = Bytes.toBytes(indexTableName);
+      // A previous build got up to row 'e' of the second region
+      new IndexToolCheckpointRepository().createCheckpointTable(conn);
+      try (IndexToolCheckpointRepository checkpointRepository =
+        new IndexToolCheckpointRepository(conn)) {
+        checkpointRepository.logCheckpoint(endTime, indexTableNameBytes, new Checkpoint(
+          HConstants.EMPTY_BYTE_ARRAY, Bytes.toBytes("c"), Bytes.toBytes("c"), true, 2));
+        checkpointRepository.logCheckpoint(endTime, indexTableNameBytes,
+          new Checkpoint(Bytes.toBytes("c"), Bytes.toBytes("f"), Bytes.toBytes("e"), false, 2));
+      }
+      assertEquals(0,
+        runIndexTool(dataTableName, indexTableName, IndexTool.IndexVerifyType.AFTER, endTime));
+      IndexToolVerificationResult result = new IndexVerificationResultRepository()
+        .getVerificationResult(conn, endTime, indexTableNameBytes);
+      // Only the rows from 'e' on are rebuilt
+      assertEquals(6, result.getScannedDataRowCount());
+      assertEquals(6, result.getRebuiltIndexRowCount());
+      ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + indexTableName);
+      assertTrue(rs.next());
+      assertEquals(6, rs.getLong(1));
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.createGroupByTestTable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Runs the spillable group by tests with the primitive group by cache, which the group by queries
+ * with fixed width aggregators only use, along with tests of such queries spilling their groups.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class PrimitiveGroupByCacheIT extends SpillableGroupByIT {
+  private static final int NUM_GROUPS = 2000;
+  private static final int ROWS_PER_GROUP = 3;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(12);
+    props.put(QueryServices.GROUPBY_PRIMITIVE_CACHE_ENABLED_ATTRIB, String.valueOf(true));
+    // Set a very small cache size to force plenty of spilling
+    props.put(QueryServices.GROUPBY_MAX_CACHE_SIZE_ATTRIB, Integer.toString(1));
+    props.put(QueryServices.GROUPBY_SPILLABLE_ATTRIB, String.valueOf(true));
+    props.put(QueryServices.GROUPBY_SPILL_FILES_ATTRIB, Integer.toString(1));
+    // Large enough to not run out of memory, but small enough to spill
+    props.put(QueryServices.MAX_MEMORY_SIZE_ATTRIB, Integer.toString(40000));
+
+    // Set guidepost width, but disable stats
+    props.put(QueryServices.STATS_GUIDEPOST_WIDTH_BYTES_ATTRIB, Long.toString(20));
+    props.put(QueryServices.STATS_COLLECTION_ENABLED, Boolean.toString(false));
+    props.put(QueryServices.EXPLAIN_CHUNK_COUNT_ATTRIB, Boolean.TRUE.toString());
+    props.put(QueryServices.EXPLAIN_ROW_COUNT_ATTRIB, Boolean.TRUE.toString());
+    props.put(QueryServices.PHOENIX_SERVER_PAGE_SIZE_MS, Long.toString(60000));
+    // Must update config before starting server
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static String createTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    createGroupByTestTable(conn, tableName);
+    PreparedStatement stmt =
+      conn.prepareStatement("UPSERT INTO " + tableName + "(id, uri, appcpu) VALUES (?, ?, ?)");
+    // The rows of a group are far apart, so that groups are seen again after being spilled
+    for (int i = 0; i < NUM_GROUPS * ROWS_PER_GROUP; i++) {
+      stmt.setString(1, String.format("%06d", i));
+      stmt.setString(2, Integer.toString(i % NUM_GROUPS));
+      stmt.setInt(3, i);
+      stmt.executeUpdate();
+      if (i % 1000 == 0) {
+        conn.commit();
+      }
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  @Test
+  public void testSpilledGroups() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      ResultSet rs = conn.createStatement()
+        .executeQuery("SELECT uri, COUNT(*), SUM(appcpu), MIN(appcpu), MAX(appcpu), AVG(appcpu)"
+          + " FROM " + tableName + " GROUP BY uri");
+      boolean[] seen = new boolean[NUM_GROUPS];
+      int count = 0;
+      while (rs.next()) {
+        int group = Integer.parseInt(rs.getString(1));
+        assertFalse(seen[group]);
+        seen[group] = true;
+        assertEquals(ROWS_PER_GROUP, rs.getLong(2));
+        assertEquals(ROWS_PER_GROUP * group + 3 * NUM_GROUPS, rs.getLong(3));
+        assertEquals(group, rs.getInt(4));
+        assertEquals(group + (ROWS_PER_GROUP - 1) * NUM_GROUPS, rs.getInt(5));
+        assertEquals(group + NUM_GROUPS, rs.getDouble(6), 0);
+        count++;
+      }
+      assertEquals(NUM_GROUPS, count);
+    }
+  }
+
+  @Test
+  public void testSpilledGroupsWithOrderByAndLimit() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String tableName = createTable(conn);
+      ResultSet rs = conn.createStatement().executeQuery("SELECT uri, SUM(appcpu) FROM " + tableName
+        + " GROUP BY uri ORDER BY SUM(appcpu) DESC LIMIT 3");
+      for (int group = NUM_GROUPS - 1; group > NUM_GROUPS - 4; group--) {
+        assertTrue(rs.next());
+        assertEquals(Integer.toString(group), rs.getString(1));
+        assertEquals(ROWS_PER_GROUP * group + 3 * NUM_GROUPS, rs.getLong(2));
+      }
+      assertFalse(rs.next());
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.regionserver.MiniBatchOperationInProgress;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests auto committed UPSERT SELECT statements run on the client whose batches are sent on the
+ * query thread pool while the rows of the next batch are read.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class UpsertSelectPipelinedSendIT extends ParallelStatsDisabledIT {
+  private static final int ROWS = 250;
+  private static final int BATCH_SIZE = 7;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+    props.put(QueryServices.MUTATE_PIPELINED_SEND_ENABLED_ATTRIB, Boolean.toString(true));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static Connection getConnection() throws Exception {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    props.setProperty(QueryServices.ENABLE_SERVER_SIDE_UPSERT_MUTATIONS, Boolean.toString(false));
+    props.setProperty(PhoenixRuntime.UPSERT_BATCH_SIZE_ATTRIB, Integer.toString(BATCH_SIZE));
+    Connection conn = DriverManager.getConnection(getUrl(), props);
+    conn.setAutoCommit(true);
+    return conn;
+  }
+
+  private static String createSourceTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement().execute("CREATE TABLE " + tableName
+      + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR) SPLIT ON (50, 100, 150, 200)");
+    PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+    for (int k = 0; k < ROWS; k++) {
+      stmt.setInt(1, k);
+      stmt.setString(2, "v" + k);
+      stmt.executeUpdate();
+    }
+    return tableName;
+  }
+
+  @Test
+  public void testUpsertSelect() throws Exception {
+    try (Connection conn = getConnection()) {
+      String source = createSourceTable(conn);
+      String target = generateUniqueName();
+      conn.createStatement()
+        .execute("CREATE TABLE " + target + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+      assertEquals(ROWS, conn.createStatement()
+        .executeUpdate("UPSERT INTO " + target + " SELECT k, v FROM " + source));
+      ResultSet rs = conn.createStatement().executeQuery("SELECT k, v FROM " + target);
+      for (int k = 0; k < ROWS; k++) {
+        assertTrue(rs.next());
+        assertEquals(k, rs.getInt(1));
+        assertEquals("v" + k, rs.getString(2));
+      }
+      assertFalse(rs.next());
+    }
+  }
+
+  @Test
+  public void testBatchesAppliedInOrder() throws Exception {
+    try (Connection conn = getConnection()) {
+      String source = createSourceTable(conn);
+      String target = generateUniqueName();
+      conn.createStatement()
+        .execute("CREATE TABLE " + target + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+      // Every target row is written by many batches, the one of the last source row winning
+      assertEquals(ROWS, conn.createStatement().executeUpdate(
+        "UPSERT INTO " + target + " SELECT k % 10, v FROM " + source + " ORDER BY k"));
+      ResultSet rs = conn.createStatement().executeQuery("SELECT k, v FROM " + target);
+      for (int k = 0; k < 10; k++) {
+        assertTrue(rs.next());
+        assertEquals(k, rs.getInt(1));
+        assertEquals("v" + (ROWS - 10 + k), rs.getString(2));
+      }
+      assertFalse(rs.next());
+    }
+  }
+
+  /**
+   * Fails every batch written to the table it is added to.
+   */
+  public static class FailingRegionObserver extends SimpleRegionObserver {
+    @Override
+    public void preBatchMutate(ObserverContext<RegionCoprocessorEnvironment> c,
+      MiniBatchOperationInProgress<Mutation> miniBatchOp) throws IOException {
+      throw new DoNotRetryIOException("Failing the batch for the test");
+    }
+  }
+
+  @Test
+  public void testSendFailure() throws Exception {
+    try (Connection conn = getConnection()) {
+      String source = createSourceTable(conn);
+      String target = generateUniqueName();
+      conn.createStatement()
+        .execute("CREATE TABLE " + target + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+      TestUtil.addCoprocessor(conn, target, FailingRegionObserver.class);
+      // The failure of a batch sent on the thread pool surfaces in the statement
+      try {
+        conn.createStatement()
+          .executeUpdate("UPSERT INTO " + target + " SELECT k, v FROM " + source);
+        fail();
+      } catch (SQLException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("Failing the batch for the test"));
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.end2end.index.GlobalIndexCheckerIT.assertExplainPlan;
+import static org.apache.phoenix.end2end.index.GlobalIndexCheckerIT.commitWithException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.hbase.index.metrics.GlobalIndexCheckerSource;
+import org.apache.phoenix.hbase.index.metrics.GlobalIndexCheckerSourceImpl;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.BaseTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+@Category(NeedsOwnMiniClusterTest.class)
+public class GlobalIndexCheckerBatchRepairIT extends BaseTest {
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(QueryServices.GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS_ATTRIB, Long.toString(0));
+    props.put(QueryServices.GLOBAL_INDEX_REPAIR_BATCH_SIZE_ATTRIB, Integer.toString(10));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @After
+  public void unsetFailForTesting() {
+    IndexRegionObserver.setFailDataTableUpdatesForTesting(false);
+  }
+
+  private static long getBatchRepairs() {
+    GlobalIndexCheckerSourceImpl indexCheckerSource =
+      (GlobalIndexCheckerSourceImpl) MetricsIndexerSourceFactory.getInstance()
+        .getGlobalIndexCheckerSource();
+    return indexCheckerSource.getMetricsRegistry()
+      .getCounter(GlobalIndexCheckerSource.INDEX_BATCH_REPAIR, 0).value();
+  }
+
+  @Test
+  public void testUnverifiedRowsRepairedInBatch() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String dataTableName = generateUniqueName();
+      conn.createStatement().execute("create table " + dataTableName
+        + " (id varchar(10) not null primary key, val1 varchar(10), val2 varchar(10))");
+      String indexTableName = generateUniqueName();
+      conn.createStatement().execute(
+        "CREATE INDEX " + indexTableName + " on " + dataTableName + " (val1) include (val2)");
+      for (int i = 0; i < 5; i++) {
+        conn.createStatement().execute(
+          "upsert into " + dataTableName + " values ('id" + i + "', 'v" + i + "', 'a" + i + "')");
+      }
+      conn.commit();
+      // Leave the index rows of the updated rows and of the new rows unverified
+      IndexRegionObserver.setFailDataTableUpdatesForTesting(true);
+      for (int i = 0; i < 3; i++) {
+        conn.createStatement().execute(
+          "upsert into " + dataTableName + " values ('id" + i + "', 'w" + i + "', 'b" + i + "')");
+      }
+      for (int i = 5; i < 8; i++) {
+        conn.createStatement().execute(
+          "upsert into " + dataTableName + " values ('id" + i + "', 'v" + i + "', 'a" + i + "')");
+      }
+      commitWithException(conn);
+      IndexRegionObserver.setFailDataTableUpdatesForTesting(false);
+      String selectSql = "SELECT id, val2 from " + dataTableName + " WHERE val1 >= 'a'";
+      assertExplainPlan(conn, selectSql, dataTableName, indexTableName);
+      long batchRepairs = getBatchRepairs();
+      for (int j = 0; j < 2; j++) {
+        ResultSet rs = conn.createStatement().executeQuery(selectSql);
+        for (int i = 0; i < 5; i++) {
+          assertTrue(rs.next());
+          assertEquals("id" + i, rs.getString(1));
+          assertEquals("a" + i, rs.getString(2));
+        }
+        assertFalse(rs.next());
+      }
+      // The unverified rows are adjacent in the index and repaired together
+      assertEquals(batchRepairs + 1, getBatchRepairs());
+      // The unverified rows without a matching data row are deleted by the repair
+      Table indexTable = conn.unwrap(PhoenixConnection.class).getQueryServices()
+        .getTable(Bytes.toBytes(indexTableName));
+      assertEquals(5, TestUtil.getRowCount(indexTable, false));
+    }
+  }
+}
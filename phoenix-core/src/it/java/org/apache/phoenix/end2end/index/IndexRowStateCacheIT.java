@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.index;
+
+import static org.apache.phoenix.end2end.IndexToolIT.verifyIndexTable;
+import static org.apache.phoenix.hbase.index.metrics.MetricsIndexerSource.ROW_STATE_CACHE_HITS;
+import static org.apache.phoenix.hbase.index.metrics.MetricsIndexerSource.ROW_STATE_CACHE_MISSES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.tool.BulkLoadHFiles;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.end2end.ParallelStatsDisabledIT;
+import org.apache.phoenix.hbase.index.IndexRegionObserver;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceFactory;
+import org.apache.phoenix.hbase.index.metrics.MetricsIndexerSourceImpl;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.IndexScrutiny;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests the cache of the latest data row states of IndexRegionObserver, checking which batches read
+ * the row states from it and that the index rows stay consistent with the data rows.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class IndexRowStateCacheIT extends ParallelStatsDisabledIT {
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(QueryServices.GLOBAL_INDEX_ROW_AGE_THRESHOLD_TO_DELETE_MS_ATTRIB, Long.toString(0));
+    props.put(QueryServices.INDEX_ROW_STATE_CACHE_MAX_BYTES_ATTRIB, Long.toString(1024 * 1024));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @After
+  public void unsetFailForTesting() {
+    IndexRegionObserver.setFailPreIndexUpdatesForTesting(false);
+    IndexRegionObserver.setFailDataTableUpdatesForTesting(false);
+    IndexRegionObserver.setFailPostIndexUpdatesForTesting(false);
+  }
+
+  private static long getCounter(String counterName, String dataTableName) {
+    MetricsIndexerSourceImpl metricSource =
+      (MetricsIndexerSourceImpl) MetricsIndexerSourceFactory.getInstance().getIndexerSource();
+    return metricSource.getMetricsRegistry().getCounter(counterName + "." + dataTableName, 0)
+      .value();
+  }
+
+  /**
+   * Tracks the row state cache hits and misses of the batches on a data table since the last check.
+   */
+  private static class CacheCounters {
+    private final String dataTableName;
+    private long hits;
+    private long misses;
+
+    CacheCounters(String dataTableName) {
+      this.dataTableName = dataTableName;
+      this.hits = getCounter(ROW_STATE_CACHE_HITS, dataTableName);
+      this.misses = getCounter(ROW_STATE_CACHE_MISSES, dataTableName);
+    }
+
+    void assertSinceLastCheck(long expectedHits, long expectedMisses) {
+      long currentHits = getCounter(ROW_STATE_CACHE_HITS, dataTableName);
+      long currentMisses = getCounter(ROW_STATE_CACHE_MISSES, dataTableName);
+      assertEquals(expectedHits, currentHits - hits);
+      assertEquals(expectedMisses, currentMisses - misses);
+      hits = currentHits;
+      misses = currentMisses;
+    }
+  }
+
+  private static void createTable(Connection conn, String dataTableName, String indexTableName,
+    String tableOptions) throws Exception {
+    conn.createStatement()
+      .execute("CREATE TABLE " + dataTableName + " (id VARCHAR NOT NULL PRIMARY KEY,"
+        + " val1 VARCHAR, val2 VARCHAR, val3 VARCHAR, expired BOOLEAN) COLUMN_ENCODED_BYTES=0"
+        + tableOptions);
+    conn.createStatement().execute("CREATE INDEX " + indexTableName + " ON " + dataTableName
+      + " (val1) INCLUDE (val2, expired)");
+  }
+
+  private static void upsert(Connection conn, String dataTableName, String columns, String values)
+    throws SQLException {
+    conn.createStatement()
+      .execute("UPSERT INTO " + dataTableName + " (id, " + columns + ") VALUES (" + values + ")");
+  }
+
+  private static void assertRow(Connection conn, String dataTableName, String id, String val1,
+    String val2, String val3) throws SQLException {
+    ResultSet rs = conn.createStatement()
+      .executeQuery("SELECT val1, val2, val3 FROM " + dataTableName + " WHERE id = '" + id + "'");
+    assertTrue(rs.next());
+    assertEquals(val1, rs.getString(1));
+    assertEquals(val2, rs.getString(2));
+    assertEquals(val3, rs.getString(3));
+    assertFalse(rs.next());
+  }
+
+  @Test
+  public void testCacheHitsAndMisses() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      CacheCounters counters = new CacheCounters(dataTableName);
+      upsert(conn, dataTableName, "val1, val2", "'a', 'a1', 'a2'");
+      upsert(conn, dataTableName, "val1, val2", "'b', 'b1', 'b2'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 2);
+      // The next row states of the last batch are cached, even for the columns not updated
+      upsert(conn, dataTableName, "val2", "'a', 'a3'");
+      conn.commit();
+      counters.assertSinceLastCheck(1, 0);
+      upsert(conn, dataTableName, "val1", "'a', 'a4'");
+      upsert(conn, dataTableName, "val1", "'b', 'b4'");
+      conn.commit();
+      counters.assertSinceLastCheck(2, 0);
+      assertRow(conn, dataTableName, "a", "a4", "a3", null);
+      assertEquals(2, verifyIndexTable(dataTableName, indexTableName, conn));
+    }
+  }
+
+  @Test
+  public void testFailedBatchIsNotCached() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      upsert(conn, dataTableName, "val1, val2", "'a', 'a1', 'a2'");
+      conn.commit();
+      CacheCounters counters = new CacheCounters(dataTableName);
+      IndexRegionObserver.setFailDataTableUpdatesForTesting(true);
+      upsert(conn, dataTableName, "val1", "'a', 'bad'");
+      try {
+        conn.commit();
+        fail("The data table write should have failed");
+      } catch (SQLException e) {
+        // expected
+      }
+      IndexRegionObserver.setFailDataTableUpdatesForTesting(false);
+      counters.assertSinceLastCheck(1, 0);
+      // The row state of the failed batch is not kept, so the next batch reads the row again
+      upsert(conn, dataTableName, "val2", "'a', 'a3'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 1);
+      assertRow(conn, dataTableName, "a", "a1", "a3", null);
+
+      IndexRegionObserver.setFailPreIndexUpdatesForTesting(true);
+      upsert(conn, dataTableName, "val1", "'a', 'bad'");
+      try {
+        conn.commit();
+        fail("The pre index write should have failed");
+      } catch (SQLException e) {
+        // expected
+      }
+      IndexRegionObserver.setFailPreIndexUpdatesForTesting(false);
+      upsert(conn, dataTableName, "val2", "'a', 'a4'");
+      conn.commit();
+      counters.assertSinceLastCheck(1, 1);
+      assertRow(conn, dataTableName, "a", "a1", "a4", null);
+      assertEquals(1, IndexScrutiny.scrutinizeIndex(conn, dataTableName, indexTableName));
+    }
+  }
+
+  @Test
+  public void testOnDuplicateKeyIsNotCached() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      upsert(conn, dataTableName, "val1, val2", "'a', 'a1', 'a2'");
+      conn.commit();
+      CacheCounters counters = new CacheCounters(dataTableName);
+      conn.createStatement().execute("UPSERT INTO " + dataTableName
+        + " (id, val1) VALUES ('a', 'x') ON DUPLICATE KEY UPDATE val1 = val1 || 'b'");
+      conn.commit();
+      // The atomic upsert reads the cached row state, but the row state it leads to is not cached
+      counters.assertSinceLastCheck(1, 0);
+      upsert(conn, dataTableName, "val2", "'a', 'a3'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 1);
+      upsert(conn, dataTableName, "val2", "'a', 'a4'");
+      conn.commit();
+      counters.assertSinceLastCheck(1, 0);
+      assertRow(conn, dataTableName, "a", "a1b", "a4", null);
+      assertEquals(1, verifyIndexTable(dataTableName, indexTableName, conn));
+    }
+  }
+
+  @Test
+  public void testConditionalTTLIsNotCached() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, ", TTL = 'EXPIRED = TRUE'");
+      CacheCounters counters = new CacheCounters(dataTableName);
+      upsert(conn, dataTableName, "val1, val2, expired", "'a', 'a1', 'a2', FALSE");
+      conn.commit();
+      upsert(conn, dataTableName, "val2", "'a', 'a3'");
+      conn.commit();
+      // Whether a row has expired depends on its row state on disk
+      counters.assertSinceLastCheck(0, 2);
+      assertRow(conn, dataTableName, "a", "a1", "a3", null);
+      assertEquals(1, IndexScrutiny.scrutinizeIndex(conn, dataTableName, indexTableName));
+    }
+  }
+
+  @Test
+  public void testMixedBatch() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      for (String id : new String[] { "a", "b", "c", "d" }) {
+        upsert(conn, dataTableName, "val1, val2", "'" + id + "', '" + id + "1', '" + id + "2'");
+      }
+      conn.commit();
+      CacheCounters counters = new CacheCounters(dataTableName);
+      // A batch with a change of an indexed column, a change of a column not in the index and a
+      // delete
+      upsert(conn, dataTableName, "val1", "'a', 'a9'");
+      upsert(conn, dataTableName, "val3", "'b', 'b3'");
+      conn.createStatement().execute("DELETE FROM " + dataTableName + " WHERE id = 'c'");
+      conn.commit();
+      counters.assertSinceLastCheck(3, 0);
+      // A put that does not go through the index maintenance
+      PhoenixConnection phoenixConn = conn.unwrap(PhoenixConnection.class);
+      try (Table table = phoenixConn.getQueryServices().getTable(Bytes.toBytes(dataTableName))) {
+        Put put = new Put(Bytes.toBytes("d"));
+        put.addColumn(Bytes.toBytes("0"), Bytes.toBytes("VAL3"), Bytes.toBytes("raw"));
+        table.put(put);
+      }
+      for (String id : new String[] { "a", "b", "c", "d" }) {
+        upsert(conn, dataTableName, "val2", "'" + id + "', '" + id + "5'");
+      }
+      conn.commit();
+      // The deleted row and the row changed without the index maintenance are read again
+      counters.assertSinceLastCheck(2, 2);
+      assertRow(conn, dataTableName, "a", "a9", "a5", null);
+      assertRow(conn, dataTableName, "b", "b1", "b5", "b3");
+      assertRow(conn, dataTableName, "c", null, "c5", null);
+      assertRow(conn, dataTableName, "d", "d1", "d5", "raw");
+      assertEquals(4, verifyIndexTable(dataTableName, indexTableName, conn));
+    }
+  }
+
+  @Test
+  public void testCompactionAndBulkLoadClearCache() throws Exception {
+    String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      upsert(conn, dataTableName, "val1, val2", "'a', 'a1', 'a2'");
+      upsert(conn, dataTableName, "val1, val2", "'b', 'b1', 'b2'");
+      conn.commit();
+      TableName hbaseTableName = TableName.valueOf(dataTableName);
+      TestUtil.flush(getUtility(), hbaseTableName);
+      upsert(conn, dataTableName, "val2", "'a', 'a3'");
+      conn.commit();
+      TestUtil.flush(getUtility(), hbaseTableName);
+      CacheCounters counters = new CacheCounters(dataTableName);
+      TestUtil.majorCompact(getUtility(), hbaseTableName);
+      upsert(conn, dataTableName, "val2", "'a', 'a4'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 1);
+      upsert(conn, dataTableName, "val2", "'a', 'a5'");
+      conn.commit();
+      counters.assertSinceLastCheck(1, 0);
+
+      // Bulk load a cell of a column not in the index
+      Configuration conf = getUtility().getConfiguration();
+      FileSystem fs = FileSystem.get(conf);
+      Path loadDir = new Path(getUtility().getDataTestDirOnTestFS(dataTableName), "load");
+      try (HFile.Writer writer =
+        HFile.getWriterFactoryNoCache(conf).withPath(fs, new Path(new Path(loadDir, "0"), "hfile"))
+          .withFileContext(new HFileContextBuilder().build()).create()) {
+        writer.append(new KeyValue(Bytes.toBytes("b"), Bytes.toBytes("0"), Bytes.toBytes("VAL3"),
+          EnvironmentEdgeManager.currentTimeMillis(), Bytes.toBytes("bulk")));
+      }
+      BulkLoadHFiles.create(new Configuration(conf)).bulkLoad(hbaseTableName, loadDir);
+      upsert(conn, dataTableName, "val2", "'a', 'a6'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 1);
+      upsert(conn, dataTableName, "val1", "'b', 'b7'");
+      conn.commit();
+      counters.assertSinceLastCheck(0, 1);
+      assertRow(conn, dataTableName, "a", "a1", "a6", null);
+      assertRow(conn, dataTableName, "b", "b7", "b2", "bulk");
+      assertEquals(2, verifyIndexTable(dataTableName, indexTableName, conn));
+    }
+  }
+
+  @Test
+  public void testConcurrentBatches() throws Exception {
+    final String dataTableName = generateUniqueName();
+    String indexTableName = generateUniqueName();
+    final int nThreads = 4;
+    final int nBatches = 50;
+    final int nRows = 5;
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      createTable(conn, dataTableName, indexTableName, "");
+      CacheCounters counters = new CacheCounters(dataTableName);
+      final CountDownLatch doneSignal = new CountDownLatch(nThreads);
+      final String[] failedMsg = new String[1];
+      for (int i = 0; i < nThreads; i++) {
+        final Random random = new Random(i);
+        new Thread(() -> {
+          try (Connection threadConn = DriverManager.getConnection(getUrl())) {
+            // Batches of partial row updates on a few rows, so that they often wait for the
+            // batches before them and build on their row states
+            for (int j = 0; j < nBatches; j++) {
+              for (int k = 0; k < 3; k++) {
+                String id = "'r" + random.nextInt(nRows) + "'";
+                String column = "val" + (random.nextInt(3) + 1);
+                String value = random.nextInt(5) == 0 ? "null" : "'v" + random.nextInt(10) + "'";
+                upsert(threadConn, dataTableName, column, id + ", " + value);
+              }
+              if (random.nextInt(10) == 0) {
+                threadConn.createStatement().execute(
+                  "DELETE FROM " + dataTableName + " WHERE id = 'r" + random.nextInt(nRows) + "'");
+              }
+              threadConn.commit();
+            }
+          } catch (Exception e) {
+            failedMsg[0] = e.getMessage();
+          } finally {
+            doneSignal.countDown();
+          }
+        }).start();
+      }
+      assertTrue(doneSignal.await(120, TimeUnit.SECONDS));
+      assertNull(failedMsg[0], failedMsg[0]);
+      long hits = getCounter(ROW_STATE_CACHE_HITS, dataTableName);
+      assertTrue(hits > counters.hits);
+      verifyIndexTable(dataTableName, indexTableName, conn);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.end2end.ParallelStatsDisabledIT;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests hash joins with the hash caches kept off the Java heap of the region servers.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class OffHeapHashCacheIT extends ParallelStatsDisabledIT {
+  private static final int PROBE_ROWS = 200;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+    props.put(QueryServices.HASH_CACHE_OFF_HEAP_ENABLED_ATTRIB, Boolean.toString(true));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  private static String createProbeTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement().execute("CREATE TABLE " + tableName
+      + " (k INTEGER NOT NULL PRIMARY KEY, g INTEGER, v VARCHAR) SPLIT ON (50, 100, 150)");
+    PreparedStatement stmt =
+      conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+    for (int k = 0; k < PROBE_ROWS; k++) {
+      stmt.setInt(1, k);
+      stmt.setInt(2, k % 10);
+      stmt.setString(3, "v" + k);
+      stmt.executeUpdate();
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  /**
+   * Creates a build side with three rows for each of the even groups of the probe side.
+   */
+  private static String createBuildTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement().execute(
+      "CREATE TABLE " + tableName + " (id INTEGER NOT NULL PRIMARY KEY, g INTEGER, name VARCHAR)");
+    PreparedStatement stmt =
+      conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+    for (int id = 0; id < 15; id++) {
+      stmt.setInt(1, id);
+      stmt.setInt(2, 2 * (id % 5));
+      stmt.setString(3, "n" + id);
+      stmt.executeUpdate();
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  @Test
+  public void testInnerJoinWithDuplicateKeys() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      ResultSet rs = conn.createStatement().executeQuery("SELECT p.k, p.v, b.id, b.name FROM "
+        + probeTableName + " p JOIN " + buildTableName + " b ON p.g = b.g ORDER BY p.k, b.id");
+      int count = 0;
+      for (int k = 0; k < PROBE_ROWS; k += 2) {
+        for (int id = (k % 10) / 2; id < 15; id += 5) {
+          assertTrue(rs.next());
+          assertEquals(k, rs.getInt(1));
+          assertEquals("v" + k, rs.getString(2));
+          assertEquals(id, rs.getInt(3));
+          assertEquals("n" + id, rs.getString(4));
+          count++;
+        }
+      }
+      assertFalse(rs.next());
+      assertEquals(3 * PROBE_ROWS / 2, count);
+    }
+  }
+
+  @Test
+  public void testLeftAndSemiJoins() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      ResultSet rs = conn.createStatement().executeQuery("SELECT p.k, b.name FROM " + probeTableName
+        + " p LEFT JOIN " + buildTableName + " b ON p.g = b.g AND b.id < 5");
+      int count = 0;
+      while (rs.next()) {
+        int k = rs.getInt(1);
+        assertEquals(k % 2 == 0 ? "n" + (k % 10) / 2 : null, rs.getString(2));
+        count++;
+      }
+      assertEquals(PROBE_ROWS, count);
+
+      rs = conn.createStatement().executeQuery("SELECT count(*) FROM " + probeTableName
+        + " p WHERE p.g IN (SELECT g FROM " + buildTableName + ")");
+      assertTrue(rs.next());
+      assertEquals(PROBE_ROWS / 2, rs.getInt(1));
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.ObserverContext;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.cache.TenantCache;
+import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
+import org.apache.phoenix.end2end.ParallelStatsDisabledIT;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.join.HashJoinInfo;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.apache.phoenix.util.TestUtil;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.phoenix.thirdparty.com.google.common.collect.Maps;
+
+/**
+ * Tests hash joins with the cache partitioned by the regions of the probe side table, with the
+ * regions moving, splitting or merging after the cache was sent and before the join runs.
+ */
+@Category(NeedsOwnMiniClusterTest.class)
+public class PartitionedHashCacheIT extends ParallelStatsDisabledIT {
+  private static final int PROBE_ROWS = 400;
+  private static final int REGION_SIZE = 100;
+
+  @BeforeClass
+  public static synchronized void doSetup() throws Exception {
+    Map<String, String> props = Maps.newHashMapWithExpectedSize(2);
+    props.put(QueryServices.HASH_CACHE_PARTITIONED_ENABLED_ATTRIB, Boolean.toString(true));
+    props.put(QueryServices.TESTS_MINI_CLUSTER_NUM_REGION_SERVERS, String.valueOf(2));
+    setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+  }
+
+  @Before
+  public void resetUncoveredScans() {
+    CountUncoveredScans.uncoveredScans.set(0);
+  }
+
+  /**
+   * Counts the scans of a join opened on a region the hash cache found on its server does not
+   * cover, which the server drops so that the client sends it a new partition.
+   */
+  public static class CountUncoveredScans extends SimpleRegionObserver {
+    public static final AtomicInteger uncoveredScans = new AtomicInteger();
+
+    @Override
+    public void preScannerOpen(final ObserverContext<RegionCoprocessorEnvironment> c,
+      final Scan scan) {
+      HashJoinInfo joinInfo = HashJoinInfo.deserializeHashJoinFromScan(scan);
+      if (joinInfo != null) {
+        TenantCache cache = GlobalCache.getTenantCache(c.getEnvironment(), null);
+        RegionInfo regionInfo = c.getEnvironment().getRegion().getRegionInfo();
+        for (ImmutableBytesPtr joinId : joinInfo.getJoinIds()) {
+          HashCache hashCache = (HashCache) cache.getServerCache(joinId);
+          if (
+            hashCache != null
+              && !hashCache.coversRegion(regionInfo.getStartKey(), regionInfo.getEndKey())
+          ) {
+            uncoveredScans.incrementAndGet();
+          }
+        }
+      }
+    }
+  }
+
+  private static String createProbeTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement().execute("CREATE TABLE " + tableName
+      + " (k INTEGER NOT NULL PRIMARY KEY, v VARCHAR) SPLIT ON (100, 200, 300)");
+    PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+    for (int k = 0; k < PROBE_ROWS; k++) {
+      stmt.setInt(1, k);
+      stmt.setString(2, "v" + k);
+      stmt.executeUpdate();
+    }
+    conn.commit();
+    TestUtil.addCoprocessor(conn, tableName, CountUncoveredScans.class);
+    return tableName;
+  }
+
+  private static String createBuildTable(Connection conn) throws Exception {
+    String tableName = generateUniqueName();
+    conn.createStatement()
+      .execute("CREATE TABLE " + tableName + " (k INTEGER NOT NULL PRIMARY KEY, name VARCHAR)");
+    PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+    // Every fourth row of the probe side, and rows past its last region that never match
+    for (int k = 0; k < PROBE_ROWS + REGION_SIZE; k += 4) {
+      stmt.setInt(1, k);
+      stmt.setString(2, "n" + k);
+      stmt.executeUpdate();
+    }
+    conn.commit();
+    return tableName;
+  }
+
+  private static List<HRegionLocation> getRegions(Connection conn, String tableName)
+    throws Exception {
+    return TestUtil.getAllTableRegions(conn, tableName);
+  }
+
+  private static ServerName getServer(int index) {
+    return getUtility().getHBaseCluster().getRegionServer(index).getServerName();
+  }
+
+  /**
+   * Puts all the regions of the table on the first region server. The region servers of the mini
+   * cluster share a single server cache that only keeps the first partition sent for a join, so
+   * with the regions spread over both of them the scans would keep dropping the partition of the
+   * other server and asking for their own.
+   */
+  private static void colocateRegions(Connection conn, String tableName) throws Exception {
+    for (HRegionLocation region : getRegions(conn, tableName)) {
+      if (!getServer(0).equals(region.getServerName())) {
+        getUtility().moveRegionAndWait(region.getRegion(), getServer(0));
+      }
+    }
+    // So that the cache is partitioned by the regions the server hosts now
+    conn.unwrap(PhoenixConnection.class).getQueryServices()
+      .clearTableRegionCache(TableName.valueOf(tableName));
+  }
+
+  private static String getJoinQuery(String probeTableName, String buildTableName) {
+    return "SELECT p.k, p.v, b.name FROM " + probeTableName + " p JOIN " + buildTableName
+      + " b ON p.k = b.k";
+  }
+
+  /**
+   * Checks that every fourth row of the probe side below the given key was joined.
+   */
+  private static void assertJoined(ResultSet rs, int maxKey) throws Exception {
+    Map<Integer, String> joined = new HashMap<>();
+    while (rs.next()) {
+      int k = rs.getInt(1);
+      assertEquals("v" + k, rs.getString(2));
+      assertNull(joined.put(k, rs.getString(3)));
+    }
+    assertEquals(maxKey / 4, joined.size());
+    for (int k = 0; k < maxKey; k += 4) {
+      assertEquals("n" + k, joined.get(k));
+    }
+  }
+
+  @Test
+  public void testJoinWithRegionsMovedAfterCacheSent() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      colocateRegions(conn, probeTableName);
+      String query = getJoinQuery(probeTableName, buildTableName);
+      String plan =
+        QueryUtil.getExplainPlan(conn.createStatement().executeQuery("EXPLAIN " + query));
+      assertTrue(plan, plan.contains("DYNAMIC SERVER FILTER BY P.K IN (B.K)"));
+
+      // The cache is sent when the query is run, and the regions are scanned on the first row
+      ResultSet rs = conn.createStatement().executeQuery(query);
+      List<HRegionLocation> regions = getRegions(conn, probeTableName);
+      getUtility().moveRegionAndWait(regions.get(0).getRegion(), getServer(1));
+      getUtility().moveRegionAndWait(regions.get(regions.size() - 1).getRegion(), getServer(1));
+      // The scans follow the regions to the other server, which in the mini cluster finds the
+      // partition sent to the first one through the server cache they share
+      assertJoined(rs, PROBE_ROWS);
+    }
+  }
+
+  @Test
+  public void testJoinWithRegionsSplitAfterCacheSent() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      colocateRegions(conn, probeTableName);
+
+      ResultSet rs =
+        conn.createStatement().executeQuery(getJoinQuery(probeTableName, buildTableName));
+      TestUtil.splitTable(conn, probeTableName, PInteger.INSTANCE.toBytes(REGION_SIZE / 2));
+      TestUtil.splitTable(conn, probeTableName,
+        PInteger.INSTANCE.toBytes(PROBE_ROWS - REGION_SIZE / 2));
+      assertEquals(6, getRegions(conn, probeTableName).size());
+      assertJoined(rs, PROBE_ROWS);
+
+      // Run again against the daughter regions, now partitioned along their boundaries
+      assertJoined(
+        conn.createStatement().executeQuery(getJoinQuery(probeTableName, buildTableName)),
+        PROBE_ROWS);
+    }
+  }
+
+  @Test
+  public void testJoinWithRegionsMergedAfterCacheSent() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      colocateRegions(conn, probeTableName);
+
+      // Only the first two regions are scanned, so the partition is built for them only
+      ResultSet rs = conn.createStatement().executeQuery(
+        getJoinQuery(probeTableName, buildTableName) + " WHERE p.k < " + 2 * REGION_SIZE);
+      List<HRegionLocation> regions = getRegions(conn, probeTableName);
+      TestUtil.mergeTableRegions(conn, probeTableName, Arrays.asList(
+        regions.get(1).getRegion().getEncodedName(), regions.get(2).getRegion().getEncodedName()));
+      assertEquals(3, getRegions(conn, probeTableName).size());
+      // The merged region reaches past the regions the partition was built for, so the server
+      // drops it and is sent a new one
+      assertJoined(rs, 2 * REGION_SIZE);
+      assertTrue(CountUncoveredScans.uncoveredScans.get() > 0);
+    }
+  }
+
+  @Test
+  public void testJoinWithoutRegionChanges() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      String probeTableName = createProbeTable(conn);
+      String buildTableName = createBuildTable(conn);
+      colocateRegions(conn, probeTableName);
+      assertJoined(
+        conn.createStatement().executeQuery(getJoinQuery(probeTableName, buildTableName)),
+        PROBE_ROWS);
+      assertEquals(0, CountUncoveredScans.uncoveredScans.get());
+      // An outer join does not narrow the probe side by the join keys, so its cache is whole
+      ResultSet rs = conn.createStatement().executeQuery("SELECT p.k, b.name FROM " + probeTableName
+        + " p LEFT JOIN " + buildTableName + " b ON p.k = b.k");
+      int count = 0;
+      while (rs.next()) {
+        int k = rs.getInt(1);
+        assertEquals(k % 4 == 0 ? "n" + k : null, rs.getString(2));
+        count++;
+      }
+      assertEquals(PROBE_ROWS, count);
+    }
+  }
+}
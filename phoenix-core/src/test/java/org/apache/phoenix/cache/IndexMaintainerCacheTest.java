@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.IndexUtil;
+import org.junit.Test;
+
+public class IndexMaintainerCacheTest extends BaseConnectionlessQueryTest {
+
+  private static byte[] serializeIndexMaintainers(String tableName) throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement()
+        .execute("CREATE TABLE " + tableName + " (k VARCHAR PRIMARY KEY, v1 VARCHAR, v2 VARCHAR)");
+      conn.createStatement()
+        .execute("CREATE INDEX " + tableName + "_IDX1 ON " + tableName + "(v1)");
+      conn.createStatement().execute("CREATE INDEX " + tableName + "_IDX2 ON " + tableName
+        + "(v2) INCLUDE (v1) WHERE v1 IS NOT NULL");
+      return serializeIndexMaintainers(conn, tableName);
+    }
+  }
+
+  private static byte[] serializeIndexMaintainers(Connection conn, String tableName)
+    throws Exception {
+    PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+    PTable table = pconn.getTable(new PTableKey(pconn.getTenantId(), tableName));
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    table.getIndexMaintainers(ptr, pconn);
+    return ByteUtil.copyKeyBytesIfNecessary(ptr);
+  }
+
+  @Test
+  public void testSharedIndexMaintainers() throws Exception {
+    byte[] md = serializeIndexMaintainers("T_SHARED");
+    Configuration conf = new Configuration(false);
+    conf.setLong(QueryServices.INDEX_MAINTAINER_CACHE_MAX_BYTES_ATTRIB, 1024 * 1024);
+    IndexMaintainerCache cache = new IndexMaintainerCache(conf);
+    List<IndexMaintainer> maintainers = cache.getIndexMaintainers(md, true);
+    assertEquals(2, maintainers.size());
+    // Plans carry their own copy of the same serialized maintainers
+    List<IndexMaintainer> cached = cache.getIndexMaintainers(md.clone(), true);
+    assertEquals(2, cached.size());
+    List<IndexMaintainer> deserialized = IndexMaintainer.deserialize(md, true);
+    for (int i = 0; i < deserialized.size(); i++) {
+      assertArrayEquals(deserialized.get(i).getIndexTableName(),
+        maintainers.get(i).getIndexTableName());
+      assertArrayEquals(deserialized.get(i).getIndexTableName(), cached.get(i).getIndexTableName());
+      // The immutable state is shared, while every caller has expressions of its own
+      assertNotSame(maintainers.get(i), cached.get(i));
+      assertSame(maintainers.get(i).getAllColumns(), cached.get(i).getAllColumns());
+    }
+    assertNotNull(cached.get(1).getIndexWhere());
+    assertNotSame(maintainers.get(1).getIndexWhere(), cached.get(1).getIndexWhere());
+    assertTrue(maintainers.get(0).getHeapSize() > md.length / 2);
+  }
+
+  /**
+   * Builds index row keys from the maintainers of the cache in several threads at once. The
+   * expressions of a maintainer keep the state of their evaluation, such as the elements of an
+   * ARRAY constructor or the number format of TO_CHAR, so the threads would corrupt each other's
+   * row keys if they shared them.
+   */
+  @Test
+  public void testConcurrentRowKeysWithArrayIndex() throws Exception {
+    String tableName = "T_ARRAY";
+    List<Put> rows = new ArrayList<>();
+    byte[] md;
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement().execute("CREATE TABLE " + tableName
+        + " (k VARCHAR PRIMARY KEY, v1 VARCHAR, v2 VARCHAR, n DECIMAL)");
+      conn.createStatement()
+        .execute("CREATE INDEX " + tableName + "_IDX ON " + tableName
+          + "(ARRAY_TO_STRING(ARRAY[v1, v2, TO_CHAR(n, '#,##0.000')], '-'))"
+          + " WHERE ARRAY_ELEM(ARRAY[v1, v2], 2) IS NOT NULL");
+      md = serializeIndexMaintainers(conn, tableName);
+      for (int i = 0; i < 64; i++) {
+        conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('k" + i + "', 'a" + i
+          + "', '" + StringUtils.repeat('b', i + 1) + "', " + (i * 987654321.123 + 0.001) + ")");
+      }
+      Iterator<Pair<byte[], List<Mutation>>> iterator =
+        conn.unwrap(PhoenixConnection.class).getMutationState().toMutations();
+      while (iterator.hasNext()) {
+        for (Mutation mutation : iterator.next().getSecond()) {
+          rows.add((Put) mutation);
+        }
+      }
+      conn.rollback();
+    }
+    assertEquals(64, rows.size());
+    IndexMaintainer maintainer = IndexMaintainer.deserialize(md, true).get(0);
+    final List<byte[]> expectedRowKeys = new ArrayList<>(rows.size());
+    for (Put row : rows) {
+      expectedRowKeys.add(buildRowKey(maintainer, row));
+    }
+
+    Configuration conf = new Configuration(false);
+    conf.setLong(QueryServices.INDEX_MAINTAINER_CACHE_MAX_BYTES_ATTRIB, 1024 * 1024);
+    final IndexMaintainerCache cache = new IndexMaintainerCache(conf);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<Expression>>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          List<Expression> indexWheres = new ArrayList<>();
+          for (int n = 0; n < 50; n++) {
+            IndexMaintainer cached = cache.getIndexMaintainers(md, true).get(0);
+            indexWheres.add(cached.getIndexWhere());
+            for (int i = 0; i < rows.size(); i++) {
+              assertTrue(cached.shouldPrepareIndexMutations(rows.get(i)));
+              assertArrayEquals(expectedRowKeys.get(i), buildRowKey(cached, rows.get(i)));
+            }
+          }
+          return indexWheres;
+        }));
+      }
+      // Whether or not the threads happened to interleave, none of them shared an expression
+      Set<Expression> indexWheres = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Future<List<Expression>> future : futures) {
+        indexWheres.addAll(future.get());
+      }
+      assertEquals(8 * 50, indexWheres.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static byte[] buildRowKey(IndexMaintainer maintainer, Put row) {
+    return maintainer.buildRowKey(new IndexUtil.SimpleValueGetter(row),
+      new ImmutableBytesPtr(row.getRow()), null, null, HConstants.LATEST_TIMESTAMP);
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    byte[] md = serializeIndexMaintainers("T_DISABLED");
+    IndexMaintainerCache cache = new IndexMaintainerCache(new Configuration(false));
+    assertNotSame(cache.getIndexMaintainers(md, true), cache.getIndexMaintainers(md, true));
+  }
+}
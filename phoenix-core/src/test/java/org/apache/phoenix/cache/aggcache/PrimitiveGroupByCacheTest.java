@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache.aggcache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ServerAggregators;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MaxAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class PrimitiveGroupByCacheTest {
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] LONG_CQ = Bytes.toBytes("A");
+  private static final byte[] INT_CQ = Bytes.toBytes("B");
+  private static final byte[] DOUBLE_CQ = Bytes.toBytes("C");
+  private static final Configuration CONF = new Configuration(false);
+
+  private static Expression newColumnExpression(final PDataType type, final SortOrder sortOrder,
+    byte[] cq) {
+    return new KeyValueColumnExpression(new PDatum() {
+      @Override
+      public boolean isNullable() {
+        return true;
+      }
+
+      @Override
+      public PDataType getDataType() {
+        return type;
+      }
+
+      @Override
+      public Integer getMaxLength() {
+        return null;
+      }
+
+      @Override
+      public Integer getScale() {
+        return null;
+      }
+
+      @Override
+      public SortOrder getSortOrder() {
+        return sortOrder;
+      }
+    }, CF, cq);
+  }
+
+  private static ServerAggregators newAggregators(List<SingleAggregateFunction> functions) {
+    return ServerAggregators.deserialize(ServerAggregators.serialize(functions, 0), CONF, null);
+  }
+
+  private static ServerAggregators newAggregators() {
+    List<Expression> longColumn =
+      Arrays.asList(newColumnExpression(PLong.INSTANCE, SortOrder.ASC, LONG_CQ));
+    List<Expression> intColumn =
+      Arrays.asList(newColumnExpression(PInteger.INSTANCE, SortOrder.DESC, INT_CQ));
+    List<Expression> doubleColumn =
+      Arrays.asList(newColumnExpression(PDouble.INSTANCE, SortOrder.ASC, DOUBLE_CQ));
+    return newAggregators(
+      Arrays.asList(new CountAggregateFunction(longColumn), new SumAggregateFunction(longColumn),
+        new MinAggregateFunction(intColumn), new MaxAggregateFunction(intColumn),
+        new SumAggregateFunction(doubleColumn), new MinAggregateFunction(doubleColumn)));
+  }
+
+  private static Tuple newTuple(int row, Random random) {
+    List<KeyValue> kvs = new ArrayList<>();
+    byte[] rowKey = Bytes.toBytes("r" + row);
+    if (random.nextInt(4) != 0) {
+      kvs.add(new KeyValue(rowKey, CF, LONG_CQ, PLong.INSTANCE.toBytes(random.nextLong() / 4)));
+    }
+    if (random.nextInt(4) != 0) {
+      kvs.add(new KeyValue(rowKey, CF, INT_CQ,
+        PInteger.INSTANCE.toBytes(random.nextInt(2000) - 1000, SortOrder.DESC)));
+    }
+    kvs.add(new KeyValue(rowKey, CF, DOUBLE_CQ,
+      PDouble.INSTANCE.toBytes(random.nextDouble() * 2000 - 1000)));
+    return new ResultTuple(Result.create(kvs.toArray(new KeyValue[kvs.size()])));
+  }
+
+  private static void assertSameAsAggregators(int numKeys, int numRows, long maxMemory)
+    throws Exception {
+    ServerAggregators aggregators = newAggregators();
+    assertTrue(PrimitiveGroupByCache.isSupported(aggregators));
+    MemoryManager memoryManager = new GlobalMemoryManager(maxMemory);
+    PrimitiveGroupByCache cache =
+      new PrimitiveGroupByCache(CONF, memoryManager, aggregators, 10, true);
+    Map<ImmutableBytesPtr, Aggregator[]> expected = new HashMap<>();
+    Random random = new Random(numRows);
+    for (int i = 0; i < numRows; i++) {
+      ImmutableBytesPtr key = new ImmutableBytesPtr(Bytes.toBytes("key" + random.nextInt(numKeys)));
+      Tuple tuple = newTuple(i, random);
+      Aggregator[] rowAggregators = expected.get(key);
+      if (rowAggregators == null) {
+        rowAggregators = aggregators.newAggregators(CONF);
+        expected.put(key, rowAggregators);
+      }
+      aggregators.aggregate(rowAggregators, tuple);
+      cache.aggregate(key, aggregators, tuple);
+      cache.cacheAggregateRowKey(key, new ImmutableBytesPtr(Bytes.toBytes("r" + i)));
+    }
+    assertEquals(expected.size(), cache.size());
+
+    RegionScanner scanner = cache.getScanner(null);
+    Map<ImmutableBytesPtr, byte[]> actual = new HashMap<>();
+    List<Cell> results = new ArrayList<>();
+    boolean hasMore;
+    do {
+      hasMore = scanner.next(results);
+    } while (hasMore);
+    for (Cell cell : results) {
+      ImmutableBytesPtr key = new ImmutableBytesPtr(CellUtil.cloneRow(cell));
+      assertEquals(null, actual.put(key, CellUtil.cloneValue(cell)));
+    }
+    assertEquals(expected.size(), actual.size());
+    for (Map.Entry<ImmutableBytesPtr, Aggregator[]> entry : expected.entrySet()) {
+      byte[] value = actual.get(entry.getKey());
+      assertNotNull(value);
+      assertArrayEquals(aggregators.toBytes(entry.getValue()), value);
+    }
+    cache.close();
+    assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testInMemory() throws Exception {
+    assertSameAsAggregators(500, 5000, 10 * 1024 * 1024);
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    // Only room for a few hundred groups, so groups are spilled and loaded back
+    assertSameAsAggregators(2000, 10000, 32 * 1024);
+  }
+
+  @Test
+  public void testUnsupportedAggregators() {
+    List<Expression> varcharColumn =
+      Arrays.asList(newColumnExpression(PVarchar.INSTANCE, SortOrder.ASC, LONG_CQ));
+    assertFalse(PrimitiveGroupByCache
+      .isSupported(newAggregators(Arrays.asList(new MinAggregateFunction(varcharColumn)))));
+  }
+}
@@ -27,14 +27,17 @@ import static org.apache.phoenix.util.TestUtil.JOIN_SUPPLIER_TABLE_DISPLAY_NAME;
 import static org.apache.phoenix.util.TestUtil.JOIN_SUPPLIER_TABLE_FULL_NAME;
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
 import org.apache.phoenix.compile.JoinCompiler.JoinTable;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.util.PropertiesUtil;
 import org.apache.phoenix.util.QueryUtil;
 import org.apache.phoenix.util.TestUtil;
@@ -168,4 +171,29 @@ public class JoinQueryCompilerTest extends BaseConnectionlessQueryTest {
     assertEquals(1, joinTable.getJoinSpecs().get(1).getRhsJoinTable().getLeftTable()
       .getPreFilterParseNodes().size());
   }
+
+  @Test
+  public void testJoinKeyBloomFilterExplainPlan() throws Exception {
+    Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+    props.setProperty(QueryServices.HASH_JOIN_BLOOM_FILTER_ENABLED_ATTRIB, "true");
+    try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+      String query =
+        "EXPLAIN SELECT \"order_id\", i.name, s.name FROM " + JOIN_ORDER_TABLE_FULL_NAME
+          + " o %s JOIN " + JOIN_ITEM_TABLE_FULL_NAME + " i ON o.\"item_id\" = i.\"item_id\" JOIN "
+          + JOIN_SUPPLIER_TABLE_FULL_NAME + " s ON i.\"supplier_id\" = s.\"supplier_id\"";
+      // The key of the second join is not a column of the scanned table
+      ResultSet rs = conn.createStatement().executeQuery(String.format(query, "INNER"));
+      assertEquals(
+        "CLIENT PARALLEL 1-WAY FULL SCAN OVER " + JOIN_ORDER_TABLE_DISPLAY_NAME + "\n"
+          + "    PARALLEL INNER-JOIN TABLE 0\n" + "        CLIENT PARALLEL 1-WAY FULL SCAN OVER "
+          + JOIN_ITEM_TABLE_DISPLAY_NAME + "\n"
+          + "    PARALLEL INNER-JOIN TABLE 1(DELAYED EVALUATION)\n"
+          + "        CLIENT PARALLEL 1-WAY FULL SCAN OVER " + JOIN_SUPPLIER_TABLE_DISPLAY_NAME
+          + "\n" + "    DYNAMIC SERVER FILTER BY item_id IN BLOOM FILTER OF (\"I.item_id\")",
+        QueryUtil.getExplainPlan(rs));
+      // Rows without a match are kept by a left join
+      rs = conn.createStatement().executeQuery(String.format(query, "LEFT"));
+      assertFalse(QueryUtil.getExplainPlan(rs).contains("BLOOM FILTER"));
+    }
+  }
 }
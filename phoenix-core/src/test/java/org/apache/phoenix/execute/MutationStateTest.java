@@ -22,9 +22,11 @@ import static org.apache.phoenix.query.BaseTest.generateUniqueName;
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
@@ -37,6 +39,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.client.Delete;
@@ -192,6 +201,34 @@ public class MutationStateTest {
 
   }
 
+  @Test
+  public void testSendAsync() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        MutationState state = new MutationState(100, 1000, pconn);
+        state.sendAsync(executor).get();
+        assertEquals(0, state.getNumRows());
+
+        // Callers that only chain on the future are completed without waiting for it
+        CountDownLatch chained = new CountDownLatch(1);
+        new MutationState(100, 1000, pconn).sendAsync(executor).thenRun(chained::countDown);
+        assertTrue(chained.await(60, TimeUnit.SECONDS));
+      } finally {
+        executor.shutdown();
+      }
+
+      // The mutations are sent by the calling thread when the executor rejects them
+      ExecutorService rejecting = mock(ExecutorService.class);
+      when(rejecting.submit(any(Callable.class))).thenThrow(new RejectedExecutionException());
+      MutationState state = new MutationState(100, 1000, pconn);
+      CompletableFuture<Void> future = state.sendAsync(rejecting);
+      assertTrue(future.isDone());
+      assertFalse(future.isCompletedExceptionally());
+    }
+  }
+
   @Rule
   public ExpectedException exceptionRule = ExpectedException.none();
 
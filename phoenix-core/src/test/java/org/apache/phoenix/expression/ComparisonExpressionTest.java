@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.Arrays;
+import org.apache.hadoop.hbase.CompareOperator;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class ComparisonExpressionTest {
+
+  /**
+   * Compares the values with both sides in each sort order, comparing the bytes of the constant
+   * directly when the type allows it, and checks that the result is the same when the right hand
+   * side is not a constant and the comparison goes through the data type.
+   */
+  private static boolean compare(CompareOperator op, Object lhs, Object rhs, PDataType dataType)
+    throws Exception {
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    Boolean result = null;
+    for (SortOrder sortOrder : SortOrder.values()) {
+      LiteralExpression lhsExpression = LiteralExpression.newConstant(lhs, dataType, sortOrder);
+      LiteralExpression rhsExpression = LiteralExpression.newConstant(rhs, dataType, sortOrder);
+      for (Expression rhsChild : Arrays.asList(rhsExpression,
+        new DelegateExpression(rhsExpression))) {
+        ComparisonExpression e =
+          new ComparisonExpression(Arrays.<Expression> asList(lhsExpression, rhsChild), op);
+        assertTrue(e.evaluate(null, ptr));
+        Boolean b = (Boolean) PBoolean.INSTANCE.toObject(ptr);
+        if (result != null) {
+          assertEquals(result, b);
+        }
+        result = b;
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testCompareToLiteral() throws Exception {
+    assertTrue(compare(CompareOperator.LESS, "ab", "abc", PVarchar.INSTANCE));
+    assertTrue(compare(CompareOperator.GREATER, "b", "abc", PVarchar.INSTANCE));
+    assertTrue(compare(CompareOperator.EQUAL, "abc", "abc", PVarchar.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS, -5, 3, PInteger.INSTANCE));
+    assertTrue(compare(CompareOperator.GREATER_OR_EQUAL, 7, 7, PInteger.INSTANCE));
+    assertTrue(compare(CompareOperator.NOT_EQUAL, -1.5d, 2.5d, PDouble.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS, -2.5d, -1.5d, PDouble.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS, -1L, 1L, PLong.INSTANCE));
+    assertTrue(compare(CompareOperator.GREATER, Long.MAX_VALUE, Long.MIN_VALUE, PLong.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS_OR_EQUAL, (short) -3, (short) -3, PSmallint.INSTANCE));
+    assertTrue(compare(CompareOperator.GREATER, 0.5f, -0.5f, PFloat.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS, new Date(1000), new Date(2000), PDate.INSTANCE));
+    assertTrue(compare(CompareOperator.GREATER, new BigDecimal("10.01"), new BigDecimal("9.999"),
+      PDecimal.INSTANCE));
+    assertTrue(compare(CompareOperator.LESS_OR_EQUAL, new BigDecimal("-1"), new BigDecimal("1"),
+      PDecimal.INSTANCE));
+  }
+
+  @Test
+  public void testNullLiteral() throws Exception {
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    ComparisonExpression e = new ComparisonExpression(
+      Arrays.<Expression> asList(LiteralExpression.newConstant(null, PInteger.INSTANCE),
+        LiteralExpression.newConstant(1, PInteger.INSTANCE)),
+      CompareOperator.EQUAL);
+    assertTrue(e.evaluate(null, ptr));
+    assertEquals(0, ptr.getLength());
+  }
+}
@@ -94,4 +94,19 @@ public class LikeExpressionTest {
     assertEquals(Boolean.TRUE, testExpression("AA\nA", "AA%A"));
     assertEquals(Boolean.FALSE, testExpression("AA\nA", "AA_"));
   }
+
+  @Test
+  public void testLiteralPattern() throws Exception {
+    assertEquals(Boolean.TRUE, testExpression("abcxdefyghi", "abc%def%ghi"));
+    assertEquals(Boolean.FALSE, testExpression("abcxdefyghi", "abc%ghi%def"));
+    assertEquals(Boolean.TRUE, testExpression("", "%%"));
+    assertEquals(Boolean.FALSE, testExpression("a", "a%a"));
+    assertEquals(Boolean.TRUE, testExpression("aa", "a%a"));
+    assertEquals(Boolean.FALSE, testExpression("aaa", "%aa%aa%"));
+    assertEquals(Boolean.TRUE, testExpression("aaaa", "%aa%aa%"));
+    assertEquals(Boolean.TRUE, testExpression("h\u00e9llo", "h%llo"));
+    assertEquals(Boolean.FALSE, testExpression("h\u00e9llo", "he%"));
+    assertEquals(Boolean.TRUE, testExpression("a%b", "a\\%b"));
+    assertEquals(Boolean.FALSE, testExpression("axb", "a\\%b"));
+  }
 }
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.ColumnVector;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.expression.function.MaxAggregateFunction;
+import org.apache.phoenix.expression.function.MinAggregateFunction;
+import org.apache.phoenix.expression.function.SingleAggregateFunction;
+import org.apache.phoenix.expression.function.SumAggregateFunction;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+public class ServerAggregatorBatchTest {
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] CQ = Bytes.toBytes("V");
+  private static final Configuration CONF = new Configuration(false);
+
+  private static Expression newColumnExpression(final PDataType type, final SortOrder sortOrder) {
+    return new KeyValueColumnExpression(new PDatum() {
+      @Override
+      public boolean isNullable() {
+        return true;
+      }
+
+      @Override
+      public PDataType getDataType() {
+        return type;
+      }
+
+      @Override
+      public Integer getMaxLength() {
+        return null;
+      }
+
+      @Override
+      public Integer getScale() {
+        return null;
+      }
+
+      @Override
+      public SortOrder getSortOrder() {
+        return sortOrder;
+      }
+    }, CF, CQ);
+  }
+
+  private static ServerAggregators newAggregators(Expression column) {
+    List<Expression> children = Collections.singletonList(column);
+    List<SingleAggregateFunction> functions =
+      Arrays.asList(new CountAggregateFunction(children), new SumAggregateFunction(children),
+        new MinAggregateFunction(children), new MaxAggregateFunction(children));
+    return ServerAggregators.deserialize(ServerAggregators.serialize(functions, 0), CONF, null);
+  }
+
+  private static Tuple newTuple(int row, PDataType type, SortOrder sortOrder, Object value) {
+    byte[] rowKey = Bytes.toBytes(row);
+    KeyValue kv = value == null
+      ? new KeyValue(rowKey, CF, Bytes.toBytes("E"), Bytes.toBytes("e"))
+      : new KeyValue(rowKey, CF, CQ, type.toBytes(value, sortOrder));
+    return new ResultTuple(Result.create(new KeyValue[] { kv }));
+  }
+
+  private static List<Tuple> newTuples(PDataType type, SortOrder sortOrder, int count) {
+    Random random = new Random(count);
+    List<Tuple> tuples = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Object value;
+      if (random.nextInt(4) == 0) {
+        value = null;
+      } else if (type == PDouble.INSTANCE) {
+        value = random.nextDouble() * 2000 - 1000;
+      } else if (type == PInteger.INSTANCE) {
+        value = random.nextInt(2000) - 1000;
+      } else {
+        value = random.nextLong() / 4;
+      }
+      tuples.add(newTuple(i, type, sortOrder, value));
+    }
+    return tuples;
+  }
+
+  private static byte[] aggregateRows(Expression column, List<Tuple> tuples) {
+    ServerAggregators aggregators = newAggregators(column);
+    Aggregator[] rowAggregators = aggregators.getAggregators();
+    aggregators.reset(rowAggregators);
+    for (Tuple tuple : tuples) {
+      aggregators.aggregate(rowAggregators, tuple);
+    }
+    return aggregators.toBytes(rowAggregators);
+  }
+
+  private static byte[] aggregateBatches(Expression column, List<Tuple> tuples, int capacity) {
+    ServerAggregators aggregators = newAggregators(column);
+    Aggregator[] rowAggregators = aggregators.getAggregators();
+    aggregators.reset(rowAggregators);
+    ServerAggregatorBatch batch = aggregators.newBatch(capacity);
+    assertNotNull(batch);
+    for (Tuple tuple : tuples) {
+      batch.aggregate(rowAggregators, tuple);
+    }
+    batch.flush();
+    return aggregators.toBytes(rowAggregators);
+  }
+
+  private static void assertSameAsRows(PDataType type, SortOrder sortOrder) {
+    Expression column = newColumnExpression(type, sortOrder);
+    for (int count : new int[] { 0, 1, 7, 50 }) {
+      List<Tuple> tuples = newTuples(type, sortOrder, count);
+      byte[] expected = aggregateRows(column, tuples);
+      for (int capacity : new int[] { 1, 3, 1024 }) {
+        assertArrayEquals(type + " " + sortOrder + " " + count + " rows, batches of " + capacity,
+          expected, aggregateBatches(column, tuples, capacity));
+      }
+    }
+  }
+
+  @Test
+  public void testLong() {
+    assertSameAsRows(PLong.INSTANCE, SortOrder.ASC);
+    assertSameAsRows(PLong.INSTANCE, SortOrder.DESC);
+  }
+
+  @Test
+  public void testInteger() {
+    assertSameAsRows(PInteger.INSTANCE, SortOrder.ASC);
+    assertSameAsRows(PInteger.INSTANCE, SortOrder.DESC);
+  }
+
+  @Test
+  public void testDouble() {
+    assertSameAsRows(PDouble.INSTANCE, SortOrder.ASC);
+    assertSameAsRows(PDouble.INSTANCE, SortOrder.DESC);
+  }
+
+  @Test
+  public void testDoubleSpecialValues() {
+    Object[] values = { 1.5, -0.0, 0.0, Double.NaN, Double.NEGATIVE_INFINITY,
+      Double.POSITIVE_INFINITY, -0.0, null, Double.NaN, -1.5 };
+    for (SortOrder sortOrder : SortOrder.values()) {
+      Expression column = newColumnExpression(PDouble.INSTANCE, sortOrder);
+      for (int start = 0; start < values.length; start++) {
+        // Every rotation of the values, so that each of them is seen first
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+          tuples.add(newTuple(i, PDouble.INSTANCE, sortOrder, values[(start + i) % values.length]));
+        }
+        byte[] expected = aggregateRows(column, tuples);
+        for (int capacity : new int[] { 1, 3, 1024 }) {
+          assertArrayEquals(sortOrder + " from " + start + ", batches of " + capacity, expected,
+            aggregateBatches(column, tuples, capacity));
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the values it aggregates, with the default aggregation of a vector.
+   */
+  private static class CollectingAggregator extends BaseAggregator {
+    private final List<Long> values = new ArrayList<>();
+
+    CollectingAggregator() {
+      super(SortOrder.DESC);
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+      values.add(PLong.INSTANCE.getCodec().decodeLong(ptr, sortOrder));
+    }
+
+    @Override
+    public ColumnVector newColumnVector(int capacity) {
+      return new ColumnVector(PLong.INSTANCE, sortOrder, capacity);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      return false;
+    }
+
+    @Override
+    public PDataType getDataType() {
+      return PLong.INSTANCE;
+    }
+  }
+
+  @Test
+  public void testDefaultVectorAggregation() {
+    CollectingAggregator aggregator = new CollectingAggregator();
+    ColumnVector vector = aggregator.newColumnVector(4);
+    for (Long value : Arrays.asList(3L, null, -7L, 11L)) {
+      if (value == null) {
+        vector.addNull();
+      } else {
+        vector.add(new ImmutableBytesWritable(PLong.INSTANCE.toBytes(value, SortOrder.DESC)));
+      }
+    }
+    aggregator.aggregate(vector);
+    assertEquals(Arrays.asList(3L, -7L, 11L), aggregator.values);
+  }
+
+  @Test
+  public void testUnsupportedType() {
+    assertNull(newAggregators(newColumnExpression(PVarchar.INSTANCE, SortOrder.ASC)).newBatch(10));
+    assertNull(newAggregators(newColumnExpression(PLong.INSTANCE, SortOrder.ASC)).newBatch(0));
+  }
+
+  @Test
+  public void testFlushOnAggregatorsChange() {
+    Expression column = newColumnExpression(PLong.INSTANCE, SortOrder.ASC);
+    ServerAggregators aggregators = newAggregators(column);
+    ServerAggregatorBatch batch = aggregators.newBatch(10);
+    Aggregator[] group1 = aggregators.newAggregators(CONF);
+    Aggregator[] group2 = aggregators.newAggregators(CONF);
+    batch.aggregate(group1, newTuple(0, PLong.INSTANCE, SortOrder.ASC, 1L));
+    batch.aggregate(group1, newTuple(1, PLong.INSTANCE, SortOrder.ASC, 2L));
+    batch.aggregate(group2, newTuple(2, PLong.INSTANCE, SortOrder.ASC, 5L));
+    batch.flush();
+    assertEquals(3L, ((NumberSumAggregator) group1[1]).getSum());
+    assertEquals(5L, ((NumberSumAggregator) group2[1]).getSum());
+  }
+}
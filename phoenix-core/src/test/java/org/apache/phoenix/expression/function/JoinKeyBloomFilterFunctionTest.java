@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Test;
+
+public class JoinKeyBloomFilterFunctionTest {
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] RHS_CQ = Bytes.toBytes("R");
+  private static final byte[] LHS_CQ = Bytes.toBytes("L");
+
+  private static final PDatum VARCHAR_DATUM = new PDatum() {
+    @Override
+    public boolean isNullable() {
+      return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+      return PVarchar.INSTANCE;
+    }
+
+    @Override
+    public Integer getMaxLength() {
+      return null;
+    }
+
+    @Override
+    public Integer getScale() {
+      return null;
+    }
+
+    @Override
+    public SortOrder getSortOrder() {
+      return SortOrder.getDefault();
+    }
+  };
+
+  private static Expression newColumnExpression(byte[] cq) {
+    return new KeyValueColumnExpression(VARCHAR_DATUM, CF, cq);
+  }
+
+  private static Tuple newTuple(byte[] cq, String value) {
+    byte[] row = Bytes.toBytes("row");
+    KeyValue kv = value == null
+      ? new KeyValue(row, CF, Bytes.toBytes("V"), ByteUtil.EMPTY_BYTE_ARRAY)
+      : new KeyValue(row, CF, cq, Bytes.toBytes(value));
+    return new ResultTuple(Result.create(new KeyValue[] { kv }));
+  }
+
+  private static JoinKeyBloomFilterFunction build(int maxKeys, String... rhsKeys) throws Exception {
+    JoinKeyBloomFilterFunction.Builder builder = new JoinKeyBloomFilterFunction.Builder(
+      Collections.singletonList(newColumnExpression(RHS_CQ)), maxKeys, 0.0001);
+    for (String key : rhsKeys) {
+      builder.add(newTuple(RHS_CQ, key));
+    }
+    return builder.build(Collections.singletonList(newColumnExpression(LHS_CQ)));
+  }
+
+  private static boolean mightJoin(Expression expression, String lhsKey) {
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    assertTrue(expression.evaluate(newTuple(LHS_CQ, lhsKey), ptr));
+    return (Boolean) PBoolean.INSTANCE.toObject(ptr);
+  }
+
+  @Test
+  public void testFiltersKeysNotInBuildSide() throws Exception {
+    JoinKeyBloomFilterFunction function = build(10, "b", "d", "b", "f");
+    assertTrue(mightJoin(function, "b"));
+    assertTrue(mightJoin(function, "d"));
+    assertTrue(mightJoin(function, "f"));
+    // Out of the min/max bounds
+    assertFalse(mightJoin(function, "a"));
+    assertFalse(mightJoin(function, "g"));
+    // Within the bounds, rejected by the Bloom filter
+    assertFalse(mightJoin(function, "c"));
+    assertFalse(mightJoin(function, "e"));
+    // A null key only joins with a null key
+    assertFalse(mightJoin(function, null));
+    assertTrue(mightJoin(build(10, "b", null), null));
+  }
+
+  @Test
+  public void testEmptyBuildSide() throws Exception {
+    JoinKeyBloomFilterFunction function = build(10);
+    assertFalse(mightJoin(function, "a"));
+    assertFalse(mightJoin(function, null));
+  }
+
+  @Test
+  public void testTooManyKeys() throws Exception {
+    assertNull(build(2, "a", "b", "c"));
+    // Duplicate keys are only counted once
+    assertTrue(mightJoin(build(2, "a", "b", "a", "b"), "a"));
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    JoinKeyBloomFilterFunction function = build(10, "b", "d", "f");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(ExpressionType.valueOf(function).ordinal());
+    function.write(out);
+    out.close();
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    Expression deserialized = ExpressionType.values()[in.readInt()].newInstance();
+    deserialized.readFields(in);
+    assertEquals(function, deserialized);
+    for (String key : Arrays.asList("a", "b", "c", "d", "e", "f", "g")) {
+      assertEquals(mightJoin(function, key), mightJoin(deserialized, key));
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hbase.index.write;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.hbase.index.table.HTableInterfaceReference;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestIndexWriteCoalescer {
+
+  private static final ImmutableBytesPtr TABLE_NAME =
+    new ImmutableBytesPtr(Bytes.toBytes("INDEX_TABLE"));
+
+  private static List<Mutation> mutations(String row) {
+    Put put = new Put(Bytes.toBytes(row));
+    put.addColumn(Bytes.toBytes("family"), Bytes.toBytes("qual"), Bytes.toBytes(row));
+    return Collections.<Mutation> singletonList(put);
+  }
+
+  private static IndexWriteCoalescer newCoalescer(long maxDelayMs, int maxBatchSize) {
+    Configuration conf = new Configuration(false);
+    conf.setLong(IndexWriteCoalescer.INDEX_WRITE_COALESCING_MAX_DELAY_MS_CONF_KEY, maxDelayMs);
+    conf.setInt(IndexWriteCoalescer.INDEX_WRITE_COALESCING_MAX_BATCH_SIZE_CONF_KEY, maxBatchSize);
+    return new IndexWriteCoalescer(conf);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testCoalescesConcurrentWrites() throws Exception {
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    Table table = Mockito.mock(Table.class);
+    Mockito.doAnswer(invocation -> {
+      batchSizes.add(((List<Mutation>) invocation.getArgument(0)).size());
+      return null;
+    }).when(table).batch(Mockito.anyList(), Mockito.any());
+    final FakeTableFactory factory =
+      new FakeTableFactory(Collections.<ImmutableBytesPtr, Table> singletonMap(TABLE_NAME, table));
+    // The leader waits for all the writes
+    final IndexWriteCoalescer coalescer = newCoalescer(60000, 3);
+    final HTableInterfaceReference tableReference = new HTableInterfaceReference(TABLE_NAME);
+    ExecutorService exec = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        final String row = "row" + i;
+        futures.add(exec.submit(() -> {
+          coalescer.write(tableReference, true, factory, mutations(row));
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      exec.shutdown();
+    }
+    assertEquals(Collections.singletonList(3), batchSizes);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testFailsOnlyTheWritesOfFailedMutations() throws Exception {
+    Table table = Mockito.mock(Table.class);
+    Mockito.doAnswer(invocation -> {
+      List<Mutation> batch = invocation.getArgument(0);
+      Object[] results = invocation.getArgument(1);
+      for (int i = 0; i < batch.size(); i++) {
+        boolean failed = Bytes.toString(batch.get(i).getRow()).equals("bad");
+        results[i] = failed ? new IOException("bad row") : Result.EMPTY_RESULT;
+      }
+      throw new IOException("failed");
+    }).when(table).batch(Mockito.anyList(), Mockito.any());
+    final FakeTableFactory factory =
+      new FakeTableFactory(Collections.<ImmutableBytesPtr, Table> singletonMap(TABLE_NAME, table));
+    final IndexWriteCoalescer coalescer = newCoalescer(60000, 2);
+    final HTableInterfaceReference tableReference = new HTableInterfaceReference(TABLE_NAME);
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    try {
+      Future<Throwable> good = exec.submit(() -> {
+        try {
+          coalescer.write(tableReference, true, factory, mutations("good"));
+          return null;
+        } catch (IOException e) {
+          return e;
+        }
+      });
+      Future<Throwable> bad = exec.submit(() -> {
+        try {
+          coalescer.write(tableReference, true, factory, mutations("bad"));
+          return null;
+        } catch (IOException e) {
+          return e;
+        }
+      });
+      assertNull(good.get());
+      assertTrue(bad.get() instanceof IOException);
+    } finally {
+      exec.shutdown();
+    }
+    Mockito.verify(table, Mockito.times(1)).batch(Mockito.anyList(), Mockito.any());
+  }
+}
@@ -29,6 +29,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -407,6 +408,55 @@ public class IndexMaintainerTest extends BaseConnectionlessQueryTest {
     }
   }
 
+  @Test
+  public void testRowKeysBuiltForSeveralRowsAndIndexes() throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement()
+        .execute("CREATE TABLE T_ROWKEYS (k VARCHAR PRIMARY KEY, v1 VARCHAR, v2 INTEGER)");
+      conn.createStatement().execute("CREATE INDEX T_ROWKEYS_IDX1 ON T_ROWKEYS(v1)");
+      conn.createStatement()
+        .execute("CREATE INDEX T_ROWKEYS_IDX2 ON T_ROWKEYS(v2 DESC, UPPER(v1)) INCLUDE (v1)");
+      PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+      PTable table = pconn.getTable(new PTableKey(pconn.getTenantId(), "T_ROWKEYS"));
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      table.getIndexMaintainers(ptr, pconn);
+      List<IndexMaintainer> ims =
+        IndexMaintainer.deserialize(ptr, GenericKeyValueBuilder.INSTANCE, true);
+      assertEquals(2, ims.size());
+      conn.createStatement().execute("UPSERT INTO T_ROWKEYS VALUES('a', 'x', 1)");
+      conn.createStatement()
+        .execute("UPSERT INTO T_ROWKEYS VALUES('a much longer row key', 'a much longer value', 2)");
+      conn.createStatement().execute("UPSERT INTO T_ROWKEYS VALUES('b', 'y', 3)");
+      Iterator<Pair<byte[], List<Mutation>>> iterator = pconn.getMutationState().toMutations();
+      List<byte[]> indexRowKeys = new ArrayList<>();
+      List<byte[]> indexRowKeyCopies = new ArrayList<>();
+      while (iterator.hasNext()) {
+        for (Mutation mutation : iterator.next().getSecond()) {
+          Put dataRow = (Put) mutation;
+          ImmutableBytesPtr rowKey = new ImmutableBytesPtr(dataRow.getRow());
+          // The index maintainers share the columns looked up for the row
+          ValueGetter cachingVG = new IndexUtil.CachingValueGetter(dataRow);
+          for (IndexMaintainer im : ims) {
+            byte[] indexRowKey = im.buildRowKey(cachingVG, rowKey, null, null, 0, null);
+            assertArrayEquals(
+              im.buildRowKey(new IndexUtil.SimpleValueGetter(dataRow), rowKey, null, null, 0, null),
+              indexRowKey);
+            assertArrayEquals(dataRow.getRow(),
+              im.buildDataRowKey(new ImmutableBytesWritable(indexRowKey), null));
+            indexRowKeys.add(indexRowKey);
+            indexRowKeyCopies.add(indexRowKey.clone());
+          }
+        }
+      }
+      assertEquals(6, indexRowKeys.size());
+      // Building the next row keys does not change the previous ones
+      for (int i = 0; i < indexRowKeys.size(); i++) {
+        assertArrayEquals(indexRowKeyCopies.get(i), indexRowKeys.get(i));
+      }
+      conn.rollback();
+    }
+  }
+
   private static void assertDeleteColumnMutation(String tableName, String dml,
     boolean isPartialUpdate, PhoenixConnection pconn, List<IndexMaintainer> ims) throws Exception {
     pconn.createStatement().execute(dml);
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgedScanFutureTest {
+  private static final long HEDGE_DELAY_MS = 50;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * A hedged scan whose scans return the given iterators after waiting for the given latches.
+   */
+  private class TestHedgedScanFuture extends HedgedScanFuture {
+    private final PeekingResultIterator hedgeIterator;
+    private final CountDownLatch hedgeLatch;
+    private final AtomicInteger hedges = new AtomicInteger();
+
+    private TestHedgedScanFuture(PeekingResultIterator primaryIterator, CountDownLatch primaryLatch,
+      PeekingResultIterator hedgeIterator, CountDownLatch hedgeLatch) {
+      super(null, HEDGE_DELAY_MS);
+      this.hedgeIterator = hedgeIterator;
+      this.hedgeLatch = hedgeLatch;
+      setPrimary(submit(primaryIterator, primaryLatch, false));
+    }
+
+    @Override
+    protected Future<?> submitHedge() {
+      hedges.incrementAndGet();
+      return submit(hedgeIterator, hedgeLatch, true);
+    }
+
+    private Future<?> submit(final PeekingResultIterator iterator, final CountDownLatch latch,
+      final boolean isHedge) {
+      return executor.submit(() -> {
+        long startTime = EnvironmentEdgeManager.currentTimeMillis();
+        if (!isHedge) {
+          start(startTime);
+        }
+        latch.await();
+        if (iterator == null) {
+          fail(new SQLException("Scan failed"), isHedge);
+        } else if (
+          !complete(iterator, isHedge, EnvironmentEdgeManager.currentTimeMillis() - startTime)
+        ) {
+          iterator.close();
+        }
+        return null;
+      });
+    }
+  }
+
+  @Test
+  public void testNotHedgedWhenScanReturnsInTime() throws Exception {
+    PeekingResultIterator primaryIterator = mock(PeekingResultIterator.class);
+    TestHedgedScanFuture future = new TestHedgedScanFuture(primaryIterator, new CountDownLatch(0),
+      mock(PeekingResultIterator.class), new CountDownLatch(0));
+    assertSame(primaryIterator, future.get(10, TimeUnit.SECONDS));
+    assertEquals(0, future.hedges.get());
+  }
+
+  @Test
+  public void testHedgeReturnsFirst() throws Exception {
+    PeekingResultIterator primaryIterator = mock(PeekingResultIterator.class);
+    PeekingResultIterator hedgeIterator = mock(PeekingResultIterator.class);
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    TestHedgedScanFuture future =
+      new TestHedgedScanFuture(primaryIterator, primaryLatch, hedgeIterator, new CountDownLatch(0));
+    assertSame(hedgeIterator, future.get(10, TimeUnit.SECONDS));
+    assertEquals(1, future.hedges.get());
+    // The original scan is closed when it returns
+    primaryLatch.countDown();
+    verify(primaryIterator, timeout(10000)).close();
+  }
+
+  @Test
+  public void testOriginalScanReturnsFirst() throws Exception {
+    PeekingResultIterator primaryIterator = mock(PeekingResultIterator.class);
+    PeekingResultIterator hedgeIterator = mock(PeekingResultIterator.class);
+    final CountDownLatch primaryLatch = new CountDownLatch(1);
+    CountDownLatch hedgeLatch = new CountDownLatch(1);
+    TestHedgedScanFuture future =
+      new TestHedgedScanFuture(primaryIterator, primaryLatch, hedgeIterator, hedgeLatch) {
+        @Override
+        protected Future<?> submitHedge() {
+          Future<?> hedge = super.submitHedge();
+          primaryLatch.countDown();
+          return hedge;
+        }
+      };
+    assertSame(primaryIterator, future.get(10, TimeUnit.SECONDS));
+    hedgeLatch.countDown();
+    verify(hedgeIterator, timeout(10000)).close();
+  }
+
+  @Test
+  public void testFailures() throws Exception {
+    // The failure of the duplicate scan is ignored
+    PeekingResultIterator primaryIterator = mock(PeekingResultIterator.class);
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    TestHedgedScanFuture future =
+      new TestHedgedScanFuture(primaryIterator, primaryLatch, null, new CountDownLatch(0));
+    try {
+      future.get(HEDGE_DELAY_MS * 4, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) { // expected
+    }
+    assertEquals(1, future.hedges.get());
+    primaryLatch.countDown();
+    assertSame(primaryIterator, future.get(10, TimeUnit.SECONDS));
+
+    // The failure of the original scan fails the future when it was not hedged
+    future = new TestHedgedScanFuture(null, new CountDownLatch(0), null, new CountDownLatch(0));
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof SQLException);
+    }
+    assertEquals(0, future.hedges.get());
+
+    // or once the duplicate scan failed as well
+    primaryLatch = new CountDownLatch(1);
+    CountDownLatch hedgeLatch = new CountDownLatch(1);
+    future = new TestHedgedScanFuture(null, primaryLatch, null, hedgeLatch);
+    try {
+      future.get(HEDGE_DELAY_MS * 4, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) { // expected
+    }
+    assertEquals(1, future.hedges.get());
+    primaryLatch.countDown();
+    try {
+      future.get(HEDGE_DELAY_MS * 4, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) { // expected
+    }
+    hedgeLatch.countDown();
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof SQLException);
+    }
+  }
+
+  @Test
+  public void testHedgeReturnsAfterOriginalScanFailed() throws Exception {
+    PeekingResultIterator hedgeIterator = mock(PeekingResultIterator.class);
+    CountDownLatch primaryLatch = new CountDownLatch(1);
+    CountDownLatch hedgeLatch = new CountDownLatch(1);
+    TestHedgedScanFuture future =
+      new TestHedgedScanFuture(null, primaryLatch, hedgeIterator, hedgeLatch);
+    try {
+      future.get(HEDGE_DELAY_MS * 4, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) { // expected
+    }
+    assertEquals(1, future.hedges.get());
+    primaryLatch.countDown();
+    try {
+      future.get(HEDGE_DELAY_MS * 4, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) { // expected
+    }
+    assertFalse(future.isDone());
+    hedgeLatch.countDown();
+    assertSame(hedgeIterator, future.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch busyLatch = new CountDownLatch(1);
+      busyExecutor.submit(() -> {
+        busyLatch.await();
+        return null;
+      });
+      // The original scan is queued behind the busy task, so it is never hedged and cancelled
+      HedgedScanFuture future = new HedgedScanFuture(null, 0) {
+        @Override
+        protected Future<?> submitHedge() {
+          throw new AssertionError("Queued scan hedged");
+        }
+      };
+      future.setPrimary(busyExecutor.submit(() -> null));
+      try {
+        future.get(HEDGE_DELAY_MS, TimeUnit.MILLISECONDS);
+        fail();
+      } catch (TimeoutException e) { // expected
+      }
+      assertFalse(future.isDone());
+      assertTrue(future.cancel(false));
+      assertTrue(future.isCancelled());
+      busyLatch.countDown();
+    } finally {
+      busyExecutor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class LoserTreeTest {
+
+  private static List<Integer> merge(List<List<Integer>> lists) {
+    List<Iterator<Integer>> iterators = new ArrayList<>();
+    for (List<Integer> list : lists) {
+      iterators.add(list.iterator());
+    }
+    LoserTree<Integer> tree = new LoserTree<>(iterators, Comparator.<Integer> naturalOrder());
+    List<Integer> merged = new ArrayList<>();
+    for (Integer peeked = tree.peek(); peeked != null; peeked = tree.peek()) {
+      assertEquals(peeked, tree.poll());
+      merged.add(peeked);
+    }
+    assertNull(tree.poll());
+    return merged;
+  }
+
+  @Test
+  public void testMerge() {
+    Random random = new Random(42);
+    for (int k = 0; k <= 9; k++) {
+      List<List<Integer>> lists = new ArrayList<>();
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < k; i++) {
+        // Some of the lists are empty, and values repeat across lists
+        List<Integer> list = new ArrayList<>();
+        int size = random.nextInt(4) == 0 ? 0 : random.nextInt(100);
+        for (int j = 0; j < size; j++) {
+          list.add(random.nextInt(50));
+        }
+        Collections.sort(list);
+        lists.add(list);
+        expected.addAll(list);
+      }
+      Collections.sort(expected);
+      assertEquals(expected, merge(lists));
+    }
+  }
+}
@@ -17,20 +17,39 @@
  */
 package org.apache.phoenix.iterate;
 
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.RegionInfo;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.execute.ScanPlan;
+import org.apache.phoenix.expression.BaseTerminalExpression;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.expression.RowKeyExpression;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.hbase.index.util.VersionUtil;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarbinary;
 import org.apache.phoenix.util.ScanUtil;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -90,4 +109,150 @@ public class OrderedResultIteratorTest {
     }
 
   }
+
+  /**
+   * Expression of a constant sort key that counts its evaluations.
+   */
+  private static class CountingExpression extends BaseTerminalExpression {
+    private int evaluations;
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+      evaluations++;
+      ptr.set(Bytes.toBytes("x"));
+      return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+      return PVarbinary.INSTANCE;
+    }
+
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+      return null;
+    }
+  }
+
+  private static Tuple row(int i) {
+    return new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(String.format("r%03d", i)),
+      SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i)));
+  }
+
+  private static List<Integer> getTopN(List<Tuple> rows, boolean ascending, int limit,
+    CountingExpression counter) throws SQLException {
+    return getTopN(rows, ascending, limit, counter, true, Long.MAX_VALUE);
+  }
+
+  private static List<Integer> getTopN(List<Tuple> rows, boolean ascending, int limit,
+    CountingExpression counter, boolean spoolingEnabled, long thresholdBytes) throws SQLException {
+    List<
+      OrderByExpression> orderByExpressions =
+        Arrays.asList(
+          OrderByExpression.createByCheckIfOrderByReverse(RowKeyExpression.INSTANCE, false,
+            ascending, false),
+          OrderByExpression.createByCheckIfOrderByReverse(counter, false, true, false));
+    OrderedResultIterator iterator = new OrderedResultIterator(new MaterializedResultIterator(rows),
+      orderByExpressions, spoolingEnabled, thresholdBytes, limit, null);
+    List<Integer> results = new ArrayList<>();
+    for (Tuple tuple = iterator.next(); tuple != null; tuple = iterator.next()) {
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      tuple.getKey(ptr);
+      results.add(Integer.parseInt(Bytes.toString(ptr.copyBytes()).substring(1)));
+    }
+    iterator.close();
+    return results;
+  }
+
+  @Test
+  public void testTopNCutoff() throws SQLException {
+    List<Tuple> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(row(i));
+    }
+    // Once the first 3 rows are kept, the other rows are dropped on their first sort key
+    CountingExpression counter = new CountingExpression();
+    assertEquals(Arrays.asList(0, 1, 2), getTopN(rows, true, 3, counter));
+    assertEquals(3, counter.evaluations);
+    // Every row sorts before the top rows seen so far
+    counter = new CountingExpression();
+    assertEquals(Arrays.asList(99, 98, 97), getTopN(rows, false, 3, counter));
+    assertEquals(100, counter.evaluations);
+
+    Collections.shuffle(rows, new Random(42));
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), getTopN(rows, true, 5, new CountingExpression()));
+    // Rows with the same sort keys as the top rows
+    List<Tuple> duplicateRows = new ArrayList<>(rows);
+    duplicateRows.addAll(rows);
+    Collections.shuffle(duplicateRows, new Random(42));
+    assertEquals(Arrays.asList(0, 0, 1, 1, 2),
+      getTopN(duplicateRows, true, 5, new CountingExpression()));
+  }
+
+  @Test
+  public void testTopNCutoffWithoutSpooling() throws SQLException {
+    List<Tuple> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(row(i));
+    }
+    CountingExpression counter = new CountingExpression();
+    assertEquals(Arrays.asList(0, 1, 2), getTopN(rows, true, 3, counter, false, Long.MAX_VALUE));
+    assertEquals(3, counter.evaluations);
+  }
+
+  @Test
+  public void testTopNCutoffOverSpoolThreshold() throws SQLException {
+    List<Tuple> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(row(i));
+    }
+    // Every row is spooled on its own, so no segment is ever full. Only the first rows are
+    // checked, as the spooled queue keeps up to the limit of rows per spooled segment.
+    CountingExpression counter = new CountingExpression();
+    assertEquals(Arrays.asList(0, 1, 2), getTopN(rows, true, 3, counter, true, 1).subList(0, 3));
+    assertEquals(100, counter.evaluations);
+    // Every segment is spooled once it holds 3 rows, and the cutoff of the first one applies
+    counter = new CountingExpression();
+    assertEquals(Arrays.asList(0, 1, 2), getTopN(rows, true, 3, counter, true, 150).subList(0, 3));
+    assertEquals(3, counter.evaluations);
+    // Every row sorts before the cutoff of the previous segments
+    counter = new CountingExpression();
+    assertEquals(Arrays.asList(99, 98, 97),
+      getTopN(rows, false, 3, counter, true, 150).subList(0, 3));
+    assertEquals(100, counter.evaluations);
+  }
+
+  @Test
+  public void testParallelSort() throws Exception {
+    List<Tuple> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(row(i));
+    }
+    Collections.shuffle(rows, new Random(42));
+    List<OrderByExpression> orderByExpressions = Collections.singletonList(OrderByExpression
+      .createByCheckIfOrderByReverse(RowKeyExpression.INSTANCE, false, true, false));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    // An executor that runs nothing leaves the runs to be sorted by the thread waiting for them
+    ExecutorService rejectingExecutor = Mockito.mock(ExecutorService.class);
+    Mockito.when(rejectingExecutor.submit(Mockito.any(Callable.class)))
+      .thenThrow(new RejectedExecutionException());
+    try {
+      for (ExecutorService sortExecutor : Arrays.asList(executor, rejectingExecutor)) {
+        // Spool every few rows, with rows sharing the prefix of their sort keys
+        OrderedResultIterator iterator =
+          new OrderedResultIterator(new MaterializedResultIterator(rows), orderByExpressions, true,
+            2000, null, null, 0, sortExecutor, 2);
+        int i = 0;
+        for (Tuple tuple = iterator.next(); tuple != null; tuple = iterator.next()) {
+          ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+          tuple.getKey(ptr);
+          assertEquals(String.format("r%03d", i++), Bytes.toString(ptr.copyBytes()));
+        }
+        assertEquals(rows.size(), i);
+        iterator.close();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.hadoop.hbase.ServerName;
+import org.junit.Test;
+
+public class ScanLatencyTrackerTest {
+  private static final ServerName SERVER1 = ServerName.valueOf("host1", 16020, 1);
+  private static final ServerName SERVER2 = ServerName.valueOf("host2", 16020, 1);
+
+  @Test
+  public void testHedgeDelay() {
+    ScanLatencyTracker tracker = new ScanLatencyTracker();
+    // Nothing is hedged until there is a latency to compare with
+    assertEquals(Long.MAX_VALUE, tracker.getHedgeDelayMs(SERVER1, 3, 10));
+
+    tracker.update(SERVER1, 100);
+    assertEquals(300, tracker.getHedgeDelayMs(SERVER1, 3, 10));
+    assertEquals(1000, tracker.getHedgeDelayMs(SERVER1, 3, 1000));
+    // Servers without a scan yet use the latency of all servers
+    assertEquals(300, tracker.getHedgeDelayMs(SERVER2, 3, 10));
+    assertEquals(300, tracker.getHedgeDelayMs(null, 3, 10));
+
+    // Each server has its own latency
+    tracker.update(SERVER2, 10);
+    assertEquals(30, tracker.getHedgeDelayMs(SERVER2, 3, 10));
+    assertEquals(300, tracker.getHedgeDelayMs(SERVER1, 3, 10));
+  }
+
+  @Test
+  public void testMovingAverage() {
+    ScanLatencyTracker tracker = new ScanLatencyTracker();
+    tracker.update(SERVER1, 100);
+    tracker.update(SERVER1, 200);
+    assertEquals(120, tracker.getLatencyMs(SERVER1), 0.001);
+    // A single slow scan does not make the latency of the server slow
+    for (int i = 0; i < 20; i++) {
+      tracker.update(SERVER1, 100);
+    }
+    tracker.update(SERVER1, 10000);
+    assertEquals(2080, tracker.getLatencyMs(SERVER1), 1);
+  }
+}
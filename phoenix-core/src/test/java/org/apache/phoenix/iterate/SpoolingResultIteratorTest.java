@@ -19,9 +19,15 @@ package org.apache.phoenix.iterate;
 
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
 import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.log.LogLevel;
 import org.apache.phoenix.memory.DelegatingMemoryManager;
@@ -41,6 +47,11 @@ public class SpoolingResultIteratorTest {
   private final static byte[] B = Bytes.toBytes("b");
 
   private void testSpooling(int threshold, long maxSizeSpool) throws Throwable {
+    testSpooling(threshold, maxSizeSpool, false, false);
+  }
+
+  private void testSpooling(int threshold, long maxSizeSpool, boolean batched, boolean compressed)
+    throws Throwable {
     Tuple[] results = new Tuple[] {
       new SingleKeyValueTuple(
         new KeyValue(A, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(1))),
@@ -57,10 +68,25 @@ public class SpoolingResultIteratorTest {
     MemoryManager memoryManager = new DelegatingMemoryManager(new GlobalMemoryManager(threshold));
     ResultIterator scanner = new SpoolingResultIterator(SpoolingMetricsHolder.NO_OP_INSTANCE,
       new MemoryMetricsHolder(new ReadMetricQueue(false, LogLevel.OFF), ""), iterator,
-      memoryManager, threshold, maxSizeSpool, "/tmp");
+      memoryManager, threshold, maxSizeSpool, "/tmp", batched, compressed);
     AssertResults.assertResults(scanner, expectedResults);
   }
 
+  private void testBatchedSpooling(int threshold, boolean compressed) throws Throwable {
+    // Enough rows for several batches
+    List<Tuple> results = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      results.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(String.format("row%05d", i)),
+        SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i))));
+    }
+    MemoryManager memoryManager = new DelegatingMemoryManager(new GlobalMemoryManager(threshold));
+    ResultIterator scanner = new SpoolingResultIterator(SpoolingMetricsHolder.NO_OP_INSTANCE,
+      new MemoryMetricsHolder(new ReadMetricQueue(false, LogLevel.OFF), ""),
+      new MaterializedResultIterator(results), memoryManager, threshold,
+      QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, "/tmp", true, compressed);
+    AssertResults.assertResults(scanner, results.toArray(new Tuple[results.size()]));
+  }
+
   @Test
   public void testInMemorySpooling() throws Throwable {
     testSpooling(1024 * 1024, QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES);
@@ -75,4 +101,45 @@ public class SpoolingResultIteratorTest {
   public void testFailToSpool() throws Throwable {
     testSpooling(1, 0L);
   }
+
+  @Test
+  public void testInMemoryBatchedSpooling() throws Throwable {
+    testSpooling(1024 * 1024, QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, true, false);
+    testBatchedSpooling(10 * 1024 * 1024, false);
+    testBatchedSpooling(10 * 1024 * 1024, true);
+  }
+
+  @Test
+  public void testSpoolFileDeletedOnClose() throws Throwable {
+    List<Tuple> results = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      results.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(String.format("row%05d", i)),
+        SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, Bytes.toBytes(i))));
+    }
+    File spoolDirectory = Files.createTempDirectory("spool").toFile();
+    try {
+      ResultIterator scanner = new SpoolingResultIterator(SpoolingMetricsHolder.NO_OP_INSTANCE,
+        new MemoryMetricsHolder(new ReadMetricQueue(false, LogLevel.OFF), ""),
+        new MaterializedResultIterator(results),
+        new DelegatingMemoryManager(new GlobalMemoryManager(1)), 1,
+        QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, spoolDirectory.getPath(), true,
+        false);
+      assertEquals(1, spoolDirectory.list().length);
+      // Closed part way through the file
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      scanner.next().getKey(ptr);
+      assertEquals("row00000", Bytes.toString(ptr.copyBytes()));
+      scanner.close();
+      assertEquals(0, spoolDirectory.list().length);
+    } finally {
+      spoolDirectory.delete();
+    }
+  }
+
+  @Test
+  public void testOnDiskBatchedSpooling() throws Throwable {
+    testSpooling(1, QueryServicesOptions.DEFAULT_MAX_SPOOL_TO_DISK_BYTES, true, true);
+    testBatchedSpooling(1, false);
+    testBatchedSpooling(1, true);
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.jdbc;
+
+import static org.apache.phoenix.util.TestUtil.ATABLE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import org.apache.phoenix.jdbc.PhoenixStatement.CompilableStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.junit.Test;
+
+public class ParsedStatementCacheTest extends BaseConnectionlessQueryTest {
+
+  @Test
+  public void testQueryIsParsedOnce() throws Exception {
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class)) {
+      conn.getQueryServices().clearCache();
+      String query = "SELECT a_string FROM " + ATABLE_NAME + " WHERE organization_id = ?";
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      CompilableStatement first = stmt.parseStatement(query);
+      CompilableStatement second = stmt.parseStatement(query);
+      assertSame(first, second);
+      assertEquals(1, conn.getQueryServices().getParsedStatementCache().size());
+    }
+  }
+
+  @Test
+  public void testCachedStatementIsReusableWithDifferentBinds() throws Exception {
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class)) {
+      String query = "SELECT a_string FROM " + ATABLE_NAME + " WHERE organization_id = ?";
+      for (String orgId : new String[] { "000000000000001", "000000000000002" }) {
+        PreparedStatement stmt = conn.prepareStatement(query);
+        stmt.setString(1, orgId);
+        String explain = stmt.unwrap(PhoenixPreparedStatement.class).optimizeQuery()
+          .getExplainPlan().getPlanStepsAsAttributes().getKeyRanges();
+        assertTrue(explain, explain.contains(orgId));
+      }
+    }
+  }
+
+  @Test
+  public void testDDLIsNotCached() throws Exception {
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class)) {
+      conn.getQueryServices().clearCache();
+      String ddl = "CREATE TABLE IF NOT EXISTS T_PSC (k VARCHAR PRIMARY KEY, v VARCHAR)";
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      assertNotSame(stmt.parseStatement(ddl), stmt.parseStatement(ddl));
+      assertEquals(0, conn.getQueryServices().getParsedStatementCache().size());
+    }
+  }
+
+  @Test
+  public void testClearCacheInvalidatesParsedStatements() throws Exception {
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class)) {
+      String query = "SELECT * FROM " + ATABLE_NAME;
+      PhoenixStatement stmt = conn.createStatement().unwrap(PhoenixStatement.class);
+      CompilableStatement first = stmt.parseStatement(query);
+      conn.getQueryServices().clearCache();
+      assertEquals(0, conn.getQueryServices().getParsedStatementCache().size());
+      assertNotSame(first, stmt.parseStatement(query));
+    }
+  }
+
+  @Test
+  public void testDisabledCache() throws Exception {
+    ParsedStatementCache cache = new ParsedStatementCache(0);
+    assertFalse(cache.isEnabled());
+    try (PhoenixConnection conn =
+      DriverManager.getConnection(getUrl()).unwrap(PhoenixConnection.class)) {
+      String query = "SELECT * FROM " + ATABLE_NAME;
+      cache.put(query, conn.createStatement().unwrap(PhoenixStatement.class).parseStatement(query));
+      assertNull(cache.get(query));
+      assertEquals(0, cache.size());
+    }
+    assertTrue(
+      new ParsedStatementCache(QueryServicesOptions.DEFAULT_MAX_CLIENT_PARSED_STATEMENT_CACHE_SIZE)
+        .isEnabled());
+  }
+}
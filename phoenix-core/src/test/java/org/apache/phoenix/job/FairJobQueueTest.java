@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.phoenix.job.JobManager.JobCallable;
+import org.apache.phoenix.job.JobManager.JobClass;
+import org.apache.phoenix.job.JobManager.JobFutureTask;
+import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
+import org.junit.Test;
+
+public class FairJobQueueTest {
+
+  private static JobFutureTask<String> newJob(final String name, final Object jobId,
+    final String tenantId, final long deadline, final JobClass jobClass) {
+    return new JobFutureTask<String>(newCallable(name, jobId, tenantId, deadline, jobClass, null));
+  }
+
+  /**
+   * @param ran if not null, the name of the job is added to it when the job runs
+   */
+  private static JobCallable<String> newCallable(final String name, final Object jobId,
+    final String tenantId, final long deadline, final JobClass jobClass, final List<String> ran) {
+    return new JobCallable<String>() {
+      @Override
+      public String call() {
+        if (ran != null) {
+          ran.add(name);
+        }
+        return name;
+      }
+
+      @Override
+      public Object getJobId() {
+        return jobId;
+      }
+
+      @Override
+      public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+        return null;
+      }
+
+      @Override
+      public String getTenantId() {
+        return tenantId;
+      }
+
+      @Override
+      public long getDeadline() {
+        return deadline;
+      }
+
+      @Override
+      public JobClass getJobClass() {
+        return jobClass;
+      }
+
+      @Override
+      public String toString() {
+        return name;
+      }
+    };
+  }
+
+  private static JobFutureTask<String> newJob(String name, Object jobId, String tenantId) {
+    return newJob(name, jobId, tenantId, Long.MAX_VALUE, JobClass.SCAN);
+  }
+
+  private static List<String> pollAll(FairJobQueue queue) throws Exception {
+    List<String> names = new ArrayList<>();
+    Runnable job;
+    while ((job = queue.poll()) != null) {
+      job.run();
+      names.add(((JobFutureTask<?>) job).get().toString());
+    }
+    return names;
+  }
+
+  @Test
+  public void testTenantsShareByWeight() throws Exception {
+    Map<String, Integer> weights = new HashMap<>();
+    weights.put("A", 2);
+    FairJobQueue queue = new FairJobQueue(100, weights);
+    for (int i = 0; i < 6; i++) {
+      queue.offer(newJob("a" + i, "qa", "A"));
+      queue.offer(newJob("b" + i, "qb", "B"));
+    }
+    List<String> names = pollAll(queue);
+    assertEquals(12, names.size());
+    // A is served twice as often as B while both have queued jobs
+    int a = 0;
+    for (String name : names.subList(0, 6)) {
+      if (name.startsWith("a")) {
+        a++;
+      }
+    }
+    assertEquals(4, a);
+  }
+
+  @Test
+  public void testIdleTenantDoesNotCatchUp() throws Exception {
+    FairJobQueue queue = new FairJobQueue(100, Collections.<String, Integer> emptyMap());
+    for (int i = 0; i < 10; i++) {
+      queue.offer(newJob("a" + i, "qa", "A"));
+    }
+    for (int i = 0; i < 8; i++) {
+      queue.poll();
+    }
+    queue.offer(newJob("b0", "qb", "B"));
+    queue.offer(newJob("b1", "qb", "B"));
+    List<String> names = pollAll(queue);
+    // B starts at the virtual time of A instead of being served until it catches up with A
+    assertTrue(names.toString(), names.indexOf("a8") < names.indexOf("b1"));
+    assertTrue(names.toString(), names.indexOf("b0") < names.indexOf("a9"));
+  }
+
+  @Test
+  public void testPointLookupsAndEarliestDeadlineFirst() throws Exception {
+    FairJobQueue queue = new FairJobQueue(100, Collections.<String, Integer> emptyMap());
+    queue.offer(newJob("late", "q1", null, 2000, JobClass.SCAN));
+    queue.offer(newJob("none", "q2", null, Long.MAX_VALUE, JobClass.SCAN));
+    queue.offer(newJob("early", "q3", null, 1000, JobClass.SCAN));
+    queue.offer(newJob("lookup", "q4", null, 3000, JobClass.POINT_LOOKUP));
+    assertEquals("[lookup, early, late, none]", pollAll(queue).toString());
+  }
+
+  @Test
+  public void testPointLookupOvertakesScanFlood() throws Exception {
+    ThreadPoolExecutor executor = JobManager.createThreadPoolExec(60000, 1, 1000, false,
+      Collections.<String, Integer> emptyMap(), false);
+    try {
+      final CountDownLatch blocked = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      // Holds the only thread of the pool while the other jobs are queued
+      executor.submit(new JobCallable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          blocked.countDown();
+          release.await();
+          return null;
+        }
+
+        @Override
+        public Object getJobId() {
+          return "blocker";
+        }
+
+        @Override
+        public TaskExecutionMetricsHolder getTaskExecutionMetric() {
+          return null;
+        }
+      });
+      assertTrue(blocked.await(60, TimeUnit.SECONDS));
+      List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor
+          .submit(newCallable("scan" + i, "analytic", "A", Long.MAX_VALUE, JobClass.SCAN, ran)));
+      }
+      Future<String> lookup = executor
+        .submit(newCallable("lookup", "point", "A", Long.MAX_VALUE, JobClass.POINT_LOOKUP, ran));
+      release.countDown();
+      assertEquals("lookup", lookup.get(60, TimeUnit.SECONDS));
+      for (Future<String> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+      // The lookup queued behind the whole flood of the same tenant runs first
+      assertEquals(101, ran.size());
+      assertEquals("lookup", ran.get(0));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRoundRobinBetweenJobs() throws Exception {
+    FairJobQueue queue = new FairJobQueue(100, Collections.<String, Integer> emptyMap());
+    queue.offer(newJob("x0", "qx", null));
+    queue.offer(newJob("x1", "qx", null));
+    queue.offer(newJob("x2", "qx", null));
+    queue.offer(newJob("y0", "qy", null));
+    queue.offer(newJob("y1", "qy", null));
+    assertEquals("[x0, y0, x1, y1, x2]", pollAll(queue).toString());
+  }
+
+  @Test
+  public void testMaxSize() throws Exception {
+    FairJobQueue queue = new FairJobQueue(2, Collections.<String, Integer> emptyMap());
+    assertTrue(queue.offer(newJob("a0", "qa", "A")));
+    assertTrue(queue.offer(newJob("b0", "qb", "B")));
+    assertFalse(queue.offer(newJob("a1", "qa", "A")));
+    assertEquals(2, queue.size());
+    assertEquals(2, pollAll(queue).size());
+    assertNull(queue.peek());
+    assertEquals(0, queue.size());
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+  private static int getJavaVersion() {
+    String version = System.getProperty("java.specification.version");
+    return version.startsWith("1.")
+      ? Integer.parseInt(version.substring(2))
+      : Integer.parseInt(version);
+  }
+
+  @Test
+  public void testSupportFollowsJavaVersion() {
+    // Java 19 and 20 only support virtual threads with preview features enabled
+    int javaVersion = getJavaVersion();
+    if (javaVersion >= 21) {
+      assertTrue(VirtualThreads.isSupported());
+    } else if (javaVersion < 19) {
+      assertFalse(VirtualThreads.isSupported());
+    }
+    if (VirtualThreads.isSupported()) {
+      assertNotNull(VirtualThreads.newThreadFactory().newThread(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }));
+    } else {
+      try {
+        VirtualThreads.newThreadFactory();
+        fail();
+      } catch (UnsupportedOperationException e) { // expected
+      }
+    }
+  }
+
+  @Test
+  public void testThreadPoolRunsJobs() throws Exception {
+    boolean useVirtualThreads = VirtualThreads.isSupported();
+    final ClassLoader classLoader = JobManager.class.getClassLoader();
+    ThreadPoolExecutor executor = JobManager.createThreadPoolExec(1000, 4,
+      QueryServicesOptions.DEFAULT_QUEUE_SIZE, false, null, useVirtualThreads);
+    try {
+      Thread thread = executor.submit(new Callable<Thread>() {
+        @Override
+        public Thread call() {
+          return Thread.currentThread();
+        }
+      }).get();
+      assertTrue(thread.isDaemon());
+      assertEquals(classLoader, thread.getContextClassLoader());
+      assertTrue(thread.getName(),
+        thread.getName().contains(useVirtualThreads ? "-virtual-thread-" : "-thread-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.RowKeyColumnExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.schema.PColumn;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.RowKeyValueAccessor;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
+import org.junit.Test;
+
+public class HashCachePartitionerTest extends BaseConnectionlessQueryTest {
+
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] CQ = Bytes.toBytes("K");
+  // A null join key is sent to every region server
+  private static final String[] JOIN_KEYS = { "a", "b", "a", "c", null, "a" };
+  private static final TableName TABLE_NAME = TableName.valueOf("T");
+  private static final HRegionLocation SERVER1 =
+    newLocation(ServerName.valueOf("host1", 16020, 1), null, "b");
+  private static final HRegionLocation SERVER2 =
+    newLocation(ServerName.valueOf("host2", 16020, 1), "b", "c");
+
+  private static HRegionLocation newLocation(ServerName server, String startKey, String endKey) {
+    return new HRegionLocation(newRegion(startKey, endKey), server);
+  }
+
+  private static RegionInfo newRegion(String startKey, String endKey) {
+    return RegionInfoBuilder.newBuilder(TABLE_NAME)
+      .setStartKey(startKey == null ? null : Bytes.toBytes(startKey))
+      .setEndKey(endKey == null ? null : Bytes.toBytes(endKey)).build();
+  }
+
+  private static Map<HRegionLocation, List<RegionInfo>> getRegionsByServer() {
+    Map<HRegionLocation, List<RegionInfo>> regionsByServer = new HashMap<>();
+    regionsByServer.put(SERVER1, Collections.singletonList(SERVER1.getRegion()));
+    regionsByServer.put(SERVER2, Arrays.asList(SERVER2.getRegion(), newRegion("c", null)));
+    return regionsByServer;
+  }
+
+  private PTable createTable(String ddl) throws Exception {
+    try (Connection conn = DriverManager.getConnection(getUrl())) {
+      conn.createStatement().execute(ddl);
+      String tableName = ddl.split(" ")[2];
+      return conn.unwrap(PhoenixConnection.class).getTable(tableName);
+    }
+  }
+
+  private static Expression getRowKeyColumnExpression(PTable table, int position) {
+    PColumn column = table.getPKColumns().get(position);
+    return new RowKeyColumnExpression(column,
+      new RowKeyValueAccessor(table.getPKColumns(), position));
+  }
+
+  private static Expression getJoinKeyExpression(PTable table) {
+    return new KeyValueColumnExpression(table.getPKColumns().get(0), CF, CQ);
+  }
+
+  /**
+   * Serializes the rows the same way as {@link HashCacheClient} does.
+   */
+  private static ImmutableBytesWritable serialize(Expression onExpression) throws Exception {
+    TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(baOut);
+    out.writeInt(1);
+    WritableUtils.writeVInt(out, ExpressionType.valueOf(onExpression).ordinal());
+    onExpression.write(out);
+    out.writeInt(baOut.size() + Bytes.SIZEOF_INT);
+    out.writeInt(JOIN_KEYS.length);
+    for (int i = 0; i < JOIN_KEYS.length; i++) {
+      byte[] row = Bytes.toBytes("row" + i);
+      KeyValue kv = JOIN_KEYS[i] == null
+        ? new KeyValue(row, CF, Bytes.toBytes("V"), Bytes.toBytes("v"))
+        : new KeyValue(row, CF, CQ, Bytes.toBytes(JOIN_KEYS[i]));
+      TupleUtil.write(new ResultTuple(Result.create(new KeyValue[] { kv })), out);
+    }
+    out.close();
+    byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())];
+    int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+    return new ImmutableBytesWritable(compressed, 0, compressedSize);
+  }
+
+  private static List<String> getRows(HashCache cache, String key) throws Exception {
+    List<Tuple> tuples = cache.get(new ImmutableBytesPtr(Bytes.toBytes(key)));
+    if (tuples == null) {
+      return null;
+    }
+    List<String> rows = new ArrayList<>();
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    for (Tuple tuple : tuples) {
+      tuple.getKey(ptr);
+      rows.add(Bytes.toString(ptr.copyBytes()));
+    }
+    return rows;
+  }
+
+  private static HashCache newCache(ImmutableBytesWritable cachePtr, MemoryManager memoryManager)
+    throws Exception {
+    return (HashCache) new PartitionedHashCacheFactory().newCache(cachePtr, null,
+      memoryManager.allocate(0), false, 0);
+  }
+
+  private void assertPartitioned(boolean offHeap) throws Exception {
+    PTable table = createTable("CREATE TABLE " + (offHeap ? "T_OFF_HEAP" : "T_HEAP")
+      + " (k VARCHAR NOT NULL, k2 INTEGER NOT NULL CONSTRAINT pk PRIMARY KEY (k, k2))");
+    Expression joinKey = getJoinKeyExpression(table);
+    HashCachePartitioner partitioner = HashCachePartitioner.create(table,
+      getRowKeyColumnExpression(table, 0), joinKey, offHeap, Long.MAX_VALUE);
+    assertNotNull(partitioner);
+    Map<HRegionLocation, ImmutableBytesWritable> partitions =
+      partitioner.partition(serialize(joinKey), getRegionsByServer());
+    assertEquals(2, partitions.size());
+
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    try (HashCache cache1 = newCache(partitions.get(SERVER1), memoryManager);
+      HashCache cache2 = newCache(partitions.get(SERVER2), memoryManager)) {
+      assertEquals(Arrays.asList("row0", "row2", "row5"), getRows(cache1, "a"));
+      assertNull(getRows(cache1, "b"));
+      assertNull(getRows(cache1, "c"));
+      assertEquals(Arrays.asList("row4"), getRows(cache1, ""));
+      assertTrue(cache1.coversRegion(new byte[0], Bytes.toBytes("b")));
+      assertTrue(cache1.coversRegion(Bytes.toBytes("a"), Bytes.toBytes("b")));
+      assertFalse(cache1.coversRegion(Bytes.toBytes("a"), Bytes.toBytes("c")));
+      assertFalse(cache1.coversRegion(Bytes.toBytes("c"), new byte[0]));
+
+      assertNull(getRows(cache2, "a"));
+      assertEquals(Arrays.asList("row1"), getRows(cache2, "b"));
+      assertEquals(Arrays.asList("row3"), getRows(cache2, "c"));
+      assertEquals(Arrays.asList("row4"), getRows(cache2, ""));
+      // Adjacent regions of a server are covered as one range, so a merged region is covered
+      assertTrue(cache2.coversRegion(Bytes.toBytes("b"), new byte[0]));
+      assertTrue(cache2.coversRegion(Bytes.toBytes("d"), Bytes.toBytes("e")));
+      assertFalse(cache2.coversRegion(Bytes.toBytes("a"), Bytes.toBytes("b")));
+    }
+    assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+  }
+
+  @Test
+  public void testPartitionByLeadingRowKeyColumn() throws Exception {
+    assertPartitioned(false);
+  }
+
+  @Test
+  public void testPartitionOffHeap() throws Exception {
+    assertPartitioned(true);
+  }
+
+  @Test
+  public void testPartitionExceedsMaxSize() throws Exception {
+    PTable table = createTable("CREATE TABLE T_MAX_SIZE (k VARCHAR PRIMARY KEY, v VARCHAR)");
+    Expression joinKey = getJoinKeyExpression(table);
+    HashCachePartitioner partitioner =
+      HashCachePartitioner.create(table, getRowKeyColumnExpression(table, 0), joinKey, false, 10);
+    try {
+      partitioner.partition(serialize(joinKey), getRegionsByServer());
+      fail();
+    } catch (MaxServerCacheSizeExceededException e) { // expected
+    }
+  }
+
+  @Test
+  public void testNotPartitionedWithoutLeadingRowKeyColumn() throws Exception {
+    PTable table =
+      createTable("CREATE TABLE T_NOT_LEADING (k1 VARCHAR NOT NULL, k2 VARCHAR NOT NULL, v INTEGER"
+        + " CONSTRAINT pk PRIMARY KEY (k1, k2))");
+    Expression joinKey = getJoinKeyExpression(table);
+    assertNull(HashCachePartitioner.create(table, getRowKeyColumnExpression(table, 1), joinKey,
+      false, Long.MAX_VALUE));
+    assertNull(HashCachePartitioner.create(table, null, null, false, Long.MAX_VALUE));
+    // The join key must have the type of the row key column
+    assertNull(HashCachePartitioner.create(table, getRowKeyColumnExpression(table, 0),
+      new KeyValueColumnExpression(table.getColumnForColumnName("V"), CF, CQ), false,
+      Long.MAX_VALUE));
+
+    PTable saltedTable =
+      createTable("CREATE TABLE T_SALTED (k VARCHAR PRIMARY KEY, v VARCHAR) SALT_BUCKETS=4");
+    assertNull(HashCachePartitioner.create(saltedTable, getRowKeyColumnExpression(saltedTable, 1),
+      joinKey, false, Long.MAX_VALUE));
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.join;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.HashCache;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.apache.phoenix.util.TupleUtil;
+import org.iq80.snappy.Snappy;
+import org.junit.Test;
+
+public class OffHeapHashCacheFactoryTest {
+
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final byte[] CQ = Bytes.toBytes("K");
+  private static final String[] JOIN_KEYS = { "a", "b", "a", "c", "a" };
+
+  private static final PDatum VARCHAR_DATUM = new PDatum() {
+    @Override
+    public boolean isNullable() {
+      return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+      return PVarchar.INSTANCE;
+    }
+
+    @Override
+    public Integer getMaxLength() {
+      return null;
+    }
+
+    @Override
+    public Integer getScale() {
+      return null;
+    }
+
+    @Override
+    public SortOrder getSortOrder() {
+      return SortOrder.getDefault();
+    }
+  };
+
+  /**
+   * Serializes the rows the same way as {@link HashCacheClient} does.
+   */
+  private static ImmutableBytesWritable serialize(boolean singleValueOnly) throws IOException {
+    TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream(1024);
+    DataOutputStream out = new DataOutputStream(baOut);
+    Expression onExpression = new KeyValueColumnExpression(VARCHAR_DATUM, CF, CQ);
+    out.writeInt(1);
+    WritableUtils.writeVInt(out, ExpressionType.valueOf(onExpression).ordinal());
+    onExpression.write(out);
+    int exprSize = baOut.size() + Bytes.SIZEOF_INT;
+    out.writeInt(exprSize * (singleValueOnly ? -1 : 1));
+    out.writeInt(JOIN_KEYS.length);
+    for (int i = 0; i < JOIN_KEYS.length; i++) {
+      KeyValue kv = new KeyValue(Bytes.toBytes("row" + i), CF, CQ, Bytes.toBytes(JOIN_KEYS[i]));
+      TupleUtil.write(new ResultTuple(Result.create(new KeyValue[] { kv })), out);
+    }
+    out.close();
+    byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())];
+    int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+    return new ImmutableBytesWritable(compressed, 0, compressedSize);
+  }
+
+  private static HashCache newCache(HashCacheFactory factory, MemoryManager memoryManager,
+    boolean singleValueOnly) throws Exception {
+    return (HashCache) factory.newCache(serialize(singleValueOnly), null, memoryManager.allocate(0),
+      false, 0);
+  }
+
+  private static List<String> getRows(HashCache cache, String key) throws IOException {
+    List<Tuple> tuples = cache.get(new ImmutableBytesPtr(Bytes.toBytes(key)));
+    if (tuples == null) {
+      return null;
+    }
+    List<String> rows = new ArrayList<>();
+    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+    for (Tuple tuple : tuples) {
+      tuple.getKey(ptr);
+      rows.add(Bytes.toString(ptr.copyBytes()));
+    }
+    return rows;
+  }
+
+  @Test
+  public void testSameRowsAsHeapHashCache() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    try (HashCache heapCache = newCache(new HashCacheFactory(), memoryManager, false);
+      HashCache offHeapCache = newCache(new OffHeapHashCacheFactory(), memoryManager, false)) {
+      for (String key : new String[] { "a", "b", "c", "d", "" }) {
+        assertEquals(key, getRows(heapCache, key), getRows(offHeapCache, key));
+        ImmutableBytesPtr ptr = new ImmutableBytesPtr(Bytes.toBytes(key));
+        assertEquals(key, heapCache.containsKey(ptr), offHeapCache.containsKey(ptr));
+      }
+    }
+  }
+
+  @Test
+  public void testDuplicateKeysKeepInsertionOrder() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    try (HashCache cache = newCache(new OffHeapHashCacheFactory(), memoryManager, false)) {
+      List<String> rows = getRows(cache, "a");
+      assertEquals(3, rows.size());
+      assertEquals("row0", rows.get(0));
+      assertEquals("row2", rows.get(1));
+      assertEquals("row4", rows.get(2));
+      assertNull(getRows(cache, "x"));
+      assertFalse(cache.containsKey(new ImmutableBytesPtr(Bytes.toBytes("x"))));
+    }
+  }
+
+  @Test
+  public void testSingleValueOnly() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    try (HashCache cache = newCache(new OffHeapHashCacheFactory(), memoryManager, true)) {
+      assertEquals(1, getRows(cache, "b").size());
+      try {
+        cache.get(new ImmutableBytesPtr(Bytes.toBytes("a")));
+        fail();
+      } catch (IOException e) { // expected
+      }
+      try {
+        cache.containsKey(new ImmutableBytesPtr(Bytes.toBytes("a")));
+        fail();
+      } catch (IOException e) { // expected
+      }
+    }
+  }
+
+  @Test
+  public void testRowsReadInPlace() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    try (HashCache cache = newCache(new OffHeapHashCacheFactory(), memoryManager, false)) {
+      List<Tuple> tuples = cache.get(new ImmutableBytesPtr(Bytes.toBytes("a")));
+      assertEquals(3, tuples.size());
+      Tuple tuple = tuples.get(1);
+      assertTrue(tuple.isImmutable());
+      assertEquals(1, tuple.size());
+      ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+      assertTrue(tuple.getValue(CF, CQ, ptr));
+      assertEquals("a", Bytes.toString(ptr.copyBytes()));
+      assertFalse(tuple.getValue(CF, Bytes.toBytes("X"), ptr));
+      assertNull(tuple.getValue(Bytes.toBytes("1"), CQ));
+      Cell cell = tuple.getValue(CF, CQ);
+      assertEquals("row2", Bytes.toString(CellUtil.cloneRow(cell)));
+      assertEquals("a", Bytes.toString(CellUtil.cloneValue(cell)));
+      assertTrue(CellUtil.equals(cell, tuple.getValue(0)));
+      assertEquals(cell.getSerializedSize(), tuple.getSerializedSize());
+    }
+  }
+
+  @Test
+  public void testBufferReleasedByLastReference() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    HashCache cache = newCache(new OffHeapHashCacheFactory(), memoryManager, false);
+    assertTrue(cache.retain());
+    // Removed from the server while a scanner still uses it
+    cache.close();
+    cache.close();
+    assertTrue(memoryManager.getAvailableMemory() < memoryManager.getMaxMemory());
+    assertEquals(Arrays.asList("row0", "row2", "row4"), getRows(cache, "a"));
+    cache.release();
+    assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+    assertFalse(cache.retain());
+    try {
+      cache.get(new ImmutableBytesPtr(Bytes.toBytes("a")));
+      fail();
+    } catch (IOException e) { // expected
+    }
+  }
+
+  @Test
+  public void testMemoryIsAccounted() throws Exception {
+    MemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+    HashCache cache = newCache(new OffHeapHashCacheFactory(), memoryManager, false);
+    assertTrue(memoryManager.getAvailableMemory() < memoryManager.getMaxMemory());
+    cache.close();
+    assertEquals(memoryManager.getMaxMemory(), memoryManager.getAvailableMemory());
+  }
+}
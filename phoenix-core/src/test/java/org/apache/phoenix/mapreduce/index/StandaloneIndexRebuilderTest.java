@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.mapreduce.index.IndexToolCheckpointRepository.Checkpoint;
+import org.junit.Test;
+
+public class StandaloneIndexRebuilderTest {
+
+  private static final byte[] EMPTY = HConstants.EMPTY_BYTE_ARRAY;
+
+  private static byte[] b(String s) {
+    return Bytes.toBytes(s);
+  }
+
+  @Test
+  public void testResumeWithoutCheckpoint() {
+    assertArrayEquals(b("c"),
+      StandaloneIndexRebuilder.getResumeRow(Collections.<Checkpoint> emptyList(), b("c"), b("f")));
+  }
+
+  @Test
+  public void testResumeAfterCheckpointedRows() {
+    List<Checkpoint> checkpoints =
+      Collections.singletonList(new Checkpoint(EMPTY, b("m"), b("d"), false, 10));
+    assertArrayEquals(b("d"), StandaloneIndexRebuilder.getResumeRow(checkpoints, EMPTY, b("m")));
+    // A region split off the scanned range resumes from the checkpoint too
+    assertArrayEquals(b("d"), StandaloneIndexRebuilder.getResumeRow(checkpoints, b("c"), b("g")));
+    assertArrayEquals(b("g"), StandaloneIndexRebuilder.getResumeRow(checkpoints, b("g"), b("m")));
+  }
+
+  @Test
+  public void testSkipDoneRanges() {
+    List<Checkpoint> checkpoints = Arrays.asList(new Checkpoint(EMPTY, b("f"), b("f"), true, 10),
+      new Checkpoint(b("f"), b("m"), b("h"), false, 5),
+      new Checkpoint(b("m"), EMPTY, EMPTY, true, 10));
+    assertNull(StandaloneIndexRebuilder.getResumeRow(checkpoints, EMPTY, b("f")));
+    assertNull(StandaloneIndexRebuilder.getResumeRow(checkpoints, b("m"), EMPTY));
+    // Regions merged meanwhile resume after all the ranges done before
+    assertArrayEquals(b("h"), StandaloneIndexRebuilder.getResumeRow(checkpoints, EMPTY, b("m")));
+    assertArrayEquals(b("h"), StandaloneIndexRebuilder.getResumeRow(checkpoints, b("b"), EMPTY));
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.phoenix.memory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.spy;
@@ -188,6 +189,61 @@ public class MemoryManagerTest {
     assertTrue(gmm.getAvailableMemory() == gmm.getMaxMemory());
   }
 
+  @Test
+  public void testConcurrentResizeAndClose() throws Exception {
+    int THREADS = 16;
+    final GlobalMemoryManager gmm = new GlobalMemoryManager(THREADS * 1000);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < 1000; j++) {
+              MemoryChunk chunk = gmm.allocate(10, 100);
+              chunk.resize(500);
+              chunk.resize(50);
+              chunk.close();
+            }
+          } catch (InterruptedException ix) {
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // Each thread never holds more than its share, so no allocation fails and all memory is freed
+    assertEquals(0, gmm.getFailedAllocationCount());
+    assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+  }
+
+  @Test
+  public void testFailedAllocationCount() throws Exception {
+    GlobalMemoryManager gmm = new GlobalMemoryManager(100);
+    MemoryChunk c1 = gmm.allocate(60);
+    try {
+      gmm.allocate(50);
+      fail();
+    } catch (InsufficientMemoryException e) { // expected
+    }
+    try {
+      c1.resize(150);
+      fail();
+    } catch (InsufficientMemoryException e) { // expected
+    }
+    assertEquals(2, gmm.getFailedAllocationCount());
+    assertEquals(60, c1.getSize());
+    c1.close();
+    assertEquals(gmm.getMaxMemory(), gmm.getAvailableMemory());
+    assertEquals(0, gmm.getContendedUpdateCount());
+  }
+
   /**
    * Test for SpillableGroupByCache which is using MemoryManager to allocate chunks for GroupBy
    * execution
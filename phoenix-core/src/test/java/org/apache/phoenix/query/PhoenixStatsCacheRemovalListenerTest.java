@@ -19,8 +19,15 @@ package org.apache.phoenix.query;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.query.GuidePostsCacheImpl.PhoenixStatsCacheRemovalListener;
+import org.apache.phoenix.schema.stats.GuidePostsInfo;
+import org.apache.phoenix.schema.stats.GuidePostsKey;
 import org.junit.Test;
 
 import org.apache.phoenix.thirdparty.com.google.common.cache.RemovalCause;
@@ -43,4 +50,19 @@ public class PhoenixStatsCacheRemovalListenerTest {
     assertTrue(listener.wasEvicted(RemovalCause.EXPIRED));
     assertTrue(listener.wasEvicted(RemovalCause.SIZE));
   }
+
+  @Test
+  public void removalsAreReportedToTheStatsLoader() {
+    PhoenixStatsLoader statsLoader = mock(PhoenixStatsLoader.class);
+    Configuration conf = new Configuration();
+    GuidePostsCacheImpl cache =
+      new GuidePostsCacheImpl(new PhoenixStatsCacheLoader(statsLoader, conf), conf);
+    GuidePostsKey key = new GuidePostsKey(Bytes.toBytes("T"), Bytes.toBytes("0"));
+    cache.put(key, GuidePostsInfo.NO_GUIDEPOST);
+    // Reloaded stats replace the previous ones
+    cache.put(key, GuidePostsInfo.NO_GUIDEPOST);
+    verify(statsLoader, never()).statsRemoved(key);
+    cache.invalidate(key);
+    verify(statsLoader).statsRemoved(key);
+  }
 }
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.PrefixByteDecoder;
+import org.junit.Test;
+
+public class GuidePostsInfoTest {
+
+  static byte[] key(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  static GuidePostsInfo build(int count) {
+    GuidePostsInfoBuilder builder = new GuidePostsInfoBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.trackGuidePost(new ImmutableBytesWritable(key(i * 10)), i, i, i);
+    }
+    return builder.build();
+  }
+
+  static List<byte[]> decodeAll(GuidePostsInfo info) throws Exception {
+    List<byte[]> keys = new ArrayList<>();
+    ImmutableBytesWritable guidePosts = info.getGuidePosts();
+    DataInputStream input = new DataInputStream(
+      new ByteArrayInputStream(guidePosts.get(), guidePosts.getOffset(), guidePosts.getLength()));
+    PrefixByteDecoder decoder = new PrefixByteDecoder(info.getMaxLength());
+    for (int i = 0; i < info.getGuidePostsCount(); i++) {
+      keys.add(decoder.decode(input).copyBytes());
+    }
+    return keys;
+  }
+
+  @Test
+  public void testRestartPoints() throws Exception {
+    int count = GuidePostsInfo.RESTART_INTERVAL * 5 + 3;
+    GuidePostsInfo info = build(count);
+    assertEquals(6, info.getRestartOffsets().length);
+    // The guideposts still decode sequentially
+    List<byte[]> keys = decodeAll(info);
+    for (int i = 0; i < count; i++) {
+      assertArrayEquals(key(i * 10), keys.get(i));
+    }
+    // Decoding from a restart point needs no previous guidepost
+    ImmutableBytesWritable guidePosts = info.getGuidePosts();
+    for (int r = 0; r < info.getRestartOffsets().length; r++) {
+      int offset = info.getRestartOffsets()[r];
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(guidePosts.get(),
+        guidePosts.getOffset() + offset, guidePosts.getLength() - offset));
+      PrefixByteDecoder decoder = new PrefixByteDecoder(info.getMaxLength());
+      assertArrayEquals(key(r * GuidePostsInfo.RESTART_INTERVAL * 10),
+        decoder.decode(input).copyBytes());
+      assertArrayEquals(key((r * GuidePostsInfo.RESTART_INTERVAL + 1) * 10),
+        decoder.decode(input).copyBytes());
+    }
+  }
+
+  @Test
+  public void testFindRestartPoint() {
+    int interval = GuidePostsInfo.RESTART_INTERVAL;
+    GuidePostsInfo info = build(interval * 5 + 3);
+    assertEquals(0, info.findRestartPoint(new ImmutableBytesWritable(new byte[0])));
+    assertEquals(0, info.findRestartPoint(new ImmutableBytesWritable(key(0))));
+    assertEquals(0, info.findRestartPoint(new ImmutableBytesWritable(key(interval * 10 - 1))));
+    assertEquals(1, info.findRestartPoint(new ImmutableBytesWritable(key(interval * 10))));
+    assertEquals(2, info.findRestartPoint(new ImmutableBytesWritable(key(interval * 25))));
+    assertEquals(5, info.findRestartPoint(new ImmutableBytesWritable(key(100000))));
+
+    // Guideposts created without restart points can only be decoded from the first one
+    GuidePostsInfo legacy = new GuidePostsInfo(toList(info.getByteCounts()), info.getGuidePosts(),
+      toList(info.getRowCounts()), info.getMaxLength(), info.getGuidePostsCount(),
+      toList(info.getGuidePostTimestamps()));
+    assertEquals(0, legacy.findRestartPoint(new ImmutableBytesWritable(key(100000))));
+  }
+
+  private static List<Long> toList(long[] values) {
+    List<Long> list = new ArrayList<>(values.length);
+    for (long value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.stats;
+
+import static org.apache.phoenix.schema.stats.GuidePostsInfoTest.build;
+import static org.apache.phoenix.schema.stats.GuidePostsInfoTest.decodeAll;
+import static org.apache.phoenix.schema.stats.GuidePostsInfoTest.key;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.jdbc.PhoenixDatabaseMetaData;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class StatisticsUtilTest {
+  private static final byte[] TABLE = Bytes.toBytes("T");
+  private static final byte[] CF = Bytes.toBytes("0");
+  private static final GuidePostsKey KEY = new GuidePostsKey(TABLE, CF);
+
+  private static byte[] row(byte[] gpKey) {
+    return StatisticsUtil.getRowKey(TABLE, new ImmutableBytesWritable(CF), gpKey);
+  }
+
+  private static List<Cell> put(byte[] gpKey, long ts, long byteCount, long rowCount) {
+    byte[] row = row(gpKey);
+    return Arrays.<Cell> asList(
+      new KeyValue(row, QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+        PhoenixDatabaseMetaData.GUIDE_POSTS_ROW_COUNT_BYTES, ts, PLong.INSTANCE.toBytes(rowCount)),
+      new KeyValue(row, QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+        PhoenixDatabaseMetaData.GUIDE_POSTS_WIDTH_BYTES, ts, PLong.INSTANCE.toBytes(byteCount)),
+      new KeyValue(row, QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES,
+        QueryConstants.EMPTY_COLUMN_BYTES, ts, new byte[0]));
+  }
+
+  private static Cell delete(byte[] gpKey, long ts) {
+    return new KeyValue(row(gpKey), QueryConstants.DEFAULT_COLUMN_FAMILY_BYTES, null, ts,
+      KeyValue.Type.DeleteFamily);
+  }
+
+  private static Table mockTable(List<List<Cell>> rows, ArgumentCaptor<Scan> scan)
+    throws Exception {
+    List<Result> results = new ArrayList<>(rows.size());
+    for (List<Cell> cells : rows) {
+      List<Cell> sortedCells = new ArrayList<>(cells);
+      Collections.sort(sortedCells, CellComparatorImpl.COMPARATOR);
+      results.add(Result.create(sortedCells));
+    }
+    Iterator<Result> iterator = results.iterator();
+    ResultScanner scanner = mock(ResultScanner.class);
+    when(scanner.next()).thenAnswer(invocation -> iterator.hasNext() ? iterator.next() : null);
+    Table table = mock(Table.class);
+    when(table.getScanner(scan.capture())).thenReturn(scanner);
+    return table;
+  }
+
+  @Test
+  public void testReadStatisticsChanges() throws Exception {
+    // Guideposts at row00000, row00010, ... with timestamps 0 to 39
+    GuidePostsInfo prev = build(40);
+    List<List<Cell>> rows = new ArrayList<>();
+    // Added guidepost
+    rows.add(put(key(15), 100, 7, 8));
+    // Deleted guidepost
+    rows.add(Arrays.asList(delete(key(20), 99)));
+    // Updated guidepost
+    List<Cell> updated = new ArrayList<>();
+    updated.add(delete(key(30), 99));
+    updated.addAll(put(key(30), 100, 5, 6));
+    updated.addAll(put(key(30), 39, 3, 3));
+    rows.add(updated);
+    // Guidepost deleted after being written again
+    List<Cell> deletedAgain = new ArrayList<>();
+    deletedAgain.add(delete(key(40), 100));
+    deletedAgain.addAll(put(key(40), 99, 1, 1));
+    rows.add(deletedAgain);
+    // Added guidepost after the last one
+    rows.add(put(key(1000), 100, 9, 10));
+    ArgumentCaptor<Scan> scan = ArgumentCaptor.forClass(Scan.class);
+    GuidePostsInfo info = StatisticsUtil.readStatisticsChanges(mockTable(rows, scan), KEY, prev);
+
+    // Only the cells since the latest cached guidepost are read
+    assertTrue(scan.getValue().isRaw());
+    assertEquals(39, scan.getValue().getTimeRange().getMin());
+
+    List<byte[]> keys = decodeAll(info);
+    assertEquals(40, info.getGuidePostsCount());
+    assertArrayEquals(key(10), keys.get(1));
+    assertArrayEquals(key(15), keys.get(2));
+    assertEquals(7, info.getByteCounts()[2]);
+    assertEquals(8, info.getRowCounts()[2]);
+    assertEquals(100, info.getGuidePostTimestamps()[2]);
+    assertArrayEquals(key(30), keys.get(3));
+    assertEquals(5, info.getByteCounts()[3]);
+    assertEquals(6, info.getRowCounts()[3]);
+    assertArrayEquals(key(50), keys.get(4));
+    assertEquals(5, info.getByteCounts()[4]);
+    assertArrayEquals(key(1000), keys.get(39));
+    assertEquals(9, info.getByteCounts()[39]);
+    // The restart points are rebuilt along with the guideposts
+    assertEquals(3, info.getRestartOffsets().length);
+  }
+
+  @Test
+  public void testReadStatisticsWithoutChanges() throws Exception {
+    GuidePostsInfo prev = build(40);
+    ArgumentCaptor<Scan> scan = ArgumentCaptor.forClass(Scan.class);
+    assertSame(prev, StatisticsUtil
+      .readStatisticsChanges(mockTable(new ArrayList<List<Cell>>(), scan), KEY, prev));
+    // The latest cached guidepost is read again as the time range includes its timestamp
+    List<List<Cell>> rows = new ArrayList<>();
+    rows.add(put(key(390), 39, 39, 39));
+    assertSame(prev, StatisticsUtil.readStatisticsChanges(mockTable(rows, scan), KEY, prev));
+    // A guidepost written again with the same timestamp but other counts is still a change
+    rows.clear();
+    rows.add(put(key(390), 39, 40, 41));
+    GuidePostsInfo info = StatisticsUtil.readStatisticsChanges(mockTable(rows, scan), KEY, prev);
+    assertEquals(40, info.getGuidePostsCount());
+    assertEquals(40, info.getByteCounts()[39]);
+  }
+
+  @Test
+  public void testReadStatisticsChangesNeedingFullRead() throws Exception {
+    ArgumentCaptor<Scan> scan = ArgumentCaptor.forClass(Scan.class);
+    // No previous guideposts
+    assertNull(StatisticsUtil.readStatisticsChanges(mockTable(new ArrayList<List<Cell>>(), scan),
+      KEY, GuidePostsInfo.NO_GUIDEPOST));
+    // Region without enough data for a guidepost
+    List<List<Cell>> rows = new ArrayList<>();
+    rows.add(put(GuidePostsInfo.EMPTY_GUIDEPOST_KEY, 100, 1, 0));
+    assertNull(StatisticsUtil.readStatisticsChanges(mockTable(rows, scan), KEY, build(40)));
+  }
+}